@@ -0,0 +1,103 @@
+package com.byron.cudeca.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cuenta las sentencias SQL que Hibernate prepara en el hilo actual mientras hay una
+ * medición abierta (una petición HTTP, ver MetricasSqlFilter). No modifica el SQL.
+ * Además del total guarda cuántas veces se repite cada sentencia: la misma SELECT
+ * muchas veces en una petición es la firma de un N+1.
+ */
+@Component
+public class ContadorSentenciasSql implements StatementInspector {
+
+    private final ThreadLocal<Medicion> actual = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Medicion medicion = actual.get();
+        if (medicion != null) {
+            medicion.anotar(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Abre una medición nueva en el hilo actual.
+     */
+    public Medicion iniciar() {
+        Medicion medicion = new Medicion();
+        actual.set(medicion);
+        return medicion;
+    }
+
+    /**
+     * Deja de contar en el hilo actual (la medición sigue abierta si se ha propagado a otro hilo).
+     */
+    public void desligar() {
+        actual.remove();
+    }
+
+    /**
+     * Envuelve una tarea para que cuente en la medición del hilo que la crea.
+     * Lo usa el pool de las peticiones asíncronas (descargas en streaming) vía TaskDecorator.
+     */
+    public Runnable propagar(Runnable tarea) {
+        Medicion medicion = actual.get();
+        if (medicion == null) {
+            return tarea;
+        }
+        return () -> {
+            Medicion previa = actual.get();
+            actual.set(medicion);
+            try {
+                tarea.run();
+            } finally {
+                if (previa == null) {
+                    actual.remove();
+                } else {
+                    actual.set(previa);
+                }
+            }
+        };
+    }
+
+    /**
+     * Sentencias de una petición. Thread-safe: la parte asíncrona de una petición
+     * puede contar desde otro hilo.
+     */
+    public static final class Medicion {
+
+        private final AtomicInteger total = new AtomicInteger();
+        private final ConcurrentMap<String, AtomicInteger> porSentencia = new ConcurrentHashMap<>();
+
+        void anotar(String sql) {
+            total.incrementAndGet();
+            porSentencia.computeIfAbsent(sql, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        public int getTotal() {
+            return total.get();
+        }
+
+        /**
+         * La sentencia que más se ha repetido y cuántas veces (null si no hubo ninguna).
+         */
+        public Map.Entry<String, Integer> masRepetida() {
+            Map.Entry<String, Integer> mayor = null;
+            for (Map.Entry<String, AtomicInteger> sentencia : porSentencia.entrySet()) {
+                int veces = sentencia.getValue().get();
+                if (mayor == null || veces > mayor.getValue()) {
+                    mayor = Map.entry(sentencia.getKey(), veces);
+                }
+            }
+            return mayor;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.byron.cudeca.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Métricas de la aplicación (Micrometer, expuestas en /actuator/prometheus).
+ * Peticiones HTTP y llamadas a repositorios las instrumenta Spring Boot
+ * (http.server.requests, spring.data.repository.invocations); aquí se engancha a
+ * Hibernate el contador de sentencias SQL por petición.
+ */
+@Configuration
+public class MetricasConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer contadorSentenciasSqlEnHibernate(ContadorSentenciasSql contador) {
+        return propiedades -> propiedades.put(AvailableSettings.STATEMENT_INSPECTOR, contador);
+    }
+
+    /**
+     * El pool de Spring Boot (applicationTaskExecutor) ejecuta la parte asíncrona de las
+     * peticiones: sus sentencias cuentan para la petición que las lanzó.
+     */
+    @Bean
+    public TaskDecorator contadorSentenciasSqlEnTareas(ContadorSentenciasSql contador) {
+        return contador::propagar;
+    }
+}
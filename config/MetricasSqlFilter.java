@@ -0,0 +1,88 @@
+package com.byron.cudeca.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Registra cuántas sentencias SQL lanza cada petición HTTP (cudeca.sql.sentencias),
+ * etiquetadas por método y patrón de URI como http.server.requests, y las pasa por el
+ * presupuesto de SQL. Un endpoint con N+1 se ve aquí como una distribución que crece con
+ * los datos. Las peticiones asíncronas (descargas en streaming, SSE) se miden al completarse.
+ */
+@Component
+public class MetricasSqlFilter extends OncePerRequestFilter {
+
+    private final ContadorSentenciasSql contador;
+    private final PresupuestoSql presupuesto;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public MetricasSqlFilter(ContadorSentenciasSql contador, PresupuestoSql presupuesto, MeterRegistry meterRegistry) {
+        this.contador = contador;
+        this.presupuesto = presupuesto;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContadorSentenciasSql.Medicion medicion = contador.iniciar();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            contador.desligar();
+        }
+
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    cerrar(request, medicion);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            cerrar(request, medicion);
+        }
+    }
+
+    private void cerrar(HttpServletRequest request, ContadorSentenciasSql.Medicion medicion) {
+        String uri = uri(request);
+        DistributionSummary.builder("cudeca.sql.sentencias")
+                .description("Sentencias SQL por petición HTTP")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(medicion.getTotal());
+        presupuesto.comprobar(request.getMethod(), uri, medicion);
+    }
+
+    // El patrón (/api/eventos/{id}) y no la URL real, para no crear una serie por ID
+    private static String uri(HttpServletRequest request) {
+        Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return patron != null ? patron.toString() : "UNKNOWN";
+    }
+}
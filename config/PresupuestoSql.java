@@ -0,0 +1,84 @@
+package com.byron.cudeca.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Presupuesto de SQL por petición HTTP: un máximo de sentencias y un máximo de repeticiones
+ * de la misma sentencia (más que eso huele a N+1, p. ej. un toString o un bucle que recorre
+ * una colección lazy). En producción avisa en el log; en los tests (modo FALLAR) lanza
+ * excepción para que la petición que se pasa haga fallar el test.
+ */
+@Component
+public class PresupuestoSql {
+
+    public enum Modo {
+        AVISAR, FALLAR
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PresupuestoSql.class);
+    private static final int LONGITUD_SQL = 200;
+
+    private final int maximo;
+    private final int maxRepeticiones;
+    private final Modo modo;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public PresupuestoSql(@Value("${cudeca.sql.presupuesto.maximo:25}") int maximo,
+                          @Value("${cudeca.sql.presupuesto.repeticiones:5}") int maxRepeticiones,
+                          @Value("${cudeca.sql.presupuesto.modo:AVISAR}") Modo modo,
+                          MeterRegistry meterRegistry) {
+        if (maximo < 1 || maxRepeticiones < 1) {
+            throw new IllegalArgumentException("El presupuesto y las repeticiones deben ser al menos 1.");
+        }
+        this.maximo = maximo;
+        this.maxRepeticiones = maxRepeticiones;
+        this.modo = modo;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Comprueba la medición de una petición ya terminada.
+     * @throws IllegalStateException en modo FALLAR, si se ha pasado del presupuesto.
+     */
+    public void comprobar(String metodo, String uri, ContadorSentenciasSql.Medicion medicion) {
+        String motivo;
+        String detalle;
+        Map.Entry<String, Integer> masRepetida = medicion.masRepetida();
+        if (masRepetida != null && masRepetida.getValue() > maxRepeticiones) {
+            motivo = "repeticion";
+            detalle = "posible N+1, la misma sentencia " + masRepetida.getValue() + " veces (máximo "
+                    + maxRepeticiones + "): " + recortar(masRepetida.getKey());
+        } else if (medicion.getTotal() > maximo) {
+            motivo = "total";
+            detalle = medicion.getTotal() + " sentencias SQL (máximo " + maximo + ")";
+        } else {
+            return;
+        }
+
+        Counter.builder("cudeca.sql.presupuesto.excedido")
+                .description("Peticiones HTTP que se pasan del presupuesto de SQL")
+                .tag("method", metodo)
+                .tag("uri", uri)
+                .tag("motivo", motivo)
+                .register(meterRegistry)
+                .increment();
+        String mensaje = "Presupuesto SQL excedido en " + metodo + " " + uri + ": " + detalle;
+        if (modo == Modo.FALLAR) {
+            throw new IllegalStateException(mensaje);
+        }
+        log.warn(mensaje);
+    }
+
+    private static String recortar(String sql) {
+        return sql.length() > LONGITUD_SQL ? sql.substring(0, LONGITUD_SQL) + "..." : sql;
+    }
+}
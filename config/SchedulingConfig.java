@@ -0,0 +1,13 @@
+package com.byron.cudeca.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Activa las tareas periódicas (@Scheduled) de los servicios,
+ * como el barrido de retenciones de entradas caducadas.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,143 @@
+package com.byron.cudeca.controller;
+
+import com.byron.cudeca.dto.ResumenAnualCertificadosDTO;
+import com.byron.cudeca.service.CertificadoPdfService;
+import com.byron.cudeca.service.Modelo182Service;
+import com.byron.cudeca.service.TotalDonanteAnualService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Controller for donation certificates and the yearly tax reports built from them.
+ */
+
+@RestController
+@RequestMapping("/api")
+public class CertificadoController {
+
+    private final Modelo182Service modelo182Service;
+    private final TotalDonanteAnualService totalDonanteAnualService;
+    private final CertificadoPdfService certificadoPdfService;
+
+    @Autowired
+    public CertificadoController(Modelo182Service modelo182Service,
+                                 TotalDonanteAnualService totalDonanteAnualService,
+                                 CertificadoPdfService certificadoPdfService) {
+        this.modelo182Service = modelo182Service;
+        this.totalDonanteAnualService = totalDonanteAnualService;
+        this.certificadoPdfService = certificadoPdfService;
+    }
+
+    // -----------------------------------------------------------------
+    //                         USER ENDPOINTS
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: GET /api/usuarios/{nif}/certificados/resumen
+     * Yearly totals certified to the user's own account, newest year first ("Mis Certificados" summary).
+     * Reads one maintained row per year instead of adding up every certificate. A tax ID that only
+     * appears on other accounts' certificates returns an empty list.
+     * @param nif The user's tax ID.
+     */
+    @GetMapping("/usuarios/{nif}/certificados/resumen")
+    public ResponseEntity<List<ResumenAnualCertificadosDTO>> getYearlySummary(@PathVariable String nif) {
+        List<ResumenAnualCertificadosDTO> resumen = totalDonanteAnualService.obtenerResumen(nif);
+        return new ResponseEntity<>(resumen, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: GET /api/certificados/{id}/pdf
+     * Downloads the PDF of a donation certificate.
+     * @param id The ID of the certificate.
+     */
+    @GetMapping("/certificados/{id}/pdf")
+    public ResponseEntity<byte[]> downloadCertificatePdf(@PathVariable Long id) throws IOException {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream(2048);
+        certificadoPdfService.escribirPdf(id, pdf);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDisposition(ContentDisposition.attachment().filename("certificado_" + id + ".pdf").build());
+        return new ResponseEntity<>(pdf.toByteArray(), headers, HttpStatus.OK);
+    }
+
+    // -----------------------------------------------------------------
+    //                         ADMIN ENDPOINTS
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: GET /api/admin/certificados/modelo182/{ejercicio}
+     * Downloads the AEAT Modelo 182 file (fixed-width, ISO-8859-1) for a fiscal year (Admin only).
+     * The file is streamed to the response as it is read from the database; each download
+     * gets its own declaration number.
+     * @param ejercicio The fiscal year.
+     * @return The file, 400 if the year is not valid, or 503 if the declarant is not configured.
+     */
+    @GetMapping("/admin/certificados/modelo182/{ejercicio}")
+    public ResponseEntity<StreamingResponseBody> downloadModelo182(@PathVariable int ejercicio) {
+        long secuencia;
+        try {
+            secuencia = modelo182Service.prepararDeclaracion(ejercicio);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.ISO_8859_1));
+        headers.setContentDisposition(ContentDisposition.attachment().filename("182_" + ejercicio + ".txt").build());
+
+        StreamingResponseBody cuerpo = salida -> modelo182Service.exportar(ejercicio, secuencia, salida);
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: GET /api/admin/certificados/pdf/{ejercicio}
+     * Downloads a ZIP with the PDF of every certificate issued in a fiscal year (Admin only).
+     * PDFs are rendered in parallel and streamed into the ZIP as they are ready.
+     * @param ejercicio The fiscal year.
+     * @return The ZIP, 400 if the year is not valid, or 503 if the issuing entity is not configured.
+     */
+    @GetMapping("/admin/certificados/pdf/{ejercicio}")
+    public ResponseEntity<StreamingResponseBody> downloadCertificatesZip(@PathVariable int ejercicio) {
+        try {
+            certificadoPdfService.comprobarExportable(ejercicio);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename("certificados_" + ejercicio + ".zip").build());
+
+        StreamingResponseBody cuerpo = salida -> certificadoPdfService.exportarZip(ejercicio, salida);
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: POST /api/admin/certificados/totales/{ejercicio}/recalculo
+     * Rebuilds the per-donor totals of a fiscal year from its certificates (Admin only).
+     * Meant for the initial load and for closed years.
+     * @param ejercicio The fiscal year.
+     * @return Number of donors in that year.
+     */
+    @PostMapping("/admin/certificados/totales/{ejercicio}/recalculo")
+    public ResponseEntity<Integer> rebuildYearlyTotals(@PathVariable int ejercicio) {
+        int donantes = totalDonanteAnualService.recalcular(ejercicio);
+        return new ResponseEntity<>(donantes, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,108 @@
+package com.byron.cudeca.controller;
+
+import com.byron.cudeca.dto.DonacionRegistradaDTO;
+import com.byron.cudeca.dto.DonacionRequestDTO;
+import com.byron.cudeca.dto.MarcadorDonacionesDTO;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.service.DonacionService;
+import com.byron.cudeca.service.MarcadorDonacionesService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Controller for donation intake and members' donation totals.
+ */
+
+@RestController
+@RequestMapping("/api")
+public class DonacionController {
+
+    private final DonacionService donacionService;
+    private final MarcadorDonacionesService marcadorDonacionesService;
+
+    @Autowired
+    public DonacionController(DonacionService donacionService,
+                              MarcadorDonacionesService marcadorDonacionesService) {
+        this.donacionService = donacionService;
+        this.marcadorDonacionesService = marcadorDonacionesService;
+    }
+
+    // -----------------------------------------------------------------
+    //                         USER ENDPOINTS
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: POST /api/donaciones
+     * Registers a donation already charged by the payment gateway.
+     * The request thread is released while the donation waits for its batch to be committed.
+     * @return 201 with the stored donation; 400 if the amount or the fiscal data are not valid, or if
+     *         the database rejects the donation (e.g. unknown user NIF); 503 if the intake queue is full.
+     */
+    @PostMapping("/donaciones")
+    public CompletableFuture<ResponseEntity<DonacionRegistradaDTO>> registerDonation(@Valid @RequestBody DonacionRequestDTO datos) {
+        try {
+            return donacionService.registrar(datos)
+                    .thenApply(donacion -> new ResponseEntity<DonacionRegistradaDTO>(donacion, HttpStatus.CREATED))
+                    .exceptionally(DonacionController::rejectedDonation);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    /**
+     * Endpoint: GET /api/socios/{nif}/donacion-total
+     * Total donated by a member, including donations not yet merged into the member row.
+     * @param nif The member's NIF.
+     */
+    @GetMapping("/socios/{nif}/donacion-total")
+    public ResponseEntity<Importe> getMemberDonationTotal(@PathVariable String nif) {
+        return new ResponseEntity<>(donacionService.obtenerDonacionTotal(nif), HttpStatus.OK);
+    }
+
+    // -----------------------------------------------------------------
+    //                    LIVE CAMPAIGN TICKER (Event screens)
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: GET /api/donaciones/marcador
+     * Current campaign total, per payment method and per time bucket (served from memory).
+     */
+    @GetMapping("/donaciones/marcador")
+    public ResponseEntity<MarcadorDonacionesDTO> getTicker() {
+        return new ResponseEntity<>(marcadorDonacionesService.obtenerMarcador(), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: GET /api/donaciones/marcador/stream
+     * Server-Sent Events stream of the ticker: one "marcador" event per tick with changes.
+     * @return The event stream, or 503 if too many screens are connected.
+     */
+    @GetMapping(value = "/donaciones/marcador/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTicker() {
+        try {
+            return new ResponseEntity<>(marcadorDonacionesService.suscribir(), HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    // A constraint or foreign key violation means the request itself is wrong; anything else is a 500
+    private static ResponseEntity<DonacionRegistradaDTO> rejectedDonation(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof DataIntegrityViolationException) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        throw error instanceof CompletionException completion ? completion : new CompletionException(cause);
+    }
+}
@@ -0,0 +1,146 @@
+package com.byron.cudeca.controller;
+
+import com.byron.cudeca.dto.AforoEventoDTO;
+import com.byron.cudeca.dto.ConciliacionAforoDTO;
+import com.byron.cudeca.dto.LoteEscaneosDTO;
+import com.byron.cudeca.dto.ResultadoSincronizacionDTO;
+import com.byron.cudeca.dto.ResultadoValidacionDTO;
+import com.byron.cudeca.service.AforoEventosService;
+import com.byron.cudeca.service.SincronizacionEscanerService;
+import com.byron.cudeca.service.ValidacionEntradaService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+
+/**
+ * Controller for ticket validation at the venue door (QR scanners) and live event occupancy.
+ */
+
+@RestController
+@RequestMapping("/api")
+public class EntradaController {
+
+    private final ValidacionEntradaService validacionEntradaService;
+    private final SincronizacionEscanerService sincronizacionEscanerService;
+    private final AforoEventosService aforoEventosService;
+
+    @Autowired
+    public EntradaController(ValidacionEntradaService validacionEntradaService,
+                             SincronizacionEscanerService sincronizacionEscanerService,
+                             AforoEventosService aforoEventosService) {
+        this.validacionEntradaService = validacionEntradaService;
+        this.sincronizacionEscanerService = sincronizacionEscanerService;
+        this.aforoEventosService = aforoEventosService;
+    }
+
+    // -----------------------------------------------------------------
+    //                    DOOR ENDPOINTS (Volunteer scanners)
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: POST /api/eventos/{eventoId}/entradas/{qr}/validacion
+     * Validates a QR scanned at the door of an event and marks the ticket as used.
+     * @param eventoId The ID of the event whose door is scanning.
+     * @param qr The scanned QR code.
+     * @return 200 if the ticket is valid, 409 if it was already used, 404 if it does not exist,
+     *         422 if it belongs to another event or the event is not today.
+     */
+    @PostMapping("/eventos/{eventoId}/entradas/{qr}/validacion")
+    public ResponseEntity<ResultadoValidacionDTO> validateTicket(@PathVariable Long eventoId, @PathVariable String qr) {
+        ResultadoValidacionDTO resultado = validacionEntradaService.validar(eventoId, qr);
+        HttpStatus status = switch (resultado.getResultado()) {
+            case VALIDA -> HttpStatus.OK;
+            case YA_USADA -> HttpStatus.CONFLICT;
+            case NO_EXISTE -> HttpStatus.NOT_FOUND;
+            case OTRO_EVENTO, FUERA_DE_FECHA -> HttpStatus.UNPROCESSABLE_ENTITY;
+        };
+        return new ResponseEntity<>(resultado, status);
+    }
+
+    // -----------------------------------------------------------------
+    //                OFFLINE SCANNER SYNC (Poor connectivity)
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: GET /api/eventos/{id}/manifiesto
+     * Downloads the compact binary ticket manifest of an event for offline scanners.
+     * @param id The ID of the event.
+     */
+    @GetMapping(value = "/eventos/{id}/manifiesto", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getTicketManifest(@PathVariable Long id) {
+        byte[] manifiesto = sincronizacionEscanerService.exportarManifiesto(id);
+        return new ResponseEntity<>(manifiesto, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: POST /api/eventos/{id}/escaneos
+     * Uploads a batch of scans recorded offline and reconciles them with the database.
+     * @param id The ID of the event.
+     * @param lote The scan log of one device.
+     * @return Summary with accepted, duplicated, unknown and conflicting scans.
+     */
+    @PostMapping("/eventos/{id}/escaneos")
+    public ResponseEntity<ResultadoSincronizacionDTO> uploadScans(@PathVariable Long id,
+                                                                  @Valid @RequestBody LoteEscaneosDTO lote) {
+        ResultadoSincronizacionDTO resultado = sincronizacionEscanerService.conciliarEscaneos(id, lote);
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
+    // -----------------------------------------------------------------
+    //                         ADMIN ENDPOINTS
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: POST /api/admin/validacion/precarga
+     * Reloads the in-memory validation index for today's events (Admin only).
+     * @return Number of tickets indexed.
+     */
+    @PostMapping("/admin/validacion/precarga")
+    public ResponseEntity<Integer> reloadValidationIndex() {
+        int entradas = validacionEntradaService.precargarEventosDeHoy();
+        return new ResponseEntity<>(entradas, HttpStatus.OK);
+    }
+
+    // -----------------------------------------------------------------
+    //                  LIVE OCCUPANCY (Admin dashboard)
+    // -----------------------------------------------------------------
+
+    /**
+     * Endpoint: GET /api/admin/eventos/{id}/aforo
+     * Sold, scanned and remaining tickets of an event, served from in-memory counters (Admin only).
+     * @param id The ID of the event.
+     */
+    @GetMapping("/admin/eventos/{id}/aforo")
+    public ResponseEntity<AforoEventoDTO> getOccupancy(@PathVariable Long id) {
+        return new ResponseEntity<>(aforoEventosService.obtenerAforo(id), HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: GET /api/admin/eventos/aforo/stream
+     * Server-Sent Events stream with the occupancy of every tracked event, sent only when it changes (Admin only).
+     * @return The event stream, or 503 if too many dashboards are connected.
+     */
+    @GetMapping(value = "/admin/eventos/aforo/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOccupancy() {
+        try {
+            return new ResponseEntity<>(aforoEventosService.suscribir(), HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * Endpoint: POST /api/admin/eventos/aforo/conciliacion
+     * Runs a reconciliation of the occupancy counters against the database now (Admin only).
+     * @return How many counters were off and how many were corrected.
+     */
+    @PostMapping("/admin/eventos/aforo/conciliacion")
+    public ResponseEntity<ConciliacionAforoDTO> reconcileOccupancy() {
+        return new ResponseEntity<>(aforoEventosService.conciliar(), HttpStatus.OK);
+    }
+}
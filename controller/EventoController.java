@@ -1,11 +1,18 @@
 package com.byron.cudeca.controller;
 
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
+import com.byron.cudeca.dto.TramoPrecioDTO;
 import com.byron.cudeca.model.Evento;
 import com.byron.cudeca.service.EventoService;
+import com.byron.cudeca.service.TarifaEntradasService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -17,10 +24,12 @@ import java.util.List;
 public class EventoController {
 
     private final EventoService eventoService;
+    private final TarifaEntradasService tarifaEntradasService;
 
     @Autowired
-    public EventoController(EventoService eventoService) {
+    public EventoController(EventoService eventoService, TarifaEntradasService tarifaEntradasService) {
         this.eventoService = eventoService;
+        this.tarifaEntradasService = tarifaEntradasService;
     }
 
     // -----------------------------------------------------------------
@@ -30,19 +39,20 @@ public class EventoController {
     /**
      * Endpoint: GET /api/eventos
      * Retrieves a filtered and sorted list of future events for the main page.
-     * @param keyword Optional search keyword (uses EventoRepository.findByNombreContainingIgnoreCase)
+     * @param keyword Optional search words, matched against the event name, description, type and location.
+     *                Accents and case are ignored, each word matches as a prefix and all of them must match.
      * @param sortBy Optional field to sort by (e.g., "fecha", "nombre", "ubicacion", "stock")
      * @param sortDir Optional sort direction ("asc" or "desc")
-     * @return List of Evento entities (or DTOs for production)
+     * @return List of event summaries (no tickets, no administrator)
      */
     @GetMapping("/eventos")
-    public ResponseEntity<List<Evento>> getAllEvents(
+    public ResponseEntity<List<EventoResumenDTO>> getAllEvents(
         @RequestParam(required = false) String keyword,
         @RequestParam(required = false) String sortBy,
         @RequestParam(required = false) String sortDir
     ) {
         // El filtro se hace en service
-        List<Evento> eventos = eventoService.obtenerEventosConFiltros(keyword, sortBy, sortDir);
+        List<EventoResumenDTO> eventos = eventoService.obtenerEventosConFiltros(keyword, sortBy, sortDir);
         return new ResponseEntity<>(eventos, HttpStatus.OK);
     }
 
@@ -52,15 +62,66 @@ public class EventoController {
      * @param id The ID of the event.
      */
     @GetMapping("/eventos/{id}")
-    public ResponseEntity<Evento> getEventById(@PathVariable Long id) {
-        Evento evento = eventoService.obtenerEventoPorId(id); 
+    public ResponseEntity<EventoDetalleDTO> getEventById(@PathVariable Long id) {
+        EventoDetalleDTO evento = eventoService.obtenerDetalleEvento(id);
         return new ResponseEntity<>(evento, HttpStatus.OK);
     }
+
+    /**
+     * Endpoint: GET /api/eventos/{id}/precios
+     * Current price of each ticket type on sale for an event, served from the in-memory tariffs.
+     * @param id The ID of the event.
+     * @return One entry per ticket type; 'hasta' is when that price stops applying (null = no end).
+     */
+    @GetMapping("/eventos/{id}/precios")
+    public ResponseEntity<List<TramoPrecioDTO>> getEventPrices(@PathVariable Long id) {
+        return new ResponseEntity<>(tarifaEntradasService.obtenerPreciosVigentes(id), HttpStatus.OK);
+    }
     
     // -----------------------------------------------------------------
     //                         ADMIN ENDPOINTS 
     // -----------------------------------------------------------------
     
+    /**
+     * Endpoint: GET /api/admin/eventos
+     * Retrieves one page of the full event history, past events included (Admin only).
+     * Sorting and paging run in the database.
+     * @param page Page number, starting at 0.
+     * @param size Page size (capped at 100).
+     * @param sortBy Optional field to sort by ("fecha", "nombre", "tipoEvento", "ubicacion", "stock")
+     * @param sortDir Optional sort direction ("asc" or "desc")
+     * @return The page of events with the total count.
+     */
+    @GetMapping("/admin/eventos")
+    public ResponseEntity<Page<EventoResumenDTO>> getEventHistory(
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "20") int size,
+        @RequestParam(required = false) String sortBy,
+        @RequestParam(required = false) String sortDir
+    ) {
+        Page<EventoResumenDTO> eventos = eventoService.obtenerEventosPaginados(page, size, sortBy, sortDir);
+        return new ResponseEntity<>(eventos, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint: GET /api/admin/eventos/historial
+     * Walks the full event history by date using keyset pagination (Admin only).
+     * Omit the cursor for the first page; then pass the date and ID of the last event received.
+     * @param afterDate Date of the last event of the previous page.
+     * @param afterId ID of the last event of the previous page.
+     * @param size Page size (capped at 100).
+     * @return Up to 'size' events ordered by date and ID.
+     */
+    @GetMapping("/admin/eventos/historial")
+    public ResponseEntity<List<EventoResumenDTO>> getEventHistoryAfter(
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterDate,
+        @RequestParam(required = false) Long afterId,
+        @RequestParam(defaultValue = "50") int size
+    ) {
+        List<EventoResumenDTO> eventos = eventoService.obtenerEventosDesde(afterDate, afterId, size);
+        return new ResponseEntity<>(eventos, HttpStatus.OK);
+    }
+
     /**
      * Endpoint: POST /api/admin/eventos
      * Creates a new event (Admin only).
@@ -73,6 +134,19 @@ public class EventoController {
         return new ResponseEntity<>(nuevoEvento, HttpStatus.CREATED);
     }
     
+    /**
+     * Endpoint: PUT /api/admin/eventos/{id}/tarifas
+     * Replaces the ticket types and price tiers of an event (Admin only).
+     * An empty list leaves the event with a single free "General" ticket.
+     * @param id The ID of the event.
+     * @param tramos Price tiers; tiers with the same ticket type make up that type.
+     */
+    @PutMapping("/admin/eventos/{id}/tarifas")
+    public ResponseEntity<Void> setEventTariffs(@PathVariable Long id, @RequestBody List<TramoPrecioDTO> tramos) {
+        tarifaEntradasService.definirTarifas(id, tramos);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
     /**
      * Endpoint: DELETE /api/admin/eventos/{id}
      * Deletes an existing event (Admin only).
@@ -0,0 +1,26 @@
+package com.byron.cudeca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aforo de un evento: entradas vendidas, validadas en la puerta y plazas que quedan a la venta.
+ * Lo mantiene AforoEventosService en memoria; de la BD solo se lee al cargar y al conciliar.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AforoEventoDTO {
+
+    private Long eventoId;
+
+    private String nombre;
+
+    private Long vendidas;
+
+    private Long validadas;
+
+    private Integer restantes;
+}
@@ -0,0 +1,39 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Datos de un certificado necesarios para su PDF, leídos con constructor expression.
+ * Sin relaciones perezosas: se puede pasar a los hilos de renderizado fuera de la transacción.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CertificadoPdfDTO {
+
+    private Long id;
+
+    private LocalDateTime fechaEmision;
+
+    private Importe importeCertificado;
+
+    private String nif;
+
+    private String nombreCompleto;
+
+    private String direccion;
+
+    private String codigoPostal;
+
+    private String poblacion;
+
+    private String provincia;
+
+    private String pais;
+}
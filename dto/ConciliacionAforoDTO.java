@@ -0,0 +1,27 @@
+package com.byron.cudeca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de una pasada de conciliación del aforo en memoria contra la BD.
+ * 'detectadas' cuenta los contadores que no cuadraban; 'corregidas', los que seguían sin
+ * cuadrar con la misma diferencia en la pasada anterior y se han ajustado.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConciliacionAforoDTO {
+
+    private Integer eventosRevisados;
+
+    private Integer detectadas;
+
+    private Integer corregidas;
+
+    private LocalDateTime fecha;
+}
@@ -0,0 +1,30 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Total donado por un NIF en un ejercicio: una línea (o dos) del Modelo 182.
+ * Se lee de TotalDonanteAnual con constructor expression, junto con los totales de los
+ * dos ejercicios anteriores (null si no donó) para la marca de recurrencia.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeclaradoModelo182DTO {
+
+    private String nif;
+
+    private String nombreCompleto;
+
+    private String codigoPostal;
+
+    private Importe importeTotal;
+
+    private Importe importeEjercicioAnterior;
+
+    private Importe importeHaceDosEjercicios;
+}
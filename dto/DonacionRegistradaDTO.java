@@ -0,0 +1,24 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Respuesta al registrar una donación (sin la entidad: nada de relaciones perezosas).
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DonacionRegistradaDTO {
+
+    private Long id;
+
+    private Importe importe;
+
+    private LocalDateTime fecha;
+}
@@ -0,0 +1,46 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Importe;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para registrar una donación ya cobrada por la pasarela.
+ * Los datos fiscales solo hacen falta si el donante quiere certificado.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DonacionRequestDTO {
+
+    @NotBlank(message = "El NIF de usuario es obligatorio.")
+    private String usuarioNif;
+
+    @NotNull(message = "El importe es obligatorio.")
+    private Importe importe;
+
+    @NotNull(message = "El método de pago es obligatorio.")
+    private CanalPago canalPago;
+
+    private Boolean quiereCertificado;
+
+    // Datos fiscales del certificado (nombre y NIF: null = los del usuario)
+    private String nombreFiscal;
+
+    private String nifFiscal;
+
+    private String direccion;
+
+    private String codigoPostal;
+
+    private String poblacion;
+
+    private String provincia;
+
+    private String pais;
+}
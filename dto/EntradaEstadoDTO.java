@@ -0,0 +1,24 @@
+package com.byron.cudeca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección mínima de una Entrada para la validación de accesos.
+ * Se rellena directamente desde la query (constructor expression), sin cargar entidades.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntradaEstadoDTO {
+
+    private Long id;
+
+    private String qr;
+
+    private Boolean usada;
+
+    private Long eventoId;
+}
@@ -0,0 +1,26 @@
+package com.byron.cudeca.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Un escaneo registrado por un escáner que trabajaba sin conexión.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EscaneoDTO {
+
+    @NotBlank(message = "El QR escaneado es obligatorio.")
+    private String qr;
+
+    // Hora del dispositivo en el momento de la lectura
+    @NotNull(message = "La fecha del escaneo es obligatoria.")
+    private LocalDateTime fechaEscaneo;
+}
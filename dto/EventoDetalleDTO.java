@@ -0,0 +1,45 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Evento;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección de un Evento para la página de detalle.
+ * Se rellena directamente desde la query (constructor expression), sin cargar entidades.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoDetalleDTO {
+
+    private Long id;
+
+    private String nombre;
+
+    private String tipoEvento;
+
+    private String descripcion;
+
+    private LocalDateTime fecha;
+
+    private String ubicacion;
+
+    private Integer stock;
+
+    /**
+     * Copia los campos de un Evento ya cargado (p. ej. el recién guardado al crearlo).
+     */
+    public static EventoDetalleDTO desde(Evento evento) {
+        return new EventoDetalleDTO(evento.getId(), evento.getNombre(), evento.getTipoEvento(),
+                evento.getDescripcion(), evento.getFecha(), evento.getUbicacion(), evento.getStock());
+    }
+
+    public EventoResumenDTO resumen() {
+        return new EventoResumenDTO(id, nombre, tipoEvento, fecha, ubicacion, stock);
+    }
+}
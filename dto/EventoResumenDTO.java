@@ -0,0 +1,30 @@
+package com.byron.cudeca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Proyección de un Evento para los listados (cartelera e histórico).
+ * Solo columnas de 'evento': no toca 'entrada' ni 'administrador', y deja fuera la descripción.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoResumenDTO {
+
+    private Long id;
+
+    private String nombre;
+
+    private String tipoEvento;
+
+    private LocalDateTime fecha;
+
+    private String ubicacion;
+
+    private Integer stock;
+}
@@ -0,0 +1,22 @@
+package com.byron.cudeca.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Lote de escaneos que un escáner offline envía al recuperar la conexión.
+ */
+
+@Data
+public class LoteEscaneosDTO {
+
+    @NotBlank(message = "El identificador del dispositivo es obligatorio.")
+    private String dispositivoId;
+
+    @NotNull(message = "La lista de escaneos es obligatoria.")
+    private List<@Valid EscaneoDTO> escaneos;
+}
@@ -0,0 +1,32 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estado del marcador de la campaña: total, desglose por método de pago y los últimos
+ * tramos de tiempo (el más antiguo primero). Es lo que se envía a las pantallas por SSE.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarcadorDonacionesDTO {
+
+    private Importe total;
+
+    private Long numeroDonaciones;
+
+    private Map<CanalPago, Importe> porCanal;
+
+    private List<TramoDonacionesDTO> tramos;
+
+    private LocalDateTime actualizado;
+}
@@ -6,6 +6,8 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotNull;
 
+import java.util.Map;
+
 /**
  * DTO para recibir los datos necesarios para iniciar o finalizar un pedido.
  * El Front-end enviará esta estructura al Backend.
@@ -25,6 +27,10 @@ public class PedidoRequestDTO {
     @Min(value = 1, message = "La cantidad mínima de entradas es 1.")
     private int cantidadEntradas;
 
+    // Tipo de entrada -> cantidad (p. ej. {"General": 2, "Reducida": 1}).
+    // Si no viene, las 'cantidadEntradas' son de tipo General.
+    private Map<String, Integer> entradasPorTipo;
+
     @NotNull(message = "El método de pago es obligatorio.")
     private CanalPago canalPago;
 
@@ -35,4 +41,17 @@ public class PedidoRequestDTO {
 
     // Solo se usará en el endpoint de finalizar, como token de confirmación simulado.
     private String tokenPagoExterno;
+
+    // Código de la retención devuelta al iniciar el pedido (checkout en dos fases).
+    private String codigoRetencion;
+
+    /**
+     * Entradas pedidas por tipo; sin desglose, todas son de tipo General.
+     */
+    public Map<String, Integer> entradasPedidas() {
+        if (entradasPorTipo == null || entradasPorTipo.isEmpty()) {
+            return Map.of("General", cantidadEntradas);
+        }
+        return entradasPorTipo;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.byron.cudeca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resumen de la conciliación de un lote de escaneos offline.
+ */
+
+@Data
+public class ResultadoSincronizacionDTO {
+
+    // Escaneos que han marcado la entrada como usada
+    private int aceptados;
+
+    // Reenvíos de un escaneo ya registrado (mismo QR y misma hora): se ignoran
+    private int duplicados;
+
+    // QR que no existen o no pertenecen a este evento
+    private int desconocidos;
+
+    // Entradas que ya estaban usadas por otro escaneo: posible entrada copiada
+    private List<Conflicto> conflictos = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Conflicto {
+
+        private String qr;
+
+        private LocalDateTime fechaEscaneo;
+
+        // Hora de la validación que ya constaba (null si la otra lectura sigue solo en memoria)
+        private LocalDateTime fechaValidacionPrevia;
+    }
+}
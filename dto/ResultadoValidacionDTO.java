@@ -0,0 +1,36 @@
+package com.byron.cudeca.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Respuesta que recibe el escáner de la puerta al validar un QR.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoValidacionDTO {
+
+    public enum Resultado {
+        // OTRO_EVENTO: la entrada es de otro evento; FUERA_DE_FECHA: el evento de la puerta no es de hoy
+        VALIDA, YA_USADA, NO_EXISTE, OTRO_EVENTO, FUERA_DE_FECHA
+    }
+
+    private Resultado resultado;
+
+    // Nulos si el QR no existe; en OTRO_EVENTO, eventoId es el evento de la entrada
+    private Long entradaId;
+
+    private Long eventoId;
+
+    // Momento en que se aceptó la entrada (solo si resultado = VALIDA)
+    private LocalDateTime fechaValidacion;
+
+    public static ResultadoValidacionDTO noExiste() {
+        return new ResultadoValidacionDTO(Resultado.NO_EXISTE, null, null, null);
+    }
+}
@@ -0,0 +1,24 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Total certificado a un usuario en un ejercicio, para la cabecera de "Mis Certificados".
+ * Se lee de TotalDonanteAnual con constructor expression: solo ejercicio, importe y número de
+ * certificados, sin el nombre ni el código postal del último certificado.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenAnualCertificadosDTO {
+
+    private Integer ejercicio;
+
+    private Importe importeTotal;
+
+    private Integer numeroCertificados;
+}
@@ -0,0 +1,33 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Suma de donaciones de un método de pago. Solo se consulta al arrancar el marcador.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TotalPorCanalDTO {
+
+    private CanalPago canalPago;
+
+    private Importe importe;
+
+    private Long numero;
+
+    // Mayor ID de donación incluido en la suma
+    private Long ultimoId;
+
+    /**
+     * Para la consulta: SUM sobre un Importe devuelve los céntimos de la columna.
+     */
+    public TotalPorCanalDTO(CanalPago canalPago, Long centimos, Long numero, Long ultimoId) {
+        this(canalPago, Importe.deCentimos(centimos), numero, ultimoId);
+    }
+}
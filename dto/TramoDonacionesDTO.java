@@ -0,0 +1,24 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Donaciones recibidas en un tramo de tiempo del marcador (por defecto, un minuto).
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TramoDonacionesDTO {
+
+    private LocalDateTime inicio;
+
+    private Importe importe;
+
+    private Long numero;
+}
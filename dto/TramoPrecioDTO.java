@@ -0,0 +1,27 @@
+package com.byron.cudeca.dto;
+
+import com.byron.cudeca.model.Importe;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Un tramo de precio de un tipo de entrada. Es el formato con el que el panel define las
+ * tarifas de un evento, con el que se leen de la BD y con el que se publican los precios
+ * vigentes (en ese caso 'hasta' indica cuándo cambia el precio).
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TramoPrecioDTO {
+
+    private String tipoEntrada;
+
+    private Importe precio;
+
+    // Null = sin fecha de fin
+    private LocalDateTime hasta;
+}
@@ -16,6 +16,8 @@ public class Administrador extends Usuario {
     @Column(nullable = false)
     private String contrasena;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "administrador", cascade = CascadeType.ALL)
     private List<Evento> eventosCreados;
 
@@ -0,0 +1,33 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Incremento pendiente de sumar a Socio.donacionTotal.
+ * Cada donación de un socio inserta una fila aquí en vez de actualizar la fila del socio:
+ * las donaciones simultáneas no compiten por el mismo registro. Un proceso periódico
+ * suma las pendientes a 'socio' y las borra.
+ */
+@Entity
+@Table(name = "aportacionSocio", indexes = {
+        @Index(name = "idx_aportacion_socio_nif", columnList = "socioNif")
+})
+@Data
+public class AportacionSocio {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "aportacionSocioSeq")
+    @SequenceGenerator(name = "aportacionSocioSeq", sequenceName = "aportacion_socio_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String socioNif;
+
+    @Column(name = "importeCentimos", nullable = false)
+    private Importe importe;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+}
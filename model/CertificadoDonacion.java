@@ -2,10 +2,23 @@ package com.byron.cudeca.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "certificadoDonacion")
+@Table(name = "certificadoDonacion",
+        // Un certificado por pedido y por donación: si dos workers emiten a la vez, uno falla
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_certificado_pedido", columnNames = "pedidoId"),
+                @UniqueConstraint(name = "uk_certificado_donacion", columnNames = "donacionId")
+        },
+        indexes = {
+        // Informes por ejercicio y recálculo de TotalDonanteAnual
+        @Index(name = "idx_certificado_fecha_emision", columnList = "fechaEmision"),
+        // "Mis Certificados": un solo recorrido de rango, ya en orden
+        @Index(name = "idx_certificado_usuario_fecha", columnList = "usuarioNif, fechaEmision DESC")
+})
 @Data
 public class CertificadoDonacion {
 
@@ -16,15 +29,20 @@ public class CertificadoDonacion {
     @Column(nullable = false)
     private LocalDateTime fechaEmision;
 
-    @Column(nullable = false)
-    private Double importeCertificado;
+    @Column(name = "importeCertificadoCentimos", nullable = false)
+    private Importe importeCertificado;
 
-    @Column(nullable = false, unique = true)
+    // Un mismo NIF recibe un certificado por cada pedido o donación
+    @Column(nullable = false)
     private String nif;
 
     @Column(nullable = false)
     private String nombreCompleto;
 
+    // Dueño del pedido o donación (copia desnormalizada para no cruzar pedido y donacion).
+    // Puede ser null en certificados antiguos hasta que pase MigracionPropietarioCertificados.
+    private String usuarioNif;
+
     @Column(nullable = false)
     private String direccion;
 
@@ -40,10 +58,14 @@ public class CertificadoDonacion {
     @Column(nullable = false)
     private String pais;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "pedidoId", nullable = true)
     private Pedido pedido;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "donacionId", nullable = true)
     private Donacion donacion;
@@ -104,11 +126,11 @@ public class CertificadoDonacion {
         this.fechaEmision = fechaEmision;
     }
 
-    public Double getImporteCertificado() {
+    public Importe getImporteCertificado() {
         return importeCertificado;
     }
 
-    public void setImporteCertificado(Double importeCertificado) {
+    public void setImporteCertificado(Importe importeCertificado) {
         this.importeCertificado = importeCertificado;
     }
 
@@ -0,0 +1,29 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Fichero del Modelo 182 generado para un ejercicio.
+ * Cada generación recibe su propio número de justificante (posiciones 108-120 del registro
+ * de declarante), que la AEAT exige distinto en cada presentación: se deriva del ejercicio y
+ * del ID de esta tabla (ver FicheroModelo182.numeroJustificante).
+ */
+@Entity
+@Table(name = "declaracionModelo182")
+@Data
+public class DeclaracionModelo182 {
+
+    // Sin asignación en bloques: los huecos se notarían en la numeración de los justificantes
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "declaracionModelo182Seq")
+    @SequenceGenerator(name = "declaracionModelo182Seq", sequenceName = "declaracion_modelo182_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false)
+    private Integer ejercicio;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaGeneracion;
+}
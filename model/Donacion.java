@@ -2,6 +2,8 @@ package com.byron.cudeca.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
@@ -9,12 +11,15 @@ import java.time.LocalDateTime;
 @Data
 public class Donacion {
 
+    // Secuencia con asignación en bloques (como en Entrada): las donaciones que llegan
+    // juntas se insertan en un único batch JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "donacionSeq")
+    @SequenceGenerator(name = "donacionSeq", sequenceName = "donacion_seq", allocationSize = 50)
     private Long id;
 
-    @Column(nullable = false)
-    private Double importe;
+    @Column(name = "importeCentimos", nullable = false)
+    private Importe importe;
 
     @Column(nullable = false)
     private LocalDateTime fecha;
@@ -23,10 +28,14 @@ public class Donacion {
     @Column(nullable = false)
     private CanalPago canalPago;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuarioNif", nullable = false)
     private Usuario usuario;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToOne(mappedBy = "donacion", cascade = CascadeType.ALL)
     private CertificadoDonacion certificadoDonacion;
 
@@ -38,11 +47,11 @@ public class Donacion {
         this.id = id;
     }
 
-    public Double getImporte() {
+    public Importe getImporte() {
         return importe;
     }
 
-    public void setImporte(Double importe) {
+    public void setImporte(Importe importe) {
         this.importe = importe;
     }
 
@@ -2,6 +2,8 @@ package com.byron.cudeca.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
@@ -9,14 +11,19 @@ import java.time.LocalDateTime;
 @Data
 public class Entrada {
 
+    // Secuencia con asignación en bloques (pooled): Hibernate reserva 50 IDs por viaje
+    // y puede mandar todas las entradas de un pedido en un único batch JDBC.
+    // Con IDENTITY cada INSERT tenía que ejecutarse por separado para conocer su ID.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "entradaSeq")
+    @SequenceGenerator(name = "entradaSeq", sequenceName = "entrada_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
     private String qr;
 
-    @Column(nullable = false)
+    // Nula hasta que la entrada se valida en la puerta
+    @Column(nullable = true)
     private LocalDateTime fechaValidacion;
 
     @Column(nullable = false)
@@ -28,10 +35,19 @@ public class Entrada {
     @Column(nullable = true)
     private String nombrePersona;
 
+    // Bloqueo optimista: la validación online y la sincronización offline marcan 'usada'
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "pedidoId", nullable = false)
     private Pedido pedido;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="eventoId", nullable = false)
     private Evento evento;
@@ -96,6 +112,14 @@ public class Entrada {
         return id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -0,0 +1,5 @@
+package com.byron.cudeca.model;
+
+public enum EstadoSolicitud {
+    PENDIENTE, EMITIDA, FALLIDA
+}
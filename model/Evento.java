@@ -1,12 +1,23 @@
 package com.byron.cudeca.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "evento")
+@Table(name = "evento", indexes = {
+        // Ordenación y paginación del listado (el id desempata y hace el orden estable)
+        @Index(name = "idx_evento_fecha_id", columnList = "fecha, id"),
+        @Index(name = "idx_evento_nombre_id", columnList = "nombre, id"),
+        @Index(name = "idx_evento_tipo_id", columnList = "tipoEvento, id"),
+        @Index(name = "idx_evento_ubicacion_id", columnList = "ubicacion, id"),
+        @Index(name = "idx_evento_stock_id", columnList = "stock, id")
+})
 @Data
 public class Evento {
 
@@ -32,9 +43,29 @@ public class Evento {
     @Column(nullable = false)
     private Integer stock;
 
+    // Bloqueo optimista. Los UPDATE de stock en bloque (EventoRepository) también la incrementan
+    @JsonIgnore
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Fuera del JSON: los eventos de la cartelera cacheada están desligados de la sesión
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
     @OneToMany(mappedBy = "evento", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Entrada> entradas;
 
+    // Tipos de entrada y tramos de precio; se leen por TarifaEntradasService, nunca desde aquí
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @JsonIgnore
+    @OneToMany(mappedBy = "evento", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<TipoEntrada> tiposEntrada;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "adminId", nullable = false)
     private Administrador administrador;
@@ -110,4 +141,12 @@ public class Evento {
     public void setStock(Integer stock) {
         this.stock = stock;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
\ No newline at end of file
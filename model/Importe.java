@@ -0,0 +1,93 @@
+package com.byron.cudeca.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+
+/**
+ * Importe en euros, guardado como un número entero de céntimos: las sumas son exactas
+ * (nada de 0.1 + 0.2 != 0.3 en los totales fiscales). Inmutable.
+ *
+ * En la BD es un BIGINT de céntimos (ImporteConverter) y en JSON un número decimal con dos
+ * cifras, como antes. Para sumar muchos importes (totales anuales, marcador, Modelo 182) se
+ * acumula centimos() en un long y se construye el Importe una sola vez al final.
+ */
+public final class Importe implements Comparable<Importe> {
+
+    public static final Importe CERO = new Importe(0);
+
+    private final long centimos;
+
+    private Importe(long centimos) {
+        this.centimos = centimos;
+    }
+
+    public static Importe deCentimos(long centimos) {
+        return centimos == 0 ? CERO : new Importe(centimos);
+    }
+
+    /**
+     * Importe a partir de euros. No redondea: con más de dos decimales lanza excepción.
+     */
+    @JsonCreator
+    public static Importe deEuros(BigDecimal euros) {
+        if (euros == null) {
+            return null;
+        }
+        try {
+            return deCentimos(euros.movePointRight(2).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Importe no válido (máximo dos decimales): " + euros);
+        }
+    }
+
+    public static Importe deEuros(String euros) {
+        return deEuros(new BigDecimal(euros));
+    }
+
+    public long centimos() {
+        return centimos;
+    }
+
+    public Importe sumar(Importe otro) {
+        return deCentimos(Math.addExact(centimos, otro.centimos));
+    }
+
+    public Importe restar(Importe otro) {
+        return deCentimos(Math.subtractExact(centimos, otro.centimos));
+    }
+
+    public Importe multiplicar(long veces) {
+        return deCentimos(Math.multiplyExact(centimos, veces));
+    }
+
+    public boolean esPositivo() {
+        return centimos > 0;
+    }
+
+    @JsonValue
+    public BigDecimal enEuros() {
+        return BigDecimal.valueOf(centimos, 2);
+    }
+
+    @Override
+    public int compareTo(Importe otro) {
+        return Long.compare(centimos, otro.centimos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Importe otro && otro.centimos == centimos;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(centimos);
+    }
+
+    @Override
+    public String toString() {
+        return enEuros().toPlainString();
+    }
+}
@@ -0,0 +1,21 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Guarda los Importe como BIGINT de céntimos. Se aplica solo a todos los atributos Importe.
+ */
+@Converter(autoApply = true)
+public class ImporteConverter implements AttributeConverter<Importe, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Importe importe) {
+        return importe == null ? null : importe.centimos();
+    }
+
+    @Override
+    public Importe convertToEntityAttribute(Long centimos) {
+        return centimos == null ? null : Importe.deCentimos(centimos);
+    }
+}
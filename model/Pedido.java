@@ -2,6 +2,8 @@ package com.byron.cudeca.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
@@ -21,8 +23,8 @@ public class Pedido {
     @Column(nullable = false)
     private LocalTime hora;
 
-    @Column(nullable = false)
-    private Double importeTotal;
+    @Column(name = "importeTotalCentimos", nullable = false)
+    private Importe importeTotal;
 
     @Column(nullable = false)
     private Boolean consentimiento;
@@ -35,13 +37,19 @@ public class Pedido {
     @Column(nullable = false)
     private CanalPago canalPago;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuarioNif", nullable = false)
     private Usuario usuario;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL)
     private List<Entrada> entradas;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToOne(mappedBy = "pedido", cascade = CascadeType.ALL)
     private CertificadoDonacion certificadoDonacion;
 
@@ -93,11 +101,11 @@ public class Pedido {
         this.consentimiento = consentimiento;
     }
 
-    public Double getImporteTotal() {
+    public Importe getImporteTotal() {
         return importeTotal;
     }
 
-    public void setImporteTotal(Double importeTotal) {
+    public void setImporteTotal(Importe importeTotal) {
         this.importeTotal = importeTotal;
     }
 
@@ -21,8 +21,8 @@ public class Socio extends Usuario {
     @Column(nullable = false)
     private String direccion;
 
-    @Column(nullable = false)
-    private Double donacionTotal;
+    @Column(name = "donacionTotalCentimos", nullable = false)
+    private Importe donacionTotal;
 
     @Column(nullable = false)
     private String contrasena;
@@ -35,11 +35,11 @@ public class Socio extends Usuario {
         this.contrasena = contrasena;
     }
 
-    public Double getDonacionTotal() {
+    public Importe getDonacionTotal() {
         return donacionTotal;
     }
 
-    public void setDonacionTotal(Double donacionTotal) {
+    public void setDonacionTotal(Importe donacionTotal) {
         this.donacionTotal = donacionTotal;
     }
 
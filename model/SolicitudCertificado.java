@@ -0,0 +1,76 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import java.time.LocalDateTime;
+
+/**
+ * Petición de certificado pendiente de emitir (outbox).
+ * Se guarda en la transacción de la compra o donación, que solo paga un INSERT; el
+ * certificado lo emite después un worker en su propia transacción. Hay como mucho una
+ * solicitud por pedido y una por donación.
+ */
+@Entity
+@Table(name = "solicitudCertificado", indexes = {
+        // Barrido de pendientes por orden de vencimiento
+        @Index(name = "idx_solicitud_estado_proximo", columnList = "estado, proximoIntento")
+})
+@Data
+public class SolicitudCertificado {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pedidoId", nullable = true, unique = true)
+    private Pedido pedido;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "donacionId", nullable = true, unique = true)
+    private Donacion donacion;
+
+    @Column(name = "importeCentimos", nullable = false)
+    private Importe importe;
+
+    // Datos fiscales tal y como llegaron (null = los del usuario)
+    private String nombreFiscal;
+
+    private String nifFiscal;
+
+    @Column(nullable = false)
+    private String direccion;
+
+    @Column(nullable = false)
+    private String codigoPostal;
+
+    @Column(nullable = false)
+    private String poblacion;
+
+    private String provincia;
+
+    private String pais;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EstadoSolicitud estado;
+
+    @Column(nullable = false)
+    private Integer intentos;
+
+    // Cuándo puede (re)intentarse; mientras un worker la procesa, hasta cuándo es suya
+    @Column(nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(length = 500)
+    private String ultimoError;
+}
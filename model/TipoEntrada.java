@@ -0,0 +1,37 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tipo de entrada que vende un evento ("General", "Reducida", "Solidaria+"...),
+ * con sus tramos de precio (p. ej. anticipada hasta una fecha y precio normal después).
+ * Un evento sin tipos definidos vende solo entradas "General" gratuitas.
+ */
+@Entity
+@Table(name = "tipoEntrada",
+        uniqueConstraints = @UniqueConstraint(name = "uk_tipo_entrada_evento_nombre", columnNames = {"eventoId", "nombre"}))
+@Data
+public class TipoEntrada {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "eventoId", nullable = false)
+    private Evento evento;
+
+    @Column(nullable = false)
+    private String nombre;
+
+    @OneToMany(mappedBy = "tipoEntrada", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<TramoPrecio> tramos = new ArrayList<>();
+}
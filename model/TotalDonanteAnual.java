@@ -0,0 +1,39 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Total certificado a un NIF en un ejercicio fiscal (agregado mantenido).
+ * Se actualiza en la misma transacción que emite cada certificado, así que el Modelo 182
+ * y el resumen de "Mis Certificados" leen una fila por donante y año en vez de sumar
+ * todos los certificados.
+ */
+@Entity
+@Table(name = "totalDonanteAnual",
+        uniqueConstraints = @UniqueConstraint(name = "uk_total_donante_nif_ejercicio", columnNames = {"nif", "ejercicio"}),
+        indexes = @Index(name = "idx_total_donante_ejercicio_nif", columnList = "ejercicio, nif"))
+@Data
+public class TotalDonanteAnual {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String nif;
+
+    @Column(nullable = false)
+    private Integer ejercicio;
+
+    @Column(name = "importeTotalCentimos", nullable = false)
+    private Importe importeTotal;
+
+    @Column(nullable = false)
+    private Integer numeroCertificados;
+
+    // Datos del último certificado emitido al NIF en el ejercicio
+    private String nombreCompleto;
+
+    private String codigoPostal;
+}
@@ -0,0 +1,38 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Precio de un tipo de entrada hasta una fecha (exclusiva). El tramo sin fecha de fin
+ * es el precio que queda cuando han vencido los demás; si no lo hay, la venta de ese
+ * tipo se cierra con el último tramo.
+ */
+@Entity
+@Table(name = "tramoPrecio", indexes = {
+        @Index(name = "idx_tramo_precio_tipo", columnList = "tipoEntradaId")
+})
+@Data
+public class TramoPrecio {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "tipoEntradaId", nullable = false)
+    private TipoEntrada tipoEntrada;
+
+    @Column(name = "precioCentimos", nullable = false)
+    private Importe precio;
+
+    // Null = sin fecha de fin
+    @Column(nullable = true)
+    private LocalDateTime hasta;
+}
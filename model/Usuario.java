@@ -2,6 +2,8 @@ package com.byron.cudeca.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.util.List;
 
 @Entity
@@ -28,9 +30,19 @@ public class Usuario {
     @Column(nullable = false)
     private Boolean recibirNewsletter;
 
+    // Bloqueo optimista de toda la jerarquía (JPA solo admite @Version en la raíz).
+    // Para Socio la incrementa también la consolidación de donaciones (SocioRepository)
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "usuario", cascade = CascadeType.ALL)
     private List<Pedido> pedidos;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "usuario", cascade = CascadeType.ALL)
     private List<Donacion> donaciones;
 
@@ -97,4 +109,12 @@ public class Usuario {
     public void setNif(String nif) {
         this.nif = nif;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
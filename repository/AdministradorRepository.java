@@ -2,6 +2,8 @@ package com.byron.cudeca.repository;
 
 import com.byron.cudeca.model.Administrador;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -14,16 +16,19 @@ public interface AdministradorRepository extends JpaRepository<Administrador, St
     // -------------------------------------------------------------------------
 
     /**
-     * Buscar un administrador por su ID interno de gestión (ej: "ADM-001").
+     * Buscar un administrador por su ID interno de gestión (el atributo 'id', no el NIF).
      * Útil para validar logins si usan este ID en lugar del email.
+     * Consulta explícita: como método derivado, 'IdAdministrador' no corresponde a ningún atributo.
      */
-    Optional<Administrador> findByIdAdministrador(String idAdministrador);
+    @Query("SELECT a FROM Administrador a WHERE a.id = :idAdministrador")
+    Optional<Administrador> findByIdAdministrador(@Param("idAdministrador") Long idAdministrador);
 
     /**
      * Verificar si existe un ID de administrador concreto.
      * Útil para validaciones al crear uno nuevo (evitar duplicados).
      */
-    boolean existsByIdAdministrador(Long idAdministrador);
+    @Query("SELECT COUNT(a) > 0 FROM Administrador a WHERE a.id = :idAdministrador")
+    boolean existsByIdAdministrador(@Param("idAdministrador") Long idAdministrador);
 
     // -------------------------------------------------------------------------
     // BÚSQUEDAS HEREDADAS (Campos que están en Usuario)
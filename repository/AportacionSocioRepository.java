@@ -0,0 +1,36 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.model.AportacionSocio;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AportacionSocioRepository extends JpaRepository<AportacionSocio, Long> {
+
+    /**
+     * Siguiente lote de aportaciones a consolidar, bloqueadas hasta el commit: si otra
+     * instancia consolida a la vez, espera y ya no las ve (se habrán borrado).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM AportacionSocio a ORDER BY a.id")
+    List<AportacionSocio> findLoteParaConsolidar(Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM AportacionSocio a WHERE a.id IN :ids")
+    int borrar(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Suma en céntimos de las aportaciones de un socio aún sin consolidar (null si no tiene ninguna).
+     */
+    @Query("SELECT SUM(a.importe) FROM AportacionSocio a WHERE a.socioNif = :nif")
+    Long sumarPendientes(@Param("nif") String nif);
+}
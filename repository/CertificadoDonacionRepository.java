@@ -1,17 +1,22 @@
 package com.byron.cudeca.repository;
 
+import com.byron.cudeca.dto.CertificadoPdfDTO;
 import com.byron.cudeca.model.CertificadoDonacion;
 import com.byron.cudeca.model.Donacion;
 import com.byron.cudeca.model.Pedido;
-import com.byron.cudeca.model.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CertificadoDonacionRepository extends JpaRepository<CertificadoDonacion, Long> {
@@ -36,21 +41,69 @@ public interface CertificadoDonacionRepository extends JpaRepository<Certificado
     // -------------------------------------------------------------------------
 
     /**
-     * Busca todos los certificados de un Usuario.
-     * * EXPLICACIÓN DE LA QUERY:
-     * Como el certificado no tiene el campo 'usuario' directo, tenemos que hacer un JOIN
-     * para mirar si el usuario es el dueño del Pedido O el dueño de la Donación.
+     * Busca todos los certificados de un Usuario, los más recientes primero.
+     * Filtra por la columna desnormalizada 'usuarioNif': un recorrido del índice
+     * (usuarioNif, fechaEmision DESC), sin JOIN con pedido ni donacion.
      */
-    @Query("SELECT c FROM CertificadoDonacion c " +
-            "LEFT JOIN c.pedido p " +
-            "LEFT JOIN c.donacion d " +
-            "WHERE p.usuario = :usuario OR d.usuario = :usuario " +
-            "ORDER BY c.fechaEmision DESC")
-    List<CertificadoDonacion> findByUsuario(@Param("usuario") Usuario usuario);
+    List<CertificadoDonacion> findByUsuarioNifOrderByFechaEmisionDesc(String usuarioNif);
 
     /**
      * Busca certificados emitidos en un rango de fechas.
      * Fundamental para el Modelo 182 (Declaración a Hacienda) que se saca por año fiscal.
      */
-    List<CertificadoDonacion> findByFechaEmisionBetween(LocalDate inicio, LocalDate fin);
-}
\ No newline at end of file
+    List<CertificadoDonacion> findByFechaEmisionBetween(LocalDateTime inicio, LocalDateTime fin);
+
+    // -------------------------------------------------------------------------
+    // PDF
+    // -------------------------------------------------------------------------
+
+    /**
+     * Datos para el PDF de un certificado.
+     */
+    @Query("SELECT new com.byron.cudeca.dto.CertificadoPdfDTO(c.id, c.fechaEmision, c.importeCertificado, " +
+            "c.nif, c.nombreCompleto, c.direccion, c.codigoPostal, c.poblacion, c.provincia, c.pais) " +
+            "FROM CertificadoDonacion c WHERE c.id = :id")
+    Optional<CertificadoPdfDTO> findParaPdfById(@Param("id") Long id);
+
+    /**
+     * Datos para el PDF de los certificados emitidos en [inicio, fin), por orden de ID.
+     * Se leen por bloques (fetch size) para generar el ZIP del año sin cargarlo entero.
+     * Debe consumirse dentro de una transacción y cerrarse (try-with-resources).
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.byron.cudeca.dto.CertificadoPdfDTO(c.id, c.fechaEmision, c.importeCertificado, " +
+            "c.nif, c.nombreCompleto, c.direccion, c.codigoPostal, c.poblacion, c.provincia, c.pais) " +
+            "FROM CertificadoDonacion c " +
+            "WHERE c.fechaEmision >= :inicio AND c.fechaEmision < :fin " +
+            "ORDER BY c.id")
+    Stream<CertificadoPdfDTO> streamParaPdf(@Param("inicio") LocalDateTime inicio,
+                                            @Param("fin") LocalDateTime fin);
+
+    // -------------------------------------------------------------------------
+    // MIGRACIÓN (relleno de usuarioNif en certificados antiguos)
+    // -------------------------------------------------------------------------
+
+    @Query("SELECT MIN(c.id) FROM CertificadoDonacion c WHERE c.usuarioNif IS NULL")
+    Long findMinIdSinPropietario();
+
+    @Query("SELECT MAX(c.id) FROM CertificadoDonacion c WHERE c.usuarioNif IS NULL")
+    Long findMaxIdSinPropietario();
+
+    /**
+     * Copia el dueño del pedido a los certificados sin propietario con ID en [desde, hasta].
+     */
+    @Modifying
+    @Query("UPDATE CertificadoDonacion c SET c.usuarioNif = " +
+            "(SELECT p.usuario.nif FROM Pedido p WHERE p.id = c.pedido.id) " +
+            "WHERE c.usuarioNif IS NULL AND c.pedido IS NOT NULL AND c.id BETWEEN :desde AND :hasta")
+    int rellenarPropietarioDesdePedido(@Param("desde") Long desde, @Param("hasta") Long hasta);
+
+    /**
+     * Copia el dueño de la donación a los certificados sin propietario con ID en [desde, hasta].
+     */
+    @Modifying
+    @Query("UPDATE CertificadoDonacion c SET c.usuarioNif = " +
+            "(SELECT d.usuario.nif FROM Donacion d WHERE d.id = c.donacion.id) " +
+            "WHERE c.usuarioNif IS NULL AND c.donacion IS NOT NULL AND c.id BETWEEN :desde AND :hasta")
+    int rellenarPropietarioDesdeDonacion(@Param("desde") Long desde, @Param("hasta") Long hasta);
+}
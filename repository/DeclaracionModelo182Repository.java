@@ -0,0 +1,9 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.model.DeclaracionModelo182;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DeclaracionModelo182Repository extends JpaRepository<DeclaracionModelo182, Long> {
+}
@@ -0,0 +1,24 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.dto.TotalPorCanalDTO;
+import com.byron.cudeca.model.Donacion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DonacionRepository extends JpaRepository<Donacion, Long> {
+
+    /**
+     * Total donado por método de pago desde inicio, con el mayor ID sumado de cada método.
+     * Punto de partida del marcador en vivo; a partir de ahí se mantiene en memoria. El ID sale
+     * de la misma consulta que la suma, así que marca exactamente lo que esta ha visto.
+     */
+    @Query("SELECT new com.byron.cudeca.dto.TotalPorCanalDTO(d.canalPago, SUM(d.importe), COUNT(d), MAX(d.id)) " +
+            "FROM Donacion d WHERE d.fecha >= :inicio GROUP BY d.canalPago")
+    List<TotalPorCanalDTO> sumarPorCanal(@Param("inicio") LocalDateTime inicio);
+}
@@ -1,11 +1,18 @@
 package com.byron.cudeca.repository;
 
+import com.byron.cudeca.dto.AforoEventoDTO;
+import com.byron.cudeca.dto.EntradaEstadoDTO;
 import com.byron.cudeca.model.Entrada;
 import com.byron.cudeca.model.Evento;
 import com.byron.cudeca.model.Pedido;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,8 +27,42 @@ public interface EntradaRepository extends JpaRepository<Entrada, Long> {
      * Buscar una entrada por su código QR único.
      * Este es el método que usarás cuando el voluntario escanee el código en la puerta.
      * Devuelve Optional porque puede que el QR sea falso o no exista.
+     * (El campo de la entidad se llama 'qr', por eso la query es explícita.)
      */
-    Optional<Entrada> findByQrCodigo(String qrCodigo);
+    @Query("SELECT e FROM Entrada e WHERE e.qr = :qrCodigo")
+    Optional<Entrada> findByQrCodigo(@Param("qrCodigo") String qrCodigo);
+
+    /**
+     * Estado mínimo (id, qr, usada, evento) de todas las entradas de varios eventos.
+     * Solo trae las columnas necesarias para montar el índice de validación en memoria.
+     */
+    @Query("SELECT new com.byron.cudeca.dto.EntradaEstadoDTO(e.id, e.qr, e.usada, e.evento.id) " +
+            "FROM Entrada e WHERE e.evento.id IN :eventoIds")
+    List<EntradaEstadoDTO> findEstadoValidacionByEventoIds(@Param("eventoIds") Collection<Long> eventoIds);
+
+    /**
+     * Estado mínimo de las entradas de un evento, ordenado por ID.
+     * Base del manifiesto que se descargan los escáneres offline (IDs en delta).
+     */
+    @Query("SELECT new com.byron.cudeca.dto.EntradaEstadoDTO(e.id, e.qr, e.usada, e.evento.id) " +
+            "FROM Entrada e WHERE e.evento.id = :eventoId ORDER BY e.id")
+    List<EntradaEstadoDTO> findEstadoValidacionByEventoId(@Param("eventoId") Long eventoId);
+
+    /**
+     * Entradas cuyos QR están en la lista (un solo SELECT para un lote de escaneos).
+     */
+    List<Entrada> findByQrIn(Collection<String> qrs);
+
+    /**
+     * Marca como usadas, con un único UPDATE condicional, las entradas de la lista que aún no
+     * lo estén. Las que otra vía (sincronización offline) haya marcado antes se quedan como están.
+     * Incrementa la versión para que una escritura optimista concurrente de la entrada no la pise.
+     * @return Número de entradas marcadas.
+     */
+    @Modifying
+    @Query("UPDATE Entrada e SET e.usada = true, e.fechaValidacion = :fecha, e.version = e.version + 1 " +
+            "WHERE e.id IN :ids AND e.usada = false")
+    int marcarUsadas(@Param("ids") Collection<Long> ids, @Param("fecha") LocalDateTime fecha);
 
     // -------------------------------------------------------------------------
     // LISTADOS Y GESTIÓN
@@ -54,4 +95,14 @@ public interface EntradaRepository extends JpaRepository<Entrada, Long> {
      * Útil para saber el aforo en tiempo real.
      */
     long countByEventoAndUsadaTrue(Evento evento);
-}
\ No newline at end of file
+
+    /**
+     * Vendidas, validadas y stock restante de varios eventos en una sola consulta
+     * (en lugar de countByEvento + countByEventoAndUsadaTrue por evento).
+     * Carga y conciliación periódica del aforo en memoria.
+     */
+    @Query("SELECT new com.byron.cudeca.dto.AforoEventoDTO(ev.id, ev.nombre, COUNT(e), " +
+            "COALESCE(SUM(CASE WHEN e.usada = true THEN 1 ELSE 0 END), 0), ev.stock) " +
+            "FROM Evento ev LEFT JOIN ev.entradas e WHERE ev.id IN :eventoIds GROUP BY ev.id, ev.nombre, ev.stock")
+    List<AforoEventoDTO> contarAforo(@Param("eventoIds") Collection<Long> eventoIds);
+}
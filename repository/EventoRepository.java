@@ -1,11 +1,19 @@
 package com.byron.cudeca.repository;
 
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
 import com.byron.cudeca.model.Evento;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio para la entidad Evento. 
@@ -20,17 +28,104 @@ public interface EventoRepository extends JpaRepository<Evento, Long> {
     // ----------------------------------------------------------------------
     
     /**
-     * Obtiene todos los eventos cuya fecha sea posterior a la actual, 
-     * ordenados por fecha de inicio ascendente.
-     * @param fechaActual La fecha actual para filtrar.
-     * @return Lista de eventos futuros ordenados.
+     * Obtiene los eventos desde una fecha (la cartelera), ordenados por fecha de inicio ascendente.
+     * Proyección con constructor expression: solo columnas de 'evento', sin entradas ni administrador.
+     * Incluye la descripción porque la cartelera la indexa para la búsqueda.
+     * @param desde Inicio del día actual.
+     * @return Eventos futuros ordenados.
      */
-    List<Evento> findByFechaAfterOrderByFechaAsc(LocalDate fechaActual);
+    @Query("SELECT new com.byron.cudeca.dto.EventoDetalleDTO(e.id, e.nombre, e.tipoEvento, e.descripcion, " +
+           "e.fecha, e.ubicacion, e.stock) FROM Evento e WHERE e.fecha >= :desde ORDER BY e.fecha ASC, e.id ASC")
+    List<EventoDetalleDTO> findDetallesDesde(@Param("desde") LocalDateTime desde);
 
     /**
-     * Búsqueda por palabra clave en el nombre (ignorando mayúsculas/minúsculas).
-     * @param nombreFragmento Palabra clave a buscar.
-     * @return Lista de eventos que contienen esa palabra clave.
+     * Detalle de un evento como proyección (página "Detalles del Evento").
+     * @param id ID del evento.
      */
-    List<Evento> findByNombreContainingIgnoreCase(String nombreFragmento);
-}
\ No newline at end of file
+    @Query("SELECT new com.byron.cudeca.dto.EventoDetalleDTO(e.id, e.nombre, e.tipoEvento, e.descripcion, " +
+           "e.fecha, e.ubicacion, e.stock) FROM Evento e WHERE e.id = :id")
+    Optional<EventoDetalleDTO> findDetalleById(@Param("id") Long id);
+
+    // ----------------------------------------------------------------------
+    // HISTÓRICO PAGINADO (Panel de administración)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Página del histórico como proyección. El Pageable aporta orden, LIMIT y OFFSET.
+     */
+    @Query(value = "SELECT new com.byron.cudeca.dto.EventoResumenDTO(e.id, e.nombre, e.tipoEvento, e.fecha, " +
+                   "e.ubicacion, e.stock) FROM Evento e",
+           countQuery = "SELECT COUNT(e) FROM Evento e")
+    Page<EventoResumenDTO> findResumenes(Pageable pageable);
+
+    /**
+     * Primera página del histórico por keyset, ordenada por (fecha, id).
+     * @param limite Solo se usa su tamaño: PageRequest.ofSize(n).
+     */
+    @Query("SELECT new com.byron.cudeca.dto.EventoResumenDTO(e.id, e.nombre, e.tipoEvento, e.fecha, " +
+           "e.ubicacion, e.stock) FROM Evento e ORDER BY e.fecha ASC, e.id ASC")
+    List<EventoResumenDTO> findPrimerosPorFecha(Pageable limite);
+
+    /**
+     * Página siguiente del histórico por keyset: eventos posteriores a (fecha, id).
+     * A diferencia de OFFSET, el coste no crece con el número de página: se entra
+     * directamente por el índice (fecha, id) en el punto donde acabó la anterior.
+     * @param fecha Fecha del último evento de la página anterior.
+     * @param id ID del último evento de la página anterior.
+     * @param limite Solo se usa su tamaño: PageRequest.ofSize(n).
+     */
+    @Query("SELECT new com.byron.cudeca.dto.EventoResumenDTO(e.id, e.nombre, e.tipoEvento, e.fecha, " +
+           "e.ubicacion, e.stock) FROM Evento e WHERE e.fecha > :fecha OR (e.fecha = :fecha AND e.id > :id) " +
+           "ORDER BY e.fecha ASC, e.id ASC")
+    List<EventoResumenDTO> findSiguientesPorFecha(@Param("fecha") LocalDateTime fecha, @Param("id") Long id,
+                                                  Pageable limite);
+
+    // ----------------------------------------------------------------------
+    // CONTROL DE STOCK (Checkout concurrente)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Lee solo el stock de un evento, sin cargar la entidad completa.
+     * Lo usa ReservaStockService para inicializar su contador en memoria.
+     * @param id ID del evento.
+     * @return El stock actual, o vacío si el evento no existe.
+     */
+    @Query("SELECT e.stock FROM Evento e WHERE e.id = :id")
+    Optional<Integer> findStockById(@Param("id") Long id);
+
+    /**
+     * Descuenta stock de forma atómica solo si quedan plazas suficientes.
+     * La comprobación y la resta van en un único UPDATE condicional, así que dos
+     * compras simultáneas nunca pueden dejar el stock en negativo ni pisarse.
+     * Incrementa la versión para que una escritura optimista del evento no pise el stock.
+     * @param id ID del evento.
+     * @param cantidad Número de entradas a descontar.
+     * @return 1 si se descontó, 0 si no había stock suficiente.
+     */
+    @Modifying
+    @Query("UPDATE Evento e SET e.stock = e.stock - :cantidad, e.version = e.version + 1 " +
+            "WHERE e.id = :id AND e.stock >= :cantidad")
+    int descontarStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+
+    /**
+     * Devuelve plazas al stock de un evento (retenciones caducadas o canceladas).
+     * Incrementa la versión, como descontarStock.
+     * @param id ID del evento.
+     * @param cantidad Número de entradas a devolver.
+     * @return Número de filas actualizadas (0 si el evento ya no existe).
+     */
+    @Modifying
+    @Query("UPDATE Evento e SET e.stock = e.stock + :cantidad, e.version = e.version + 1 WHERE e.id = :id")
+    int devolverStock(@Param("id") Long id, @Param("cantidad") int cantidad);
+
+    // ----------------------------------------------------------------------
+    // VALIDACIÓN EN PUERTA
+    // ----------------------------------------------------------------------
+
+    /**
+     * IDs de los eventos que empiezan en el intervalo [desde, hasta).
+     * Lo usa ValidacionEntradaService para precargar los eventos del día.
+     */
+    @Query("SELECT e.id FROM Evento e WHERE e.fecha >= :desde AND e.fecha < :hasta")
+    List<Long> findIdsByFechaEntre(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
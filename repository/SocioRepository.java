@@ -0,0 +1,52 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Socio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SocioRepository extends JpaRepository<Socio, String> {
+
+    // -------------------------------------------------------------------------
+    // DONACIONES DE SOCIOS
+    // -------------------------------------------------------------------------
+
+    /**
+     * Cuáles de estos NIF son socios. Una consulta por lote de donaciones.
+     */
+    @Query("SELECT s.nif FROM Socio s WHERE s.nif IN :nifs")
+    List<String> findNifsDeSocios(@Param("nifs") Collection<String> nifs);
+
+    /**
+     * Suma un importe al total donado, en la propia BD (sin leer la fila).
+     * Solo lo usa la consolidación periódica de AportacionSocio.
+     * Nativa: JPQL no admite aritmética sobre atributos con converter (Importe) y, al ser Socio
+     * una subclase JOINED, pasaría el UPDATE por una tabla temporal con los NIF de 'usuario'.
+     */
+    @Modifying
+    @Query(value = "UPDATE socio SET donacion_total_centimos = donacion_total_centimos + :centimos WHERE nif = :nif",
+            nativeQuery = true)
+    int sumarDonacion(@Param("nif") String nif, @Param("centimos") long centimos);
+
+    /**
+     * Incrementa la versión (bloqueo optimista) de los socios cuyo total se acaba de sumar.
+     * La versión vive en 'usuario', la raíz de la jerarquía: un único UPDATE por lote.
+     */
+    @Modifying
+    @Query(value = "UPDATE usuario SET version = version + 1 WHERE nif IN (:nifs)", nativeQuery = true)
+    int incrementarVersiones(@Param("nifs") Collection<String> nifs);
+
+    /**
+     * Total ya consolidado de un socio (sin las aportaciones pendientes).
+     */
+    @Query("SELECT s.donacionTotal FROM Socio s WHERE s.nif = :nif")
+    Optional<Importe> findDonacionTotal(@Param("nif") String nif);
+}
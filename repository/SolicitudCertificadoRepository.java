@@ -0,0 +1,58 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.EstadoSolicitud;
+import com.byron.cudeca.model.Pedido;
+import com.byron.cudeca.model.SolicitudCertificado;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SolicitudCertificadoRepository extends JpaRepository<SolicitudCertificado, Long> {
+
+    // -------------------------------------------------------------------------
+    // IDEMPOTENCIA
+    // -------------------------------------------------------------------------
+
+    boolean existsByPedido(Pedido pedido);
+
+    boolean existsByDonacion(Donacion donacion);
+
+    // -------------------------------------------------------------------------
+    // COLA DE TRABAJO
+    // -------------------------------------------------------------------------
+
+    /**
+     * IDs de las solicitudes listas para (re)intentarse, las más antiguas primero.
+     * El tamaño de la página limita cuántas se cogen en cada barrido.
+     */
+    @Query("SELECT s.id FROM SolicitudCertificado s " +
+            "WHERE s.estado = :estado AND s.proximoIntento <= :ahora " +
+            "ORDER BY s.proximoIntento, s.id")
+    List<Long> findIdsListas(@Param("estado") EstadoSolicitud estado,
+                             @Param("ahora") LocalDateTime ahora,
+                             Pageable pageable);
+
+    /**
+     * Reclama una solicitud lista moviendo su próximo intento al final del plazo de trabajo.
+     * Solo un worker (de esta u otra instancia) gana; si muere sin terminar, la solicitud
+     * vuelve a estar lista al vencer el plazo.
+     * @return 1 si la solicitud es nuestra; 0 si ya no estaba lista.
+     */
+    @Modifying
+    @Query("UPDATE SolicitudCertificado s SET s.proximoIntento = :hasta " +
+            "WHERE s.id = :id AND s.estado = :estado AND s.proximoIntento <= :ahora")
+    int reclamar(@Param("id") Long id,
+                 @Param("estado") EstadoSolicitud estado,
+                 @Param("ahora") LocalDateTime ahora,
+                 @Param("hasta") LocalDateTime hasta);
+
+    long countByEstado(EstadoSolicitud estado);
+}
@@ -0,0 +1,38 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.dto.TramoPrecioDTO;
+import com.byron.cudeca.model.TipoEntrada;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TipoEntradaRepository extends JpaRepository<TipoEntrada, Long> {
+
+    /**
+     * Todos los tramos de precio de un evento en una consulta (proyección, sin entidades).
+     * Vacía si el evento no tiene tarifas o no existe.
+     */
+    @Query("SELECT new com.byron.cudeca.dto.TramoPrecioDTO(t.nombre, p.precio, p.hasta) " +
+            "FROM TramoPrecio p JOIN p.tipoEntrada t WHERE t.evento.id = :eventoId")
+    List<TramoPrecioDTO> findTramos(@Param("eventoId") Long eventoId);
+
+    /**
+     * Borra los tramos de precio de un evento (antes de sustituir sus tarifas).
+     */
+    @Modifying
+    @Query("DELETE FROM TramoPrecio p WHERE p.tipoEntrada.id IN " +
+            "(SELECT t.id FROM TipoEntrada t WHERE t.evento.id = :eventoId)")
+    int borrarTramos(@Param("eventoId") Long eventoId);
+
+    /**
+     * Borra los tipos de entrada de un evento. Primero hay que borrar sus tramos.
+     */
+    @Modifying
+    @Query("DELETE FROM TipoEntrada t WHERE t.evento.id = :eventoId")
+    int borrarTipos(@Param("eventoId") Long eventoId);
+}
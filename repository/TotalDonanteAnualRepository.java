@@ -0,0 +1,117 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.dto.DeclaradoModelo182DTO;
+import com.byron.cudeca.dto.ResumenAnualCertificadosDTO;
+import com.byron.cudeca.model.TotalDonanteAnual;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface TotalDonanteAnualRepository extends JpaRepository<TotalDonanteAnual, Long> {
+
+    // -------------------------------------------------------------------------
+    // MANTENIMIENTO DEL AGREGADO
+    // -------------------------------------------------------------------------
+
+    /**
+     * Suma un certificado al total del NIF en el ejercicio, en la propia BD (sin leer la fila).
+     * El UPDATE bloquea la fila hasta el commit: dos certificados simultáneos del mismo
+     * donante se suman uno detrás de otro y no se pierde ninguno.
+     * Nativa porque JPQL no admite aritmética sobre atributos con converter (Importe).
+     * @return 1 si la fila existía; 0 si es el primer certificado del NIF en el ejercicio.
+     */
+    @Modifying
+    @Query(value = "UPDATE total_donante_anual SET " +
+            "importe_total_centimos = importe_total_centimos + :centimos, " +
+            "numero_certificados = numero_certificados + 1, " +
+            "nombre_completo = :nombreCompleto, " +
+            "codigo_postal = :codigoPostal " +
+            "WHERE nif = :nif AND ejercicio = :ejercicio", nativeQuery = true)
+    int sumar(@Param("nif") String nif,
+              @Param("ejercicio") Integer ejercicio,
+              @Param("centimos") long centimos,
+              @Param("nombreCompleto") String nombreCompleto,
+              @Param("codigoPostal") String codigoPostal);
+
+    /**
+     * Primer certificado del NIF en el ejercicio: crea la fila ya con su importe, solo si no
+     * existe, en la transacción de la emisión. Si otra emisión la inserta a la vez, la
+     * restricción única (uk_total_donante_nif_ejercicio) hace fallar a una de las dos.
+     * @return 1 si ha creado la fila; 0 si ya existía (otra emisión la confirmó antes).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO total_donante_anual " +
+            "(nif, ejercicio, importe_total_centimos, numero_certificados, nombre_completo, codigo_postal) " +
+            "SELECT :nif, :ejercicio, :centimos, 1, :nombreCompleto, :codigoPostal " +
+            "WHERE NOT EXISTS (SELECT 1 FROM total_donante_anual " +
+            "WHERE nif = :nif AND ejercicio = :ejercicio)", nativeQuery = true)
+    int insertarSiNoExiste(@Param("nif") String nif,
+                           @Param("ejercicio") Integer ejercicio,
+                           @Param("centimos") long centimos,
+                           @Param("nombreCompleto") String nombreCompleto,
+                           @Param("codigoPostal") String codigoPostal);
+
+    /**
+     * Borra los totales de un ejercicio (antes de recalcularlo desde los certificados).
+     */
+    @Modifying
+    @Query("DELETE FROM TotalDonanteAnual t WHERE t.ejercicio = :ejercicio")
+    int borrarEjercicio(@Param("ejercicio") Integer ejercicio);
+
+    /**
+     * Rehace los totales de un ejercicio agregando en la BD los certificados emitidos en
+     * [inicio, fin). Para la carga inicial y para corregir desviaciones: es O(certificados).
+     */
+    @Modifying
+    @Query("INSERT INTO TotalDonanteAnual (nif, ejercicio, importeTotal, numeroCertificados, nombreCompleto, codigoPostal) " +
+            "SELECT c.nif, :ejercicio, SUM(c.importeCertificado), CAST(COUNT(c) AS Integer), " +
+            "MAX(c.nombreCompleto), MAX(c.codigoPostal) " +
+            "FROM CertificadoDonacion c " +
+            "WHERE c.fechaEmision >= :inicio AND c.fechaEmision < :fin " +
+            "GROUP BY c.nif")
+    int insertarDesdeCertificados(@Param("ejercicio") Integer ejercicio,
+                                  @Param("inicio") LocalDateTime inicio,
+                                  @Param("fin") LocalDateTime fin);
+
+    // -------------------------------------------------------------------------
+    // CONSULTAS
+    // -------------------------------------------------------------------------
+
+    /**
+     * Totales del propio usuario, del ejercicio más reciente al más antiguo ("Mis Certificados").
+     * Solo los del NIF del usuario y solo si tiene certificados a su nombre en su cuenta: un NIF
+     * que solo aparece como NIF fiscal en compras o donaciones de otros no devuelve nada.
+     */
+    @Query("SELECT new com.byron.cudeca.dto.ResumenAnualCertificadosDTO(t.ejercicio, t.importeTotal, t.numeroCertificados) " +
+            "FROM TotalDonanteAnual t " +
+            "WHERE t.nif = :usuarioNif AND EXISTS (SELECT 1 FROM CertificadoDonacion c " +
+            "WHERE c.usuarioNif = :usuarioNif AND c.nif = :usuarioNif) " +
+            "ORDER BY t.ejercicio DESC")
+    List<ResumenAnualCertificadosDTO> findResumenDeUsuario(@Param("usuarioNif") String usuarioNif);
+
+    /**
+     * Declarados del Modelo 182 de un ejercicio, ordenados por NIF, con lo que donó cada uno
+     * en los dos ejercicios anteriores (null si no donó) para calcular la recurrencia.
+     * Lee una fila por donante; el Stream se consume por bloques (fetch size) dentro de una
+     * transacción y debe cerrarse (try-with-resources).
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.byron.cudeca.dto.DeclaradoModelo182DTO(t.nif, t.nombreCompleto, t.codigoPostal, " +
+            "t.importeTotal, a1.importeTotal, a2.importeTotal) " +
+            "FROM TotalDonanteAnual t " +
+            "LEFT JOIN TotalDonanteAnual a1 ON a1.nif = t.nif AND a1.ejercicio = :ejercicio - 1 " +
+            "LEFT JOIN TotalDonanteAnual a2 ON a2.nif = t.nif AND a2.ejercicio = :ejercicio - 2 " +
+            "WHERE t.ejercicio = :ejercicio AND t.importeTotal > 0 " +
+            "ORDER BY t.nif")
+    Stream<DeclaradoModelo182DTO> streamDeclarados(@Param("ejercicio") Integer ejercicio);
+}
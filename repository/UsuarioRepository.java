@@ -0,0 +1,9 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.model.Usuario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UsuarioRepository extends JpaRepository<Usuario, String> {
+}
@@ -0,0 +1,288 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.AforoEventoDTO;
+import com.byron.cudeca.dto.ConciliacionAforoDTO;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aforo en tiempo real de los eventos: vendidas, validadas y plazas restantes.
+ *
+ * Los contadores viven en memoria y los actualizan el checkout (al confirmar el pedido) y
+ * la validación en la puerta (online y offline), así que el panel no lanza ningún COUNT
+ * sobre 'entrada'. Las plazas restantes son el contador de ReservaStockService.
+ * Se sigue a los eventos de hoy (precarga como la de la validación) y a cualquier evento
+ * cuyo aforo se consulte; la BD solo se lee al empezar a seguir un evento. Las ventas y
+ * escaneos de un evento que no se sigue no se suman: la carga desde la BD ya los incluirá.
+ *
+ * Conciliación: cada cierto tiempo se comparan los contadores con la BD en una sola consulta.
+ * Una diferencia puntual es normal (validaciones aún sin volcar, ventas de otra instancia en
+ * curso); si la misma diferencia se repite en la pasada siguiente, se corrige el contador.
+ * Los ajustes se suman, así que no se pierden incrementos que lleguen mientras tanto.
+ */
+@Service
+public class AforoEventosService {
+
+    private final EntradaRepository entradaRepository;
+    private final EventoRepository eventoRepository;
+    private final ReservaStockService reservaStockService;
+    private final Clock clock;
+    private final DifusorSse paneles;
+
+    private final ConcurrentMap<Long, ContadoresAforo> contadores = new ConcurrentHashMap<>();
+
+    // Solo desde el hilo del tick
+    private List<AforoEventoDTO> ultimaFoto = List.of();
+    private long version;
+
+    private volatile ConciliacionAforoDTO ultimaConciliacion;
+
+    @Autowired
+    public AforoEventosService(EntradaRepository entradaRepository,
+                               EventoRepository eventoRepository,
+                               ReservaStockService reservaStockService,
+                               ObjectMapper objectMapper,
+                               @Value("${cudeca.aforo.tick-ms:1000}") long tickMs,
+                               @Value("${cudeca.aforo.latido-ms:15000}") long latidoMs,
+                               @Value("${cudeca.aforo.timeout-panel-ms:1800000}") long timeoutPanelMs,
+                               @Value("${cudeca.aforo.max-paneles:200}") int maxPaneles) {
+        this(entradaRepository, eventoRepository, reservaStockService, objectMapper,
+                (int) Math.max(1, latidoMs / Math.max(1, tickMs)), timeoutPanelMs, maxPaneles,
+                Clock.systemDefaultZone());
+    }
+
+    public AforoEventosService(EntradaRepository entradaRepository, EventoRepository eventoRepository,
+                               ReservaStockService reservaStockService, ObjectMapper objectMapper,
+                               int ticksLatido, long timeoutPanelMs, int maxPaneles, Clock clock) {
+        this.entradaRepository = entradaRepository;
+        this.eventoRepository = eventoRepository;
+        this.reservaStockService = reservaStockService;
+        this.clock = clock;
+        this.paneles = new DifusorSse("aforo", objectMapper, timeoutPanelMs, maxPaneles, ticksLatido);
+    }
+
+    // ----------------------------------------------------------------------
+    // CARGA
+    // ----------------------------------------------------------------------
+
+    /**
+     * Empieza a seguir los eventos de hoy y deja de seguir los de días anteriores
+     * (si vuelven a tener actividad, se cargan de nuevo).
+     * @return Número de eventos seguidos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${cudeca.validacion.cron-precarga:0 0 5 * * *}")
+    public int precargarEventosDeHoy() {
+        LocalDate hoy = LocalDate.now(clock);
+        List<Long> eventoIds = eventoRepository.findIdsByFechaEntre(hoy.atStartOfDay(), hoy.plusDays(1).atStartOfDay());
+        contadores.keySet().retainAll(new HashSet<>(eventoIds));
+        if (!eventoIds.isEmpty()) {
+            for (AforoEventoDTO aforo : entradaRepository.contarAforo(eventoIds)) {
+                contadores.putIfAbsent(aforo.getEventoId(), new ContadoresAforo(aforo));
+            }
+        }
+        return contadores.size();
+    }
+
+    // ----------------------------------------------------------------------
+    // ACTUALIZACIÓN DESDE CHECKOUT Y PUERTA
+    // ----------------------------------------------------------------------
+
+    /**
+     * Suma entradas vendidas. Dentro de una transacción se aplica al hacer commit.
+     * Solo si el evento ya se sigue: cargar aquí sus contadores leería de la BD una venta ya
+     * confirmada y luego se sumaría otra vez.
+     */
+    public void registrarVenta(Long eventoId, int cantidad) {
+        Transacciones.alConfirmar(() -> {
+            ContadoresAforo contadoresEvento = contadores.get(eventoId);
+            if (contadoresEvento != null) {
+                contadoresEvento.vendidas.addAndGet(cantidad);
+            }
+        });
+    }
+
+    /**
+     * Suma entradas validadas en la puerta. Dentro de una transacción se aplica al hacer commit.
+     * Como en registrarVenta, solo si el evento ya se sigue (los de hoy se precargan).
+     */
+    public void registrarValidacion(Long eventoId, int cantidad) {
+        if (cantidad < 1) {
+            return;
+        }
+        Transacciones.alConfirmar(() -> {
+            ContadoresAforo contadoresEvento = contadores.get(eventoId);
+            if (contadoresEvento != null) {
+                contadoresEvento.validadas.addAndGet(cantidad);
+            }
+        });
+    }
+
+    // ----------------------------------------------------------------------
+    // CONSULTA Y PANEL (SSE)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Aforo de un evento, desde memoria.
+     */
+    public AforoEventoDTO obtenerAforo(Long eventoId) {
+        return foto(eventoId, contadoresDe(eventoId));
+    }
+
+    /**
+     * Aforo de todos los eventos seguidos, ordenado por ID.
+     */
+    public List<AforoEventoDTO> obtenerAforos() {
+        List<AforoEventoDTO> aforos = new ArrayList<>(contadores.size());
+        new TreeMap<>(contadores).forEach((id, contadoresEvento) -> aforos.add(foto(id, contadoresEvento)));
+        return aforos;
+    }
+
+    /**
+     * Da de alta un panel de administración.
+     * @throws IllegalStateException si ya hay demasiados paneles conectados.
+     */
+    public SseEmitter suscribir() {
+        return paneles.suscribir();
+    }
+
+    /**
+     * Tick: la foto se monta en memoria y solo se envía (una vez para todos) si ha cambiado.
+     */
+    @Scheduled(fixedRateString = "${cudeca.aforo.tick-ms:1000}")
+    public void emitir() {
+        List<AforoEventoDTO> foto = obtenerAforos();
+        if (!foto.equals(ultimaFoto)) {
+            ultimaFoto = foto;
+            version++;
+        }
+        paneles.tick(version, () -> ultimaFoto);
+    }
+
+    int panelesConectados() {
+        return paneles.clientesConectados();
+    }
+
+    long envios() {
+        return paneles.envios();
+    }
+
+    @PreDestroy
+    public void detener() {
+        paneles.cerrar();
+    }
+
+    // ----------------------------------------------------------------------
+    // CONCILIACIÓN CON LA BD
+    // ----------------------------------------------------------------------
+
+    /**
+     * Compara los contadores de los eventos seguidos con la BD (una consulta) y corrige las
+     * desviaciones que se repiten entre dos pasadas. Los eventos con actividad mientras se
+     * leía la BD se dejan para la siguiente pasada.
+     */
+    @Scheduled(fixedDelayString = "${cudeca.aforo.conciliacion-ms:60000}")
+    public synchronized ConciliacionAforoDTO conciliar() {
+        Map<Long, long[]> antes = new HashMap<>();
+        contadores.forEach((id, contadoresEvento) -> antes.put(id, contadoresEvento.leer(id)));
+        int detectadas = 0;
+        int corregidas = 0;
+
+        if (!antes.isEmpty()) {
+            for (AforoEventoDTO bd : entradaRepository.contarAforo(antes.keySet())) {
+                ContadoresAforo contadoresEvento = contadores.get(bd.getEventoId());
+                long[] previo = antes.get(bd.getEventoId());
+                if (contadoresEvento == null || !Arrays.equals(previo, contadoresEvento.leer(bd.getEventoId()))) {
+                    continue;
+                }
+                long[] desviacion = {
+                        bd.getVendidas() - previo[0],
+                        bd.getValidadas() - previo[1],
+                        bd.getRestantes() - previo[2]
+                };
+                if (desviacion[0] == 0 && desviacion[1] == 0 && desviacion[2] == 0) {
+                    contadoresEvento.desviacionAnterior = null;
+                    continue;
+                }
+                detectadas++;
+                if (Arrays.equals(desviacion, contadoresEvento.desviacionAnterior)) {
+                    contadoresEvento.vendidas.addAndGet(desviacion[0]);
+                    contadoresEvento.validadas.addAndGet(desviacion[1]);
+                    if (desviacion[2] != 0) {
+                        reservaStockService.descartarContador(bd.getEventoId());
+                    }
+                    contadoresEvento.desviacionAnterior = null;
+                    corregidas++;
+                } else {
+                    contadoresEvento.desviacionAnterior = desviacion;
+                }
+            }
+        }
+        ultimaConciliacion = new ConciliacionAforoDTO(antes.size(), detectadas, corregidas, LocalDateTime.now(clock));
+        return ultimaConciliacion;
+    }
+
+    /**
+     * Resultado de la última conciliación (null si aún no se ha hecho ninguna).
+     */
+    public ConciliacionAforoDTO obtenerUltimaConciliacion() {
+        return ultimaConciliacion;
+    }
+
+    // ----------------------------------------------------------------------
+    // AUXILIARES
+    // ----------------------------------------------------------------------
+
+    private ContadoresAforo contadoresDe(Long eventoId) {
+        return contadores.computeIfAbsent(eventoId, id -> new ContadoresAforo(
+                entradaRepository.contarAforo(List.of(id)).stream().findFirst()
+                        .orElseThrow(() -> new EntityNotFoundException("Evento no encontrado con ID: " + id))));
+    }
+
+    private AforoEventoDTO foto(Long eventoId, ContadoresAforo contadoresEvento) {
+        return new AforoEventoDTO(eventoId, contadoresEvento.nombre, contadoresEvento.vendidas.get(),
+                contadoresEvento.validadas.get(), reservaStockService.consultarDisponible(eventoId));
+    }
+
+    private final class ContadoresAforo {
+        private final String nombre;
+        private final AtomicLong vendidas;
+        private final AtomicLong validadas;
+        // Desviación vista en la pasada anterior de la conciliación (solo desde conciliar())
+        private long[] desviacionAnterior;
+
+        private ContadoresAforo(AforoEventoDTO cargado) {
+            this.nombre = cargado.getNombre();
+            this.vendidas = new AtomicLong(cargado.getVendidas());
+            this.validadas = new AtomicLong(cargado.getValidadas());
+        }
+
+        private long[] leer(Long eventoId) {
+            return new long[]{vendidas.get(), validadas.get(), reservaStockService.consultarDisponible(eventoId)};
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Foto inmutable de la cartelera pública (eventos futuros) con una lista ya ordenada
+ * por cada criterio de ordenación y sentido. Se construye una vez y se comparte entre
+ * todas las peticiones: servir la home es buscar la lista y devolverla, sin BD ni sort.
+ * Guarda proyecciones (DTO), no entidades: nada que serializar de 'entrada' o 'administrador'.
+ */
+final class CatalogoEventos {
+
+    static final List<String> CRITERIOS = List.of("fecha", "nombre", "tipoevento", "ubicacion", "stock");
+
+    private final LocalDate dia;
+    private final Instant caducaEn;
+    private final List<EventoDetalleDTO> detalles;
+    private final Map<String, List<EventoResumenDTO>> ordenados;
+    private final Map<Long, EventoResumenDTO> porId;
+
+    CatalogoEventos(List<EventoDetalleDTO> detalles, LocalDate dia, Instant caducaEn) {
+        this.dia = dia;
+        this.caducaEn = caducaEn;
+        this.detalles = List.copyOf(detalles);
+        this.ordenados = new HashMap<>();
+        this.porId = new HashMap<>();
+        List<EventoResumenDTO> eventos = new ArrayList<>(detalles.size());
+        for (EventoDetalleDTO detalle : detalles) {
+            EventoResumenDTO resumen = detalle.resumen();
+            eventos.add(resumen);
+            porId.put(resumen.getId(), resumen);
+        }
+        for (String criterio : CRITERIOS) {
+            for (boolean desc : new boolean[]{false, true}) {
+                List<EventoResumenDTO> copia = new ArrayList<>(eventos);
+                copia.sort(comparador(criterio, desc));
+                ordenados.put(clave(criterio, desc), List.copyOf(copia));
+            }
+        }
+    }
+
+    /**
+     * La foto sirve mientras no caduque y siga siendo el mismo día
+     * (a medianoche los eventos de ayer dejan de ser "futuros").
+     */
+    boolean vigente(LocalDate hoy, Instant ahora) {
+        return dia.equals(hoy) && ahora.isBefore(caducaEn);
+    }
+
+    /**
+     * Lista ya ordenada para un criterio y sentido. Un criterio desconocido cae en fecha.
+     */
+    List<EventoResumenDTO> ordenadosPor(String sortBy, String sortDir) {
+        return ordenados.get(clave(normalizarCriterio(sortBy), "desc".equalsIgnoreCase(sortDir)));
+    }
+
+    /**
+     * Eventos de la cartelera con estos IDs, en el orden pedido. Solo se ordenan las
+     * coincidencias, así que el coste no depende del tamaño de la cartelera.
+     * Los IDs que no están en la cartelera (eventos pasados) se ignoran.
+     */
+    List<EventoResumenDTO> seleccionar(Set<Long> ids, String sortBy, String sortDir) {
+        List<EventoResumenDTO> seleccion = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            EventoResumenDTO evento = porId.get(id);
+            if (evento != null) {
+                seleccion.add(evento);
+            }
+        }
+        seleccion.sort(comparador(normalizarCriterio(sortBy), "desc".equalsIgnoreCase(sortDir)));
+        return seleccion;
+    }
+
+    /**
+     * Eventos con descripción, para sincronizar el índice de búsqueda.
+     */
+    List<EventoDetalleDTO> detalles() {
+        return detalles;
+    }
+
+    static String normalizarCriterio(String sortBy) {
+        String criterio = (sortBy == null || sortBy.isBlank()) ? "fecha" : sortBy.toLowerCase();
+        return CRITERIOS.contains(criterio) ? criterio : "fecha";
+    }
+
+    static Comparator<EventoResumenDTO> comparador(String criterio, boolean desc) {
+        Comparator<EventoResumenDTO> comparator;
+
+        switch (criterio) {
+            case "nombre":
+                comparator = Comparator.comparing(EventoResumenDTO::getNombre, Comparator.nullsLast(String::compareToIgnoreCase));
+                break;
+            case "tipoevento":
+                comparator = Comparator.comparing(EventoResumenDTO::getTipoEvento, Comparator.nullsLast(String::compareToIgnoreCase));
+                break;
+            case "ubicacion":
+                comparator = Comparator.comparing(EventoResumenDTO::getUbicacion, Comparator.nullsLast(String::compareToIgnoreCase));
+                break;
+            case "stock":
+                comparator = Comparator.comparing(EventoResumenDTO::getStock, Comparator.nullsLast(Integer::compareTo));
+                break;
+            default:
+                comparator = Comparator.comparing(EventoResumenDTO::getFecha, Comparator.nullsLast(LocalDateTime::compareTo));
+                break;
+        }
+
+        if (desc) {
+            comparator = comparator.reversed();
+        }
+
+        return comparator.thenComparing(EventoResumenDTO::getId, Comparator.nullsLast(Long::compareTo));
+    }
+
+    private static String clave(String criterio, boolean desc) {
+        return desc ? criterio + ":desc" : criterio + ":asc";
+    }
+}
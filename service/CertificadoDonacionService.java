@@ -1,7 +1,9 @@
 package com.byron.cudeca.service;
 
+import com.byron.cudeca.dto.ResumenAnualCertificadosDTO;
 import com.byron.cudeca.model.CertificadoDonacion;
 import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.Importe;
 import com.byron.cudeca.model.Pedido;
 import com.byron.cudeca.model.Usuario;
 import com.byron.cudeca.repository.CertificadoDonacionRepository;
@@ -12,16 +14,20 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
 
 @Service
 public class CertificadoDonacionService {
 
     private final CertificadoDonacionRepository certificadoDonacionRepository;
+    private final TotalDonanteAnualService totalDonanteAnualService;
 
     @Autowired
-    public CertificadoDonacionService(CertificadoDonacionRepository certificadoRepository) {
+    public CertificadoDonacionService(CertificadoDonacionRepository certificadoRepository,
+                                      TotalDonanteAnualService totalDonanteAnualService) {
         this.certificadoDonacionRepository = certificadoRepository;
+        this.totalDonanteAnualService = totalDonanteAnualService;
     }
 
     // ----------------------------------------------------------------------
@@ -30,10 +36,11 @@ public class CertificadoDonacionService {
 
     /**
      * Genera un certificado recibiendo TODOS los datos obligatorios como parámetros sueltos.
+     * En la misma transacción suma su importe al total anual del NIF (TotalDonanteAnual).
      */
     @Transactional
     public CertificadoDonacion generarCertificado(Usuario usuario,
-                                                  Double importe,
+                                                  Importe importe,
                                                   Pedido pedido,
                                                   Donacion donacion,
                                                   // Parámetros fiscales individuales:
@@ -52,6 +59,8 @@ public class CertificadoDonacionService {
         cert.setImporteCertificado(importe);
         cert.setPedido(pedido);
         cert.setDonacion(donacion);
+        // Dueño del certificado para "Mis Certificados" (el NIF fiscal puede ser de otra persona)
+        cert.setUsuarioNif(usuario.getNif());
 
         // 2. Datos Personales (Prioridad: Parámetro -> Usuario)
         if (nifFiscal != null && !nifFiscal.isBlank()) {
@@ -74,7 +83,9 @@ public class CertificadoDonacionService {
         cert.setProvincia(provincia);
         cert.setPais(pais);
 
-        return certificadoDonacionRepository.save(cert);
+        CertificadoDonacion guardado = certificadoDonacionRepository.save(cert);
+        totalDonanteAnualService.acumular(guardado);
+        return guardado;
     }
 
     /**
@@ -92,6 +103,7 @@ public class CertificadoDonacionService {
                 .orElseGet(() -> {
                     CertificadoDonacion cert = new CertificadoDonacion();
                     cert.setPedido(pedido);
+                    cert.setUsuarioNif(pedido.getUsuario().getNif());
                     cert.setImporteCertificado(pedido.getImporteTotal());
                     return certificadoDonacionRepository.save(cert);
                 });
@@ -105,7 +117,15 @@ public class CertificadoDonacionService {
      * Obtiene todos los certificados de un usuario para su área privada ("Mis Certificados").
      */
     public List<CertificadoDonacion> obtenerCertificadosDeUsuario(Usuario usuario) {
-        return certificadoDonacionRepository.findByUsuario(usuario);
+        return certificadoDonacionRepository.findByUsuarioNifOrderByFechaEmisionDesc(usuario.getNif());
+    }
+
+    /**
+     * Total certificado por ejercicio al NIF del usuario, para la cabecera de "Mis Certificados".
+     * Una fila por año, sin recorrer los certificados.
+     */
+    public List<ResumenAnualCertificadosDTO> obtenerResumenAnualDeUsuario(Usuario usuario) {
+        return totalDonanteAnualService.obtenerResumen(usuario.getNif());
     }
 
     /**
@@ -118,11 +138,11 @@ public class CertificadoDonacionService {
 
     /**
      * Obtiene todos los certificados de un año fiscal concreto.
-     * Vital para generar el MODELO 182 de Hacienda.
+     * Carga el año entero en memoria: para el fichero del MODELO 182 usar Modelo182Service.
      */
     public List<CertificadoDonacion> obtenerReporteFiscal(int anio) {
-        LocalDate inicio = LocalDate.of(anio, 1, 1);
-        LocalDate fin = LocalDate.of(anio, 12, 31);
+        LocalDateTime inicio = LocalDate.of(anio, 1, 1).atStartOfDay();
+        LocalDateTime fin = LocalDate.of(anio, 12, 31).atTime(LocalTime.MAX);
         return certificadoDonacionRepository.findByFechaEmisionBetween(inicio, fin);
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.CertificadoPdfDTO;
+import com.byron.cudeca.repository.CertificadoDonacionRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * PDF de los certificados de donación: uno suelto o todos los de un ejercicio en un ZIP.
+ *
+ * La plantilla se compila una vez al arrancar. El ZIP se genera en streaming: los
+ * certificados se leen de la BD por bloques, se renderizan en paralelo (un hilo por núcleo)
+ * y se escriben en orden según terminan, con como mucho una ventana de PDFs en memoria.
+ * Las entradas del ZIP van sin comprimir (STORED), porque el contenido de cada PDF ya va
+ * comprimido, y su CRC se calcula en el hilo que renderiza: el hilo que escribe solo copia.
+ */
+@Service
+public class CertificadoPdfService {
+
+    private final CertificadoDonacionRepository certificadoDonacionRepository;
+    private final PlantillaCertificadoPdf plantilla;
+    private final String razonSocial;
+    private final String nifEntidad;
+    private final ExecutorService renderizadores;
+    private final int ventana;
+
+    @Autowired
+    public CertificadoPdfService(CertificadoDonacionRepository certificadoDonacionRepository,
+                                 @Value("${cudeca.fiscal.razon-social:}") String razonSocial,
+                                 @Value("${cudeca.fiscal.nif:}") String nifEntidad,
+                                 @Value("${cudeca.certificados.hilos-pdf:0}") int hilos) {
+        this.certificadoDonacionRepository = certificadoDonacionRepository;
+        this.plantilla = new PlantillaCertificadoPdf(razonSocial, nifEntidad);
+        this.razonSocial = razonSocial;
+        this.nifEntidad = nifEntidad;
+        int nucleos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger numero = new AtomicInteger();
+        this.renderizadores = Executors.newFixedThreadPool(nucleos, tarea -> {
+            Thread hilo = new Thread(tarea, "pdf-certificados-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        // Suficientes PDFs en vuelo para tener a todos los hilos ocupados mientras se escribe
+        this.ventana = nucleos * 4;
+    }
+
+    /**
+     * Escribe el PDF de un certificado.
+     */
+    @Transactional(readOnly = true)
+    public void escribirPdf(Long id, OutputStream destino) throws IOException {
+        CertificadoPdfDTO certificado = certificadoDonacionRepository.findParaPdfById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Certificado no encontrado"));
+        plantilla.escribir(certificado, destino);
+    }
+
+    /**
+     * Comprueba, antes de empezar a escribir el ZIP, que el ejercicio es válido y que los datos
+     * de la entidad que firma los certificados están configurados.
+     * @throws IllegalArgumentException si el ejercicio no es válido.
+     * @throws IllegalStateException si falta el NIF o la denominación de la entidad.
+     */
+    public void comprobarExportable(int ejercicio) {
+        FicheroModelo182.comprobarEjercicio(ejercicio);
+        FicheroModelo182.comprobarDeclarante(nifEntidad, razonSocial);
+    }
+
+    /**
+     * Escribe un ZIP con el PDF de cada certificado emitido en el ejercicio.
+     * La transacción (solo lectura) mantiene abierto el cursor mientras se escribe.
+     * @return Número de certificados incluidos.
+     */
+    @Transactional(readOnly = true)
+    public int exportarZip(int ejercicio, OutputStream destino) throws IOException {
+        comprobarExportable(ejercicio);
+        ZipOutputStream zip = new ZipOutputStream(destino);
+        Deque<Future<PdfRenderizado>> enVuelo = new ArrayDeque<>();
+        int escritos = 0;
+
+        try (Stream<CertificadoPdfDTO> certificados = certificadoDonacionRepository.streamParaPdf(
+                LocalDate.of(ejercicio, 1, 1).atStartOfDay(),
+                LocalDate.of(ejercicio + 1, 1, 1).atStartOfDay())) {
+            Iterator<CertificadoPdfDTO> it = certificados.iterator();
+            while (it.hasNext()) {
+                CertificadoPdfDTO certificado = it.next();
+                enVuelo.add(renderizadores.submit(() -> renderizar(certificado)));
+                if (enVuelo.size() >= ventana) {
+                    escribirEntrada(zip, enVuelo.poll());
+                    escritos++;
+                }
+            }
+            while (!enVuelo.isEmpty()) {
+                escribirEntrada(zip, enVuelo.poll());
+                escritos++;
+            }
+        } finally {
+            // Si algo falla (p. ej. el cliente corta la descarga) no seguimos renderizando
+            enVuelo.forEach(pendiente -> pendiente.cancel(true));
+        }
+        zip.finish();
+        zip.flush();
+        return escritos;
+    }
+
+    @PreDestroy
+    public void detener() {
+        renderizadores.shutdownNow();
+    }
+
+    private PdfRenderizado renderizar(CertificadoPdfDTO certificado) {
+        byte[] pdf = plantilla.renderizar(certificado);
+        CRC32 crc = new CRC32();
+        crc.update(pdf);
+        return new PdfRenderizado(nombreFichero(certificado), pdf, crc.getValue());
+    }
+
+    private static void escribirEntrada(ZipOutputStream zip, Future<PdfRenderizado> pendiente) throws IOException {
+        PdfRenderizado pdf;
+        try {
+            pdf = pendiente.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Exportación de certificados interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("No se pudo generar el PDF de un certificado", e.getCause());
+        }
+        ZipEntry entrada = new ZipEntry(pdf.nombre);
+        entrada.setMethod(ZipEntry.STORED);
+        entrada.setSize(pdf.contenido.length);
+        entrada.setCompressedSize(pdf.contenido.length);
+        entrada.setCrc(pdf.crc);
+        zip.putNextEntry(entrada);
+        zip.write(pdf.contenido);
+        zip.closeEntry();
+    }
+
+    static String nombreFichero(CertificadoPdfDTO certificado) {
+        String nif = certificado.getNif() == null ? "" : certificado.getNif().replaceAll("[^A-Za-z0-9]", "");
+        return "certificado_" + certificado.getId() + "_" + nif + ".pdf";
+    }
+
+    private static final class PdfRenderizado {
+        private final String nombre;
+        private final byte[] contenido;
+        private final long crc;
+
+        private PdfRenderizado(String nombre, byte[] contenido, long crc) {
+            this.nombre = nombre;
+            this.contenido = contenido;
+            this.crc = crc;
+        }
+    }
+}
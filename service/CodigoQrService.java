@@ -0,0 +1,206 @@
+package com.byron.cudeca.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Genera y verifica los códigos QR firmados de las entradas.
+ *
+ * Un código contiene versión, ID de evento, ID de pedido y número de entrada dentro del
+ * pedido (enteros varint), seguidos de un HMAC-SHA256 truncado a 8 bytes, todo en Base32
+ * Crockford (unos 26 caracteres, solo mayúsculas y dígitos: modo alfanumérico del QR).
+ * El escáner puede descartar un QR falso sin ir a la BD; la BD solo hace falta para saber
+ * si una entrada auténtica ya se ha usado. Generarlo tampoco depende de SecureRandom.
+ */
+@Service
+public class CodigoQrService {
+
+    private static final byte VERSION = 1;
+    private static final int BYTES_FIRMA = 8;
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final char[] ALFABETO = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int[] VALORES = new int[128];
+
+    static {
+        Arrays.fill(VALORES, -1);
+        for (int i = 0; i < ALFABETO.length; i++) {
+            VALORES[ALFABETO[i]] = i;
+        }
+    }
+
+    private final ThreadLocal<Mac> macPorHilo;
+
+    /**
+     * Falla al arrancar si la clave no está configurada (CUDECA_CLAVE_QR) o es demasiado corta.
+     */
+    @Autowired
+    public CodigoQrService(@Value("${cudeca.entradas.clave-qr:}") String clave) {
+        this(claveConfigurada(clave));
+    }
+
+    public CodigoQrService(byte[] clave) {
+        if (clave.length < 16) {
+            throw new IllegalArgumentException("La clave de firma de QR debe tener al menos 16 bytes.");
+        }
+        SecretKeySpec spec = new SecretKeySpec(clave.clone(), ALGORITMO);
+        this.macPorHilo = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITMO);
+                mac.init(spec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("No se puede inicializar " + ALGORITMO, e);
+            }
+        });
+    }
+
+    private static byte[] claveConfigurada(String clave) {
+        if (clave == null || clave.isBlank()) {
+            throw new IllegalStateException(
+                    "Falta la clave de firma de QR: configura cudeca.entradas.clave-qr o la variable CUDECA_CLAVE_QR.");
+        }
+        return clave.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Datos que viajan dentro de un QR firmado.
+     */
+    public record DatosQr(long eventoId, long pedidoId, int numeroEntrada) {
+    }
+
+    /**
+     * Genera el código de la entrada número 'numeroEntrada' (0, 1, 2...) de un pedido.
+     */
+    public String generar(long eventoId, long pedidoId, int numeroEntrada) {
+        byte[] buffer = new byte[1 + 10 + 10 + 5 + BYTES_FIRMA];
+        int pos = 0;
+        buffer[pos++] = VERSION;
+        pos = escribirVarLong(buffer, pos, eventoId);
+        pos = escribirVarLong(buffer, pos, pedidoId);
+        pos = escribirVarLong(buffer, pos, numeroEntrada);
+
+        Mac mac = macPorHilo.get();
+        mac.update(buffer, 0, pos);
+        byte[] firma = mac.doFinal();
+        System.arraycopy(firma, 0, buffer, pos, BYTES_FIRMA);
+        return codificarBase32(buffer, pos + BYTES_FIRMA);
+    }
+
+    /**
+     * Verifica la firma de un QR y extrae sus datos, sin acceder a la BD.
+     * @return Vacío si el código está mal formado o la firma no corresponde.
+     */
+    public Optional<DatosQr> verificar(String qr) {
+        byte[] bytes = decodificarBase32(qr);
+        if (bytes == null || bytes.length <= 1 + BYTES_FIRMA || bytes[0] != VERSION) {
+            return Optional.empty();
+        }
+        int longitudDatos = bytes.length - BYTES_FIRMA;
+
+        Mac mac = macPorHilo.get();
+        mac.update(bytes, 0, longitudDatos);
+        byte[] esperada = Arrays.copyOf(mac.doFinal(), BYTES_FIRMA);
+        byte[] recibida = Arrays.copyOfRange(bytes, longitudDatos, bytes.length);
+        if (!MessageDigest.isEqual(esperada, recibida)) {
+            return Optional.empty();
+        }
+
+        long[] valores = new long[3];
+        int pos = 1;
+        for (int i = 0; i < valores.length; i++) {
+            long valor = 0;
+            int desplazamiento = 0;
+            while (true) {
+                if (pos >= longitudDatos || desplazamiento > 63) {
+                    return Optional.empty();
+                }
+                int b = bytes[pos++] & 0xFF;
+                valor |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            valores[i] = valor;
+        }
+        if (pos != longitudDatos || valores[2] > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+        return Optional.of(new DatosQr(valores[0], valores[1], (int) valores[2]));
+    }
+
+    /**
+     * Indica si un QR es del formato antiguo (UUID aleatorio), que no lleva firma.
+     */
+    public boolean esFormatoAntiguo(String qr) {
+        return qr != null && qr.length() == 36 && qr.charAt(8) == '-' && qr.charAt(13) == '-';
+    }
+
+    // ----------------------------------------------------------------------
+    // BASE32 CROCKFORD (sin relleno)
+    // ----------------------------------------------------------------------
+
+    static String codificarBase32(byte[] datos, int longitud) {
+        StringBuilder sb = new StringBuilder((longitud * 8 + 4) / 5);
+        int acumulado = 0;
+        int bits = 0;
+        for (int i = 0; i < longitud; i++) {
+            acumulado = (acumulado << 8) | (datos[i] & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                sb.append(ALFABETO[(acumulado >>> (bits - 5)) & 0x1F]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0) {
+            sb.append(ALFABETO[(acumulado << (5 - bits)) & 0x1F]);
+        }
+        return sb.toString();
+    }
+
+    static byte[] decodificarBase32(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return null;
+        }
+        byte[] salida = new byte[texto.length() * 5 / 8];
+        int acumulado = 0;
+        int bits = 0;
+        int pos = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            int valor = c < 128 ? VALORES[c] : -1;
+            if (valor < 0) {
+                return null;
+            }
+            acumulado = (acumulado << 5) | valor;
+            bits += 5;
+            if (bits >= 8) {
+                salida[pos++] = (byte) (acumulado >>> (bits - 8));
+                bits -= 8;
+            }
+        }
+        // Forma canónica: los bits sobrantes del último carácter deben ser cero
+        if (bits >= 5 || (acumulado & ((1 << bits) - 1)) != 0) {
+            return null;
+        }
+        return salida;
+    }
+
+    private static int escribirVarLong(byte[] buffer, int pos, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        buffer[pos++] = (byte) valor;
+        return pos;
+    }
+}
@@ -0,0 +1,130 @@
+package com.byron.cudeca.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Difusión por SSE de un estado que cambia a menudo a muchos clientes (pantallas, paneles).
+ *
+ * El servicio dueño del estado llama a tick() en cada intervalo con su versión actual: si ha
+ * cambiado, el estado se serializa una vez y se manda el mismo evento a todos los clientes;
+ * si no, cada cierto número de ticks se manda un comentario de latido para que los proxies
+ * no corten la conexión. Cada cliente nuevo recibe al momento el último estado enviado.
+ */
+final class DifusorSse {
+
+    private final String nombreEvento;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final int maxClientes;
+    private final int ticksLatido;
+
+    // Altas y difusión bajo 'envio', para que a nadie le llegue un estado viejo después de uno nuevo
+    private final Object envio = new Object();
+    private final List<SseEmitter> clientes = new CopyOnWriteArrayList<>();
+    private Set<ResponseBodyEmitter.DataWithMediaType> ultimoEvento;
+    private long versionEnviada = -1;
+    private int ticksSinCambios;
+    private long envios;
+
+    DifusorSse(String nombreEvento, ObjectMapper objectMapper, long timeoutMs, int maxClientes, int ticksLatido) {
+        this.nombreEvento = nombreEvento;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.maxClientes = maxClientes;
+        this.ticksLatido = Math.max(1, ticksLatido);
+    }
+
+    /**
+     * Da de alta un cliente.
+     * @throws IllegalStateException si ya hay demasiados clientes conectados.
+     */
+    SseEmitter suscribir() {
+        if (clientes.size() >= maxClientes) {
+            throw new IllegalStateException("Demasiados clientes conectados a '" + nombreEvento + "'.");
+        }
+        SseEmitter cliente = new SseEmitter(timeoutMs);
+        cliente.onCompletion(() -> clientes.remove(cliente));
+        cliente.onTimeout(() -> clientes.remove(cliente));
+        cliente.onError(error -> clientes.remove(cliente));
+
+        synchronized (envio) {
+            if (ultimoEvento == null || enviar(cliente, ultimoEvento)) {
+                clientes.add(cliente);
+            }
+        }
+        return cliente;
+    }
+
+    /**
+     * Un tick de difusión. Solo debe llamarse desde un hilo (el de la tarea programada).
+     * @param version Versión actual del estado; si no ha cambiado no se llama a 'estado'.
+     * @param estado Genera la foto del estado a enviar.
+     */
+    void tick(long version, Supplier<?> estado) {
+        if (version != versionEnviada) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(estado.get());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("No se pudo serializar '" + nombreEvento + "'", e);
+            }
+            versionEnviada = version;
+            ticksSinCambios = 0;
+            synchronized (envio) {
+                ultimoEvento = SseEmitter.event().name(nombreEvento).id(Long.toString(version))
+                        .data(json, MediaType.APPLICATION_JSON).build();
+                enviarATodos(ultimoEvento);
+            }
+        } else if (++ticksSinCambios >= ticksLatido) {
+            ticksSinCambios = 0;
+            synchronized (envio) {
+                enviarATodos(SseEmitter.event().comment("latido").build());
+            }
+        }
+    }
+
+    int clientesConectados() {
+        return clientes.size();
+    }
+
+    long envios() {
+        return envios;
+    }
+
+    void cerrar() {
+        clientes.forEach(SseEmitter::complete);
+        clientes.clear();
+    }
+
+    private void enviarATodos(Set<ResponseBodyEmitter.DataWithMediaType> evento) {
+        if (clientes.isEmpty()) {
+            return;
+        }
+        envios++;
+        for (SseEmitter cliente : clientes) {
+            if (!enviar(cliente, evento)) {
+                clientes.remove(cliente);
+            }
+        }
+    }
+
+    private static boolean enviar(SseEmitter cliente, Set<ResponseBodyEmitter.DataWithMediaType> evento) {
+        try {
+            cliente.send(evento);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado o ya cerrado
+            return false;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.DonacionRegistradaDTO;
+import com.byron.cudeca.dto.DonacionRequestDTO;
+import com.byron.cudeca.model.AportacionSocio;
+import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.repository.AportacionSocioRepository;
+import com.byron.cudeca.repository.DonacionRepository;
+import com.byron.cudeca.repository.SocioRepository;
+import com.byron.cudeca.repository.UsuarioRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alta de donaciones preparada para picos de campaña (tipo maratón solidario).
+ *
+ * Escritura agrupada (group commit): cada petición deja su donación en una cola acotada
+ * y espera a su CompletableFuture. Un único hilo escritor saca todo lo que haya en la cola
+ * (hasta el tamaño de lote) y lo guarda en una sola transacción con inserts en batch JDBC:
+ * con mucha carga, cientos de donaciones comparten un commit; con poca, cada una se
+ * escribe en cuanto llega. Si la cola está llena se rechaza la petición en vez de
+ * acumular memoria. El hilo arranca cuando la aplicación está lista (ApplicationReadyEvent);
+ * lo que llegue antes espera en la cola.
+ *
+ * Totales de socio sin contención: la donación de un socio inserta una AportacionSocio
+ * en lugar de actualizar 'socio'. La consolidación periódica las suma a donacionTotal
+ * con un UPDATE por socio y las borra.
+ */
+@Service
+public class DonacionService {
+
+    private final DonacionRepository donacionRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final SocioRepository socioRepository;
+    private final AportacionSocioRepository aportacionSocioRepository;
+    private final EmisionCertificadosService emisionCertificadosService;
+    private final MarcadorDonacionesService marcadorDonacionesService;
+    private final TransactionTemplate transaccion;
+    private final Clock clock;
+    private final int tamanoLote;
+    private final int loteConsolidacion;
+
+    private final BlockingQueue<DonacionPendiente> cola;
+    private Thread escritor;
+    private volatile boolean activo = true;
+
+    @Autowired
+    public DonacionService(DonacionRepository donacionRepository,
+                           UsuarioRepository usuarioRepository,
+                           SocioRepository socioRepository,
+                           AportacionSocioRepository aportacionSocioRepository,
+                           EmisionCertificadosService emisionCertificadosService,
+                           MarcadorDonacionesService marcadorDonacionesService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${cudeca.donaciones.tamano-lote:200}") int tamanoLote,
+                           @Value("${cudeca.donaciones.capacidad-cola:10000}") int capacidadCola,
+                           @Value("${cudeca.donaciones.lote-consolidacion:5000}") int loteConsolidacion) {
+        this(donacionRepository, usuarioRepository, socioRepository, aportacionSocioRepository,
+                emisionCertificadosService, marcadorDonacionesService, transactionManager, tamanoLote, capacidadCola, loteConsolidacion,
+                Clock.systemDefaultZone());
+    }
+
+    public DonacionService(DonacionRepository donacionRepository,
+                           UsuarioRepository usuarioRepository,
+                           SocioRepository socioRepository,
+                           AportacionSocioRepository aportacionSocioRepository,
+                           EmisionCertificadosService emisionCertificadosService,
+                           MarcadorDonacionesService marcadorDonacionesService,
+                           PlatformTransactionManager transactionManager,
+                           int tamanoLote, int capacidadCola, int loteConsolidacion, Clock clock) {
+        if (tamanoLote < 1 || capacidadCola < 1 || loteConsolidacion < 1) {
+            throw new IllegalArgumentException("Lotes y capacidad de cola deben ser al menos 1.");
+        }
+        this.donacionRepository = donacionRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.socioRepository = socioRepository;
+        this.aportacionSocioRepository = aportacionSocioRepository;
+        this.emisionCertificadosService = emisionCertificadosService;
+        this.marcadorDonacionesService = marcadorDonacionesService;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.tamanoLote = tamanoLote;
+        this.loteConsolidacion = loteConsolidacion;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+    }
+
+    // ----------------------------------------------------------------------
+    // ALTA DE DONACIONES
+    // ----------------------------------------------------------------------
+
+    /**
+     * Registra una donación. Se completa cuando el lote que la contiene ha hecho commit.
+     * @throws IllegalArgumentException si faltan datos obligatorios.
+     * @throws IllegalStateException si la cola está llena (sistema saturado).
+     */
+    public CompletableFuture<DonacionRegistradaDTO> registrar(DonacionRequestDTO datos) {
+        validar(datos);
+        DonacionPendiente pendiente = new DonacionPendiente(datos, LocalDateTime.now(clock));
+        if (!activo || !cola.offer(pendiente)) {
+            throw new IllegalStateException("Hay demasiadas donaciones en curso. Inténtelo de nuevo en unos segundos.");
+        }
+        return pendiente.resultado;
+    }
+
+    /**
+     * Guarda un lote en una transacción. Si lo rechaza una restricción de la BD se reintenta
+     * donación a donación, para que una sola petición errónea (p. ej. un NIF que no existe)
+     * no tumbe a las demás. Cualquier otro fallo (BD caída, timeout) falla el lote entero:
+     * repetirlo una a una solo multiplicaría las transacciones contra una BD que no responde.
+     */
+    void escribirLote(List<DonacionPendiente> lote) {
+        List<Donacion> guardadas;
+        try {
+            guardadas = transaccion.execute(estado -> guardar(lote));
+        } catch (DataIntegrityViolationException e) {
+            if (lote.size() == 1) {
+                lote.get(0).resultado.completeExceptionally(e);
+                return;
+            }
+            for (DonacionPendiente pendiente : lote) {
+                escribirLote(List.of(pendiente));
+            }
+            return;
+        } catch (RuntimeException e) {
+            lote.forEach(pendiente -> pendiente.resultado.completeExceptionally(e));
+            return;
+        }
+        // Ya confirmadas: el marcador en vivo nunca muestra donaciones que luego se deshacen
+        marcadorDonacionesService.registrar(guardadas);
+        for (int i = 0; i < lote.size(); i++) {
+            Donacion donacion = guardadas.get(i);
+            lote.get(i).resultado.complete(
+                    new DonacionRegistradaDTO(donacion.getId(), donacion.getImporte(), donacion.getFecha()));
+        }
+    }
+
+    private List<Donacion> guardar(List<DonacionPendiente> lote) {
+        Set<String> nifs = new HashSet<>();
+        for (DonacionPendiente pendiente : lote) {
+            nifs.add(pendiente.datos.getUsuarioNif());
+        }
+        Set<String> socios = new HashSet<>(socioRepository.findNifsDeSocios(nifs));
+
+        List<Donacion> donaciones = new ArrayList<>(lote.size());
+        List<AportacionSocio> aportaciones = new ArrayList<>();
+        for (DonacionPendiente pendiente : lote) {
+            DonacionRequestDTO datos = pendiente.datos;
+            Donacion donacion = new Donacion();
+            // Solo la referencia para la FK: si el usuario no existe, falla el INSERT
+            donacion.setUsuario(usuarioRepository.getReferenceById(datos.getUsuarioNif()));
+            donacion.setImporte(datos.getImporte());
+            donacion.setCanalPago(datos.getCanalPago());
+            donacion.setFecha(pendiente.fecha);
+            donaciones.add(donacion);
+
+            if (socios.contains(datos.getUsuarioNif())) {
+                AportacionSocio aportacion = new AportacionSocio();
+                aportacion.setSocioNif(datos.getUsuarioNif());
+                aportacion.setImporte(datos.getImporte());
+                aportacion.setFecha(pendiente.fecha);
+                aportaciones.add(aportacion);
+            }
+        }
+        List<Donacion> guardadas = donacionRepository.saveAll(donaciones);
+        aportacionSocioRepository.saveAll(aportaciones);
+
+        for (int i = 0; i < lote.size(); i++) {
+            DonacionRequestDTO datos = lote.get(i).datos;
+            if (Boolean.TRUE.equals(datos.getQuiereCertificado())) {
+                emisionCertificadosService.solicitarParaDonacion(guardadas.get(i),
+                        datos.getNombreFiscal(), datos.getNifFiscal(), datos.getDireccion(),
+                        datos.getCodigoPostal(), datos.getPoblacion(), datos.getProvincia(), datos.getPais());
+            }
+        }
+        return guardadas;
+    }
+
+    // ----------------------------------------------------------------------
+    // TOTALES DE SOCIO
+    // ----------------------------------------------------------------------
+
+    /**
+     * Suma las aportaciones pendientes a Socio.donacionTotal (un UPDATE por socio del lote)
+     * y las borra, todo en la misma transacción.
+     * @return Número de aportaciones consolidadas.
+     */
+    @Scheduled(fixedDelayString = "${cudeca.donaciones.consolidacion-ms:5000}")
+    @Transactional
+    public int consolidarTotales() {
+        List<AportacionSocio> lote = aportacionSocioRepository.findLoteParaConsolidar(PageRequest.ofSize(loteConsolidacion));
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        // Céntimos por socio, acumulados en un long (sin boxing por aportación)
+        Map<String, long[]> porSocio = new HashMap<>();
+        List<Long> ids = new ArrayList<>(lote.size());
+        for (AportacionSocio aportacion : lote) {
+            porSocio.computeIfAbsent(aportacion.getSocioNif(), nif -> new long[1])[0] += aportacion.getImporte().centimos();
+            ids.add(aportacion.getId());
+        }
+        porSocio.forEach((nif, centimos) -> socioRepository.sumarDonacion(nif, centimos[0]));
+        socioRepository.incrementarVersiones(porSocio.keySet());
+        aportacionSocioRepository.borrar(ids);
+        return lote.size();
+    }
+
+    /**
+     * Total donado por un socio: lo consolidado más lo pendiente de consolidar.
+     */
+    @Transactional(readOnly = true)
+    public Importe obtenerDonacionTotal(String socioNif) {
+        Importe consolidado = socioRepository.findDonacionTotal(socioNif)
+                .orElseThrow(() -> new EntityNotFoundException("Socio no encontrado"));
+        Long pendiente = aportacionSocioRepository.sumarPendientes(socioNif);
+        return pendiente == null ? consolidado : consolidado.sumar(Importe.deCentimos(pendiente));
+    }
+
+    // ----------------------------------------------------------------------
+    // HILO ESCRITOR
+    // ----------------------------------------------------------------------
+
+    /**
+     * Arranca el hilo escritor cuando la aplicación ya está lista, no al construir el bean:
+     * así no escribe en la BD mientras el contexto aún se está levantando.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void arrancar() {
+        if (escritor != null || !activo) {
+            return;
+        }
+        escritor = new Thread(this::escribirMientrasActivo, "escritor-donaciones");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Al parar, deja de aceptar donaciones y espera a que se escriba lo que ya está en cola.
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        Thread hilo;
+        synchronized (this) {
+            activo = false;
+            hilo = escritor;
+        }
+        if (hilo != null) {
+            hilo.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void escribirMientrasActivo() {
+        List<DonacionPendiente> lote = new ArrayList<>(tamanoLote);
+        while (activo || !cola.isEmpty()) {
+            try {
+                DonacionPendiente primera = cola.poll(200, TimeUnit.MILLISECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                lote.add(primera);
+                cola.drainTo(lote, tamanoLote - 1);
+                escribirLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // escribirLote ya ha respondido a cada petición; el hilo sigue vivo
+                lote.forEach(pendiente -> pendiente.resultado.completeExceptionally(e));
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private static void validar(DonacionRequestDTO datos) {
+        if (datos.getUsuarioNif() == null || datos.getUsuarioNif().isBlank()) {
+            throw new IllegalArgumentException("El NIF de usuario es obligatorio.");
+        }
+        if (datos.getImporte() == null || !datos.getImporte().esPositivo()) {
+            throw new IllegalArgumentException("El importe debe ser mayor que cero.");
+        }
+        if (datos.getCanalPago() == null) {
+            throw new IllegalArgumentException("El método de pago es obligatorio.");
+        }
+        if (Boolean.TRUE.equals(datos.getQuiereCertificado())
+                && (datos.getDireccion() == null || datos.getCodigoPostal() == null || datos.getPoblacion() == null)) {
+            throw new IllegalArgumentException("Faltan datos fiscales obligatorios para el certificado.");
+        }
+    }
+
+    static final class DonacionPendiente {
+        private final DonacionRequestDTO datos;
+        private final LocalDateTime fecha;
+        private final CompletableFuture<DonacionRegistradaDTO> resultado = new CompletableFuture<>();
+
+        DonacionPendiente(DonacionRequestDTO datos, LocalDateTime fecha) {
+            this.datos = datos;
+            this.fecha = fecha;
+        }
+
+        CompletableFuture<DonacionRegistradaDTO> resultado() {
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.EstadoSolicitud;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Pedido;
+import com.byron.cudeca.model.SolicitudCertificado;
+import com.byron.cudeca.model.Usuario;
+import com.byron.cudeca.repository.CertificadoDonacionRepository;
+import com.byron.cudeca.repository.SolicitudCertificadoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emisión asíncrona de certificados de donación (outbox + pool de workers).
+ * La compra o la donación solo guarda una SolicitudCertificado en su transacción; al hacer
+ * commit se pasa al pool, que emite el certificado en una transacción propia. Así la
+ * emisión (y el PDF, si se añade) no alarga el checkout ni los bloqueos sobre 'evento'.
+ *
+ * - Idempotente: una solicitud por pedido o donación, y antes de emitir se comprueba con
+ *   findByPedido / findByDonacion que el certificado no exista ya. Si dos workers lo emiten a
+ *   la vez, las restricciones únicas de certificadoDonacion rechazan el segundo, que se repite
+ *   y lo encuentra ya emitido.
+ * - Reintentos: si la emisión falla se reprograma con espera exponencial; tras el máximo
+ *   de intentos queda FALLIDA para revisarla a mano.
+ * - Contrapresión: el pool tiene una cola acotada. Lo que no cabe se queda en la tabla y lo
+ *   recoge el barrido periódico cuando hay sitio; la compra nunca espera al pool.
+ */
+@Service
+public class EmisionCertificadosService {
+
+    // Tiempo que un worker tiene reservada una solicitud antes de que otro pueda cogerla
+    static final Duration PLAZO_TRABAJO = Duration.ofMinutes(5);
+    private static final Duration ESPERA_MAXIMA = Duration.ofHours(6);
+    private static final int LONGITUD_ERROR = 500;
+
+    private final SolicitudCertificadoRepository solicitudRepository;
+    private final CertificadoDonacionRepository certificadoDonacionRepository;
+    private final CertificadoDonacionService certificadoDonacionService;
+    private final TransactionTemplate transaccion;
+    private final Clock clock;
+    private final int maxIntentos;
+    private final Duration esperaReintento;
+    private final MeterRegistry meterRegistry;
+
+    private final ThreadPoolExecutor workers;
+    // Solicitudes ya entregadas al pool en esta instancia (para no encolarlas dos veces)
+    private final Set<Long> enCurso = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public EmisionCertificadosService(SolicitudCertificadoRepository solicitudRepository,
+                                      CertificadoDonacionRepository certificadoDonacionRepository,
+                                      CertificadoDonacionService certificadoDonacionService,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${cudeca.certificados.hilos-emision:2}") int hilos,
+                                      @Value("${cudeca.certificados.capacidad-cola:200}") int capacidadCola,
+                                      @Value("${cudeca.certificados.max-intentos:6}") int maxIntentos,
+                                      @Value("${cudeca.certificados.segundos-reintento:30}") long segundosReintento,
+                                      MeterRegistry meterRegistry) {
+        this(solicitudRepository, certificadoDonacionRepository, certificadoDonacionService, transactionManager,
+                hilos, capacidadCola, maxIntentos, Duration.ofSeconds(segundosReintento), Clock.systemDefaultZone(),
+                meterRegistry);
+    }
+
+    public EmisionCertificadosService(SolicitudCertificadoRepository solicitudRepository,
+                                      CertificadoDonacionRepository certificadoDonacionRepository,
+                                      CertificadoDonacionService certificadoDonacionService,
+                                      PlatformTransactionManager transactionManager,
+                                      int hilos, int capacidadCola, int maxIntentos,
+                                      Duration esperaReintento, Clock clock, MeterRegistry meterRegistry) {
+        if (hilos < 1 || capacidadCola < 1 || maxIntentos < 1) {
+            throw new IllegalArgumentException("Hilos, capacidad de cola e intentos deben ser al menos 1.");
+        }
+        this.solicitudRepository = solicitudRepository;
+        this.certificadoDonacionRepository = certificadoDonacionRepository;
+        this.certificadoDonacionService = certificadoDonacionService;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.maxIntentos = maxIntentos;
+        this.esperaReintento = esperaReintento;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger numero = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "emision-certificados-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("cudeca.certificados.cola", workers, pool -> pool.getQueue().size())
+                .description("Solicitudes de certificado esperando a un worker")
+                .register(meterRegistry);
+    }
+
+    // ----------------------------------------------------------------------
+    // ENCOLADO (dentro de la transacción de la compra / donación)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Pide el certificado de un pedido. Si ya se había pedido no hace nada.
+     * Se entrega al pool cuando la transacción que llama hace commit.
+     */
+    @Transactional
+    public void solicitarParaPedido(Pedido pedido, String nombreFiscal, String nifFiscal,
+                                    String direccion, String codigoPostal, String poblacion,
+                                    String provincia, String pais) {
+        if (solicitudRepository.existsByPedido(pedido)) {
+            return;
+        }
+        SolicitudCertificado solicitud = nuevaSolicitud(pedido.getImporteTotal(), nombreFiscal, nifFiscal,
+                direccion, codigoPostal, poblacion, provincia, pais);
+        solicitud.setPedido(pedido);
+        encolar(solicitudRepository.save(solicitud));
+    }
+
+    /**
+     * Pide el certificado de una donación. Si ya se había pedido no hace nada.
+     */
+    @Transactional
+    public void solicitarParaDonacion(Donacion donacion, String nombreFiscal, String nifFiscal,
+                                      String direccion, String codigoPostal, String poblacion,
+                                      String provincia, String pais) {
+        if (solicitudRepository.existsByDonacion(donacion)) {
+            return;
+        }
+        SolicitudCertificado solicitud = nuevaSolicitud(donacion.getImporte(), nombreFiscal, nifFiscal,
+                direccion, codigoPostal, poblacion, provincia, pais);
+        solicitud.setDonacion(donacion);
+        encolar(solicitudRepository.save(solicitud));
+    }
+
+    // ----------------------------------------------------------------------
+    // WORKERS
+    // ----------------------------------------------------------------------
+
+    /**
+     * Barrido periódico: entrega al pool las solicitudes listas (nuevas que no cupieron,
+     * reintentos vencidos o abandonadas por un worker caído), solo tantas como quepan.
+     * @return Número de solicitudes entregadas.
+     */
+    @Scheduled(fixedDelayString = "${cudeca.certificados.barrido-ms:2000}")
+    public int procesarPendientes() {
+        int hueco = workers.getQueue().remainingCapacity();
+        if (hueco == 0) {
+            return 0;
+        }
+        List<Long> listas = solicitudRepository.findIdsListas(EstadoSolicitud.PENDIENTE,
+                LocalDateTime.now(clock), PageRequest.ofSize(hueco));
+        int entregadas = 0;
+        for (Long id : listas) {
+            if (lanzar(id)) {
+                entregadas++;
+            }
+        }
+        return entregadas;
+    }
+
+    /**
+     * Procesa una solicitud: la reclama, emite el certificado si no existe y la marca como
+     * EMITIDA; si falla, programa el siguiente intento. Cada paso en su propia transacción.
+     */
+    void procesar(Long id) {
+        LocalDateTime ahora = LocalDateTime.now(clock);
+        Boolean reclamada = transaccion.execute(estado ->
+                solicitudRepository.reclamar(id, EstadoSolicitud.PENDIENTE, ahora, ahora.plus(PLAZO_TRABAJO)) == 1);
+        if (!Boolean.TRUE.equals(reclamada)) {
+            return;
+        }
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        String resultado = "emitido";
+        try {
+            emitirEnTransaccion(id);
+        } catch (RuntimeException e) {
+            resultado = "fallido";
+            transaccion.executeWithoutResult(estado -> registrarFallo(id, e));
+        } finally {
+            muestra.stop(Timer.builder("cudeca.certificados.emision")
+                    .description("Emisión de un certificado por el pool (transacción incluida)")
+                    .tag("resultado", resultado)
+                    .register(meterRegistry));
+        }
+    }
+
+    int enCola() {
+        return workers.getQueue().size();
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        // Lo que quede en la cola sigue PENDIENTE en la tabla: lo recoge el siguiente arranque
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Emite en una transacción; si choca con una restricción única la transacción se ha deshecho
+     * entera y se repite una vez al momento. Si otro worker ya emitió el certificado de ese pedido
+     * o donación, la repetición lo encuentra y solo marca la solicitud como EMITIDA; si lo que
+     * creó a la vez fue la fila de TotalDonanteAnual, la repetición suma sobre ella.
+     */
+    private void emitirEnTransaccion(Long id) {
+        try {
+            transaccion.executeWithoutResult(estado -> emitir(id));
+        } catch (DataIntegrityViolationException carrera) {
+            transaccion.executeWithoutResult(estado -> emitir(id));
+        }
+    }
+
+    private void emitir(Long id) {
+        SolicitudCertificado solicitud = solicitudRepository.findById(id).orElse(null);
+        if (solicitud == null || solicitud.getEstado() != EstadoSolicitud.PENDIENTE) {
+            return;
+        }
+        Pedido pedido = solicitud.getPedido();
+        Donacion donacion = solicitud.getDonacion();
+        boolean yaEmitido = pedido != null
+                ? certificadoDonacionRepository.findByPedido(pedido).isPresent()
+                : certificadoDonacionRepository.findByDonacion(donacion).isPresent();
+
+        if (!yaEmitido) {
+            Usuario usuario = pedido != null ? pedido.getUsuario() : donacion.getUsuario();
+            certificadoDonacionService.generarCertificado(
+                    usuario,
+                    solicitud.getImporte(),
+                    pedido,
+                    donacion,
+                    solicitud.getNombreFiscal(),
+                    solicitud.getNifFiscal(),
+                    solicitud.getDireccion(),
+                    solicitud.getCodigoPostal(),
+                    solicitud.getPoblacion(),
+                    solicitud.getProvincia(),
+                    solicitud.getPais());
+        }
+        solicitud.setEstado(EstadoSolicitud.EMITIDA);
+        solicitud.setUltimoError(null);
+    }
+
+    private void registrarFallo(Long id, RuntimeException error) {
+        solicitudRepository.findById(id).ifPresent(solicitud -> {
+            int intentos = solicitud.getIntentos() + 1;
+            solicitud.setIntentos(intentos);
+            solicitud.setUltimoError(resumir(error));
+            if (intentos >= maxIntentos) {
+                solicitud.setEstado(EstadoSolicitud.FALLIDA);
+            } else {
+                solicitud.setProximoIntento(LocalDateTime.now(clock).plus(espera(intentos)));
+            }
+        });
+    }
+
+    /**
+     * Espera exponencial: base, 2 x base, 4 x base... hasta un máximo de 6 horas.
+     */
+    Duration espera(int intentos) {
+        Duration espera = esperaReintento.multipliedBy(1L << Math.min(intentos - 1, 20));
+        return espera.compareTo(ESPERA_MAXIMA) > 0 ? ESPERA_MAXIMA : espera;
+    }
+
+    private SolicitudCertificado nuevaSolicitud(Importe importe, String nombreFiscal, String nifFiscal,
+                                                String direccion, String codigoPostal, String poblacion,
+                                                String provincia, String pais) {
+        SolicitudCertificado solicitud = new SolicitudCertificado();
+        solicitud.setImporte(importe);
+        solicitud.setNombreFiscal(nombreFiscal);
+        solicitud.setNifFiscal(nifFiscal);
+        solicitud.setDireccion(direccion);
+        solicitud.setCodigoPostal(codigoPostal);
+        solicitud.setPoblacion(poblacion);
+        solicitud.setProvincia(provincia);
+        solicitud.setPais(pais);
+        solicitud.setEstado(EstadoSolicitud.PENDIENTE);
+        solicitud.setIntentos(0);
+        LocalDateTime ahora = LocalDateTime.now(clock);
+        solicitud.setFechaCreacion(ahora);
+        solicitud.setProximoIntento(ahora);
+        return solicitud;
+    }
+
+    /**
+     * Entrega la solicitud al pool cuando la transacción actual confirma (o ya, si no hay).
+     * Si la transacción hace rollback la solicitud no existe y no hay nada que emitir.
+     */
+    private void encolar(SolicitudCertificado solicitud) {
+        Long id = solicitud.getId();
+        Transacciones.alConfirmar(() -> lanzar(id));
+    }
+
+    private boolean lanzar(Long id) {
+        if (!enCurso.add(id)) {
+            return false;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    procesar(id);
+                } finally {
+                    enCurso.remove(id);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException colaLlena) {
+            // Sigue PENDIENTE en la tabla: la recogerá el barrido cuando haya sitio
+            enCurso.remove(id);
+            return false;
+        }
+    }
+
+    private static String resumir(RuntimeException error) {
+        String mensaje = error.getClass().getSimpleName() + ": " + error.getMessage();
+        return mensaje.length() > LONGITUD_ERROR ? mensaje.substring(0, LONGITUD_ERROR) : mensaje;
+    }
+}
@@ -1,32 +1,82 @@
 package com.byron.cudeca.service;
 
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
 import com.byron.cudeca.model.*;
+import com.byron.cudeca.repository.AdministradorRepository;
 import com.byron.cudeca.repository.EventoRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class EventoService {
+    private static final Duration DURACION_CATALOGO_POR_DEFECTO = Duration.ofSeconds(30);
+    private static final int TAMANO_MAXIMO_PAGINA = 100;
+    // Criterio de ordenación (en minúsculas, como llega en sortBy) -> propiedad de Evento
+    private static final Map<String, String> PROPIEDADES_ORDEN = Map.of(
+            "fecha", "fecha",
+            "nombre", "nombre",
+            "tipoevento", "tipoEvento",
+            "ubicacion", "ubicacion",
+            "stock", "stock");
+
     private final EventoRepository eventoRepository;
+    private final AdministradorRepository administradorRepository;
+    private final ReintentosOptimistas reintentos;
+    // Transacción de cada intento de las escrituras con reintento (eliminarEvento)
+    private final TransactionOperations transaccion;
     private final Clock clock;
+    private final Duration duracionCatalogo;
+
+    // Cartelera cacheada; null = hay que reconstruirla
+    private volatile CatalogoEventos catalogo;
+    // Se incrementa en cada invalidación para no publicar una foto leída antes de un cambio
+    private final AtomicLong versionCatalogo = new AtomicLong();
+    // Índice de búsqueda por texto sobre los eventos de la cartelera
+    private final IndiceEventos indiceBusqueda = new IndiceEventos();
 
     @Autowired
-    public EventoService(EventoRepository eventoRepository) {
-        this(eventoRepository, Clock.systemDefaultZone());
+    public EventoService(EventoRepository eventoRepository,
+                         AdministradorRepository administradorRepository,
+                         ReintentosOptimistas reintentos,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${cudeca.eventos.segundos-cache-catalogo:30}") long segundosCacheCatalogo) {
+        this(eventoRepository, administradorRepository, reintentos, new TransactionTemplate(transactionManager),
+                Clock.systemDefaultZone(), Duration.ofSeconds(segundosCacheCatalogo));
     }
 
-    public EventoService(EventoRepository eventoRepository, Clock clock) {
+    public EventoService(EventoRepository eventoRepository, AdministradorRepository administradorRepository,
+                         ReintentosOptimistas reintentos, TransactionOperations transaccion, Clock clock) {
+        this(eventoRepository, administradorRepository, reintentos, transaccion, clock, DURACION_CATALOGO_POR_DEFECTO);
+    }
+
+    public EventoService(EventoRepository eventoRepository, AdministradorRepository administradorRepository,
+                         ReintentosOptimistas reintentos, TransactionOperations transaccion, Clock clock,
+                         Duration duracionCatalogo) {
         this.eventoRepository = eventoRepository;
+        this.administradorRepository = administradorRepository;
+        this.reintentos = reintentos;
+        this.transaccion = transaccion;
         this.clock = clock;
+        this.duracionCatalogo = duracionCatalogo;
     }
 
     // ----------------------------------------------------------------------
@@ -34,46 +84,85 @@ public class EventoService {
     // ----------------------------------------------------------------------
 
     /**
-     * Obtiene la cartelera de eventos próximos.
-     * Usa el método personalizado del repositorio para filtrar pasados.
+     * Obtiene la cartelera de eventos próximos, ordenada por fecha.
+     * Se sirve desde la cartelera cacheada.
      */
-    public List<Evento> obtenerEventosFuturos() {
-        // Pasamos la fecha de "hoy" para que busque a partir de ahora
-        return eventoRepository.findByFechaAfterOrderByFechaAsc(LocalDate.now(clock));
+    public List<EventoResumenDTO> obtenerEventosFuturos() {
+        return obtenerCatalogo().ordenadosPor("fecha", "asc");
     }
 
     /**
-     * Busca eventos por nombre.
+     * Busca eventos futuros por nombre.
      * Útil para la barra de búsqueda del frontend.
      */
-    public List<Evento> buscarEventos(String palabraClave) {
-        if (palabraClave == null || palabraClave.isBlank()) {
-            return obtenerEventosFuturos(); // Si no escriben nada, devolvemos la lista normal
-        }
-        LocalDate hoy = LocalDate.now(clock);
-        return eventoRepository.findByNombreContainingIgnoreCase(palabraClave).stream()
-                .filter(evento -> evento.getFecha() == null || !evento.getFecha().toLocalDate().isBefore(hoy))
-                .sorted(Comparator.comparing(Evento::getFecha, Comparator.nullsLast(LocalDateTime::compareTo)))
-                .collect(Collectors.toList());
+    public List<EventoResumenDTO> buscarEventos(String palabraClave) {
+        return obtenerEventosConFiltros(palabraClave, "fecha", "asc");
     }
 
     /**
-     * Obtiene TODOS los eventos (incluidos los pasados).
-     * Útil para el panel de administración (histórico).
+     * Obtiene TODOS los eventos (incluidos los pasados), sin límite.
+     * Para el panel de administración usar obtenerEventosPaginados u obtenerEventosDesde.
      */
     public List<Evento> obtenerTodosLosEventos() {
         return eventoRepository.findAll();
     }
 
     /**
-     * Obtiene un evento por su ID.
-     * Necesario para la página de "Detalles del Evento".
+     * Obtiene una página del histórico completo (incluidos los pasados).
+     * Filtro, orden y paginación se hacen en SQL (LIMIT/OFFSET sobre los índices de 'evento').
+     * @param pagina Número de página, empezando en 0.
+     * @param tamano Tamaño de página (máximo 100).
+     * @param sortBy Criterio de ordenación; uno desconocido cae en fecha.
+     * @param sortDir "asc" o "desc".
+     */
+    @Transactional(readOnly = true)
+    public Page<EventoResumenDTO> obtenerEventosPaginados(int pagina, int tamano, String sortBy, String sortDir) {
+        if (pagina < 0) {
+            throw new IllegalArgumentException("El número de página no puede ser negativo.");
+        }
+        String propiedad = PROPIEDADES_ORDEN.get(CatalogoEventos.normalizarCriterio(sortBy));
+        Sort.Direction direccion = "desc".equalsIgnoreCase(sortDir) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        // El id como desempate hace el orden total: ninguna fila se repite ni se salta entre páginas
+        Sort orden = Sort.by(direccion, propiedad).and(Sort.by(direccion, "id"));
+        return eventoRepository.findResumenes(PageRequest.of(pagina, validarTamano(tamano), orden));
+    }
+
+    /**
+     * Recorre el histórico completo por fecha con paginación keyset.
+     * Para la primera página no se pasa cursor; para las siguientes, la fecha y el ID del
+     * último evento recibido. Es la opción para recorrer decenas de miles de eventos:
+     * cada página cuesta lo mismo, sin OFFSET ni COUNT.
+     */
+    @Transactional(readOnly = true)
+    public List<EventoResumenDTO> obtenerEventosDesde(LocalDateTime despuesDeFecha, Long despuesDeId, int tamano) {
+        PageRequest limite = PageRequest.ofSize(validarTamano(tamano));
+        if (despuesDeFecha == null && despuesDeId == null) {
+            return eventoRepository.findPrimerosPorFecha(limite);
+        }
+        if (despuesDeFecha == null || despuesDeId == null) {
+            throw new IllegalArgumentException("El cursor necesita la fecha y el ID del último evento.");
+        }
+        return eventoRepository.findSiguientesPorFecha(despuesDeFecha, despuesDeId, limite);
+    }
+
+    /**
+     * Obtiene un evento por su ID (entidad completa, para uso interno).
      */
     public Evento obtenerEventoPorId(Long id) {
         return eventoRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Evento no encontrado con ID: " + id));
     }
 
+    /**
+     * Obtiene el detalle de un evento como proyección.
+     * Necesario para la página de "Detalles del Evento".
+     */
+    @Transactional(readOnly = true)
+    public EventoDetalleDTO obtenerDetalleEvento(Long id) {
+        return eventoRepository.findDetalleById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Evento no encontrado con ID: " + id));
+    }
+
     // ----------------------------------------------------------------------
     // MÉTODOS DE ESCRITURA (ADMINISTRACIÓN)
     // ----------------------------------------------------------------------
@@ -81,46 +170,68 @@ public class EventoService {
     /**
      * Obtiene eventos aplicando filtros opcionales de palabra clave y ordenación.
      * Este método se usa para la home pública, por lo que siempre descarta eventos pasados.
+     * Sin palabra clave se devuelve la lista ya ordenada de la cartelera cacheada; con ella,
+     * el índice de búsqueda (nombre, descripción, tipo y ubicación, por prefijo y sin tildes)
+     * da los IDs y solo se ordenan las coincidencias. En ningún caso se consulta la BD
+     * mientras la cartelera esté vigente.
      */
-    public List<Evento> obtenerEventosConFiltros(String palabraClave, String sortBy, String sortDir) {
-        LocalDate hoy = LocalDate.now(clock);
-        List<Evento> eventos = (palabraClave == null || palabraClave.isBlank())
-                ? eventoRepository.findByFechaAfterOrderByFechaAsc(hoy)
-                : eventoRepository.findByNombreContainingIgnoreCase(palabraClave).stream()
-                    .filter(evento -> evento.getFecha() == null || !evento.getFecha().toLocalDate().isBefore(hoy))
-                    .collect(Collectors.toList());
-
-        Comparator<Evento> comparator = construirComparador(sortBy, sortDir);
-        return eventos.stream()
-                .sorted(comparator)
-                .collect(Collectors.toList());
+    public List<EventoResumenDTO> obtenerEventosConFiltros(String palabraClave, String sortBy, String sortDir) {
+        CatalogoEventos actual = obtenerCatalogo();
+        if (palabraClave == null || palabraClave.isBlank()) {
+            return actual.ordenadosPor(sortBy, sortDir);
+        }
+        return actual.seleccionar(indiceBusqueda.buscar(palabraClave), sortBy, sortDir);
     }
 
     /**
-     * Guarda un nuevo evento en la base de datos.
+     * Guarda un nuevo evento en la base de datos, ligado a su administrador (que debe existir).
+     * El evento llega del JSON con un administrador desligado y sin versión, que Hibernate
+     * tomaría por uno nuevo: se sustituye por el de la BD.
      */
     @Transactional
     public Evento crearEvento(Evento evento) {
         validarEvento(evento);
-        return eventoRepository.save(evento);
+        evento.setAdministrador(administradorRepository.findById(evento.getAdministrador().getNif())
+                .orElseThrow(() -> new IllegalArgumentException("El administrador del evento no existe.")));
+        Evento guardado = eventoRepository.save(evento);
+        // Tras el commit, para que nadie reconstruya la cartelera con datos aún sin confirmar
+        Transacciones.alConfirmar(() -> {
+            indiceBusqueda.indexar(EventoDetalleDTO.desde(guardado));
+            invalidarCatalogo();
+        });
+        return guardado;
     }
 
     /**
      * Elimina un evento por ID.
+     * El DELETE comprueba la versión al confirmar: cada intento lee y borra en su propia
+     * transacción y, si entretanto se han vendido o validado entradas del evento, se repite
+     * en una transacción nueva con el evento recién leído.
      */
-    @Transactional
     public void eliminarEvento(Long id) {
-        if (!eventoRepository.existsById(id)) {
-            throw new EntityNotFoundException("Evento no encontrado.");
-        }
-        eventoRepository.deleteById(id);
+        reintentos.ejecutar("Evento", "eliminarEvento", transaccion, () -> {
+            if (!eventoRepository.existsById(id)) {
+                throw new EntityNotFoundException("Evento no encontrado.");
+            }
+            eventoRepository.deleteById(id);
+            Transacciones.alConfirmar(() -> {
+                indiceBusqueda.eliminar(id);
+                invalidarCatalogo();
+            });
+        });
     }
 
-    @Transactional
     public void borrarEvento(Long id) {
         eliminarEvento(id);
     }
 
+    private static int validarTamano(int tamano) {
+        if (tamano < 1) {
+            throw new IllegalArgumentException("El tamaño de página debe ser al menos 1.");
+        }
+        return Math.min(tamano, TAMANO_MAXIMO_PAGINA);
+    }
+
     private void validarEvento(Evento evento) {
         if (evento == null) {
             throw new IllegalArgumentException("El evento no puede ser nulo.");
@@ -148,32 +259,42 @@ public class EventoService {
         }
     }
 
-    private Comparator<Evento> construirComparador(String sortBy, String sortDir) {
-        String criterio = (sortBy == null || sortBy.isBlank()) ? "fecha" : sortBy.toLowerCase();
-        Comparator<Evento> comparator;
-
-        switch (criterio) {
-            case "nombre":
-                comparator = Comparator.comparing(Evento::getNombre, Comparator.nullsLast(String::compareToIgnoreCase));
-                break;
-            case "tipoevento":
-                comparator = Comparator.comparing(Evento::getTipoEvento, Comparator.nullsLast(String::compareToIgnoreCase));
-                break;
-            case "ubicacion":
-                comparator = Comparator.comparing(Evento::getUbicacion, Comparator.nullsLast(String::compareToIgnoreCase));
-                break;
-            case "stock":
-                comparator = Comparator.comparing(Evento::getStock, Comparator.nullsLast(Integer::compareTo));
-                break;
-            default:
-                comparator = Comparator.comparing(Evento::getFecha, Comparator.nullsLast(LocalDateTime::compareTo));
-                break;
-        }
+    // ----------------------------------------------------------------------
+    // CARTELERA CACHEADA
+    // ----------------------------------------------------------------------
 
-        if ("desc".equalsIgnoreCase(sortDir)) {
-            comparator = comparator.reversed();
+    /**
+     * Devuelve la cartelera vigente, reconstruyéndola (una sola consulta y un sort por
+     * criterio) si ha caducado, si ha cambiado el día o si se ha invalidado.
+     * Solo un hilo reconstruye; el resto espera y reutiliza su resultado.
+     */
+    private CatalogoEventos obtenerCatalogo() {
+        CatalogoEventos actual = catalogo;
+        if (actual != null && actual.vigente(LocalDate.now(clock), clock.instant())) {
+            return actual;
         }
+        synchronized (this) {
+            LocalDate hoy = LocalDate.now(clock);
+            Instant ahora = clock.instant();
+            actual = catalogo;
+            if (actual != null && actual.vigente(hoy, ahora)) {
+                return actual;
+            }
+            long version = versionCatalogo.get();
+            CatalogoEventos nuevo = new CatalogoEventos(
+                    eventoRepository.findDetallesDesde(hoy.atStartOfDay()), hoy, ahora.plus(duracionCatalogo));
+            // Si alguien ha invalidado mientras leíamos, esta foto ya nace vieja: no se publica
+            if (versionCatalogo.get() == version) {
+                catalogo = nuevo;
+                // Solo se reindexan los eventos nuevos o modificados
+                indiceBusqueda.sincronizar(nuevo.detalles());
+            }
+            return nuevo;
+        }
+    }
 
-        return comparator.thenComparing(Evento::getId, Comparator.nullsLast(Long::compareTo));
+    private void invalidarCatalogo() {
+        versionCatalogo.incrementAndGet();
+        catalogo = null;
     }
 }
@@ -0,0 +1,287 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.DeclaradoModelo182DTO;
+import com.byron.cudeca.model.Importe;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.Iterator;
+
+/**
+ * Fichero del Modelo 182 (declaración informativa de donativos) en el formato de longitud
+ * fija de la AEAT: registros de 250 caracteres en ISO-8859-1, terminados en CRLF.
+ *
+ * Registro tipo 1 (declarante, uno por fichero) y tipo 2 (declarado, uno por NIF y
+ * porcentaje de deducción). Alfanuméricos en mayúsculas, alineados a la izquierda y
+ * rellenos de blancos; numéricos alineados a la derecha y rellenos de ceros; importes
+ * sin separador decimal (los dos últimos dígitos son los céntimos).
+ *
+ * El tipo 1 lleva el número de registros y el importe total, que solo se conocen al final:
+ * los tipo 2 se escriben primero a un fichero temporal y después se copian detrás de la
+ * cabecera. Así la memoria usada no depende del número de donantes.
+ *
+ * El número de justificante (13 dígitos) es "182", el ejercicio y una secuencia de 6 dígitos
+ * que el llamante reserva para cada fichero generado (ver DeclaracionModelo182).
+ */
+public final class FicheroModelo182 {
+
+    static final int LONGITUD_REGISTRO = 250;
+    private static final String FIN_REGISTRO = "\r\n";
+
+    // Personas físicas: 80 % hasta 250 €, el resto al 40 % (45 % si es recurrente)
+    static final BigDecimal TRAMO_FISICAS = new BigDecimal("250.00");
+    private static final String PORCENTAJE_TRAMO_FISICAS = "08000";
+    private static final String PORCENTAJE_RESTO_FISICAS = "04000";
+    private static final String PORCENTAJE_RESTO_FISICAS_RECURRENTE = "04500";
+    // Personas jurídicas: 40 % (50 % si es recurrente)
+    private static final String PORCENTAJE_JURIDICAS = "04000";
+    private static final String PORCENTAJE_JURIDICAS_RECURRENTE = "05000";
+    static final long SECUENCIA_MAXIMA = 999_999;
+
+    private final int ejercicio;
+    private final long secuencia;
+    private final String nifDeclarante;
+    private final String razonSocial;
+    private final String telefono;
+    private final String personaContacto;
+
+    public FicheroModelo182(int ejercicio, long secuencia, String nifDeclarante, String razonSocial,
+                            String telefono, String personaContacto) {
+        comprobarEjercicio(ejercicio);
+        comprobarDeclarante(nifDeclarante, razonSocial);
+        if (secuencia < 1 || secuencia > SECUENCIA_MAXIMA) {
+            throw new IllegalArgumentException("Secuencia de justificante fuera de rango: " + secuencia);
+        }
+        this.ejercicio = ejercicio;
+        this.secuencia = secuencia;
+        this.nifDeclarante = nifDeclarante;
+        this.razonSocial = razonSocial;
+        this.telefono = telefono;
+        this.personaContacto = personaContacto;
+    }
+
+    /**
+     * Comprueba que el ejercicio es un año de cuatro cifras.
+     */
+    public static void comprobarEjercicio(int ejercicio) {
+        if (ejercicio < 2000 || ejercicio > 9999) {
+            throw new IllegalArgumentException("Ejercicio fiscal no válido: " + ejercicio);
+        }
+    }
+
+    /**
+     * Comprueba que la entidad declarante está configurada (NIF y denominación).
+     */
+    public static void comprobarDeclarante(String nifDeclarante, String razonSocial) {
+        if (nifDeclarante == null || nifDeclarante.isBlank()) {
+            throw new IllegalStateException("Falta el NIF de la entidad declarante del Modelo 182.");
+        }
+        if (razonSocial == null || razonSocial.isBlank()) {
+            throw new IllegalStateException("Falta la denominación de la entidad declarante del Modelo 182.");
+        }
+    }
+
+    /**
+     * Número de justificante: "182", el ejercicio y la secuencia con 6 dígitos.
+     */
+    public static String numeroJustificante(int ejercicio, long secuencia) {
+        StringBuilder r = new StringBuilder(13).append("182");
+        numerico(r, ejercicio, 4);
+        numerico(r, secuencia, 6);
+        return r.toString();
+    }
+
+    /**
+     * Escribe el fichero completo. Los declarados se consumen una sola vez, en orden.
+     */
+    public void escribir(Iterator<DeclaradoModelo182DTO> declarados, OutputStream destino) throws IOException {
+        Path temporal = Files.createTempFile("modelo182-", ".txt");
+        try {
+            long registros = 0;
+            long totalCentimos = 0;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(temporal), StandardCharsets.ISO_8859_1))) {
+                while (declarados.hasNext()) {
+                    DeclaradoModelo182DTO declarado = declarados.next();
+                    long centimos = aCentimos(declarado.getImporteTotal());
+                    if (centimos <= 0) {
+                        continue;
+                    }
+                    totalCentimos += centimos;
+                    boolean recurrente = esRecurrente(declarado);
+                    if (esPersonaJuridica(declarado.getNif())) {
+                        out.write(registroDeclarado(declarado,
+                                recurrente ? PORCENTAJE_JURIDICAS_RECURRENTE : PORCENTAJE_JURIDICAS,
+                                centimos, 'J', recurrente));
+                        registros++;
+                    } else {
+                        long tramo = Math.min(centimos, TRAMO_FISICAS.movePointRight(2).longValueExact());
+                        out.write(registroDeclarado(declarado, PORCENTAJE_TRAMO_FISICAS, tramo, 'F', recurrente));
+                        registros++;
+                        if (centimos > tramo) {
+                            out.write(registroDeclarado(declarado,
+                                    recurrente ? PORCENTAJE_RESTO_FISICAS_RECURRENTE : PORCENTAJE_RESTO_FISICAS,
+                                    centimos - tramo, 'F', recurrente));
+                            registros++;
+                        }
+                    }
+                }
+            }
+
+            Writer out = new OutputStreamWriter(destino, StandardCharsets.ISO_8859_1);
+            out.write(registroDeclarante(registros, totalCentimos));
+            out.flush();
+            Files.copy(temporal, destino);
+            destino.flush();
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // REGISTROS
+    // ----------------------------------------------------------------------
+
+    String registroDeclarante(long registros, long totalCentimos) {
+        StringBuilder r = new StringBuilder(LONGITUD_REGISTRO + 2);
+        r.append('1');                                          // 1      Tipo de registro
+        r.append("182");                                        // 2-4    Modelo
+        numerico(r, ejercicio, 4);                              // 5-8    Ejercicio
+        alfanumerico(r, nifDeclarante, 9);                      // 9-17   NIF declarante
+        alfanumerico(r, razonSocial, 40);                       // 18-57  Denominación
+        r.append('T');                                          // 58     Soporte: telemático
+        alfanumerico(r, telefono, 9);                           // 59-67  Teléfono de contacto
+        alfanumerico(r, personaContacto, 40);                   // 68-107 Persona de contacto
+        r.append(numeroJustificante(ejercicio, secuencia));     // 108-120 Nº identificativo
+        r.append("  ");                                         // 121-122 Complementaria / sustitutiva
+        numerico(r, 0, 13);                                     // 123-135 Declaración anterior
+        numerico(r, registros, 9);                              // 136-144 Nº de registros de declarados
+        numerico(r, totalCentimos, 15);                         // 145-159 Importe total
+        r.append('1');                                          // 160    Naturaleza: entidad Ley 49/2002
+        return terminar(r);
+    }
+
+    String registroDeclarado(DeclaradoModelo182DTO declarado, String porcentaje, long centimos,
+                             char naturaleza, boolean recurrente) {
+        StringBuilder r = new StringBuilder(LONGITUD_REGISTRO + 2);
+        r.append('2');                                          // 1      Tipo de registro
+        r.append("182");                                        // 2-4    Modelo
+        numerico(r, ejercicio, 4);                              // 5-8    Ejercicio
+        alfanumerico(r, nifDeclarante, 9);                      // 9-17   NIF declarante
+        alfanumerico(r, declarado.getNif(), 9);                 // 18-26  NIF declarado
+        alfanumerico(r, "", 9);                                 // 27-35  NIF representante legal
+        alfanumerico(r, declarado.getNombreCompleto(), 40);     // 36-75  Apellidos y nombre
+        r.append(codigoProvincia(declarado.getCodigoPostal())); // 76-77  Código de provincia
+        r.append('A');                                          // 78     Clave: donativos Ley 49/2002
+        r.append(porcentaje);                                   // 79-83  % de deducción (3+2)
+        numerico(r, centimos, 13);                              // 84-96  Importe (11+2)
+        r.append(' ');                                          // 97     En especie
+        r.append("  ");                                         // 98-99  Deducción CCAA
+        numerico(r, 0, 5);                                      // 100-104 % deducción CCAA
+        r.append(naturaleza);                                   // 105    F = física, J = jurídica
+        r.append(' ');                                          // 106    Revocación
+        numerico(r, 0, 4);                                      // 107-110 Ejercicio de la revocación
+        r.append(' ');                                          // 111    Tipo de bien
+        alfanumerico(r, "", 20);                                // 112-131 Identificación del bien
+        r.append(recurrente ? '1' : '2');                       // 132    Recurrencia: 1 = sí, 2 = no
+        return terminar(r);
+    }
+
+    // ----------------------------------------------------------------------
+    // FORMATO DE CAMPOS
+    // ----------------------------------------------------------------------
+
+    static long aCentimos(Importe importe) {
+        return importe == null ? 0 : importe.centimos();
+    }
+
+    /**
+     * Donativos recurrentes (art. 19 y 20 de la Ley 49/2002): el donante dio a la entidad en
+     * los dos ejercicios anteriores y cada año al menos lo mismo que el año previo.
+     */
+    static boolean esRecurrente(DeclaradoModelo182DTO declarado) {
+        long actual = aCentimos(declarado.getImporteTotal());
+        long anterior = aCentimos(declarado.getImporteEjercicioAnterior());
+        long haceDos = aCentimos(declarado.getImporteHaceDosEjercicios());
+        return haceDos > 0 && anterior >= haceDos && actual >= anterior;
+    }
+
+    /**
+     * NIF de persona jurídica o entidad: empieza por letra de sociedad (A, B, G...).
+     * Los DNI (dígito) y los NIE / NIF especiales (K, L, M, X, Y, Z) son personas físicas.
+     */
+    static boolean esPersonaJuridica(String nif) {
+        if (nif == null || nif.isEmpty()) {
+            return false;
+        }
+        char primera = Character.toUpperCase(nif.charAt(0));
+        return "ABCDEFGHJNPQRSUVW".indexOf(primera) >= 0;
+    }
+
+    /**
+     * Las dos primeras cifras del código postal son la provincia; "99" para el extranjero.
+     */
+    static String codigoProvincia(String codigoPostal) {
+        if (codigoPostal != null && codigoPostal.matches("\\d{5}")) {
+            return codigoPostal.substring(0, 2);
+        }
+        return "99";
+    }
+
+    private static void numerico(StringBuilder r, long valor, int longitud) {
+        String digitos = Long.toString(valor);
+        if (valor < 0 || digitos.length() > longitud) {
+            throw new IllegalArgumentException("El valor " + valor + " no cabe en " + longitud + " posiciones.");
+        }
+        for (int i = digitos.length(); i < longitud; i++) {
+            r.append('0');
+        }
+        r.append(digitos);
+    }
+
+    private static void alfanumerico(StringBuilder r, String valor, int longitud) {
+        String texto = normalizar(valor);
+        if (texto.length() > longitud) {
+            texto = texto.substring(0, longitud);
+        }
+        r.append(texto);
+        for (int i = texto.length(); i < longitud; i++) {
+            r.append(' ');
+        }
+    }
+
+    /**
+     * Mayúsculas sin tildes ni caracteres fuera de ISO-8859-1 (se conservan Ñ y Ç).
+     */
+    static String normalizar(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(valor.length());
+        for (char c : valor.trim().toUpperCase().toCharArray()) {
+            if (c == 'Ñ' || c == 'Ç') {
+                sb.append(c);
+                continue;
+            }
+            String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).substring(0, 1);
+            char b = base.charAt(0);
+            sb.append(b < 128 && !Character.isISOControl(b) ? b : ' ');
+        }
+        return sb.toString();
+    }
+
+    private static String terminar(StringBuilder r) {
+        for (int i = r.length(); i < LONGITUD_REGISTRO; i++) {
+            r.append(' ');
+        }
+        return r.append(FIN_REGISTRO).toString();
+    }
+}
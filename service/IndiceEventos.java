@@ -0,0 +1,153 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EventoDetalleDTO;
+
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para la búsqueda de eventos.
+ * Indexa nombre, descripción, tipo y ubicación, normalizados sin tildes ni mayúsculas
+ * ("Málaga" = "malaga", "ñ" = "n"). Cada palabra de la consulta se busca como prefijo
+ * ("conci" encuentra "Concierto") y todas deben aparecer (AND).
+ * Los términos viven en un mapa ordenado, así que un prefijo es un rango: el coste depende
+ * de las coincidencias, no del tamaño de la cartelera. Las búsquedas no se bloquean;
+ * las altas y bajas se aplican evento a evento.
+ */
+final class IndiceEventos {
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // término -> IDs de los eventos que lo contienen
+    private final ConcurrentSkipListMap<String, Set<Long>> terminos = new ConcurrentSkipListMap<>();
+    // ID -> términos indexados del evento (para bajas y para detectar cambios)
+    private final Map<Long, Set<String>> terminosPorEvento = new ConcurrentHashMap<>();
+
+    /**
+     * Indexa un evento, o lo reindexa si sus textos han cambiado.
+     */
+    synchronized void indexar(EventoDetalleDTO evento) {
+        if (evento.getId() == null) {
+            return;
+        }
+        Set<String> nuevos = terminosDe(evento);
+        Set<String> anteriores = terminosPorEvento.put(evento.getId(), nuevos);
+        if (nuevos.equals(anteriores)) {
+            return;
+        }
+        if (anteriores != null) {
+            for (String termino : anteriores) {
+                if (!nuevos.contains(termino)) {
+                    quitar(termino, evento.getId());
+                }
+            }
+        }
+        for (String termino : nuevos) {
+            terminos.computeIfAbsent(termino, t -> ConcurrentHashMap.newKeySet()).add(evento.getId());
+        }
+    }
+
+    synchronized void eliminar(Long eventoId) {
+        Set<String> anteriores = terminosPorEvento.remove(eventoId);
+        if (anteriores != null) {
+            for (String termino : anteriores) {
+                quitar(termino, eventoId);
+            }
+        }
+    }
+
+    /**
+     * Deja el índice con exactamente estos eventos: indexa los nuevos o modificados y da de
+     * baja los que ya no están. Los que no han cambiado no se tocan.
+     */
+    synchronized void sincronizar(Collection<EventoDetalleDTO> eventos) {
+        Set<Long> vigentes = new HashSet<>();
+        for (EventoDetalleDTO evento : eventos) {
+            vigentes.add(evento.getId());
+            indexar(evento);
+        }
+        for (Long id : List.copyOf(terminosPorEvento.keySet())) {
+            if (!vigentes.contains(id)) {
+                eliminar(id);
+            }
+        }
+    }
+
+    /**
+     * IDs de los eventos que contienen, como prefijo de alguna palabra, todas las
+     * palabras de la consulta. Una consulta sin palabras no encuentra nada.
+     */
+    Set<Long> buscar(String consulta) {
+        Set<String> palabras = tokenizar(consulta);
+        if (palabras.isEmpty()) {
+            return Set.of();
+        }
+        Set<Long> resultado = null;
+        for (String palabra : palabras) {
+            Set<Long> coincidencias = new HashSet<>();
+            NavigableMap<String, Set<Long>> rango = terminos.subMap(palabra, true, palabra + Character.MAX_VALUE, false);
+            for (Set<Long> ids : rango.values()) {
+                coincidencias.addAll(ids);
+            }
+            if (resultado == null) {
+                resultado = coincidencias;
+            } else {
+                resultado.retainAll(coincidencias);
+            }
+            if (resultado.isEmpty()) {
+                break;
+            }
+        }
+        return resultado;
+    }
+
+    int totalTerminos() {
+        return terminos.size();
+    }
+
+    private void quitar(String termino, Long eventoId) {
+        Set<Long> ids = terminos.get(termino);
+        if (ids != null) {
+            ids.remove(eventoId);
+            if (ids.isEmpty()) {
+                terminos.remove(termino, ids);
+            }
+        }
+    }
+
+    private static Set<String> terminosDe(EventoDetalleDTO evento) {
+        Set<String> resultado = new HashSet<>();
+        resultado.addAll(tokenizar(evento.getNombre()));
+        resultado.addAll(tokenizar(evento.getDescripcion()));
+        resultado.addAll(tokenizar(evento.getTipoEvento()));
+        resultado.addAll(tokenizar(evento.getUbicacion()));
+        return resultado;
+    }
+
+    static Set<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return Set.of();
+        }
+        String normalizado = MARCAS_DIACRITICAS
+                .matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        Set<String> palabras = new HashSet<>();
+        for (String palabra : SEPARADORES.split(normalizado)) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+}
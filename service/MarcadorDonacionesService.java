@@ -0,0 +1,239 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.MarcadorDonacionesDTO;
+import com.byron.cudeca.dto.TotalPorCanalDTO;
+import com.byron.cudeca.dto.TramoDonacionesDTO;
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.repository.DonacionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Marcador en vivo de la campaña de donaciones (pantallas del evento).
+ *
+ * El total se carga de la BD una sola vez al arrancar; después lo alimenta DonacionService
+ * con cada lote ya confirmado, así que nunca se hace un SUM por pantalla. Se guarda en
+ * céntimos por método de pago y en una ventana circular de tramos de tiempo.
+ *
+ * Envío agrupado: las donaciones solo marcan el estado como cambiado. En cada tick, si hubo
+ * cambios, se genera el JSON una vez y se manda el mismo evento a todas las pantallas
+ * conectadas por SSE (ver DifusorSse). Mil pantallas cuestan un JSON por tick, no mil consultas.
+ */
+@Service
+public class MarcadorDonacionesService {
+
+    private static final CanalPago[] CANALES = CanalPago.values();
+
+    private final DonacionRepository donacionRepository;
+    private final Clock clock;
+    private final LocalDateTime inicioCampana;
+    private final long segundosTramo;
+
+    // Estado del marcador, protegido por 'this'
+    private final long[] centimosPorCanal = new long[CANALES.length];
+    private final long[] numeroPorCanal = new long[CANALES.length];
+    private final long[] tramoDeRanura;
+    private final long[] centimosTramo;
+    private final long[] numeroTramo;
+    // ID de la última donación incluida en la carga inicial; null hasta cargar
+    private Long corte;
+    private final List<Donacion> antesDeCargar = new ArrayList<>();
+    private long version;
+
+    private final DifusorSse pantallas;
+
+    @Autowired
+    public MarcadorDonacionesService(DonacionRepository donacionRepository,
+                                     ObjectMapper objectMapper,
+                                     @Value("${cudeca.marcador.inicio-campana:}") String inicioCampana,
+                                     @Value("${cudeca.marcador.segundos-tramo:60}") long segundosTramo,
+                                     @Value("${cudeca.marcador.tramos:60}") int tramos,
+                                     @Value("${cudeca.marcador.tick-ms:1000}") long tickMs,
+                                     @Value("${cudeca.marcador.latido-ms:15000}") long latidoMs,
+                                     @Value("${cudeca.marcador.timeout-pantalla-ms:1800000}") long timeoutPantallaMs,
+                                     @Value("${cudeca.marcador.max-pantallas:5000}") int maxPantallas) {
+        this(donacionRepository, objectMapper,
+                inicioCampana.isBlank() ? null : LocalDateTime.parse(inicioCampana),
+                Duration.ofSeconds(segundosTramo), tramos, (int) Math.max(1, latidoMs / Math.max(1, tickMs)),
+                timeoutPantallaMs, maxPantallas, Clock.systemDefaultZone());
+    }
+
+    public MarcadorDonacionesService(DonacionRepository donacionRepository, ObjectMapper objectMapper,
+                                     LocalDateTime inicioCampana, Duration tramo, int tramos, int ticksLatido,
+                                     long timeoutPantallaMs, int maxPantallas, Clock clock) {
+        if (tramo.getSeconds() < 1 || tramos < 1) {
+            throw new IllegalArgumentException("El marcador necesita al menos un tramo de un segundo.");
+        }
+        this.donacionRepository = donacionRepository;
+        this.clock = clock;
+        // Sin fecha configurada, la campaña es el día en curso
+        this.inicioCampana = inicioCampana != null ? inicioCampana : LocalDate.now(clock).atStartOfDay();
+        this.segundosTramo = tramo.getSeconds();
+        this.pantallas = new DifusorSse("marcador", objectMapper, timeoutPantallaMs, maxPantallas, ticksLatido);
+        this.tramoDeRanura = new long[tramos];
+        this.centimosTramo = new long[tramos];
+        this.numeroTramo = new long[tramos];
+    }
+
+    // ----------------------------------------------------------------------
+    // AGREGADO EN MEMORIA
+    // ----------------------------------------------------------------------
+
+    /**
+     * Carga el total de la campaña hasta ahora. El corte es el mayor ID que ha visto la suma,
+     * no una fecha: la fecha de una donación es la de su encolado y puede confirmarse después
+     * de la consulta. Como un único hilo escribe las donaciones, lote a lote y con IDs
+     * crecientes, todo lo confirmado tras la consulta tiene un ID mayor que el corte.
+     * Los lotes que llegan a registrar() mientras tanto se guardan y se aplican aquí.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        List<TotalPorCanalDTO> totales = donacionRepository.sumarPorCanal(inicioCampana);
+        synchronized (this) {
+            long ultimoId = 0;
+            for (TotalPorCanalDTO total : totales) {
+                int canal = total.getCanalPago().ordinal();
+                centimosPorCanal[canal] += total.getImporte().centimos();
+                numeroPorCanal[canal] += total.getNumero();
+                ultimoId = Math.max(ultimoId, total.getUltimoId());
+            }
+            corte = ultimoId;
+            for (Donacion donacion : antesDeCargar) {
+                sumar(donacion);
+            }
+            antesDeCargar.clear();
+            version++;
+        }
+    }
+
+    /**
+     * Suma al marcador donaciones ya confirmadas en la BD (un lote de DonacionService).
+     */
+    public synchronized void registrar(Collection<Donacion> donaciones) {
+        if (corte == null) {
+            // Aún no se ha cargado: se decide en cargar() si la consulta inicial ya las contó
+            antesDeCargar.addAll(donaciones);
+            return;
+        }
+        for (Donacion donacion : donaciones) {
+            sumar(donacion);
+        }
+        version++;
+    }
+
+    private void sumar(Donacion donacion) {
+        if (donacion.getId() <= corte || donacion.getFecha().isBefore(inicioCampana)) {
+            // Ya está en la carga inicial, o es de antes de la campaña
+            return;
+        }
+        long centimos = donacion.getImporte().centimos();
+        int canal = donacion.getCanalPago().ordinal();
+        centimosPorCanal[canal] += centimos;
+        numeroPorCanal[canal]++;
+
+        long tramo = tramoDe(donacion.getFecha());
+        int ranura = (int) Math.floorMod(tramo, (long) tramoDeRanura.length);
+        if (tramoDeRanura[ranura] != tramo) {
+            if (tramoDeRanura[ranura] > tramo) {
+                // Más antigua que la ventana: solo cuenta en el total
+                return;
+            }
+            tramoDeRanura[ranura] = tramo;
+            centimosTramo[ranura] = 0;
+            numeroTramo[ranura] = 0;
+        }
+        centimosTramo[ranura] += centimos;
+        numeroTramo[ranura]++;
+    }
+
+    /**
+     * Foto del marcador: total, desglose por método de pago y los tramos de la ventana.
+     */
+    public synchronized MarcadorDonacionesDTO obtenerMarcador() {
+        LocalDateTime ahora = LocalDateTime.now(clock);
+        Map<CanalPago, Importe> porCanal = new EnumMap<>(CanalPago.class);
+        long centimos = 0;
+        long numero = 0;
+        for (CanalPago canal : CANALES) {
+            porCanal.put(canal, Importe.deCentimos(centimosPorCanal[canal.ordinal()]));
+            centimos += centimosPorCanal[canal.ordinal()];
+            numero += numeroPorCanal[canal.ordinal()];
+        }
+
+        long actual = tramoDe(ahora);
+        List<TramoDonacionesDTO> tramos = new ArrayList<>(tramoDeRanura.length);
+        for (long tramo = actual - tramoDeRanura.length + 1; tramo <= actual; tramo++) {
+            int ranura = (int) Math.floorMod(tramo, (long) tramoDeRanura.length);
+            boolean vigente = tramoDeRanura[ranura] == tramo;
+            tramos.add(new TramoDonacionesDTO(inicioDeTramo(tramo),
+                    Importe.deCentimos(vigente ? centimosTramo[ranura] : 0),
+                    vigente ? numeroTramo[ranura] : 0L));
+        }
+        return new MarcadorDonacionesDTO(Importe.deCentimos(centimos), numero, porCanal, tramos, ahora);
+    }
+
+    // ----------------------------------------------------------------------
+    // PANTALLAS (SSE)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Da de alta una pantalla. Recibe al momento el último estado enviado y después solo los cambios.
+     * @throws IllegalStateException si ya hay demasiadas pantallas conectadas.
+     */
+    public SseEmitter suscribir() {
+        return pantallas.suscribir();
+    }
+
+    /**
+     * Tick: un único JSON por cambio, enviado a todas las pantallas.
+     */
+    @Scheduled(fixedRateString = "${cudeca.marcador.tick-ms:1000}")
+    public void emitir() {
+        long vigente;
+        synchronized (this) {
+            vigente = version;
+        }
+        pantallas.tick(vigente, this::obtenerMarcador);
+    }
+
+    int pantallasConectadas() {
+        return pantallas.clientesConectados();
+    }
+
+    long envios() {
+        return pantallas.envios();
+    }
+
+    @PreDestroy
+    public void detener() {
+        pantallas.cerrar();
+    }
+
+    private long tramoDe(LocalDateTime fecha) {
+        return Math.floorDiv(fecha.atZone(clock.getZone()).toEpochSecond(), segundosTramo);
+    }
+
+    private LocalDateTime inicioDeTramo(long tramo) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(tramo * segundosTramo), clock.getZone());
+    }
+}
@@ -0,0 +1,62 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.repository.CertificadoDonacionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Migración: rellena 'usuarioNif' en los certificados emitidos antes de que existiera la
+ * columna, copiándolo del dueño del pedido o de la donación.
+ *
+ * Recorre los IDs por tramos y cada tramo va en su propia transacción, así que nunca
+ * bloquea muchas filas a la vez y puede interrumpirse y relanzarse: solo toca filas con
+ * 'usuarioNif' a null. Se ejecuta al arrancar; si no queda nada, es una única consulta.
+ */
+@Service
+public class MigracionPropietarioCertificados {
+
+    private final CertificadoDonacionRepository certificadoDonacionRepository;
+    private final TransactionTemplate transaccion;
+    private final int tamanoTramo;
+
+    @Autowired
+    public MigracionPropietarioCertificados(CertificadoDonacionRepository certificadoDonacionRepository,
+                                            PlatformTransactionManager transactionManager,
+                                            @Value("${cudeca.certificados.tramo-migracion:1000}") int tamanoTramo) {
+        if (tamanoTramo < 1) {
+            throw new IllegalArgumentException("El tramo de la migración debe ser al menos 1.");
+        }
+        this.certificadoDonacionRepository = certificadoDonacionRepository;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.tamanoTramo = tamanoTramo;
+    }
+
+    /**
+     * Rellena el propietario de todos los certificados que no lo tienen.
+     * @return Número de certificados actualizados.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public int migrar() {
+        Long primero = certificadoDonacionRepository.findMinIdSinPropietario();
+        if (primero == null) {
+            return 0;
+        }
+        long ultimo = certificadoDonacionRepository.findMaxIdSinPropietario();
+
+        int actualizados = 0;
+        for (long inicio = primero; inicio <= ultimo; inicio += tamanoTramo) {
+            long desde = inicio;
+            long hasta = Math.min(inicio + tamanoTramo - 1, ultimo);
+            Integer tramo = transaccion.execute(estado ->
+                    certificadoDonacionRepository.rellenarPropietarioDesdePedido(desde, hasta)
+                            + certificadoDonacionRepository.rellenarPropietarioDesdeDonacion(desde, hasta));
+            actualizados += tramo == null ? 0 : tramo;
+        }
+        return actualizados;
+    }
+}
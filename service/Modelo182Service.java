@@ -0,0 +1,94 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.DeclaradoModelo182DTO;
+import com.byron.cudeca.model.DeclaracionModelo182;
+import com.byron.cudeca.repository.DeclaracionModelo182Repository;
+import com.byron.cudeca.repository.TotalDonanteAnualRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/**
+ * Exportación del Modelo 182 (donativos) de un ejercicio.
+ * Lee los totales ya agregados por NIF (TotalDonanteAnual, una fila por donante) y los va
+ * escribiendo en el destino (respuesta HTTP o fichero) según llegan, con memoria constante
+ * sea cual sea el año.
+ *
+ * La generación va en dos pasos para que una petición incorrecta falle antes de empezar a
+ * escribir: prepararDeclaracion valida ejercicio y declarante y reserva el justificante;
+ * exportar escribe el fichero con ese justificante.
+ */
+@Service
+public class Modelo182Service {
+
+    private final TotalDonanteAnualRepository totalDonanteAnualRepository;
+    private final DeclaracionModelo182Repository declaracionRepository;
+    private final Clock clock;
+    private final String nifDeclarante;
+    private final String razonSocial;
+    private final String telefono;
+    private final String personaContacto;
+
+    @Autowired
+    public Modelo182Service(TotalDonanteAnualRepository totalDonanteAnualRepository,
+                            DeclaracionModelo182Repository declaracionRepository,
+                            @Value("${cudeca.fiscal.nif:}") String nifDeclarante,
+                            @Value("${cudeca.fiscal.razon-social:}") String razonSocial,
+                            @Value("${cudeca.fiscal.telefono:}") String telefono,
+                            @Value("${cudeca.fiscal.persona-contacto:}") String personaContacto) {
+        this(totalDonanteAnualRepository, declaracionRepository, Clock.systemDefaultZone(),
+                nifDeclarante, razonSocial, telefono, personaContacto);
+    }
+
+    public Modelo182Service(TotalDonanteAnualRepository totalDonanteAnualRepository,
+                            DeclaracionModelo182Repository declaracionRepository, Clock clock,
+                            String nifDeclarante, String razonSocial, String telefono, String personaContacto) {
+        this.totalDonanteAnualRepository = totalDonanteAnualRepository;
+        this.declaracionRepository = declaracionRepository;
+        this.clock = clock;
+        this.nifDeclarante = nifDeclarante;
+        this.razonSocial = razonSocial;
+        this.telefono = telefono;
+        this.personaContacto = personaContacto;
+    }
+
+    /**
+     * Valida la petición y registra una nueva declaración del ejercicio con su justificante.
+     * @return Secuencia reservada, para pasarla a exportar.
+     * @throws IllegalArgumentException si el ejercicio no es válido.
+     * @throws IllegalStateException si falta el NIF o la denominación del declarante.
+     */
+    @Transactional
+    public long prepararDeclaracion(int ejercicio) {
+        FicheroModelo182.comprobarEjercicio(ejercicio);
+        FicheroModelo182.comprobarDeclarante(nifDeclarante, razonSocial);
+
+        DeclaracionModelo182 declaracion = new DeclaracionModelo182();
+        declaracion.setEjercicio(ejercicio);
+        declaracion.setFechaGeneracion(LocalDateTime.now(clock));
+        Long id = declaracionRepository.save(declaracion).getId();
+        return (id - 1) % FicheroModelo182.SECUENCIA_MAXIMA + 1;
+    }
+
+    /**
+     * Escribe el fichero del Modelo 182 del ejercicio indicado, con la secuencia que ha
+     * reservado prepararDeclaracion.
+     * La transacción (solo lectura) mantiene abierto el cursor mientras se escribe.
+     */
+    @Transactional(readOnly = true)
+    public void exportar(int ejercicio, long secuencia, OutputStream destino) throws IOException {
+        FicheroModelo182 fichero = new FicheroModelo182(ejercicio, secuencia, nifDeclarante, razonSocial,
+                telefono, personaContacto);
+
+        try (Stream<DeclaradoModelo182DTO> declarados = totalDonanteAnualRepository.streamDeclarados(ejercicio)) {
+            fichero.escribir(declarados.iterator(), destino);
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.byron.cudeca.service;
 
 import com.byron.cudeca.model.*;
 import com.byron.cudeca.repository.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jdk.jfr.Event;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cglib.core.Local;
@@ -10,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 public class PedidoService {
@@ -17,20 +22,106 @@ public class PedidoService {
     private final PedidoRepository pedidoRepository;
     private final EventoRepository eventoRepository;
     private final EntradaRepository entradaRepository;
-    private final CertificadoDonacionService certificadoService;
+    private final EmisionCertificadosService emisionCertificadosService;
+    private final ReservaStockService reservaStockService;
+    private final RetencionEntradasService retencionEntradasService;
+    private final CodigoQrService codigoQrService;
+    private final AforoEventosService aforoEventosService;
+    private final TarifaEntradasService tarifaEntradasService;
+
+    // Métricas: un timer por paso del checkout (cudeca.pedido.paso{paso=...})
+    private final Timer pasoPrecio;
+    private final Timer pasoStock;
+    private final Timer pasoPedido;
+    private final Timer pasoEntradas;
+    private final Timer pasoCertificado;
+    private final DistributionSummary entradasPorPedido;
+    private final Counter sinStock;
 
     @Autowired
-    public PedidoService(PedidoRepository pedidoRepository, EventoRepository eventoRepository, EntradaRepository entradaRepository, CertificadoDonacionService certificadoDonacionService){
+    public PedidoService(PedidoRepository pedidoRepository, EventoRepository eventoRepository, EntradaRepository entradaRepository, EmisionCertificadosService emisionCertificadosService, ReservaStockService reservaStockService, RetencionEntradasService retencionEntradasService, CodigoQrService codigoQrService, AforoEventosService aforoEventosService, TarifaEntradasService tarifaEntradasService, MeterRegistry meterRegistry){
         this.pedidoRepository = pedidoRepository;
         this.eventoRepository = eventoRepository;
         this.entradaRepository = entradaRepository;
-        this.certificadoService = certificadoDonacionService;
+        this.emisionCertificadosService = emisionCertificadosService;
+        this.reservaStockService = reservaStockService;
+        this.retencionEntradasService = retencionEntradasService;
+        this.codigoQrService = codigoQrService;
+        this.aforoEventosService = aforoEventosService;
+        this.tarifaEntradasService = tarifaEntradasService;
+
+        this.pasoPrecio = paso(meterRegistry, "precio");
+        this.pasoStock = paso(meterRegistry, "stock");
+        this.pasoPedido = paso(meterRegistry, "pedido");
+        this.pasoEntradas = paso(meterRegistry, "entradas");
+        this.pasoCertificado = paso(meterRegistry, "certificado");
+        this.entradasPorPedido = DistributionSummary.builder("cudeca.pedido.entradas")
+                .description("Entradas por pedido emitido")
+                .register(meterRegistry);
+        this.sinStock = Counter.builder("cudeca.pedido.rechazados")
+                .description("Checkouts rechazados por falta de stock")
+                .tag("motivo", "stock")
+                .register(meterRegistry);
+    }
+
+    // ----------------------------------------------------------------------
+    // CHECKOUT EN DOS FASES (Retener -> Pagar -> Confirmar)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Fase 1: aparta las entradas mientras el usuario paga en la pasarela externa.
+     * El precio se calcula ahora (tarifas en memoria) y se guarda con la retención.
+     * El stock se descuenta en una transacción corta; si no se confirma a tiempo, vuelve solo.
+     * @param entradasPorTipo Tipo de entrada -> número de entradas.
+     * @return La retención, cuyo código debe enviarse de vuelta al confirmar.
+     */
+    public RetencionEntradas iniciarPedido(Usuario usuario,
+                                           Long eventoId,
+                                           Map<String, Integer> entradasPorTipo,
+                                           CanalPago canalPago,
+                                           Boolean consentimiento) {
+        PresupuestoEntradas presupuesto = pasoPrecio.record(() -> tarifaEntradasService.presupuestar(eventoId, entradasPorTipo));
+        return reservarStock(() -> retencionEntradasService.retener(usuario, eventoId, presupuesto, canalPago, consentimiento));
     }
 
+    /**
+     * Fase 2: la pasarela ha confirmado el pago. Convierte la retención en un Pedido PAGADO
+     * con sus entradas (y certificado si procede). No vuelve a tocar el stock del evento.
+     * Si algo falla y la transacción hace rollback, la retención vuelve a quedar activa.
+     */
+    @Transactional
+    public Pedido confirmarPedido(String codigoRetencion,
+                                  String tokenPagoExterno,
+                                  String direccion,
+                                  String codigoPostal,
+                                  String poblacion,
+                                  String provincia,
+                                  String pais,
+                                  String nifFiscal) {
+        if (tokenPagoExterno == null || tokenPagoExterno.isBlank()) {
+            throw new IllegalArgumentException("Falta el token de confirmación del pago.");
+        }
+
+        RetencionEntradas retencion = retencionEntradasService.consumir(codigoRetencion);
+        Transacciones.alDeshacer(() -> retencionEntradasService.restaurar(retencion));
+
+        return emitirPedido(retencion.getUsuario(), retencion.getEventoId(), retencion.getPresupuesto(),
+                retencion.getCanalPago(), retencion.getConsentimiento(),
+                direccion, codigoPostal, poblacion, provincia, pais, nifFiscal);
+    }
+
+    // ----------------------------------------------------------------------
+    // CHECKOUT DIRECTO (Pago ya confirmado)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Pone precio al pedido con las tarifas vigentes, descuenta el stock y lo emite.
+     * @param entradasPorTipo Tipo de entrada -> número de entradas.
+     */
     @Transactional
     public Pedido finalizarPedido(Usuario usuario,
                                   Long eventoId,
-                                  int cantidadEntradas,
+                                  Map<String, Integer> entradasPorTipo,
                                   CanalPago canalPago,
                                   Boolean consentimiento,
                                   // Añadimos los campos fiscales aquí también:
@@ -41,22 +132,40 @@ public class PedidoService {
                                   String pais,
                                   String nifFiscal) { // Opcional, por si quiere certificado a nombre de otro
 
-        // 1. Obtener y verificar evento
-        Evento evento = eventoRepository.findById(eventoId)
-                .orElseThrow(() -> new RuntimeException("Evento no encontrado."));
+        // 1. Precio (en memoria): un tipo desconocido o cerrado falla antes de tocar el stock
+        PresupuestoEntradas presupuesto = pasoPrecio.record(() -> tarifaEntradasService.presupuestar(eventoId, entradasPorTipo));
 
-        if (evento.getStock() < cantidadEntradas) { // Asegúrate de tener el campo 'stock' en Evento
-            throw new RuntimeException("Stock insuficiente.");
-        }
+        // 2. Verificar y descontar stock en un solo paso atómico (sin leer-comprobar-guardar)
+        reservarStock(() -> {
+            reservaStockService.reservar(eventoId, presupuesto.getCantidad());
+            return null;
+        });
+
+        return emitirPedido(usuario, eventoId, presupuesto, canalPago, consentimiento,
+                direccion, codigoPostal, poblacion, provincia, pais, nifFiscal);
+    }
 
-        // 2. Descontar stock
-        evento.setStock(evento.getStock() - cantidadEntradas);
-        eventoRepository.save(evento);
+    /**
+     * Crea el Pedido PAGADO por el total del presupuesto y sus entradas, con el stock ya
+     * descontado, y deja pedido el certificado (se emite de forma asíncrona, por ese total).
+     */
+    private Pedido emitirPedido(Usuario usuario,
+                                Long eventoId,
+                                PresupuestoEntradas presupuesto,
+                                CanalPago canalPago,
+                                Boolean consentimiento,
+                                String direccion,
+                                String codigoPostal,
+                                String poblacion,
+                                String provincia,
+                                String pais,
+                                String nifFiscal) {
+        // Solo necesitamos la referencia para la FK de las entradas, no cargar el evento
+        Evento evento = eventoRepository.getReferenceById(eventoId);
 
         // 3. Crear Pedido
         Pedido nuevoPedido = new Pedido();
-        // Nota: Deberías calcular el importe real (cantidad * precio) si el evento tiene precio
-        nuevoPedido.setImporteTotal(0.0);
+        nuevoPedido.setImporteTotal(presupuesto.getTotal());
         nuevoPedido.setFecha(LocalDate.now());
         nuevoPedido.setHora(LocalTime.now());
         nuevoPedido.setUsuario(usuario);
@@ -64,39 +173,29 @@ public class PedidoService {
         nuevoPedido.setCanalPago(canalPago);
         nuevoPedido.setConsentimiento(consentimiento);
 
-        Pedido pedidoGuardado = pedidoRepository.save(nuevoPedido);
+        Pedido pedidoGuardado = pasoPedido.record(() -> pedidoRepository.save(nuevoPedido));
 
         // 4. Generar entradas
-        List<Entrada> entradasGeneradas = new ArrayList<>();
-        for (int i = 0; i < cantidadEntradas; i++) {
-            Entrada entrada = new Entrada();
-            // Generamos QR único (String)
-            entrada.setQr(UUID.randomUUID().toString());
-            entrada.setUsada(false);
-            entrada.setEvento(evento);
-            entrada.setPedido(pedidoGuardado);
-            // Necesitamos nombres para la entrada, usamos el del usuario por defecto
-            entrada.setNombrePersona(usuario.getNombre());
-            entrada.setTipoEntrada("General"); // O pásalo por parámetro
-
-            entradasGeneradas.add(entrada);
-        }
-        entradaRepository.saveAll(entradasGeneradas);
+        List<Entrada> entradasGeneradas = pasoEntradas.record(() -> {
+            List<Entrada> entradas = crearEntradas(codigoQrService, eventoId, evento, pedidoGuardado, usuario, presupuesto);
+            entradaRepository.saveAll(entradas);
+            return entradas;
+        });
         pedidoGuardado.setEntradas(entradasGeneradas);
+        entradasPorPedido.record(entradasGeneradas.size());
+        // Contador de vendidas del panel de aforo (se aplica tras el commit)
+        aforoEventosService.registrarVenta(eventoId, presupuesto.getCantidad());
 
-        // 5. GENERAR CERTIFICADO (Si dio consentimiento)
+        // 5. PEDIR CERTIFICADO (Si dio consentimiento)
         if (Boolean.TRUE.equals(consentimiento)) {
             // Validación básica para no guardar datos nulos en la tabla Certificado
             if (direccion == null || codigoPostal == null || poblacion == null) {
                 throw new IllegalArgumentException("Faltan datos fiscales obligatorios para el certificado.");
             }
 
-            // REVISAR ESTO
-            certificadoService.generarCertificado(
-                    usuario,
-                    pedidoGuardado.getImporteTotal(),
+            // Solo se guarda la solicitud: el certificado se emite fuera del checkout, tras el commit
+            pasoCertificado.record(() -> emisionCertificadosService.solicitarParaPedido(
                     pedidoGuardado,
-                    null, // Donación es null
                     null, // Nombre fiscal (usa el del usuario)
                     nifFiscal, // NIF fiscal (puede ser null y usará el del usuario)
                     direccion,
@@ -104,9 +203,54 @@ public class PedidoService {
                     poblacion,
                     provincia,
                     pais
-            );
+            ));
         }
 
         return pedidoGuardado;
     }
+
+    /**
+     * Entradas de un pedido ya guardado, una por plaza del presupuesto, con su QR firmado.
+     * Solo CPU (sin BD): es el bucle que mide EntradasPedidoBenchmark.
+     */
+    static List<Entrada> crearEntradas(CodigoQrService codigoQrService, Long eventoId, Evento evento,
+                                       Pedido pedido, Usuario usuario, PresupuestoEntradas presupuesto) {
+        List<Entrada> entradas = new ArrayList<>(presupuesto.getCantidad());
+        int numeroEntrada = 0;
+        for (PresupuestoEntradas.Linea linea : presupuesto.getLineas()) {
+            for (int i = 0; i < linea.cantidad(); i++) {
+                Entrada entrada = new Entrada();
+                // QR firmado (evento + pedido + nº de entrada + HMAC): único y verificable sin BD
+                entrada.setQr(codigoQrService.generar(eventoId, pedido.getId(), numeroEntrada++));
+                entrada.setUsada(false);
+                entrada.setEvento(evento);
+                entrada.setPedido(pedido);
+                // Necesitamos nombres para la entrada, usamos el del usuario por defecto
+                entrada.setNombrePersona(usuario.getNombre());
+                entrada.setTipoEntrada(linea.tipoEntrada());
+
+                entradas.add(entrada);
+            }
+        }
+        return entradas;
+    }
+
+    /**
+     * Mide el paso de stock y cuenta los rechazos por falta de plazas.
+     */
+    private <T> T reservarStock(Supplier<T> reserva) {
+        try {
+            return pasoStock.record(reserva);
+        } catch (IllegalStateException agotado) {
+            sinStock.increment();
+            throw agotado;
+        }
+    }
+
+    private static Timer paso(MeterRegistry meterRegistry, String nombre) {
+        return Timer.builder("cudeca.pedido.paso")
+                .description("Duración de cada paso del checkout")
+                .tag("paso", nombre)
+                .register(meterRegistry);
+    }
 }
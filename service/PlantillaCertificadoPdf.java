@@ -0,0 +1,338 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.CertificadoPdfDTO;
+import com.byron.cudeca.model.Importe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * Plantilla del PDF del certificado de donación, compilada una sola vez.
+ *
+ * El PDF es de una página A4 con las fuentes estándar Helvetica y Helvetica-Bold
+ * (WinAnsiEncoding): no hay que incrustar ni cargar fuentes. Todo lo que no depende del
+ * certificado (objetos del documento, fuentes, textos fijos ya codificados y escapados,
+ * datos de la entidad, tabla xref) se prepara en el constructor; renderizar es rellenar
+ * los huecos, comprimir el contenido de la página y copiar bytes.
+ *
+ * Es inmutable y se comparte entre hilos. Cada hilo reutiliza su propio buffer y su
+ * compresor, así que renderizar miles de certificados no genera basura por página.
+ */
+final class PlantillaCertificadoPdf {
+
+    private static final Charset WIN_ANSI = Charset.forName("windows-1252");
+    private static final Pattern HUECO = Pattern.compile("\\{(\\w+)}");
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // Los textos variables se recortan para no salirse de la página
+    private static final int MAX_CARACTERES_CAMPO = 60;
+
+    private static final int MARGEN_IZQUIERDO = 72;
+    private static final int INTERLINEA = 16;
+
+    /**
+     * Huecos que se rellenan con cada certificado.
+     */
+    enum Campo {
+        NUMERO, FECHA, NOMBRE, NIF, DIRECCION, CODIGO_POSTAL, POBLACION, PROVINCIA, PAIS, IMPORTE, EJERCICIO
+    }
+
+    private static final Object[][] LINEAS = {
+            // fuente, tamaño, separación previa (en interlíneas), texto
+            {"F2", 16, 0, "CERTIFICADO DE DONACIÓN"},
+            {"F1", 10, 2, "Nº de certificado: {NUMERO}          Ejercicio: {EJERCICIO}"},
+            {"F1", 11, 2, "{ENTIDAD}, con NIF {NIF_ENTIDAD}, entidad beneficiaria del mecenazgo"},
+            {"F1", 11, 1, "acogida al régimen fiscal de la Ley 49/2002, de 23 de diciembre,"},
+            {"F2", 12, 2, "CERTIFICA:"},
+            {"F1", 11, 2, "Que D./Dña. {NOMBRE}, con NIF {NIF},"},
+            {"F1", 11, 1, "y domicilio en {DIRECCION},"},
+            {"F1", 11, 1, "{CODIGO_POSTAL} {POBLACION} ({PROVINCIA}), {PAIS},"},
+            {"F1", 11, 1, "ha entregado a esta entidad, con carácter irrevocable, un donativo dinerario"},
+            {"F1", 11, 1, "de {IMPORTE} euros, en fecha {FECHA}, que se destinará a sus fines propios."},
+            {"F1", 11, 2, "Y para que conste a efectos de las deducciones previstas en los artículos 19 y 20"},
+            {"F1", 11, 1, "de la Ley 49/2002, se expide el presente certificado con fecha {FECHA}."},
+            {"F1", 9, 4, "{ENTIDAD} - NIF {NIF_ENTIDAD}"},
+    };
+
+    private static final ThreadLocal<Buffer> BUFFER_CONTENIDO = ThreadLocal.withInitial(() -> new Buffer(4096));
+    private static final ThreadLocal<Buffer> BUFFER_COMPRIMIDO = ThreadLocal.withInitial(() -> new Buffer(2048));
+    private static final ThreadLocal<Deflater> COMPRESOR = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    // Objetos 1 a 5 (cabecera, catálogo, páginas, página y fuentes): idénticos en todos los PDF
+    private final byte[] cabecera;
+    // Tabla xref de los objetos 0 a 6; el 6 (contenido) siempre empieza en el mismo byte
+    private final byte[] xref;
+    // Contenido de la página: entre el trozo fijo i y el i + 1 va el hueco i
+    private final List<byte[]> trozos;
+    private final List<Campo> huecos;
+
+    PlantillaCertificadoPdf(String razonSocial, String nifEntidad) {
+        List<Long> desplazamientos = new ArrayList<>();
+        Buffer documento = new Buffer(1024);
+        escribirAscii(documento, "%PDF-1.4\n");
+        documento.escribir(new byte[]{'%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+        objeto(documento, desplazamientos, "<< /Type /Catalog /Pages 2 0 R >>");
+        objeto(documento, desplazamientos, "<< /Type /Pages /Kids [3 0 R] /Count 1 >>");
+        objeto(documento, desplazamientos, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] "
+                + "/Resources << /Font << /F1 4 0 R /F2 5 0 R >> >> /Contents 6 0 R >>");
+        objeto(documento, desplazamientos, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        objeto(documento, desplazamientos, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>");
+        this.cabecera = documento.copia();
+        desplazamientos.add((long) cabecera.length);
+
+        StringBuilder tabla = new StringBuilder("xref\n0 7\n0000000000 65535 f \n");
+        for (long desplazamiento : desplazamientos) {
+            tabla.append(String.format("%010d 00000 n \n", desplazamiento));
+        }
+        this.xref = tabla.toString().getBytes(StandardCharsets.US_ASCII);
+
+        this.trozos = new ArrayList<>();
+        this.huecos = new ArrayList<>();
+        compilarContenido(razonSocial, nifEntidad);
+    }
+
+    /**
+     * Escribe el PDF de un certificado. Es seguro llamarlo desde varios hilos a la vez.
+     */
+    void escribir(CertificadoPdfDTO certificado, OutputStream destino) throws IOException {
+        Buffer contenido = comprimir(rellenar(certificado));
+
+        destino.write(cabecera);
+        byte[] inicioObjeto = ("6 0 obj\n<< /Length " + contenido.tamano + " /Filter /FlateDecode >>\nstream\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        destino.write(inicioObjeto);
+        destino.write(contenido.datos, 0, contenido.tamano);
+        byte[] finObjeto = "\nendstream\nendobj\n".getBytes(StandardCharsets.US_ASCII);
+        destino.write(finObjeto);
+
+        long inicioXref = (long) cabecera.length + inicioObjeto.length + contenido.tamano + finObjeto.length;
+        destino.write(xref);
+        destino.write(("trailer\n<< /Size 7 /Root 1 0 R >>\nstartxref\n" + inicioXref + "\n%%EOF\n")
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * El PDF completo en un array, para quien necesita su tamaño antes de escribirlo (ZIP).
+     */
+    byte[] renderizar(CertificadoPdfDTO certificado) {
+        Buffer pdf = new Buffer(cabecera.length + xref.length + 1024);
+        try {
+            escribir(certificado, pdf.comoSalida());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // En memoria no hay E/S que pueda fallar
+        }
+        return pdf.copia();
+    }
+
+    // ----------------------------------------------------------------------
+    // COMPILACIÓN
+    // ----------------------------------------------------------------------
+
+    private void compilarContenido(String razonSocial, String nifEntidad) {
+        Buffer fijo = new Buffer(2048);
+        int y = 760;
+        for (Object[] linea : LINEAS) {
+            y -= (Integer) linea[2] * INTERLINEA;
+            escribirAscii(fijo, "BT /" + linea[0] + " " + linea[1] + " Tf " + MARGEN_IZQUIERDO + " " + y + " Td (");
+
+            Matcher hueco = HUECO.matcher((String) linea[3]);
+            int desde = 0;
+            while (hueco.find()) {
+                escribirTexto(fijo, ((String) linea[3]).substring(desde, hueco.start()));
+                String nombre = hueco.group(1);
+                if ("ENTIDAD".equals(nombre)) {
+                    escribirTexto(fijo, recortar(razonSocial));
+                } else if ("NIF_ENTIDAD".equals(nombre)) {
+                    escribirTexto(fijo, recortar(nifEntidad));
+                } else {
+                    trozos.add(fijo.copia());
+                    huecos.add(Campo.valueOf(nombre));
+                    fijo.reiniciar();
+                }
+                desde = hueco.end();
+            }
+            escribirTexto(fijo, ((String) linea[3]).substring(desde));
+            escribirAscii(fijo, ") Tj ET\n");
+        }
+        trozos.add(fijo.copia());
+    }
+
+    private static void objeto(Buffer documento, List<Long> desplazamientos, String diccionario) {
+        desplazamientos.add((long) documento.tamano);
+        escribirAscii(documento, (desplazamientos.size()) + " 0 obj\n" + diccionario + "\nendobj\n");
+    }
+
+    // ----------------------------------------------------------------------
+    // RENDERIZADO
+    // ----------------------------------------------------------------------
+
+    private Buffer rellenar(CertificadoPdfDTO certificado) {
+        Buffer contenido = BUFFER_CONTENIDO.get();
+        contenido.reiniciar();
+        for (int i = 0; i < huecos.size(); i++) {
+            contenido.escribir(trozos.get(i));
+            escribirTexto(contenido, recortar(valor(huecos.get(i), certificado)));
+        }
+        contenido.escribir(trozos.get(huecos.size()));
+        return contenido;
+    }
+
+    private static Buffer comprimir(Buffer contenido) {
+        Deflater compresor = COMPRESOR.get();
+        Buffer comprimido = BUFFER_COMPRIMIDO.get();
+        comprimido.reiniciar();
+        compresor.reset();
+        compresor.setInput(contenido.datos, 0, contenido.tamano);
+        compresor.finish();
+        while (!compresor.finished()) {
+            comprimido.asegurar(512);
+            comprimido.tamano += compresor.deflate(comprimido.datos, comprimido.tamano,
+                    comprimido.datos.length - comprimido.tamano);
+        }
+        return comprimido;
+    }
+
+    static String valor(Campo campo, CertificadoPdfDTO c) {
+        switch (campo) {
+            case NUMERO:
+                return c.getId() == null ? "" : String.valueOf(c.getId());
+            case FECHA:
+                return c.getFechaEmision() == null ? "" : FECHA.format(c.getFechaEmision());
+            case EJERCICIO:
+                return c.getFechaEmision() == null ? "" : String.valueOf(c.getFechaEmision().getYear());
+            case NOMBRE:
+                return c.getNombreCompleto();
+            case NIF:
+                return c.getNif();
+            case DIRECCION:
+                return c.getDireccion();
+            case CODIGO_POSTAL:
+                return c.getCodigoPostal();
+            case POBLACION:
+                return c.getPoblacion();
+            case PROVINCIA:
+                return c.getProvincia();
+            case PAIS:
+                return c.getPais();
+            case IMPORTE:
+                return importe(c.getImporteCertificado());
+            default:
+                throw new IllegalArgumentException("Campo desconocido: " + campo);
+        }
+    }
+
+    /**
+     * Importe con formato español: 1.234,56
+     */
+    static String importe(Importe importe) {
+        if (importe == null) {
+            return "";
+        }
+        long centimos = Math.abs(importe.centimos());
+        String entera = Long.toString(centimos / 100);
+        StringBuilder sb = new StringBuilder(entera.length() + 8);
+        if (importe.centimos() < 0) {
+            sb.append('-');
+        }
+        for (int i = 0; i < entera.length(); i++) {
+            if (i > 0 && (entera.length() - i) % 3 == 0) {
+                sb.append('.');
+            }
+            sb.append(entera.charAt(i));
+        }
+        long resto = centimos % 100;
+        return sb.append(',').append(resto < 10 ? "0" : "").append(resto).toString();
+    }
+
+    private static String recortar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String limpio = texto.strip();
+        return limpio.length() > MAX_CARACTERES_CAMPO ? limpio.substring(0, MAX_CARACTERES_CAMPO) : limpio;
+    }
+
+    /**
+     * Texto en WinAnsi dentro de un literal de cadena PDF: se escapan '(', ')' y '\'
+     * y los caracteres de control; lo que no existe en WinAnsi sale como '?'.
+     */
+    private static void escribirTexto(Buffer destino, String texto) {
+        for (byte b : texto.getBytes(WIN_ANSI)) {
+            if (b == '(' || b == ')' || b == '\\') {
+                destino.escribir('\\');
+                destino.escribir(b);
+            } else if (b >= 0 && b < 32) {
+                destino.escribir(' ');
+            } else {
+                destino.escribir(b);
+            }
+        }
+    }
+
+    private static void escribirAscii(Buffer destino, String texto) {
+        destino.escribir(texto.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Array de bytes que crece y se reutiliza (sin la sincronización de ByteArrayOutputStream).
+     */
+    static final class Buffer {
+        private byte[] datos;
+        private int tamano;
+
+        Buffer(int capacidad) {
+            this.datos = new byte[capacidad];
+        }
+
+        void reiniciar() {
+            tamano = 0;
+        }
+
+        void escribir(int b) {
+            asegurar(1);
+            datos[tamano++] = (byte) b;
+        }
+
+        void escribir(byte[] bytes) {
+            escribir(bytes, 0, bytes.length);
+        }
+
+        void escribir(byte[] bytes, int desde, int longitud) {
+            asegurar(longitud);
+            System.arraycopy(bytes, desde, datos, tamano, longitud);
+            tamano += longitud;
+        }
+
+        void asegurar(int adicional) {
+            if (tamano + adicional > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, tamano + adicional));
+            }
+        }
+
+        byte[] copia() {
+            return Arrays.copyOf(datos, tamano);
+        }
+
+        OutputStream comoSalida() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    escribir(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    escribir(b, off, len);
+                }
+            };
+        }
+    }
+}
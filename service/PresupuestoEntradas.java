@@ -0,0 +1,54 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.Importe;
+
+import java.util.List;
+
+/**
+ * Precio de un pedido de entradas: una línea por tipo de entrada con el precio unitario
+ * vigente al calcularlo, y el total. Inmutable; en el checkout en dos fases viaja en la
+ * retención, así que se cobra el precio que vio el usuario aunque el tramo cambie mientras paga.
+ */
+public final class PresupuestoEntradas {
+
+    /**
+     * Entradas de un mismo tipo dentro del pedido.
+     */
+    public record Linea(String tipoEntrada, Importe precioUnitario, int cantidad) {
+
+        public Importe importe() {
+            return precioUnitario.multiplicar(cantidad);
+        }
+    }
+
+    private final List<Linea> lineas;
+    private final Importe total;
+    private final int cantidad;
+
+    public PresupuestoEntradas(List<Linea> lineas) {
+        this.lineas = List.copyOf(lineas);
+        Importe suma = Importe.CERO;
+        int entradas = 0;
+        for (Linea linea : this.lineas) {
+            suma = suma.sumar(linea.importe());
+            entradas += linea.cantidad();
+        }
+        this.total = suma;
+        this.cantidad = entradas;
+    }
+
+    public List<Linea> getLineas() {
+        return lineas;
+    }
+
+    public Importe getTotal() {
+        return total;
+    }
+
+    /**
+     * Número total de entradas del pedido.
+     */
+    public int getCantidad() {
+        return cantidad;
+    }
+}
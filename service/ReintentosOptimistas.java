@@ -0,0 +1,133 @@
+package com.byron.cudeca.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta escrituras sobre entidades con bloqueo optimista (@Version en Evento, Usuario/Socio
+ * y Entrada) y, si chocan con otra escritura concurrente, las repite en una transacción nueva
+ * tras una espera exponencial con jitter completo (aleatoria entre 0 y el tope del intento),
+ * para que los que chocan no vuelvan a coincidir. Nada de bloqueos pesimistas: lo normal es
+ * que no haya conflicto y entonces cuesta lo mismo que un @Transactional.
+ *
+ * Métricas por entidad y operación: cudeca.optimista.intentos, cudeca.optimista.conflictos
+ * (tasa de conflicto = conflictos / intentos) y cudeca.optimista.agotados.
+ */
+@Component
+public class ReintentosOptimistas {
+
+    private final TransactionOperations transaccion;
+    private final MeterRegistry meterRegistry;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaximaMs;
+
+    @Autowired
+    public ReintentosOptimistas(PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${cudeca.optimista.max-intentos:5}") int maxIntentos,
+                                @Value("${cudeca.optimista.espera-base-ms:5}") long esperaBaseMs,
+                                @Value("${cudeca.optimista.espera-maxima-ms:200}") long esperaMaximaMs) {
+        this(new TransactionTemplate(transactionManager), meterRegistry, maxIntentos, esperaBaseMs, esperaMaximaMs);
+    }
+
+    public ReintentosOptimistas(TransactionOperations transaccion, MeterRegistry meterRegistry,
+                                int maxIntentos, long esperaBaseMs, long esperaMaximaMs) {
+        if (maxIntentos < 1 || esperaBaseMs < 0 || esperaMaximaMs < esperaBaseMs) {
+            throw new IllegalArgumentException(
+                    "Los intentos deben ser al menos 1 y la espera máxima no puede ser menor que la base.");
+        }
+        this.transaccion = transaccion;
+        this.meterRegistry = meterRegistry;
+        this.maxIntentos = maxIntentos;
+        this.esperaBaseMs = esperaBaseMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    /**
+     * Ejecuta la escritura en su propia transacción, repitiéndola si hay conflicto de versión.
+     * La escritura debe poder repetirse entera: cada intento vuelve a leer lo que modifica.
+     * Si ya hay una transacción en curso se ejecuta sin más: el conflicto solo se puede
+     * resolver repitiendo la transacción de fuera, así que se deja subir.
+     * @param entidad Entidad en conflicto, para las métricas (Evento, Socio, Entrada).
+     * @param operacion Método de servicio, para las métricas.
+     * @throws OptimisticLockingFailureException si sigue habiendo conflicto tras el último intento.
+     */
+    public <T> T ejecutar(String entidad, String operacion, Supplier<T> escritura) {
+        return ejecutar(entidad, operacion, transaccion, escritura);
+    }
+
+    /**
+     * Como ejecutar(entidad, operacion, escritura), pero cada intento va en la transacción del
+     * llamante (su TransactionTemplate), que así puede configurarla y comprobar que se confirma.
+     */
+    public <T> T ejecutar(String entidad, String operacion, TransactionOperations transaccionPorIntento,
+                          Supplier<T> escritura) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return escritura.get();
+        }
+        for (int intento = 1; ; intento++) {
+            contador("cudeca.optimista.intentos", "Escrituras con bloqueo optimista intentadas", entidad, operacion)
+                    .increment();
+            try {
+                return transaccionPorIntento.execute(estado -> escritura.get());
+            } catch (OptimisticLockingFailureException e) {
+                contador("cudeca.optimista.conflictos", "Conflictos de versión", entidad, operacion).increment();
+                if (intento >= maxIntentos) {
+                    contador("cudeca.optimista.agotados", "Escrituras que agotan los reintentos", entidad, operacion)
+                            .increment();
+                    throw e;
+                }
+                esperar(intento, e);
+            }
+        }
+    }
+
+    public void ejecutar(String entidad, String operacion, Runnable escritura) {
+        ejecutar(entidad, operacion, () -> {
+            escritura.run();
+            return null;
+        });
+    }
+
+    public void ejecutar(String entidad, String operacion, TransactionOperations transaccionPorIntento,
+                         Runnable escritura) {
+        ejecutar(entidad, operacion, transaccionPorIntento, () -> {
+            escritura.run();
+            return null;
+        });
+    }
+
+    // Jitter completo: aleatoria entre 0 y min(máxima, base * 2^(intento - 1))
+    private void esperar(int intento, OptimisticLockingFailureException conflicto) {
+        long tope = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(intento - 1, 30));
+        if (tope == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflicto;
+        }
+    }
+
+    private Counter contador(String nombre, String descripcion, String entidad, String operacion) {
+        return Counter.builder(nombre)
+                .description(descripcion)
+                .tag("entidad", entidad)
+                .tag("operacion", operacion)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,152 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.repository.EventoRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Motor de reserva de stock para el checkout.
+ * Combina un contador atómico en memoria por evento (filtro rápido, sin tocar la BD
+ * cuando el evento ya está agotado) con un UPDATE condicional en la BD, que es quien
+ * tiene la última palabra. Así miles de compras simultáneas se resuelven sin
+ * actualizaciones perdidas y sin serializarse leyendo la fila de 'evento'.
+ *
+ * El contador solo ve lo que pasa en esta instancia: las plazas que devuelve otra (retenciones
+ * caducadas, pedidos anulados) no le llegan. Por eso un "no hay plazas" del contador solo se
+ * cree mientras es reciente; pasado el plazo de recarga se vuelve a leer el stock de la BD
+ * antes de rechazar la compra. En un evento agotado eso es como mucho una lectura por plazo.
+ */
+@Service
+public class ReservaStockService {
+
+    private final EventoRepository eventoRepository;
+    private final Clock clock;
+    private final Duration plazoRecarga;
+
+    // Stock disponible por evento, tal y como lo ve esta instancia
+    private final ConcurrentMap<Long, ContadorStock> stockDisponible = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReservaStockService(EventoRepository eventoRepository,
+                               @Value("${cudeca.eventos.recarga-stock-ms:1000}") long recargaStockMs) {
+        this(eventoRepository, Clock.systemUTC(), Duration.ofMillis(recargaStockMs));
+    }
+
+    public ReservaStockService(EventoRepository eventoRepository, Clock clock, Duration plazoRecarga) {
+        this.eventoRepository = eventoRepository;
+        this.clock = clock;
+        this.plazoRecarga = plazoRecarga;
+    }
+
+    /**
+     * Reserva 'cantidad' plazas del evento o lanza excepción si no hay stock.
+     * Si la transacción que la envuelve hace rollback, las plazas vuelven al contador.
+     */
+    @Transactional
+    public void reservar(Long eventoId, int cantidad) {
+        if (cantidad < 1) {
+            throw new IllegalArgumentException("La cantidad de entradas debe ser al menos 1.");
+        }
+
+        // 1. Filtro en memoria: si aquí no hay plazas, ni siquiera vamos a la BD...
+        ContadorStock cargado = contadorDe(eventoId);
+        if (!decrementarSiHaySuficiente(cargado.plazas, cantidad)) {
+            // ...salvo que el contador sea antiguo: otra instancia puede haber devuelto plazas
+            if (!caducado(cargado)) {
+                throw new IllegalStateException("Stock insuficiente.");
+            }
+            stockDisponible.remove(eventoId, cargado);
+            cargado = contadorDe(eventoId);
+            if (!decrementarSiHaySuficiente(cargado.plazas, cantidad)) {
+                throw new IllegalStateException("Stock insuficiente.");
+            }
+        }
+        AtomicInteger contador = cargado.plazas;
+
+        // 2. Descuento atómico en BD (la fuente de verdad)
+        int filas;
+        try {
+            filas = eventoRepository.descontarStock(eventoId, cantidad);
+        } catch (RuntimeException e) {
+            contador.addAndGet(cantidad);
+            throw e;
+        }
+        if (filas == 0) {
+            // Otra instancia vendió esas plazas antes: descartamos el contador para recargarlo
+            stockDisponible.remove(eventoId, cargado);
+            throw new IllegalStateException("Stock insuficiente.");
+        }
+
+        Transacciones.alDeshacer(() -> contador.addAndGet(cantidad));
+    }
+
+    /**
+     * Devuelve al evento plazas reservadas que finalmente no se van a vender
+     * (p. ej. retenciones de pago caducadas). Un único UPDATE por llamada.
+     */
+    @Transactional
+    public void devolver(Long eventoId, int cantidad) {
+        if (cantidad < 1) {
+            return;
+        }
+        eventoRepository.devolverStock(eventoId, cantidad);
+        ContadorStock contador = stockDisponible.get(eventoId);
+        if (contador != null) {
+            Transacciones.alConfirmar(() -> contador.plazas.addAndGet(cantidad));
+        }
+    }
+
+    /**
+     * Plazas a la venta según el contador en memoria (lo carga de la BD si no lo tiene).
+     */
+    public int consultarDisponible(Long eventoId) {
+        return contadorDe(eventoId).plazas.get();
+    }
+
+    /**
+     * Descarta el contador en memoria de un evento para que se recargue de la BD en el
+     * siguiente uso. Lo usa la conciliación del aforo cuando detecta una desviación estable.
+     */
+    public void descartarContador(Long eventoId) {
+        stockDisponible.remove(eventoId);
+    }
+
+    private ContadorStock contadorDe(Long eventoId) {
+        return stockDisponible.computeIfAbsent(eventoId, id -> new ContadorStock(
+                new AtomicInteger(eventoRepository.findStockById(id)
+                        .orElseThrow(() -> new EntityNotFoundException("Evento no encontrado con ID: " + id))),
+                clock.instant()));
+    }
+
+    private boolean caducado(ContadorStock contador) {
+        return !clock.instant().isBefore(contador.cargadoEn.plus(plazoRecarga));
+    }
+
+    private static boolean decrementarSiHaySuficiente(AtomicInteger contador, int cantidad) {
+        while (true) {
+            int actual = contador.get();
+            if (actual < cantidad) {
+                return false;
+            }
+            if (contador.compareAndSet(actual, actual - cantidad)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Plazas del evento según esta instancia y cuándo se leyeron de la BD.
+     */
+    private record ContadorStock(AtomicInteger plazas, Instant cargadoEn) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Usuario;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plazas apartadas para un usuario mientras completa el pago en la pasarela.
+ * El stock ya está descontado en BD; si el pago no se confirma antes de que caduque,
+ * RetencionEntradasService lo devuelve al evento.
+ */
+public final class RetencionEntradas implements Delayed {
+
+    private final String codigo;
+    private final Usuario usuario;
+    private final Long eventoId;
+    private final PresupuestoEntradas presupuesto;
+    private final CanalPago canalPago;
+    private final Boolean consentimiento;
+    private final long caducaEnNanos;
+
+    RetencionEntradas(String codigo, Usuario usuario, Long eventoId, PresupuestoEntradas presupuesto,
+                      CanalPago canalPago, Boolean consentimiento, long caducaEnNanos) {
+        this.codigo = codigo;
+        this.usuario = usuario;
+        this.eventoId = eventoId;
+        this.presupuesto = presupuesto;
+        this.canalPago = canalPago;
+        this.consentimiento = consentimiento;
+        this.caducaEnNanos = caducaEnNanos;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(caducaEnNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed otra) {
+        if (otra instanceof RetencionEntradas r) {
+            return Long.compare(caducaEnNanos, r.caducaEnNanos);
+        }
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), otra.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    public boolean estaCaducada() {
+        return caducaEnNanos - System.nanoTime() <= 0;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    public Long getEventoId() {
+        return eventoId;
+    }
+
+    public int getCantidad() {
+        return presupuesto.getCantidad();
+    }
+
+    /**
+     * Precio calculado al retener: es el que se cobra al confirmar.
+     */
+    public PresupuestoEntradas getPresupuesto() {
+        return presupuesto;
+    }
+
+    public CanalPago getCanalPago() {
+        return canalPago;
+    }
+
+    public Boolean getConsentimiento() {
+        return consentimiento;
+    }
+}
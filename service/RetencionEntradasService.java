@@ -0,0 +1,129 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Usuario;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+
+/**
+ * Retenciones temporales de entradas (checkout en dos fases).
+ * Fase 1: se descuenta el stock con una transacción corta y se aparta la reserva
+ * durante unos minutos en una DelayQueue. Fase 2: al confirmarse el pago se consume
+ * la retención. Las que caducan se devuelven al stock agrupadas por evento.
+ * Así la espera de la pasarela de pago nunca ocurre dentro de una transacción sobre 'evento'.
+ */
+@Service
+public class RetencionEntradasService {
+
+    private final ReservaStockService reservaStockService;
+    private final Duration duracionRetencion;
+
+    // Índice por código (para confirmar) + cola ordenada por caducidad (para el barrido)
+    private final ConcurrentMap<String, RetencionEntradas> retenciones = new ConcurrentHashMap<>();
+    private final DelayQueue<RetencionEntradas> caducidades = new DelayQueue<>();
+
+    @Autowired
+    public RetencionEntradasService(ReservaStockService reservaStockService,
+                                    @Value("${cudeca.pedidos.minutos-retencion:10}") long minutosRetencion) {
+        this(reservaStockService, Duration.ofMinutes(minutosRetencion));
+    }
+
+    public RetencionEntradasService(ReservaStockService reservaStockService, Duration duracionRetencion) {
+        this.reservaStockService = reservaStockService;
+        this.duracionRetencion = duracionRetencion;
+    }
+
+    /**
+     * Descuenta el stock y aparta las plazas para el usuario durante el tiempo configurado.
+     * @param presupuesto Entradas pedidas y su precio; se guarda con la retención.
+     * @return La retención creada; su código es el que hay que presentar al confirmar el pago.
+     */
+    public RetencionEntradas retener(Usuario usuario, Long eventoId, PresupuestoEntradas presupuesto,
+                                     CanalPago canalPago, Boolean consentimiento) {
+        // Transacción corta: el UPDATE condicional hace commit antes de volver
+        reservaStockService.reservar(eventoId, presupuesto.getCantidad());
+
+        RetencionEntradas retencion = new RetencionEntradas(
+                UUID.randomUUID().toString(), usuario, eventoId, presupuesto, canalPago, consentimiento,
+                System.nanoTime() + duracionRetencion.toNanos());
+        registrar(retencion);
+        return retencion;
+    }
+
+    /**
+     * Consume una retención vigente. Solo una llamada puede ganar (confirmación o barrido).
+     * Una retención caducada se deja en el mapa para que la devuelva el barrido: devolverla
+     * aquí iría en la transacción del llamante, que hace rollback al fallar la confirmación.
+     * @throws IllegalStateException si el código no existe o la retención ha caducado.
+     */
+    public RetencionEntradas consumir(String codigo) {
+        if (codigo == null || codigo.isBlank()) {
+            throw new IllegalArgumentException("El código de retención es obligatorio.");
+        }
+        RetencionEntradas retencion = retenciones.get(codigo);
+        if (retencion == null || retencion.estaCaducada() || !retenciones.remove(codigo, retencion)) {
+            throw new IllegalStateException("La retención no existe o ya ha caducado.");
+        }
+        // No la sacamos de la cola (sería O(n)): el barrido ignora las que ya no están en el mapa
+        return retencion;
+    }
+
+    /**
+     * Vuelve a dejar activa una retención consumida cuya confirmación ha fallado
+     * (p. ej. rollback). Conserva su caducidad original.
+     */
+    public void restaurar(RetencionEntradas retencion) {
+        registrar(retencion);
+    }
+
+    /**
+     * Barrido periódico: devuelve al stock, en bloque y con un UPDATE por evento,
+     * todas las retenciones caducadas desde la última pasada.
+     */
+    @Scheduled(fixedDelayString = "${cudeca.pedidos.barrido-retenciones-ms:1000}")
+    public void liberarCaducadas() {
+        List<RetencionEntradas> caducadas = new ArrayList<>();
+        caducidades.drainTo(caducadas);
+        devolverAlStock(caducadas);
+    }
+
+    /**
+     * Al parar la aplicación devolvemos también las retenciones vigentes,
+     * ya que solo viven en memoria y no sobrevivirían al reinicio.
+     */
+    @PreDestroy
+    public void liberarTodas() {
+        List<RetencionEntradas> pendientes = new ArrayList<>(caducidades);
+        caducidades.clear();
+        devolverAlStock(pendientes);
+    }
+
+    private void registrar(RetencionEntradas retencion) {
+        retenciones.put(retencion.getCodigo(), retencion);
+        caducidades.put(retencion);
+    }
+
+    private void devolverAlStock(List<RetencionEntradas> candidatas) {
+        Map<Long, Integer> plazasPorEvento = new HashMap<>();
+        for (RetencionEntradas retencion : candidatas) {
+            // Si ya no está en el mapa es que se confirmó a tiempo
+            if (retenciones.remove(retencion.getCodigo(), retencion)) {
+                plazasPorEvento.merge(retencion.getEventoId(), retencion.getCantidad(), Integer::sum);
+            }
+        }
+        plazasPorEvento.forEach(reservaStockService::devolver);
+    }
+}
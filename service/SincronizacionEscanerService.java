@@ -0,0 +1,162 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EntradaEstadoDTO;
+import com.byron.cudeca.dto.EscaneoDTO;
+import com.byron.cudeca.dto.LoteEscaneosDTO;
+import com.byron.cudeca.dto.ResultadoSincronizacionDTO;
+import com.byron.cudeca.model.Entrada;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sincronización con los escáneres de puerta que trabajan sin conexión.
+ * Descarga: manifiesto binario compacto con todas las entradas del evento.
+ * Subida: lotes de escaneos que se concilian con 'usada' / 'fechaValidacion',
+ * detectando entradas leídas más de una vez (posibles copias).
+ */
+@Service
+public class SincronizacionEscanerService {
+
+    private final EntradaRepository entradaRepository;
+    private final EventoRepository eventoRepository;
+    private final ValidacionEntradaService validacionEntradaService;
+    private final AforoEventosService aforoEventosService;
+    private final ReintentosOptimistas reintentos;
+
+    @Autowired
+    public SincronizacionEscanerService(EntradaRepository entradaRepository,
+                                        EventoRepository eventoRepository,
+                                        ValidacionEntradaService validacionEntradaService,
+                                        AforoEventosService aforoEventosService,
+                                        ReintentosOptimistas reintentos) {
+        this.entradaRepository = entradaRepository;
+        this.eventoRepository = eventoRepository;
+        this.validacionEntradaService = validacionEntradaService;
+        this.aforoEventosService = aforoEventosService;
+        this.reintentos = reintentos;
+    }
+
+    /**
+     * Genera el manifiesto de entradas de un evento (ver ManifiestoEntradas para el formato).
+     */
+    @Transactional(readOnly = true)
+    public byte[] exportarManifiesto(Long eventoId) {
+        if (!eventoRepository.existsById(eventoId)) {
+            throw new EntityNotFoundException("Evento no encontrado con ID: " + eventoId);
+        }
+        List<EntradaEstadoDTO> entradas = entradaRepository.findEstadoValidacionByEventoId(eventoId);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 + entradas.size() * 20);
+        try {
+            ManifiestoEntradas.escribir(eventoId, entradas, buffer);
+        } catch (IOException e) {
+            // En memoria no puede fallar
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Concilia un lote de escaneos offline con la BD.
+     * Los escaneos se aplican por orden cronológico: el primero que lee una entrada la marca
+     * como usada con la hora del dispositivo; las lecturas posteriores de la misma entrada se
+     * devuelven como conflicto, salvo que sean un reenvío exacto (mismo QR y misma hora).
+     * Si el volcado de la validación online marca a la vez alguna entrada del lote, el lote se
+     * concilia de nuevo con las entradas recién leídas.
+     * Cada intento reclama en el índice de las puertas online las entradas que acepta, con el
+     * mismo compare-and-set que la puerta: una puerta que lea el QR antes del commit ya lo ve
+     * usado. Si el intento no confirma, las reclamaciones se deshacen. El aforo solo se toca
+     * cuando la conciliación se ha confirmado.
+     */
+    public ResultadoSincronizacionDTO conciliarEscaneos(Long eventoId, LoteEscaneosDTO lote) {
+        if (lote.getEscaneos() == null || lote.getEscaneos().isEmpty()) {
+            return new ResultadoSincronizacionDTO();
+        }
+
+        List<EscaneoDTO> escaneos = lote.getEscaneos().stream()
+                .sorted(Comparator.comparing(EscaneoDTO::getFechaEscaneo))
+                .collect(Collectors.toList());
+        Conciliacion conciliacion = reintentos.ejecutar("Entrada", "conciliarEscaneos",
+                () -> conciliar(eventoId, escaneos));
+
+        aforoEventosService.registrarValidacion(eventoId, conciliacion.aceptadas().size());
+        return conciliacion.resultado();
+    }
+
+    private Conciliacion conciliar(Long eventoId, List<EscaneoDTO> escaneos) {
+        ResultadoSincronizacionDTO resultado = new ResultadoSincronizacionDTO();
+        List<String> aceptadas = new ArrayList<>();
+        List<String> reclamadas = new ArrayList<>();
+        boolean enTransaccion = Transacciones.alDeshacer(
+                () -> reclamadas.forEach(validacionEntradaService::liberarValidacionExterna));
+        try {
+            clasificar(eventoId, escaneos, resultado, aceptadas, reclamadas);
+        } catch (RuntimeException e) {
+            if (!enTransaccion) {
+                reclamadas.forEach(validacionEntradaService::liberarValidacionExterna);
+            }
+            throw e;
+        }
+        return new Conciliacion(resultado, aceptadas);
+    }
+
+    private void clasificar(Long eventoId, List<EscaneoDTO> escaneos, ResultadoSincronizacionDTO resultado,
+                            List<String> aceptadas, List<String> reclamadas) {
+        // Un único SELECT para todo el lote
+        Map<String, Entrada> entradasPorQr = entradaRepository
+                .findByQrIn(escaneos.stream().map(EscaneoDTO::getQr).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Entrada::getQr, Function.identity()));
+
+        for (EscaneoDTO escaneo : escaneos) {
+            Entrada entrada = entradasPorQr.get(escaneo.getQr());
+            if (entrada == null || !eventoId.equals(entrada.getEvento().getId())) {
+                resultado.setDesconocidos(resultado.getDesconocidos() + 1);
+            } else if (Boolean.TRUE.equals(entrada.getUsada())) {
+                if (escaneo.getFechaEscaneo().equals(entrada.getFechaValidacion())) {
+                    resultado.setDuplicados(resultado.getDuplicados() + 1);
+                } else {
+                    resultado.getConflictos().add(new ResultadoSincronizacionDTO.Conflicto(
+                            escaneo.getQr(), escaneo.getFechaEscaneo(), entrada.getFechaValidacion()));
+                }
+            } else {
+                ValidacionEntradaService.Reclamacion reclamacion =
+                        validacionEntradaService.reclamarValidacionExterna(escaneo.getQr());
+                if (reclamacion == ValidacionEntradaService.Reclamacion.YA_VALIDADA) {
+                    // Una puerta online la aceptó hace poco y aún no se ha volcado a la BD
+                    resultado.getConflictos().add(new ResultadoSincronizacionDTO.Conflicto(
+                            escaneo.getQr(), escaneo.getFechaEscaneo(), null));
+                    continue;
+                }
+                if (reclamacion == ValidacionEntradaService.Reclamacion.RECLAMADA) {
+                    reclamadas.add(escaneo.getQr());
+                }
+                // Dirty checking: los UPDATE salen en batch al hacer commit
+                aceptadas.add(escaneo.getQr());
+                entrada.setUsada(true);
+                entrada.setFechaValidacion(escaneo.getFechaEscaneo());
+                resultado.setAceptados(resultado.getAceptados() + 1);
+            }
+        }
+    }
+
+    /**
+     * Resultado de un intento de conciliación y los QR que ha aceptado.
+     */
+    private record Conciliacion(ResultadoSincronizacionDTO resultado, List<String> aceptadas) {
+    }
+}
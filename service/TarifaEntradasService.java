@@ -0,0 +1,180 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.TramoPrecioDTO;
+import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.TipoEntrada;
+import com.byron.cudeca.model.TramoPrecio;
+import com.byron.cudeca.repository.EventoRepository;
+import com.byron.cudeca.repository.TipoEntradaRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tarifas de los eventos y cálculo del precio de los pedidos de entradas.
+ *
+ * Cada evento tiene tipos de entrada (General, Reducida, Solidaria+...) y cada tipo sus tramos
+ * de precio por fecha (anticipada, normal...). Las tarifas de un evento se leen de la BD en una
+ * consulta la primera vez que se piden y se guardan como una foto inmutable (TarifasEvento);
+ * los checkouts siguientes calculan el precio en memoria. Al cambiar las tarifas de un evento
+ * se descarta su foto cuando la transacción confirma.
+ */
+@Service
+public class TarifaEntradasService {
+
+    private final TipoEntradaRepository tipoEntradaRepository;
+    private final EventoRepository eventoRepository;
+    private final Clock clock;
+
+    private final ConcurrentMap<Long, TarifasEvento> tarifas = new ConcurrentHashMap<>();
+    // Se incrementa en cada cambio para no guardar una foto leída antes de él
+    private final AtomicLong version = new AtomicLong();
+
+    @Autowired
+    public TarifaEntradasService(TipoEntradaRepository tipoEntradaRepository, EventoRepository eventoRepository) {
+        this(tipoEntradaRepository, eventoRepository, Clock.systemDefaultZone());
+    }
+
+    public TarifaEntradasService(TipoEntradaRepository tipoEntradaRepository, EventoRepository eventoRepository,
+                                 Clock clock) {
+        this.tipoEntradaRepository = tipoEntradaRepository;
+        this.eventoRepository = eventoRepository;
+        this.clock = clock;
+    }
+
+    // ----------------------------------------------------------------------
+    // PRECIOS (CHECKOUT)
+    // ----------------------------------------------------------------------
+
+    /**
+     * Pone precio a un pedido con los tramos vigentes ahora.
+     * @param entradasPorTipo Tipo de entrada -> número de entradas.
+     * @throws IllegalArgumentException si el pedido está vacío, alguna cantidad es menor que 1
+     *                                  o el evento no vende alguno de los tipos.
+     * @throws IllegalStateException si la venta de alguno de los tipos está cerrada.
+     */
+    public PresupuestoEntradas presupuestar(Long eventoId, Map<String, Integer> entradasPorTipo) {
+        if (entradasPorTipo == null || entradasPorTipo.isEmpty()) {
+            throw new IllegalArgumentException("El pedido debe incluir al menos una entrada.");
+        }
+        TarifasEvento tarifasEvento = tarifasDe(eventoId);
+        LocalDateTime ahora = LocalDateTime.now(clock);
+
+        List<PresupuestoEntradas.Linea> lineas = new ArrayList<>(entradasPorTipo.size());
+        entradasPorTipo.forEach((tipo, cantidad) -> {
+            if (cantidad == null || cantidad < 1) {
+                throw new IllegalArgumentException("La cantidad mínima de entradas es 1.");
+            }
+            lineas.add(new PresupuestoEntradas.Linea(tipo, tarifasEvento.precio(tipo, ahora), cantidad));
+        });
+        return new PresupuestoEntradas(lineas);
+    }
+
+    /**
+     * Precio vigente de cada tipo de entrada a la venta de un evento (página del evento).
+     */
+    public List<TramoPrecioDTO> obtenerPreciosVigentes(Long eventoId) {
+        return tarifasDe(eventoId).vigentes(LocalDateTime.now(clock));
+    }
+
+    // ----------------------------------------------------------------------
+    // ADMINISTRACIÓN
+    // ----------------------------------------------------------------------
+
+    /**
+     * Sustituye las tarifas de un evento. Una lista vacía deja el evento con entrada general gratuita.
+     * @param tramos Tramos de precio; los del mismo tipo de entrada forman ese tipo.
+     */
+    @Transactional
+    public void definirTarifas(Long eventoId, List<TramoPrecioDTO> tramos) {
+        validarTramos(tramos);
+        if (!eventoRepository.existsById(eventoId)) {
+            throw new EntityNotFoundException("Evento no encontrado.");
+        }
+        tipoEntradaRepository.borrarTramos(eventoId);
+        tipoEntradaRepository.borrarTipos(eventoId);
+
+        Evento evento = eventoRepository.getReferenceById(eventoId);
+        Map<String, TipoEntrada> tipos = new LinkedHashMap<>();
+        for (TramoPrecioDTO datos : tramos) {
+            TipoEntrada tipo = tipos.computeIfAbsent(datos.getTipoEntrada(), nombre -> {
+                TipoEntrada nuevo = new TipoEntrada();
+                nuevo.setEvento(evento);
+                nuevo.setNombre(nombre);
+                return nuevo;
+            });
+            TramoPrecio tramo = new TramoPrecio();
+            tramo.setTipoEntrada(tipo);
+            tramo.setPrecio(datos.getPrecio());
+            tramo.setHasta(datos.getHasta());
+            tipo.getTramos().add(tramo);
+        }
+        tipoEntradaRepository.saveAll(tipos.values());
+        Transacciones.alConfirmar(() -> descartar(eventoId));
+    }
+
+    // ----------------------------------------------------------------------
+    // AUXILIARES
+    // ----------------------------------------------------------------------
+
+    /**
+     * Foto de las tarifas del evento; si no está en memoria se lee (y se guarda) ahora.
+     */
+    private TarifasEvento tarifasDe(Long eventoId) {
+        TarifasEvento actuales = tarifas.get(eventoId);
+        if (actuales != null) {
+            return actuales;
+        }
+        long leida = version.get();
+        List<TramoPrecioDTO> tramos = tipoEntradaRepository.findTramos(eventoId);
+        if (tramos.isEmpty() && !eventoRepository.existsById(eventoId)) {
+            throw new EntityNotFoundException("Evento no encontrado con ID: " + eventoId);
+        }
+        TarifasEvento nuevas = new TarifasEvento(tramos);
+        if (version.get() == leida) {
+            actuales = tarifas.putIfAbsent(eventoId, nuevas);
+            // Si han cambiado las tarifas mientras se guardaba, esta foto ya nace vieja
+            if (version.get() != leida) {
+                tarifas.remove(eventoId, nuevas);
+            }
+        }
+        return actuales != null ? actuales : nuevas;
+    }
+
+    private void descartar(Long eventoId) {
+        version.incrementAndGet();
+        tarifas.remove(eventoId);
+    }
+
+    private static void validarTramos(List<TramoPrecioDTO> tramos) {
+        if (tramos == null) {
+            throw new IllegalArgumentException("Las tarifas no pueden ser nulas.");
+        }
+        Set<String> vistos = new HashSet<>();
+        for (TramoPrecioDTO tramo : tramos) {
+            if (tramo.getTipoEntrada() == null || tramo.getTipoEntrada().isBlank()) {
+                throw new IllegalArgumentException("El tipo de entrada es obligatorio.");
+            }
+            if (tramo.getPrecio() == null || tramo.getPrecio().compareTo(Importe.CERO) < 0) {
+                throw new IllegalArgumentException("El precio debe ser igual o mayor a cero.");
+            }
+            if (!vistos.add(tramo.getTipoEntrada() + "|" + tramo.getHasta())) {
+                throw new IllegalArgumentException("Tramo repetido para el tipo '" + tramo.getTipoEntrada() + "'.");
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.TramoPrecioDTO;
+import com.byron.cudeca.model.Importe;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Foto inmutable de las tarifas de un evento: por cada tipo de entrada, sus tramos de precio
+ * ordenados por fecha de fin (el tramo sin fin, el último). Se construye una vez por evento y
+ * se comparte entre todos los checkouts: poner precio a un pedido no consulta la BD.
+ */
+final class TarifasEvento {
+
+    static final String GENERAL = "General";
+
+    private static final Comparator<Tramo> POR_FIN =
+            Comparator.comparing(Tramo::hasta, Comparator.nullsLast(LocalDateTime::compareTo));
+
+    // Tipo de entrada -> tramos ordenados; TreeMap para publicar los tipos por nombre
+    private final Map<String, List<Tramo>> porTipo;
+
+    TarifasEvento(List<TramoPrecioDTO> tramos) {
+        Map<String, List<Tramo>> agrupados = new TreeMap<>();
+        for (TramoPrecioDTO tramo : tramos) {
+            agrupados.computeIfAbsent(tramo.getTipoEntrada(), tipo -> new ArrayList<>())
+                    .add(new Tramo(tramo.getPrecio(), tramo.getHasta()));
+        }
+        agrupados.replaceAll((tipo, lista) -> {
+            lista.sort(POR_FIN);
+            return List.copyOf(lista);
+        });
+        if (agrupados.isEmpty()) {
+            // Evento sin tarifas: entrada general gratuita, como antes de que existieran
+            agrupados.put(GENERAL, List.of(new Tramo(Importe.CERO, null)));
+        }
+        this.porTipo = agrupados;
+    }
+
+    /**
+     * Precio de una entrada del tipo dado en el momento indicado.
+     * @throws IllegalArgumentException si el evento no vende ese tipo de entrada.
+     * @throws IllegalStateException si todos los tramos de ese tipo han vencido.
+     */
+    Importe precio(String tipoEntrada, LocalDateTime ahora) {
+        List<Tramo> tramos = porTipo.get(tipoEntrada);
+        if (tramos == null) {
+            throw new IllegalArgumentException("El evento no vende entradas de tipo '" + tipoEntrada + "'.");
+        }
+        Tramo vigente = vigente(tramos, ahora);
+        if (vigente == null) {
+            throw new IllegalStateException("La venta de entradas '" + tipoEntrada + "' está cerrada.");
+        }
+        return vigente.precio();
+    }
+
+    /**
+     * Precio vigente de cada tipo de entrada que sigue a la venta, ordenados por tipo.
+     */
+    List<TramoPrecioDTO> vigentes(LocalDateTime ahora) {
+        List<TramoPrecioDTO> vigentes = new ArrayList<>(porTipo.size());
+        porTipo.forEach((tipo, tramos) -> {
+            Tramo vigente = vigente(tramos, ahora);
+            if (vigente != null) {
+                vigentes.add(new TramoPrecioDTO(tipo, vigente.precio(), vigente.hasta()));
+            }
+        });
+        return vigentes;
+    }
+
+    private static Tramo vigente(List<Tramo> tramos, LocalDateTime ahora) {
+        for (Tramo tramo : tramos) {
+            if (tramo.hasta() == null || ahora.isBefore(tramo.hasta())) {
+                return tramo;
+            }
+        }
+        return null;
+    }
+
+    private record Tramo(Importe precio, LocalDateTime hasta) {
+    }
+}
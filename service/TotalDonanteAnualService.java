@@ -0,0 +1,92 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.ResumenAnualCertificadosDTO;
+import com.byron.cudeca.model.CertificadoDonacion;
+import com.byron.cudeca.repository.TotalDonanteAnualRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Mantiene la tabla de totales por donante y ejercicio (TotalDonanteAnual).
+ * Cada certificado suma su importe con un UPDATE en la misma transacción que lo emite:
+ * si la emisión hace rollback, el total también. Los informes fiscales leen esta tabla,
+ * con una fila por donante, en lugar de recorrer todos los certificados del año.
+ */
+@Service
+public class TotalDonanteAnualService {
+
+    private final TotalDonanteAnualRepository totalDonanteAnualRepository;
+
+    @Autowired
+    public TotalDonanteAnualService(TotalDonanteAnualRepository totalDonanteAnualRepository) {
+        this.totalDonanteAnualRepository = totalDonanteAnualRepository;
+    }
+
+    // ----------------------------------------------------------------------
+    // MANTENIMIENTO
+    // ----------------------------------------------------------------------
+
+    /**
+     * Suma un certificado recién emitido al total de su NIF en el ejercicio de su fecha.
+     * Debe llamarse dentro de la transacción que guarda el certificado.
+     * Si es el primero del NIF en el ejercicio crea la fila en esa misma transacción. Cuando dos
+     * emisiones la crean a la vez, la restricción única hace fallar a una con
+     * DataIntegrityViolationException; su transacción se deshace entera y quien emite la repite
+     * (EmisionCertificadosService), que ya encuentra la fila y solo suma.
+     */
+    @Transactional
+    public void acumular(CertificadoDonacion certificado) {
+        String nif = certificado.getNif();
+        Integer ejercicio = certificado.getFechaEmision().getYear();
+
+        if (sumar(certificado, nif, ejercicio) == 1) {
+            return;
+        }
+        int creada = totalDonanteAnualRepository.insertarSiNoExiste(nif, ejercicio,
+                certificado.getImporteCertificado().centimos(), certificado.getNombreCompleto(),
+                certificado.getCodigoPostal());
+        // 0: otra emisión confirmó la fila entre el UPDATE y el INSERT; ya se puede sumar
+        if (creada == 0 && sumar(certificado, nif, ejercicio) == 0) {
+            throw new IllegalStateException("No se pudo actualizar el total del NIF " + nif + " en " + ejercicio);
+        }
+    }
+
+    /**
+     * Rehace desde los certificados los totales de un ejercicio (carga inicial o corrección).
+     * Pensado para ejercicios cerrados: los certificados que se emitan mientras tanto en ese
+     * mismo ejercicio podrían contarse dos veces.
+     * @return Número de donantes del ejercicio.
+     */
+    @Transactional
+    public int recalcular(int ejercicio) {
+        if (ejercicio < 2000 || ejercicio > 9999) {
+            throw new IllegalArgumentException("Ejercicio fiscal no válido: " + ejercicio);
+        }
+        totalDonanteAnualRepository.borrarEjercicio(ejercicio);
+        return totalDonanteAnualRepository.insertarDesdeCertificados(ejercicio,
+                LocalDate.of(ejercicio, 1, 1).atStartOfDay(),
+                LocalDate.of(ejercicio + 1, 1, 1).atStartOfDay());
+    }
+
+    // ----------------------------------------------------------------------
+    // CONSULTAS
+    // ----------------------------------------------------------------------
+
+    /**
+     * Resumen por ejercicio de lo certificado al propio usuario ("Mis Certificados").
+     * @param usuarioNif NIF de la cuenta que consulta.
+     */
+    @Transactional(readOnly = true)
+    public List<ResumenAnualCertificadosDTO> obtenerResumen(String usuarioNif) {
+        return totalDonanteAnualRepository.findResumenDeUsuario(usuarioNif);
+    }
+
+    private int sumar(CertificadoDonacion certificado, String nif, Integer ejercicio) {
+        return totalDonanteAnualRepository.sumar(nif, ejercicio, certificado.getImporteCertificado().centimos(),
+                certificado.getNombreCompleto(), certificado.getCodigoPostal());
+    }
+}
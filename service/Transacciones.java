@@ -0,0 +1,50 @@
+package com.byron.cudeca.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Acciones ligadas al final de la transacción actual, para el estado en memoria (contadores,
+ * cachés, colas) que solo debe cambiar si la BD confirma.
+ */
+final class Transacciones {
+
+    private Transacciones() {
+    }
+
+    /**
+     * Ejecuta la acción cuando la transacción actual hace commit, o ya si no hay transacción.
+     * Si hace rollback no se ejecuta.
+     */
+    static void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+
+    /**
+     * Ejecuta la acción si la transacción actual acaba sin commit (rollback o fallo al confirmar).
+     * @return false si no hay transacción: no se registra nada y deshacer queda a cargo del llamador.
+     */
+    static boolean alDeshacer(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                if (estado != STATUS_COMMITTED) {
+                    accion.run();
+                }
+            }
+        });
+        return true;
+    }
+}
@@ -0,0 +1,286 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EntradaEstadoDTO;
+import com.byron.cudeca.dto.ResultadoValidacionDTO;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Validación de entradas en la puerta del evento.
+ * Cada mañana se precarga en memoria un índice QR -> estado de las entradas de los
+ * eventos que empiezan hoy, de forma que validar un QR es una búsqueda en un hash y un
+ * compare-and-set (sin ir a la BD). Los dobles escaneos se rechazan de forma atómica y
+ * las marcas 'usada' se escriben en la BD en segundo plano, por lotes.
+ */
+@Service
+public class ValidacionEntradaService {
+
+    private final EntradaRepository entradaRepository;
+    private final EventoRepository eventoRepository;
+    private final CodigoQrService codigoQrService;
+    private final AforoEventosService aforoEventosService;
+    private final Clock clock;
+
+    // Índice QR -> estado. Las entradas que no estén (p. ej. vendidas tras la precarga) se buscan en BD.
+    private final Map<String, EntradaIndexada> indice = new ConcurrentHashMap<>();
+    // Eventos de la última precarga: solo se validan entradas de estos eventos
+    private volatile Set<Long> eventosDeHoy = Set.of();
+    // Validaciones aceptadas pendientes de escribir en BD
+    private final ConcurrentLinkedQueue<ValidacionPendiente> pendientes = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public ValidacionEntradaService(EntradaRepository entradaRepository, EventoRepository eventoRepository,
+                                    CodigoQrService codigoQrService, AforoEventosService aforoEventosService) {
+        this(entradaRepository, eventoRepository, codigoQrService, aforoEventosService, Clock.systemDefaultZone());
+    }
+
+    public ValidacionEntradaService(EntradaRepository entradaRepository, EventoRepository eventoRepository,
+                                    CodigoQrService codigoQrService, AforoEventosService aforoEventosService,
+                                    Clock clock) {
+        this.entradaRepository = entradaRepository;
+        this.eventoRepository = eventoRepository;
+        this.codigoQrService = codigoQrService;
+        this.aforoEventosService = aforoEventosService;
+        this.clock = clock;
+    }
+
+    // ----------------------------------------------------------------------
+    // PRECARGA DEL ÍNDICE
+    // ----------------------------------------------------------------------
+
+    /**
+     * Precarga automática: al arrancar la aplicación y cada madrugada.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${cudeca.validacion.cron-precarga:0 0 5 * * *}")
+    public void programarPrecarga() {
+        precargarEventosDeHoy();
+    }
+
+    /**
+     * Carga en memoria las entradas de los eventos que empiezan hoy y descarta las de eventos
+     * ya terminados. Los eventos de ayer se siguen validando hasta esta precarga (por la
+     * madrugada), así que una gala que pasa de medianoche no se corta.
+     * También puede lanzarse a mano desde el panel (p. ej. tras una venta de última hora).
+     * @return Número de entradas indexadas.
+     */
+    public int precargarEventosDeHoy() {
+        LocalDate hoy = LocalDate.now(clock);
+        List<Long> eventoIds = eventoRepository.findIdsByFechaEntre(hoy.atStartOfDay(), hoy.plusDays(1).atStartOfDay());
+
+        Map<String, EntradaIndexada> nuevas = new HashMap<>();
+        if (!eventoIds.isEmpty()) {
+            for (EntradaEstadoDTO estado : entradaRepository.findEstadoValidacionByEventoIds(eventoIds)) {
+                nuevas.put(estado.getQr(), new EntradaIndexada(
+                        estado.getId(), estado.getEventoId(), Boolean.TRUE.equals(estado.getUsada())));
+            }
+        }
+
+        // Sustituimos el índice sin perder escaneos aceptados que aún no están en BD
+        nuevas.forEach((qr, entrada) -> indice.merge(qr, entrada,
+                (actual, recargada) -> actual.estaUsada() ? actual : recargada));
+        eventosDeHoy = Set.copyOf(eventoIds);
+        // Las de eventos terminados (o entradas borradas) se descartan aunque estén usadas: ya no
+        // se pueden validar y sus escaneos pendientes de volcar están en la cola, no en el índice
+        indice.keySet().retainAll(nuevas.keySet());
+        return nuevas.size();
+    }
+
+    // ----------------------------------------------------------------------
+    // VALIDACIÓN
+    // ----------------------------------------------------------------------
+
+    /**
+     * Valida un QR en la puerta de un evento. Si dos escáneres leen el mismo QR a la vez,
+     * exactamente uno recibe VALIDA y el otro YA_USADA. Solo se aceptan entradas del evento
+     * de la puerta, y solo si ese evento es de hoy (está en la última precarga): una entrada de
+     * otro evento o de otro día no se marca como usada.
+     * @param eventoId Evento de la puerta que escanea.
+     */
+    public ResultadoValidacionDTO validar(Long eventoId, String qr) {
+        if (qr == null || qr.isBlank()) {
+            return ResultadoValidacionDTO.noExiste();
+        }
+        // Los QR firmados falsos o manipulados se descartan en CPU, sin índice ni BD
+        boolean formatoAntiguo = codigoQrService.esFormatoAntiguo(qr);
+        Optional<CodigoQrService.DatosQr> datos = formatoAntiguo ? Optional.empty() : codigoQrService.verificar(qr);
+        if (!formatoAntiguo && datos.isEmpty()) {
+            return ResultadoValidacionDTO.noExiste();
+        }
+        if (!eventosDeHoy.contains(eventoId)) {
+            return new ResultadoValidacionDTO(ResultadoValidacionDTO.Resultado.FUERA_DE_FECHA, null, eventoId, null);
+        }
+        // El QR firmado lleva su evento: una entrada de otro evento se rechaza también en CPU
+        if (datos.isPresent() && datos.get().eventoId() != eventoId) {
+            return new ResultadoValidacionDTO(ResultadoValidacionDTO.Resultado.OTRO_EVENTO, null, datos.get().eventoId(), null);
+        }
+
+        EntradaIndexada entrada = indice.get(qr);
+        if (entrada == null) {
+            Optional<EntradaIndexada> desdeBd = buscarEnBd(qr);
+            if (desdeBd.isEmpty()) {
+                return ResultadoValidacionDTO.noExiste();
+            }
+            entrada = desdeBd.get();
+            // Solo se indexan entradas de eventos de hoy: el índice no crece con QR de otros días
+            if (eventosDeHoy.contains(entrada.eventoId)) {
+                entrada = indice.computeIfAbsent(qr, k -> desdeBd.get());
+            }
+        }
+        if (entrada.eventoId != eventoId) {
+            return new ResultadoValidacionDTO(ResultadoValidacionDTO.Resultado.OTRO_EVENTO, entrada.id, entrada.eventoId, null);
+        }
+
+        if (!entrada.marcarUsada()) {
+            return new ResultadoValidacionDTO(ResultadoValidacionDTO.Resultado.YA_USADA, entrada.id, entrada.eventoId, null);
+        }
+        // A segundos: el volcado agrupa por fecha y manda un UPDATE por grupo
+        LocalDateTime ahora = LocalDateTime.now(clock).truncatedTo(ChronoUnit.SECONDS);
+        pendientes.add(new ValidacionPendiente(entrada.id, ahora));
+        aforoEventosService.registrarValidacion(entrada.eventoId, 1);
+        return new ResultadoValidacionDTO(ResultadoValidacionDTO.Resultado.VALIDA, entrada.id, entrada.eventoId, ahora);
+    }
+
+    /**
+     * Marca en el índice una entrada cuya validación llega por otra vía (p. ej. un escáner offline),
+     * para que las puertas online la rechacen a partir de ahora.
+     * @return false si el índice ya la tenía como usada; true si se ha marcado o no estaba indexada.
+     */
+    public boolean marcarValidadaExternamente(String qr) {
+        EntradaIndexada entrada = indice.get(qr);
+        return entrada == null || entrada.marcarUsada();
+    }
+
+    /**
+     * Reclama en el índice, con el mismo compare-and-set que la puerta online, una entrada que
+     * va a marcar la sincronización offline. Si la transacción de la sincronización no llega a
+     * confirmar, debe devolverla con liberarValidacionExterna.
+     */
+    public Reclamacion reclamarValidacionExterna(String qr) {
+        EntradaIndexada entrada = indice.get(qr);
+        if (entrada == null) {
+            return Reclamacion.NO_INDEXADA;
+        }
+        return entrada.marcarUsada() ? Reclamacion.RECLAMADA : Reclamacion.YA_VALIDADA;
+    }
+
+    /**
+     * Deshace una reclamación (RECLAMADA) cuya transacción ha hecho rollback.
+     */
+    public void liberarValidacionExterna(String qr) {
+        EntradaIndexada entrada = indice.get(qr);
+        if (entrada != null) {
+            entrada.liberar();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // ESCRITURA ASÍNCRONA EN LOTES
+    // ----------------------------------------------------------------------
+
+    /**
+     * Vuelca a la BD las validaciones aceptadas desde la última pasada, sin leer las entradas:
+     * un UPDATE condicional (usada = false) por segundo de validación, normalmente uno por pasada.
+     * Si la sincronización offline ha marcado antes alguna entrada, el UPDATE simplemente la salta.
+     * @return Número de entradas marcadas como usadas.
+     */
+    @Scheduled(fixedDelayString = "${cudeca.validacion.volcado-ms:500}")
+    @Transactional
+    public int volcarValidaciones() {
+        List<ValidacionPendiente> lote = new ArrayList<>();
+        ValidacionPendiente pendiente;
+        while ((pendiente = pendientes.poll()) != null) {
+            lote.add(pendiente);
+        }
+        if (lote.isEmpty()) {
+            return 0;
+        }
+
+        Map<LocalDateTime, List<Long>> idsPorFecha = new HashMap<>();
+        for (ValidacionPendiente validacion : lote) {
+            idsPorFecha.computeIfAbsent(validacion.fecha(), f -> new ArrayList<>()).add(validacion.entradaId());
+        }
+        try {
+            int marcadas = 0;
+            for (Map.Entry<LocalDateTime, List<Long>> grupo : idsPorFecha.entrySet()) {
+                marcadas += entradaRepository.marcarUsadas(grupo.getValue(), grupo.getKey());
+            }
+            return marcadas;
+        } catch (RuntimeException e) {
+            // Si la BD falla, el lote vuelve a la cola para la siguiente pasada
+            pendientes.addAll(lote);
+            throw e;
+        }
+    }
+
+    private Optional<EntradaIndexada> buscarEnBd(String qr) {
+        return entradaRepository.findByQrCodigo(qr)
+                .map(e -> new EntradaIndexada(e.getId(), e.getEvento().getId(), Boolean.TRUE.equals(e.getUsada())));
+    }
+
+    private record ValidacionPendiente(Long entradaId, LocalDateTime fecha) {
+    }
+
+    /**
+     * Estado compacto de una entrada en el índice: dos longs y un int de marca.
+     */
+    private static final class EntradaIndexada {
+
+        private static final AtomicIntegerFieldUpdater<EntradaIndexada> USADA =
+                AtomicIntegerFieldUpdater.newUpdater(EntradaIndexada.class, "usada");
+
+        private final long id;
+        private final long eventoId;
+        private volatile int usada;
+
+        private EntradaIndexada(long id, long eventoId, boolean usada) {
+            this.id = id;
+            this.eventoId = eventoId;
+            this.usada = usada ? 1 : 0;
+        }
+
+        private boolean marcarUsada() {
+            return USADA.compareAndSet(this, 0, 1);
+        }
+
+        private void liberar() {
+            USADA.compareAndSet(this, 1, 0);
+        }
+
+        private boolean estaUsada() {
+            return usada == 1;
+        }
+    }
+
+    /**
+     * Resultado de reclamar en el índice una entrada validada por otra vía.
+     */
+    public enum Reclamacion {
+        // Estaba libre en el índice y ahora consta como usada
+        RECLAMADA,
+        // No está en el índice: solo decide la BD
+        NO_INDEXADA,
+        // Una puerta online ya la aceptó (aún puede no estar volcada)
+        YA_VALIDADA
+    }
+}
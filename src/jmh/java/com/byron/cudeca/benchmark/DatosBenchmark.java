@@ -0,0 +1,65 @@
+package com.byron.cudeca.benchmark;
+
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.repository.EventoRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Datos sintéticos y dobles de prueba para los benchmarks. Siempre la misma semilla, para que
+ * dos ejecuciones (o dos releases) midan exactamente los mismos datos.
+ */
+public final class DatosBenchmark {
+
+    public static final Clock RELOJ = Clock.fixed(Instant.parse("2024-01-01T10:00:00Z"), ZoneId.of("Europe/Madrid"));
+
+    private static final String[] TIPOS = {"Concierto", "Gala", "Carrera", "Cena", "Mercadillo", "Taller"};
+    private static final String[] LUGARES = {"Málaga", "Marbella", "Benalmádena", "Estepona", "Ronda", "Nerja"};
+    private static final String[] PALABRAS = {"solidario", "benéfico", "primavera", "navidad", "familiar", "cudeca"};
+
+    private DatosBenchmark() {
+    }
+
+    /**
+     * Eventos futuros con nombres, tipos, lugares, fechas y stock variados.
+     */
+    public static List<EventoDetalleDTO> eventos(int cantidad) {
+        Random random = new Random(42);
+        LocalDateTime inicio = LocalDateTime.now(RELOJ).plusDays(1);
+        List<EventoDetalleDTO> eventos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            String tipo = TIPOS[random.nextInt(TIPOS.length)];
+            String palabra = PALABRAS[random.nextInt(PALABRAS.length)];
+            eventos.add(new EventoDetalleDTO((long) i + 1,
+                    tipo + " " + palabra + " " + random.nextInt(10_000),
+                    tipo,
+                    "Evento " + palabra + " a beneficio de la Fundación Cudeca.",
+                    inicio.plusMinutes(random.nextInt(365 * 24 * 60)),
+                    LUGARES[random.nextInt(LUGARES.length)],
+                    random.nextInt(500)));
+        }
+        return eventos;
+    }
+
+    /**
+     * EventoRepository que solo sabe devolver la cartelera dada. Es un proxy y no un mock para
+     * que el doble no registre cada llamada (Mockito guardaría millones de invocaciones).
+     */
+    public static EventoRepository repositorio(List<EventoDetalleDTO> cartelera) {
+        return (EventoRepository) Proxy.newProxyInstance(EventoRepository.class.getClassLoader(),
+                new Class<?>[]{EventoRepository.class}, (proxy, metodo, argumentos) -> switch (metodo.getName()) {
+                    case "findDetallesDesde" -> cartelera;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == argumentos[0];
+                    case "toString" -> "EventoRepository(benchmark)";
+                    default -> throw new UnsupportedOperationException(metodo.getName());
+                });
+    }
+}
@@ -0,0 +1,37 @@
+package com.byron.cudeca.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Lanza los benchmarks JMH (perfil 'benchmarks' del pom) y guarda los resultados en JSON,
+ * el formato que leen las herramientas de comparación de JMH, para poder comparar releases.
+ * Argumentos: expresión regular de los benchmarks a ejecutar y fichero de resultados.
+ */
+public final class EjecutarBenchmarks {
+
+    private EjecutarBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String filtro = args.length > 0 ? args[0] : ".*";
+        Path resultado = Path.of(args.length > 1 ? args[1] : "target/jmh/resultados.json");
+        if (resultado.getParent() != null) {
+            Files.createDirectories(resultado.getParent());
+        }
+
+        Options opciones = new OptionsBuilder()
+                .include(filtro)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultado.toString())
+                .build();
+        new Runner(opciones).run();
+    }
+}
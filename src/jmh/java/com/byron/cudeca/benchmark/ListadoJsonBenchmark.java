@@ -0,0 +1,51 @@
+package com.byron.cudeca.benchmark;
+
+import com.byron.cudeca.dto.EventoResumenDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización a JSON de las respuestas de listado: la cartelera pública (lista completa)
+ * y una página del histórico del panel. Mismo ObjectMapper que configura Spring Boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ListadoJsonBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int eventos;
+
+    private ObjectMapper objectMapper;
+    private List<EventoResumenDTO> cartelera;
+    private PageImpl<EventoResumenDTO> pagina;
+
+    @Setup
+    public void preparar() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        cartelera = DatosBenchmark.eventos(eventos).stream().map(e -> e.resumen()).toList();
+        pagina = new PageImpl<>(cartelera.subList(0, Math.min(20, eventos)), PageRequest.of(0, 20), eventos);
+    }
+
+    @Benchmark
+    public byte[] cartelera() throws Exception {
+        return objectMapper.writeValueAsBytes(cartelera);
+    }
+
+    @Benchmark
+    public byte[] paginaHistorico() throws Exception {
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+}
@@ -0,0 +1,54 @@
+package com.byron.cudeca.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import java.time.LocalDateTime;
+
+/**
+ * Copia de Entrada con el ID que tenía antes (IDENTITY), solo para InsercionEntradasBenchmark.
+ * Mismas columnas, restricciones y relaciones, en su propia tabla: lo único que cambia entre
+ * las dos es cómo se genera el ID. Vive en src/jmh, así que la aplicación no la ve.
+ */
+@Entity
+@Table(name = "entrada_identidad")
+@Data
+public class EntradaIdentidad {
+
+    // Hibernate tiene que ejecutar cada INSERT por separado para leer el ID generado
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private String qr;
+
+    @Column(nullable = true)
+    private LocalDateTime fechaValidacion;
+
+    @Column(nullable = false)
+    private Boolean usada;
+
+    @Column(nullable = false)
+    private String tipoEntrada;
+
+    @Column(nullable = true)
+    private String nombrePersona;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pedidoId", nullable = false)
+    private Pedido pedido;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "eventoId", nullable = false)
+    private Evento evento;
+}
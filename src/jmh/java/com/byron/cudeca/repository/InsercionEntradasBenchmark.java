@@ -0,0 +1,159 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.AplicacionPrueba;
+import com.byron.cudeca.model.Administrador;
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Entrada;
+import com.byron.cudeca.model.EntradaIdentidad;
+import com.byron.cudeca.model.EstadoPago;
+import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Pedido;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guardar las entradas de un pedido con el mapeo real sobre H2: Entrada (secuencia pooled de
+ * 50 IDs y batch JDBC) frente a EntradaIdentidad (la misma entidad con IDENTITY, un INSERT por
+ * fila), por el mismo camino que el checkout: saveAll + flush en una transacción.
+ * Arranca la aplicación completa de los tests; cada iteración empieza con las tablas vacías.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InsercionEntradasBenchmark {
+
+    @Param({"1", "10", "500"})
+    private int cantidad;
+
+    private ConfigurableApplicationContext contexto;
+    private TransactionTemplate transaccion;
+    private EntradaRepository entradaRepository;
+    private SimpleJpaRepository<EntradaIdentidad, Long> entradaIdentidadRepository;
+    private Evento evento;
+    private Pedido pedido;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = new SpringApplicationBuilder(AplicacionPrueba.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark_entradas;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run();
+        transaccion = new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class));
+        entradaRepository = contexto.getBean(EntradaRepository.class);
+        entradaIdentidadRepository = new SimpleJpaRepository<>(EntradaIdentidad.class,
+                SharedEntityManagerCreator.createSharedEntityManager(contexto.getBean(EntityManagerFactory.class)));
+        sembrar();
+    }
+
+    @TearDown(Level.Iteration)
+    public void vaciar() {
+        transaccion.executeWithoutResult(estado -> {
+            entradaRepository.deleteAllInBatch();
+            entradaIdentidadRepository.deleteAllInBatch();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<Entrada> secuenciaPooled() {
+        return transaccion.execute(estado -> {
+            List<Entrada> guardadas = entradaRepository.saveAll(entradas());
+            entradaRepository.flush();
+            return guardadas;
+        });
+    }
+
+    @Benchmark
+    public List<EntradaIdentidad> identity() {
+        return transaccion.execute(estado -> {
+            List<EntradaIdentidad> guardadas = entradaIdentidadRepository.saveAll(entradasIdentidad());
+            entradaIdentidadRepository.flush();
+            return guardadas;
+        });
+    }
+
+    private List<Entrada> entradas() {
+        List<Entrada> entradas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Entrada entrada = new Entrada();
+            entrada.setQr(UUID.randomUUID().toString());
+            entrada.setUsada(false);
+            entrada.setTipoEntrada("General");
+            entrada.setPedido(pedido);
+            entrada.setEvento(evento);
+            entradas.add(entrada);
+        }
+        return entradas;
+    }
+
+    private List<EntradaIdentidad> entradasIdentidad() {
+        List<EntradaIdentidad> entradas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            EntradaIdentidad entrada = new EntradaIdentidad();
+            entrada.setQr(UUID.randomUUID().toString());
+            entrada.setUsada(false);
+            entrada.setTipoEntrada("General");
+            entrada.setPedido(pedido);
+            entrada.setEvento(evento);
+            entradas.add(entrada);
+        }
+        return entradas;
+    }
+
+    private void sembrar() {
+        Administrador administrador = new Administrador();
+        administrador.setNif("00000000T");
+        administrador.setNombre("admin");
+        administrador.setApellidos("Benchmark");
+        administrador.setEmail("admin@cudeca.test");
+        administrador.setNumeroTelefono("600000000");
+        administrador.setRecibirNewsletter(false);
+        administrador.setId(1L);
+        administrador.setContrasena("no-se-usa");
+        contexto.getBean(UsuarioRepository.class).save(administrador);
+
+        evento = new Evento();
+        evento.setNombre("Gala solidaria");
+        evento.setTipoEvento("gala");
+        evento.setDescripcion("Evento de benchmark");
+        evento.setFecha(LocalDate.now().atTime(LocalTime.NOON));
+        evento.setUbicacion("Málaga");
+        evento.setStock(1_000);
+        evento.setAdministrador(administrador);
+        evento = contexto.getBean(EventoRepository.class).save(evento);
+
+        pedido = new Pedido();
+        pedido.setFecha(LocalDate.now());
+        pedido.setHora(LocalTime.NOON);
+        pedido.setImporteTotal(Importe.CERO);
+        pedido.setConsentimiento(true);
+        pedido.setEstadoPago(EstadoPago.PAGADO);
+        pedido.setCanalPago(CanalPago.TARJETA);
+        pedido.setUsuario(administrador);
+        pedido = contexto.getBean(PedidoRepository.class).save(pedido);
+    }
+}
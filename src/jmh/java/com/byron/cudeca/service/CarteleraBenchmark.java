@@ -0,0 +1,64 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.benchmark.DatosBenchmark;
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
+import com.byron.cudeca.repository.EventoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventoService.obtenerEventosConFiltros (home pública) con carteleras de distintos tamaños:
+ * servida desde la cartelera cacheada, con búsqueda por texto, y reconstruyéndola en cada
+ * llamada (una lectura del repositorio más un sort por criterio y sentido).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CarteleraBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int eventos;
+
+    @Param({"fecha", "nombre", "stock"})
+    private String sortBy;
+
+    private EventoService cacheada;
+    private EventoService sinCache;
+
+    @Setup
+    public void preparar() {
+        List<EventoDetalleDTO> cartelera = DatosBenchmark.eventos(eventos);
+        EventoRepository repositorio = DatosBenchmark.repositorio(cartelera);
+        // Solo se lee la cartelera: ni los administradores ni los reintentos de escritura intervienen
+        ReintentosOptimistas reintentos = new ReintentosOptimistas(TransactionOperations.withoutTransaction(),
+                new SimpleMeterRegistry(), 1, 0, 0);
+        cacheada = new EventoService(repositorio, null, reintentos, TransactionOperations.withoutTransaction(), DatosBenchmark.RELOJ, Duration.ofDays(1));
+        cacheada.obtenerEventosConFiltros(null, sortBy, "asc");
+        // Con duración cero la cartelera caduca nada más construirse
+        sinCache = new EventoService(repositorio, null, reintentos, TransactionOperations.withoutTransaction(), DatosBenchmark.RELOJ, Duration.ZERO);
+    }
+
+    @Benchmark
+    public List<EventoResumenDTO> listadoCacheado() {
+        return cacheada.obtenerEventosConFiltros(null, sortBy, "asc");
+    }
+
+    @Benchmark
+    public List<EventoResumenDTO> busquedaCacheada() {
+        return cacheada.obtenerEventosConFiltros("solidario", sortBy, "desc");
+    }
+
+    @Benchmark
+    public List<EventoResumenDTO> reconstruirCartelera() {
+        return sinCache.obtenerEventosConFiltros(null, sortBy, "asc");
+    }
+}
@@ -0,0 +1,46 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.benchmark.DatosBenchmark;
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordenación con el comparador de la cartelera (CatalogoEventos.comparador) para cada
+ * criterio y sentido: es el sort que se hace al construir la cartelera y en cada búsqueda.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ComparadorEventosBenchmark {
+
+    @Param({"1000", "10000"})
+    private int eventos;
+
+    @Param({"fecha", "nombre", "tipoevento", "ubicacion", "stock"})
+    private String criterio;
+
+    @Param({"false", "true"})
+    private boolean desc;
+
+    private List<EventoResumenDTO> desordenados;
+
+    @Setup
+    public void preparar() {
+        desordenados = DatosBenchmark.eventos(eventos).stream().map(EventoDetalleDTO::resumen).toList();
+    }
+
+    @Benchmark
+    public List<EventoResumenDTO> ordenar() {
+        List<EventoResumenDTO> copia = new ArrayList<>(desordenados);
+        copia.sort(CatalogoEventos.comparador(criterio, desc));
+        return copia;
+    }
+}
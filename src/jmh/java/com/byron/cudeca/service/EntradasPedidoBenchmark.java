@@ -0,0 +1,64 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.Entrada;
+import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Pedido;
+import com.byron.cudeca.model.Usuario;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parte de CPU del checkout: crear las entradas de un pedido con su QR firmado
+ * (PedidoService.crearEntradas, sin BD) para pedidos de distintos tamaños, y un QR suelto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EntradasPedidoBenchmark {
+
+    private static final long EVENTO_ID = 4_210L;
+
+    @Param({"1", "10", "500"})
+    private int cantidad;
+
+    private CodigoQrService codigoQrService;
+    private Evento evento;
+    private Pedido pedido;
+    private Usuario usuario;
+    private PresupuestoEntradas presupuesto;
+
+    @Setup
+    public void preparar() {
+        codigoQrService = new CodigoQrService("clave-de-benchmark-de-32-bytes!!".getBytes(StandardCharsets.UTF_8));
+        evento = new Evento();
+        evento.setId(EVENTO_ID);
+        pedido = new Pedido();
+        pedido.setId(987_654L);
+        usuario = new Usuario();
+        usuario.setNombre("José");
+        // Un pedido con dos tipos de entrada, como en una compra familiar
+        int reducidas = cantidad / 3;
+        presupuesto = reducidas == 0
+                ? new PresupuestoEntradas(List.of(new PresupuestoEntradas.Linea("General", Importe.deEuros("20.00"), cantidad)))
+                : new PresupuestoEntradas(List.of(
+                        new PresupuestoEntradas.Linea("General", Importe.deEuros("20.00"), cantidad - reducidas),
+                        new PresupuestoEntradas.Linea("Reducida", Importe.deEuros("10.00"), reducidas)));
+    }
+
+    @Benchmark
+    public List<Entrada> crearEntradas() {
+        return PedidoService.crearEntradas(codigoQrService, EVENTO_ID, evento, pedido, usuario, presupuesto);
+    }
+
+    @Benchmark
+    public String generarQr() {
+        return codigoQrService.generar(EVENTO_ID, pedido.getId(), cantidad);
+    }
+}
@@ -0,0 +1,23 @@
+package com.byron.cudeca;
+
+import com.byron.cudeca.service.AdministradorService;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * La aplicación completa para los tests que arrancan el contexto (@SpringBootTest), salvo
+ * AdministradorService: necesita un PasswordEncoder que la aplicación no define. Ningún
+ * endpoint lo usa.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan(basePackages = "com.byron.cudeca",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = AdministradorService.class))
+@EntityScan("com.byron.cudeca.model")
+@EnableJpaRepositories(basePackages = "com.byron.cudeca.repository")
+public class AplicacionPrueba {
+}
@@ -0,0 +1,450 @@
+package com.byron.cudeca.carga;
+
+import com.byron.cudeca.AplicacionPrueba;
+import com.byron.cudeca.dto.AforoEventoDTO;
+import com.byron.cudeca.dto.ConciliacionAforoDTO;
+import com.byron.cudeca.dto.ResultadoValidacionDTO;
+import com.byron.cudeca.dto.TramoPrecioDTO;
+import com.byron.cudeca.model.*;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import com.byron.cudeca.repository.PedidoRepository;
+import com.byron.cudeca.repository.UsuarioRepository;
+import com.byron.cudeca.service.AforoEventosService;
+import com.byron.cudeca.service.CodigoQrService;
+import com.byron.cudeca.service.EventoService;
+import com.byron.cudeca.service.PedidoService;
+import com.byron.cudeca.service.TarifaEntradasService;
+import com.byron.cudeca.service.ValidacionEntradaService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Prueba de carga de extremo a extremo: arranca la aplicación contra H2 en memoria, siembra
+ * eventos, usuarios, pedidos y entradas, y lanza desde varios hilos una mezcla de checkout
+ * (PedidoService.finalizarPedido), cartelera, búsqueda y escaneo de QR en la puerta.
+ * Informa del throughput y la latencia p50/p99 de cada operación y falla si encuentra
+ * sobreventa o descuadres entre stock, entradas, validaciones y contadores de aforo.
+ *
+ * No forma parte de la batería normal; se lanza con el perfil 'carga':
+ *     mvn -Pcarga test
+ *     mvn -Pcarga test -Dcudeca.carga.hilos=32 -Dcudeca.carga.segundos=60
+ */
+@EnabledIfSystemProperty(named = "cudeca.carga", matches = "true")
+@ActiveProfiles("test")
+@SpringBootTest(
+        classes = AplicacionPrueba.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:carga;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.datasource.hikari.maximum-pool-size=40",
+                // Las conciliaciones las lanza la prueba al final, no el planificador a mitad
+                "cudeca.aforo.conciliacion-ms=3600000"
+        })
+class CargaCheckoutTest {
+
+    // Volumen sembrado y duración, ajustables con -Dcudeca.carga.<nombre>=<valor>
+    private static final int HILOS = parametro("hilos", 16);
+    private static final int SEGUNDOS = parametro("segundos", 20);
+    private static final int SEGUNDOS_CALENTAMIENTO = parametro("calentamiento", 5);
+    private static final int EVENTOS = parametro("eventos", 500);
+    private static final int USUARIOS = parametro("usuarios", 2000);
+    private static final int PEDIDOS = parametro("pedidos", 5000);
+
+    // Eventos muy demandados y con poco aforo: la mitad de los checkouts van a ellos y se agotan
+    private static final int EVENTOS_CALIENTES = 5;
+    private static final int AFORO_CALIENTE = 300;
+
+    private static final String[] PALABRAS = {"concierto", "gala", "cena", "mercadillo", "carrera", "teatro"};
+    private static final String[] CRITERIOS = {"fecha", "nombre", "ubicacion", "stock"};
+
+    private enum Operacion {
+        CHECKOUT(40), CARTELERA(25), BUSQUEDA(15), ESCANEO(20);
+
+        private final int peso;
+
+        Operacion(int peso) {
+            this.peso = peso;
+        }
+    }
+
+    @Autowired
+    private PedidoService pedidoService;
+    @Autowired
+    private EventoService eventoService;
+    @Autowired
+    private ValidacionEntradaService validacionEntradaService;
+    @Autowired
+    private AforoEventosService aforoEventosService;
+    @Autowired
+    private TarifaEntradasService tarifaEntradasService;
+    @Autowired
+    private CodigoQrService codigoQrService;
+    @Autowired
+    private EventoRepository eventoRepository;
+    @Autowired
+    private EntradaRepository entradaRepository;
+    @Autowired
+    private PedidoRepository pedidoRepository;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Estado compartido por los hilos durante la prueba
+    private final Map<Long, Integer> aforoInicial = new HashMap<>();
+    private final List<Long> eventoIds = new ArrayList<>();
+    private final List<Usuario> usuarios = new ArrayList<>();
+    private final List<String> qrs = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicInteger> validacionesPorQr = new ConcurrentHashMap<>();
+    private final AtomicInteger entradasVendidas = new AtomicInteger();
+    private final AtomicInteger checkoutsAgotados = new AtomicInteger();
+
+    // Verifica el throughput del checkout bajo concurrencia y que no hay sobreventa ni descuadres
+    @Test
+    void mezclaConcurrente_sinSobreventaNiDescuadres() throws Exception {
+        long inicioSiembra = System.nanoTime();
+        sembrar();
+        System.out.printf("Siembra: %d eventos, %d usuarios, %d pedidos, %d entradas en %.1f s%n",
+                EVENTOS, USUARIOS, PEDIDOS, entradaRepository.count(), (System.nanoTime() - inicioSiembra) / 1e9);
+
+        ejecutarMezcla(SEGUNDOS_CALENTAMIENTO);
+        Map<Operacion, Medicion> mediciones = ejecutarMezcla(SEGUNDOS);
+        imprimirInforme(mediciones);
+
+        List<String> violaciones = comprobarConsistencia();
+        violaciones.forEach(v -> System.out.println("VIOLACIÓN: " + v));
+        assertThat(mediciones.get(Operacion.CHECKOUT).errores).as("checkouts con error inesperado").isZero();
+        assertThat(violaciones).isEmpty();
+    }
+
+    // -------------------------------------------------------------------------
+    // SIEMBRA
+    // -------------------------------------------------------------------------
+
+    private void sembrar() {
+        Random random = new Random(42);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        LocalDateTime hoy = LocalDate.now().atTime(LocalTime.MAX).minusHours(1);
+
+        tx.executeWithoutResult(estado -> {
+            // Administrador es un Usuario (herencia JOINED): se guarda con el repositorio de usuarios
+            Administrador administrador = new Administrador();
+            administrador.setNif("00000000T");
+            administrador.setNombre("Admin");
+            administrador.setApellidos("Carga");
+            administrador.setEmail("admin@carga.test");
+            administrador.setNumeroTelefono("600000000");
+            administrador.setRecibirNewsletter(false);
+            administrador.setId(1L);
+            administrador.setContrasena("no-se-usa");
+            usuarioRepository.save(administrador);
+
+            List<Evento> eventos = new ArrayList<>(EVENTOS);
+            for (int i = 0; i < EVENTOS; i++) {
+                Evento evento = new Evento();
+                evento.setNombre(PALABRAS[i % PALABRAS.length] + " solidario " + i);
+                evento.setTipoEvento(PALABRAS[random.nextInt(PALABRAS.length)]);
+                evento.setDescripcion("Evento de prueba de carga");
+                // Los calientes y uno de cada diez son hoy: sus QR se escanean en la puerta
+                evento.setFecha(i < EVENTOS_CALIENTES || i % 10 == 0 ? hoy : hoy.plusDays(1 + random.nextInt(180)));
+                evento.setUbicacion("Sede " + random.nextInt(20));
+                evento.setStock(i < EVENTOS_CALIENTES ? AFORO_CALIENTE : 200 + random.nextInt(800));
+                evento.setAdministrador(administrador);
+                eventos.add(evento);
+            }
+            for (Evento evento : eventoRepository.saveAll(eventos)) {
+                eventoIds.add(evento.getId());
+                aforoInicial.put(evento.getId(), evento.getStock());
+            }
+
+            List<Usuario> nuevos = new ArrayList<>(USUARIOS);
+            for (int i = 0; i < USUARIOS; i++) {
+                Usuario usuario = new Usuario();
+                usuario.setNif(String.format("%08dC", i));
+                usuario.setNombre("Usuario" + i);
+                usuario.setApellidos("Carga");
+                usuario.setEmail("usuario" + i + "@carga.test");
+                usuario.setNumeroTelefono("600000000");
+                usuario.setRecibirNewsletter(false);
+                nuevos.add(usuario);
+            }
+            usuarios.addAll(usuarioRepository.saveAll(nuevos));
+        });
+
+        // Una cuarta parte de los eventos con tarifas de pago (precio anticipado y precio final)
+        for (int i = 0; i < eventoIds.size(); i += 4) {
+            tarifaEntradasService.definirTarifas(eventoIds.get(i), List.of(
+                    new TramoPrecioDTO("General", Importe.deEuros("15.00"), LocalDateTime.now().plusDays(7)),
+                    new TramoPrecioDTO("General", Importe.deEuros("20.00"), null),
+                    new TramoPrecioDTO("Reducida", Importe.deEuros("8.50"), null)));
+        }
+
+        // Histórico de pedidos con sus entradas, en transacciones de 500 pedidos
+        Map<Long, Integer> vendidasPorEvento = new HashMap<>();
+        for (int desde = 0; desde < PEDIDOS; desde += 500) {
+            int tramo = Math.min(500, PEDIDOS - desde);
+            tx.executeWithoutResult(estado -> {
+                List<Entrada> entradas = new ArrayList<>();
+                for (int i = 0; i < tramo; i++) {
+                    Long eventoId = eventoIds.get(EVENTOS_CALIENTES + random.nextInt(eventoIds.size() - EVENTOS_CALIENTES));
+                    int cantidad = 1 + random.nextInt(4);
+                    Usuario usuario = usuarios.get(random.nextInt(usuarios.size()));
+
+                    Pedido pedido = new Pedido();
+                    pedido.setFecha(LocalDate.now().minusDays(random.nextInt(60)));
+                    pedido.setHora(LocalTime.NOON);
+                    pedido.setImporteTotal(Importe.CERO);
+                    pedido.setUsuario(usuario);
+                    pedido.setEstadoPago(EstadoPago.PAGADO);
+                    pedido.setCanalPago(CanalPago.TARJETA);
+                    pedido.setConsentimiento(false);
+                    pedido = pedidoRepository.save(pedido);
+
+                    for (int n = 0; n < cantidad; n++) {
+                        Entrada entrada = new Entrada();
+                        entrada.setQr(codigoQrService.generar(eventoId, pedido.getId(), n));
+                        entrada.setUsada(false);
+                        entrada.setTipoEntrada("General");
+                        entrada.setNombrePersona(usuario.getNombre());
+                        entrada.setEvento(eventoRepository.getReferenceById(eventoId));
+                        entrada.setPedido(pedido);
+                        entradas.add(entrada);
+                        qrs.add(entrada.getQr());
+                    }
+                    vendidasPorEvento.merge(eventoId, cantidad, Integer::sum);
+                }
+                entradaRepository.saveAll(entradas);
+            });
+        }
+        // Las entradas del histórico salen del stock del evento, como en una venta real
+        tx.executeWithoutResult(estado -> vendidasPorEvento.forEach(eventoRepository::descontarStock));
+
+        validacionEntradaService.precargarEventosDeHoy();
+        aforoEventosService.precargarEventosDeHoy();
+    }
+
+    // -------------------------------------------------------------------------
+    // MEZCLA CONCURRENTE
+    // -------------------------------------------------------------------------
+
+    private Map<Operacion, Medicion> ejecutarMezcla(int segundos) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        List<Future<Map<Operacion, Medicion>>> resultados = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            long semilla = h;
+            resultados.add(hilos.submit(() -> trabajar(new Random(semilla), fin)));
+        }
+
+        Map<Operacion, Medicion> total = nuevasMediciones();
+        for (Future<Map<Operacion, Medicion>> resultado : resultados) {
+            resultado.get().forEach((operacion, medicion) -> total.get(operacion).combinar(medicion));
+        }
+        hilos.shutdown();
+        total.values().forEach(m -> m.segundos = segundos);
+        return total;
+    }
+
+    private Map<Operacion, Medicion> trabajar(Random random, long fin) {
+        Map<Operacion, Medicion> mediciones = nuevasMediciones();
+        while (System.nanoTime() < fin) {
+            Operacion operacion = elegir(random);
+            Medicion medicion = mediciones.get(operacion);
+            long inicio = System.nanoTime();
+            try {
+                switch (operacion) {
+                    case CHECKOUT -> checkout(random);
+                    case CARTELERA -> cartelera(random);
+                    case BUSQUEDA -> eventoService.obtenerEventosConFiltros(
+                            PALABRAS[random.nextInt(PALABRAS.length)], CRITERIOS[random.nextInt(CRITERIOS.length)], "asc");
+                    case ESCANEO -> escanear(random);
+                }
+            } catch (RuntimeException e) {
+                medicion.errores++;
+                if (medicion.errores == 1) {
+                    System.out.println(operacion + " falló: " + e);
+                }
+            }
+            medicion.latencias.registrar(System.nanoTime() - inicio);
+        }
+        return mediciones;
+    }
+
+    private void checkout(Random random) {
+        // La mitad de las compras se concentran en los eventos calientes
+        Long eventoId = random.nextBoolean()
+                ? eventoIds.get(random.nextInt(EVENTOS_CALIENTES))
+                : eventoIds.get(random.nextInt(eventoIds.size()));
+        int cantidad = 1 + random.nextInt(4);
+        Usuario usuario = usuarios.get(random.nextInt(usuarios.size()));
+
+        Pedido pedido;
+        try {
+            pedido = pedidoService.finalizarPedido(usuario, eventoId, Map.of("General", cantidad),
+                    CanalPago.TARJETA, false, null, null, null, null, null, null);
+        } catch (IllegalStateException agotado) {
+            // Sin stock: respuesta esperada en los eventos calientes, no un fallo
+            checkoutsAgotados.incrementAndGet();
+            return;
+        }
+
+        entradasVendidas.addAndGet(cantidad);
+        pedido.getEntradas().forEach(entrada -> qrs.add(entrada.getQr()));
+    }
+
+    private void cartelera(Random random) {
+        String criterio = CRITERIOS[random.nextInt(CRITERIOS.length)];
+        if (random.nextInt(5) == 0) {
+            // Histórico del panel de administración: paginado en BD
+            eventoService.obtenerEventosPaginados(random.nextInt(10), 20, criterio, "desc");
+        } else {
+            eventoService.obtenerEventosConFiltros(null, criterio, "asc");
+        }
+    }
+
+    private void escanear(Random random) {
+        String qr;
+        synchronized (qrs) {
+            qr = qrs.get(random.nextInt(qrs.size()));
+        }
+        // La puerta es la del evento de la entrada (las de eventos que no son hoy se rechazan)
+        long eventoId = codigoQrService.verificar(qr).orElseThrow().eventoId();
+        // Uno de cada veinte es un QR manipulado que la puerta debe rechazar
+        if (random.nextInt(20) == 0) {
+            ResultadoValidacionDTO falso = validacionEntradaService.validar(eventoId, qr.substring(0, qr.length() - 2) + "xx");
+            if (falso.getResultado() != ResultadoValidacionDTO.Resultado.NO_EXISTE) {
+                validacionesPorQr.computeIfAbsent("manipulado:" + qr, k -> new AtomicInteger()).incrementAndGet();
+            }
+            return;
+        }
+        if (validacionEntradaService.validar(eventoId, qr).getResultado() == ResultadoValidacionDTO.Resultado.VALIDA) {
+            validacionesPorQr.computeIfAbsent(qr, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private static Operacion elegir(Random random) {
+        int tirada = random.nextInt(100);
+        for (Operacion operacion : Operacion.values()) {
+            tirada -= operacion.peso;
+            if (tirada < 0) {
+                return operacion;
+            }
+        }
+        return Operacion.CHECKOUT;
+    }
+
+    // -------------------------------------------------------------------------
+    // CONSISTENCIA E INFORME
+    // -------------------------------------------------------------------------
+
+    private List<String> comprobarConsistencia() {
+        List<String> violaciones = new ArrayList<>();
+        // Las validaciones aceptadas se escriben en BD en diferido: se vuelcan todas antes de contar
+        while (validacionEntradaService.volcarValidaciones() > 0) {
+            // sigue hasta vaciar la cola
+        }
+
+        long validadasBd = 0;
+        for (AforoEventoDTO bd : entradaRepository.contarAforo(eventoIds)) {
+            int inicial = aforoInicial.get(bd.getEventoId());
+            if (bd.getRestantes() < 0 || bd.getVendidas() > inicial) {
+                violaciones.add("Sobreventa en el evento " + bd.getEventoId() + ": " + bd.getVendidas()
+                        + " vendidas de " + inicial + ", stock " + bd.getRestantes());
+            } else if (bd.getVendidas() + bd.getRestantes() != inicial) {
+                violaciones.add("Stock descuadrado en el evento " + bd.getEventoId() + ": " + bd.getVendidas()
+                        + " vendidas + " + bd.getRestantes() + " restantes != " + inicial);
+            }
+            validadasBd += bd.getValidadas();
+        }
+
+        long esperadas = qrs.size();
+        long entradasBd = entradaRepository.count();
+        if (entradasBd != esperadas) {
+            violaciones.add("Entradas en BD (" + entradasBd + ") != entradas sembradas y vendidas (" + esperadas + ")");
+        }
+        if (new HashSet<>(qrs).size() != qrs.size()) {
+            violaciones.add("Hay QR repetidos entre las entradas emitidas");
+        }
+
+        long aceptadas = 0;
+        for (Map.Entry<String, AtomicInteger> validacion : validacionesPorQr.entrySet()) {
+            if (validacion.getKey().startsWith("manipulado:")) {
+                violaciones.add("QR manipulado aceptado: " + validacion.getKey());
+            } else if (validacion.getValue().get() > 1) {
+                violaciones.add("QR validado " + validacion.getValue().get() + " veces: " + validacion.getKey());
+            }
+            aceptadas += validacion.getValue().get();
+        }
+        if (validadasBd != aceptadas) {
+            violaciones.add("Entradas usadas en BD (" + validadasBd + ") != escaneos aceptados (" + aceptadas + ")");
+        }
+
+        // Contadores del panel de aforo contra la BD, antes de conciliar: con el sistema parado y
+        // las validaciones volcadas tienen que cuadrar ya, sin que la conciliación los corrija
+        Map<Long, AforoEventoDTO> aforoBd = new HashMap<>();
+        entradaRepository.contarAforo(eventoIds).forEach(a -> aforoBd.put(a.getEventoId(), a));
+        for (AforoEventoDTO memoria : aforoEventosService.obtenerAforos()) {
+            AforoEventoDTO bd = aforoBd.get(memoria.getEventoId());
+            if (!memoria.getVendidas().equals(bd.getVendidas()) || !memoria.getValidadas().equals(bd.getValidadas())
+                    || !memoria.getRestantes().equals(bd.getRestantes())) {
+                violaciones.add("Aforo en memoria " + memoria + " != BD " + bd);
+            }
+        }
+        ConciliacionAforoDTO conciliacion = aforoEventosService.conciliar();
+        if (conciliacion.getDetectadas() > 0) {
+            violaciones.add("La conciliación encuentra " + conciliacion.getDetectadas() + " de "
+                    + conciliacion.getEventosRevisados() + " contadores de aforo descuadrados con el sistema parado");
+        }
+        return violaciones;
+    }
+
+    private void imprimirInforme(Map<Operacion, Medicion> mediciones) {
+        System.out.printf("%nCarga: %d hilos durante %d s (tras %d s de calentamiento)%n",
+                HILOS, SEGUNDOS, SEGUNDOS_CALENTAMIENTO);
+        System.out.printf("%-10s %10s %10s %10s %10s %8s%n", "operación", "total", "ops/s", "p50 ms", "p99 ms", "errores");
+        mediciones.forEach((operacion, m) -> System.out.printf("%-10s %10d %10.1f %10.2f %10.2f %8d%n",
+                operacion, m.latencias.getTotal(), m.latencias.getTotal() / (double) m.segundos,
+                m.latencias.percentilMs(50), m.latencias.percentilMs(99), m.errores));
+        System.out.printf("Entradas vendidas (con calentamiento): %d, checkouts rechazados por stock: %d%n%n",
+                entradasVendidas.get(), checkoutsAgotados.get());
+    }
+
+    private static Map<Operacion, Medicion> nuevasMediciones() {
+        Map<Operacion, Medicion> mediciones = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : Operacion.values()) {
+            mediciones.put(operacion, new Medicion());
+        }
+        return mediciones;
+    }
+
+    private static int parametro(String nombre, int porDefecto) {
+        return Integer.getInteger("cudeca.carga." + nombre, porDefecto);
+    }
+
+    private static class Medicion {
+        private final RegistroLatencias latencias = new RegistroLatencias();
+        private int errores;
+        private int segundos;
+
+        void combinar(Medicion otra) {
+            latencias.combinar(otra.latencias);
+            errores += otra.errores;
+        }
+    }
+}
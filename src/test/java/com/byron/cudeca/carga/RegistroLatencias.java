@@ -0,0 +1,44 @@
+package com.byron.cudeca.carga;
+
+import java.util.Arrays;
+
+/**
+ * Latencias (en nanosegundos) de un tipo de operación.
+ * No es thread-safe: cada hilo de la prueba lleva el suyo y al final se combinan.
+ */
+class RegistroLatencias {
+
+    private long[] muestras = new long[1024];
+    private int total;
+
+    void registrar(long nanos) {
+        if (total == muestras.length) {
+            muestras = Arrays.copyOf(muestras, total * 2);
+        }
+        muestras[total++] = nanos;
+    }
+
+    void combinar(RegistroLatencias otro) {
+        for (int i = 0; i < otro.total; i++) {
+            registrar(otro.muestras[i]);
+        }
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     * Percentil por rango más cercano, en milisegundos (0 si no hay muestras).
+     * @param percentil Entre 0 y 100.
+     */
+    double percentilMs(double percentil) {
+        if (total == 0) {
+            return 0;
+        }
+        long[] ordenadas = Arrays.copyOf(muestras, total);
+        Arrays.sort(ordenadas);
+        int posicion = (int) Math.ceil(percentil / 100.0 * total) - 1;
+        return ordenadas[Math.max(0, Math.min(posicion, total - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.byron.cudeca.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetricasSqlFilterTest {
+
+    private final ContadorSentenciasSql contador = new ContadorSentenciasSql();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // Verifica que se registran las sentencias de la petición bajo el patrón de URI, no la URL real
+    @Test
+    void doFilter_registraSentenciasPorPatronDeUri() throws Exception {
+        MetricasSqlFilter filtro = filtro(PresupuestoSql.Modo.FALLAR);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/eventos/7");
+
+        filtro.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/eventos/{id}");
+            contador.inspect("select * from evento where id=?");
+            contador.inspect("select * from entrada where evento_id=?");
+        });
+
+        DistributionSummary sentencias = registry.get("cudeca.sql.sentencias")
+                .tag("method", "GET").tag("uri", "/api/eventos/{id}").summary();
+        assertThat(sentencias.count()).isEqualTo(1);
+        assertThat(sentencias.totalAmount()).isEqualTo(2);
+    }
+
+    // Comprueba que fuera de una petición no se cuenta nada ni queda estado en el hilo
+    @Test
+    void inspect_fueraDePeticionNoCuenta() throws Exception {
+        ContadorSentenciasSql.Medicion[] medicion = new ContadorSentenciasSql.Medicion[1];
+        filtro(PresupuestoSql.Modo.FALLAR).doFilter(new MockHttpServletRequest("GET", "/api/eventos"),
+                new MockHttpServletResponse(), (req, res) -> contador.inspect("select 1"));
+
+        assertThat(contador.inspect("select 2")).isEqualTo("select 2");
+        assertThat(registry.get("cudeca.sql.sentencias").tag("uri", "UNKNOWN").summary().totalAmount())
+                .isEqualTo(1);
+
+        // Una tarea creada fuera de una petición tampoco arrastra medición
+        contador.propagar(() -> medicion[0] = contador.iniciar()).run();
+        contador.desligar();
+        assertThat(medicion[0].getTotal()).isZero();
+    }
+
+    // Verifica que la misma sentencia repetida por encima del límite se marca como N+1 y falla en modo FALLAR
+    @Test
+    void doFilter_sentenciaRepetidaFallaComoNMasUno() {
+        MetricasSqlFilter filtro = filtro(PresupuestoSql.Modo.FALLAR);
+
+        assertThatThrownBy(() -> filtro.doFilter(new MockHttpServletRequest("GET", "/api/eventos"),
+                new MockHttpServletResponse(), (req, res) -> {
+                    contador.inspect("select * from evento");
+                    for (int i = 0; i < 4; i++) {
+                        contador.inspect("select * from entrada where evento_id=?");
+                    }
+                }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("N+1")
+                .hasMessageContaining("4 veces");
+        assertThat(registry.get("cudeca.sql.presupuesto.excedido").tag("motivo", "repeticion").counter().count())
+                .isEqualTo(1);
+    }
+
+    // Comprueba que en modo AVISAR la petición que se pasa del total sigue adelante y solo se cuenta
+    @Test
+    void doFilter_modoAvisarNoInterrumpeLaPeticion() throws Exception {
+        MetricasSqlFilter filtro = filtro(PresupuestoSql.Modo.AVISAR);
+
+        filtro.doFilter(new MockHttpServletRequest("GET", "/api/eventos"), new MockHttpServletResponse(),
+                (req, res) -> {
+                    for (int i = 0; i < 6; i++) {
+                        contador.inspect("select " + i);
+                    }
+                });
+
+        assertThat(registry.get("cudeca.sql.presupuesto.excedido").tag("motivo", "total").counter().count())
+                .isEqualTo(1);
+    }
+
+    // Presupuesto de 5 sentencias por petición y 3 repeticiones de la misma
+    private MetricasSqlFilter filtro(PresupuestoSql.Modo modo) {
+        return new MetricasSqlFilter(contador, new PresupuestoSql(5, 3, modo, registry), registry);
+    }
+}
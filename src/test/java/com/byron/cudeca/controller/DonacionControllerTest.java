@@ -0,0 +1,92 @@
+package com.byron.cudeca.controller;
+
+import com.byron.cudeca.dto.DonacionRegistradaDTO;
+import com.byron.cudeca.dto.DonacionRequestDTO;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.service.DonacionService;
+import com.byron.cudeca.service.MarcadorDonacionesService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DonacionControllerTest {
+
+    @Mock
+    private DonacionService donacionService;
+
+    @Mock
+    private MarcadorDonacionesService marcadorDonacionesService;
+
+    @InjectMocks
+    private DonacionController donacionController;
+
+    // Verifica que una donación confirmada devuelve 201 con la donación guardada
+    @Test
+    void registerDonation_devuelveCreated() {
+        DonacionRequestDTO datos = new DonacionRequestDTO();
+        DonacionRegistradaDTO registrada = new DonacionRegistradaDTO(1L, Importe.deEuros("10.00"), LocalDateTime.of(2026, 3, 1, 10, 0));
+        when(donacionService.registrar(datos)).thenReturn(CompletableFuture.completedFuture(registrada));
+
+        ResponseEntity<DonacionRegistradaDTO> response = donacionController.registerDonation(datos).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getBody()).isSameAs(registrada);
+    }
+
+    // Comprueba que un importe no válido o sin datos fiscales devuelve 400 y no un 500
+    @Test
+    void registerDonation_datosNoValidosDevuelveBadRequest() {
+        DonacionRequestDTO datos = new DonacionRequestDTO();
+        when(donacionService.registrar(datos)).thenThrow(new IllegalArgumentException("El importe debe ser mayor que cero."));
+
+        ResponseEntity<DonacionRegistradaDTO> response = donacionController.registerDonation(datos).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    // Comprueba que si la BD rechaza la donación (NIF de usuario inexistente) se devuelve 400
+    @Test
+    void registerDonation_usuarioInexistenteDevuelveBadRequest() {
+        DonacionRequestDTO datos = new DonacionRequestDTO();
+        CompletableFuture<DonacionRegistradaDTO> rechazada = new CompletableFuture<>();
+        rechazada.completeExceptionally(new DataIntegrityViolationException("FK usuario_nif"));
+        when(donacionService.registrar(datos)).thenReturn(rechazada);
+
+        ResponseEntity<DonacionRegistradaDTO> response = donacionController.registerDonation(datos).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    // Verifica que con la cola llena se devuelve 503 y que otros fallos del lote siguen siendo errores del servidor
+    @Test
+    void registerDonation_colaLlenaYFalloDeBd() {
+        DonacionRequestDTO llena = new DonacionRequestDTO();
+        llena.setUsuarioNif("11111111A");
+        when(donacionService.registrar(llena)).thenThrow(new IllegalStateException("Cola llena"));
+        DonacionRequestDTO sinBd = new DonacionRequestDTO();
+        sinBd.setUsuarioNif("22222222B");
+        CompletableFuture<DonacionRegistradaDTO> caida = new CompletableFuture<>();
+        caida.completeExceptionally(new QueryTimeoutException("timeout"));
+        when(donacionService.registrar(sinBd)).thenReturn(caida);
+
+        assertThat(donacionController.registerDonation(llena).join().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThatThrownBy(() -> donacionController.registerDonation(sinBd).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+    }
+}
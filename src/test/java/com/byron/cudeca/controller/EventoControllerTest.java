@@ -1,5 +1,7 @@
 package com.byron.cudeca.controller;
 
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
 import com.byron.cudeca.model.Evento;
 import com.byron.cudeca.service.EventoService;
 import org.junit.jupiter.api.Test;
@@ -7,6 +9,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -32,25 +36,37 @@ class EventoControllerTest {
     void getAllEvents_devuelveOkConDatos() {
         when(eventoService.obtenerEventosConFiltros(null, null, null)).thenReturn(Collections.emptyList());
 
-        ResponseEntity<List<Evento>> response = eventoController.getAllEvents(null, null, null);
+        ResponseEntity<List<EventoResumenDTO>> response = eventoController.getAllEvents(null, null, null);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEmpty();
         verify(eventoService).obtenerEventosConFiltros(null, null, null);
     }
 
-    // Verifica que el detalle de evento devuelve 200 y el cuerpo esperado
+    // Verifica que el detalle de evento devuelve 200 y la proyección del servicio
     @Test
     void getEventById_devuelveEvento() {
-        Evento evento = new Evento();
+        EventoDetalleDTO evento = new EventoDetalleDTO();
         evento.setId(5L);
-        when(eventoService.obtenerEventoPorId(5L)).thenReturn(evento);
+        when(eventoService.obtenerDetalleEvento(5L)).thenReturn(evento);
 
-        ResponseEntity<Evento> response = eventoController.getEventById(5L);
+        ResponseEntity<EventoDetalleDTO> response = eventoController.getEventById(5L);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isSameAs(evento);
-        verify(eventoService).obtenerEventoPorId(5L);
+        verify(eventoService).obtenerDetalleEvento(5L);
+    }
+
+    // Verifica que el histórico paginado del panel devuelve 200 con la página del servicio
+    @Test
+    void getEventHistory_devuelvePagina() {
+        Page<EventoResumenDTO> pagina = new PageImpl<>(List.of(new EventoResumenDTO()));
+        when(eventoService.obtenerEventosPaginados(2, 20, "nombre", "asc")).thenReturn(pagina);
+
+        ResponseEntity<Page<EventoResumenDTO>> response = eventoController.getEventHistory(2, 20, "nombre", "asc");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isSameAs(pagina);
     }
 
     // Comprueba que crear un evento retorna 201 y el evento creado
@@ -0,0 +1,400 @@
+package com.byron.cudeca.controller;
+
+import com.byron.cudeca.AplicacionPrueba;
+import com.byron.cudeca.dto.TramoPrecioDTO;
+import com.byron.cudeca.model.*;
+import com.byron.cudeca.repository.EventoRepository;
+import com.byron.cudeca.repository.UsuarioRepository;
+import com.byron.cudeca.service.CertificadoDonacionService;
+import com.byron.cudeca.service.PedidoService;
+import com.byron.cudeca.service.TarifaEntradasService;
+import com.byron.cudeca.service.ValidacionEntradaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Presupuesto de sentencias SQL de cada endpoint, contra la aplicación completa sobre H2.
+ * Los eventos tienen varios pedidos y entradas, así que un N+1 (una colección lazy recorrida
+ * por un toString, un bucle que consulta por fila...) se pasaría del presupuesto. Además, con
+ * cudeca.sql.presupuesto.modo=FALLAR cualquier petición que repita la misma sentencia más de
+ * 5 veces falla por sí sola.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(classes = AplicacionPrueba.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:presupuesto_sql;DB_CLOSE_DELAY=-1",
+        "cudeca.sql.presupuesto.modo=FALLAR",
+        "cudeca.fiscal.nif=G29000000",
+        "cudeca.fiscal.razon-social=FUNDACION CUDECA"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PresupuestoSqlEndpointsTest {
+
+    private static final String NIF_SOCIO = "11111111H";
+    private static final int EJERCICIO = LocalDate.now().getYear();
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private EventoRepository eventoRepository;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private PedidoService pedidoService;
+    @Autowired
+    private TarifaEntradasService tarifaEntradasService;
+    @Autowired
+    private CertificadoDonacionService certificadoDonacionService;
+    @Autowired
+    private ValidacionEntradaService validacionEntradaService;
+
+    private Administrador administrador;
+    private Long eventoId;
+    private Long eventoBorrable;
+    private Long certificadoId;
+    private final List<String> qrs = new ArrayList<>();
+
+    @BeforeAll
+    void sembrar() {
+        administrador = new Administrador();
+        rellenar(administrador, "00000000T", "admin");
+        administrador.setId(1L);
+        administrador.setContrasena("no-se-usa");
+        usuarioRepository.save(administrador);
+
+        Socio socio = new Socio();
+        rellenar(socio, NIF_SOCIO, "socio");
+        socio.setId("SOC-1");
+        socio.setFechaAlta(LocalDateTime.now());
+        socio.setDireccion("Calle Mayor 1");
+        socio.setDonacionTotal(Importe.CERO);
+        socio.setContrasena("no-se-usa");
+        usuarioRepository.save(socio);
+
+        // Cinco eventos de hoy con tres pedidos de tres entradas cada uno
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(eventoRepository.save(evento("Gala solidaria " + i)).getId());
+        }
+        eventoId = ids.get(0);
+        eventoBorrable = ids.get(4);
+        tarifaEntradasService.definirTarifas(eventoId, List.of(
+                new TramoPrecioDTO("General", Importe.deEuros("20.00"), null),
+                new TramoPrecioDTO("Reducida", Importe.deEuros("10.00"), null)));
+
+        for (Long id : ids) {
+            for (int p = 0; p < 3; p++) {
+                Pedido pedido = pedidoService.finalizarPedido(socio, id, Map.of("General", 3), CanalPago.TARJETA,
+                        false, null, null, null, null, null, null);
+                pedido.getEntradas().forEach(entrada -> qrs.add(entrada.getQr()));
+                if (id.equals(eventoId)) {
+                    certificadoId = certificadoDonacionService.generarCertificado(socio, pedido.getImporteTotal(),
+                            pedido, null, "Socio Prueba", NIF_SOCIO, "Calle Mayor 1", "29001", "Málaga",
+                            "Málaga", "España").getId();
+                }
+            }
+        }
+        validacionEntradaService.precargarEventosDeHoy();
+    }
+
+    // -------------------------------------------------------------------------
+    // EventoController
+    // -------------------------------------------------------------------------
+
+    // Verifica que la cartelera se sirve con una sola consulta (y ninguna si está cacheada)
+    @Test
+    void getAllEvents_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/eventos").param("sortBy", "nombre"), "/api/eventos")).isLessThanOrEqualTo(1);
+    }
+
+    // Verifica que el detalle de evento es una proyección, sin tocar entradas ni administrador
+    @Test
+    void getEventById_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/eventos/{id}", eventoId), "/api/eventos/{id}")).isLessThanOrEqualTo(1);
+    }
+
+    // Verifica que los precios vigentes salen de las tarifas en memoria (como mucho, la carga inicial)
+    @Test
+    void getEventPrices_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/eventos/{id}/precios", eventoId), "/api/eventos/{id}/precios"))
+                .isLessThanOrEqualTo(1);
+    }
+
+    // Verifica que una página del histórico cuesta la página y el COUNT
+    @Test
+    void getEventHistory_paginaYRecuento() throws Exception {
+        assertThat(sentencias(get("/api/admin/eventos").param("size", "3"), "/api/admin/eventos"))
+                .isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que el histórico por keyset es una sola consulta, sin COUNT
+    @Test
+    void getEventHistoryAfter_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/admin/eventos/historial"), "/api/admin/eventos/historial"))
+                .isLessThanOrEqualTo(1);
+    }
+
+    // Verifica que crear un evento no carga nada del administrador más allá de comprobarlo
+    @Test
+    void createNewEvent_pocasSentencias() throws Exception {
+        Map<String, Object> evento = Map.of(
+                "nombre", "Concierto nuevo", "tipoEvento", "concierto", "ubicacion", "Málaga", "stock", 50,
+                "fecha", LocalDate.now().plusDays(30).atTime(20, 0).toString(),
+                "administrador", Map.of("nif", administrador.getNif()));
+        assertThat(sentencias(post("/api/admin/eventos").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(evento)), "/api/admin/eventos"))
+                .isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que sustituir las tarifas son borrados en bloque y un batch de inserciones
+    @Test
+    void setEventTariffs_borradoEnBloque() throws Exception {
+        List<TramoPrecioDTO> tramos = List.of(
+                new TramoPrecioDTO("General", Importe.deEuros("20.00"), null),
+                new TramoPrecioDTO("Reducida", Importe.deEuros("10.00"), null));
+        assertThat(sentencias(put("/api/admin/eventos/{id}/tarifas", eventoId).contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(tramos)), "/api/admin/eventos/{id}/tarifas"))
+                .isLessThanOrEqualTo(7);
+    }
+
+    // Verifica que borrar un evento con entradas no las borra de una en una
+    @Test
+    void deleteEvent_sinBorradoPorFila() throws Exception {
+        assertThat(sentencias(delete("/api/admin/eventos/{id}", eventoBorrable), "/api/admin/eventos/{id}"))
+                .isLessThanOrEqualTo(6);
+    }
+
+    // -------------------------------------------------------------------------
+    // EntradaController
+    // -------------------------------------------------------------------------
+
+    // Verifica que validar en la puerta no escribe en BD (se vuelca en lotes) y no consulta si está indexada
+    @Test
+    void validateTicket_sinConsultas() throws Exception {
+        assertThat(sentencias(post("/api/eventos/{eventoId}/entradas/{qr}/validacion", eventoId, qrs.get(1)),
+                "/api/eventos/{eventoId}/entradas/{qr}/validacion")).isZero();
+    }
+
+    // Verifica que el manifiesto de un evento es una consulta, sin recorrer entradas una a una
+    @Test
+    void getTicketManifest_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/eventos/{id}/manifiesto", eventoId), "/api/eventos/{id}/manifiesto"))
+                .isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que un lote de escaneos offline se concilia con consultas por lote, no por escaneo
+    @Test
+    void uploadScans_consultasPorLote() throws Exception {
+        List<Map<String, Object>> escaneos = new ArrayList<>();
+        for (String qr : qrs.subList(9, 18)) {
+            escaneos.add(Map.of("qr", qr, "fechaEscaneo", LocalDateTime.now().withNano(0).toString()));
+        }
+        Map<String, Object> lote = Map.of("dispositivoId", "puerta-1", "escaneos", escaneos);
+        assertThat(sentencias(post("/api/eventos/{id}/escaneos", eventoId + 1).contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(lote)), "/api/eventos/{id}/escaneos"))
+                .isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que la precarga del índice son dos consultas para todos los eventos de hoy
+    @Test
+    void reloadValidationIndex_dosConsultas() throws Exception {
+        assertThat(sentencias(post("/api/admin/validacion/precarga"), "/api/admin/validacion/precarga"))
+                .isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que el aforo de un evento se sirve desde memoria
+    @Test
+    void getOccupancy_desdeMemoria() throws Exception {
+        assertThat(sentencias(get("/api/admin/eventos/{id}/aforo", eventoId), "/api/admin/eventos/{id}/aforo"))
+                .isLessThanOrEqualTo(1);
+    }
+
+    // Verifica que abrir el panel de aforo en vivo no consulta la BD
+    @Test
+    void streamOccupancy_sinConsultas() throws Exception {
+        assertThat(sentencias(get("/api/admin/eventos/aforo/stream"), "/api/admin/eventos/aforo/stream")).isZero();
+    }
+
+    // Verifica que la conciliación del aforo es una consulta para todos los eventos seguidos
+    @Test
+    void reconcileOccupancy_unaConsulta() throws Exception {
+        assertThat(sentencias(post("/api/admin/eventos/aforo/conciliacion"), "/api/admin/eventos/aforo/conciliacion"))
+                .isLessThanOrEqualTo(1);
+    }
+
+    // -------------------------------------------------------------------------
+    // DonacionController
+    // -------------------------------------------------------------------------
+
+    // Verifica que registrar una donación no toca la BD en el hilo de la petición (se escribe en lotes)
+    @Test
+    void registerDonation_sinConsultasEnLaPeticion() throws Exception {
+        Map<String, Object> donacion = Map.of("usuarioNif", NIF_SOCIO, "importe", "25.00", "canalPago", "BIZUM",
+                "quiereCertificado", false);
+        assertThat(sentencias(post("/api/donaciones").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(donacion)), "/api/donaciones"))
+                .isZero();
+    }
+
+    // Verifica que el total de un socio son dos consultas (consolidado y pendiente)
+    @Test
+    void getMemberDonationTotal_dosConsultas() throws Exception {
+        assertThat(sentencias(get("/api/socios/{nif}/donacion-total", NIF_SOCIO), "/api/socios/{nif}/donacion-total"))
+                .isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que el marcador de la campaña se sirve desde memoria
+    @Test
+    void getTicker_desdeMemoria() throws Exception {
+        assertThat(sentencias(get("/api/donaciones/marcador"), "/api/donaciones/marcador")).isZero();
+    }
+
+    // Verifica que abrir el marcador en vivo no consulta la BD
+    @Test
+    void streamTicker_sinConsultas() throws Exception {
+        assertThat(sentencias(get("/api/donaciones/marcador/stream"), "/api/donaciones/marcador/stream")).isZero();
+    }
+
+    // -------------------------------------------------------------------------
+    // CertificadoController
+    // -------------------------------------------------------------------------
+
+    // Verifica que el resumen anual lee las filas de totales, sin sumar certificados
+    @Test
+    void getYearlySummary_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/usuarios/{nif}/certificados/resumen", NIF_SOCIO),
+                "/api/usuarios/{nif}/certificados/resumen")).isLessThanOrEqualTo(1);
+    }
+
+    // Comprueba que el resumen solo devuelve ejercicio, importe y número de certificados, y nada para un NIF sin certificados propios
+    @Test
+    void getYearlySummary_soloDelPropioUsuario() throws Exception {
+        String propio = mvc.perform(get("/api/usuarios/{nif}/certificados/resumen", NIF_SOCIO))
+                .andReturn().getResponse().getContentAsString();
+        String ajeno = mvc.perform(get("/api/usuarios/{nif}/certificados/resumen", "99999999R"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(propio).contains("\"ejercicio\":" + EJERCICIO).contains("\"numeroCertificados\":")
+                .doesNotContain("nombreCompleto").doesNotContain("codigoPostal").doesNotContain("\"nif\"");
+        assertThat(ajeno).isEqualTo("[]");
+    }
+
+    // Verifica que el PDF de un certificado es una consulta, sin cargar pedido ni donación
+    @Test
+    void downloadCertificatePdf_unaConsulta() throws Exception {
+        assertThat(sentencias(get("/api/certificados/{id}/pdf", certificadoId), "/api/certificados/{id}/pdf"))
+                .isLessThanOrEqualTo(1);
+    }
+
+    // Verifica que el Modelo 182 se genera leyendo los totales en streaming, sin una consulta por donante
+    // (más el número de la secuencia y el INSERT de la declaración)
+    @Test
+    void downloadModelo182_consultasFijas() throws Exception {
+        assertThat(sentencias(get("/api/admin/certificados/modelo182/{ejercicio}", EJERCICIO),
+                "/api/admin/certificados/modelo182/{ejercicio}")).isLessThanOrEqualTo(3);
+    }
+
+    // Comprueba que un ejercicio no válido se rechaza con 400 antes de empezar a escribir la descarga
+    @Test
+    void descargasAnuales_ejercicioNoValidoEs400() throws Exception {
+        for (String uri : List.of("/api/admin/certificados/modelo182/{ejercicio}", "/api/admin/certificados/pdf/{ejercicio}")) {
+            MvcResult resultado = mvc.perform(get(uri, 24)).andReturn();
+            assertThat(resultado.getRequest().isAsyncStarted()).as(uri).isFalse();
+            assertThat(resultado.getResponse().getStatus()).as(uri).isEqualTo(400);
+        }
+    }
+
+    // Verifica que el ZIP anual de PDFs no consulta por certificado
+    @Test
+    void downloadCertificatesZip_consultasFijas() throws Exception {
+        assertThat(sentencias(get("/api/admin/certificados/pdf/{ejercicio}", EJERCICIO),
+                "/api/admin/certificados/pdf/{ejercicio}")).isLessThanOrEqualTo(2);
+    }
+
+    // Verifica que recalcular los totales de un año son sentencias en bloque
+    @Test
+    void rebuildYearlyTotals_sentenciasEnBloque() throws Exception {
+        assertThat(sentencias(post("/api/admin/certificados/totales/{ejercicio}/recalculo", EJERCICIO),
+                "/api/admin/certificados/totales/{ejercicio}/recalculo")).isLessThanOrEqualTo(2);
+    }
+
+    // -------------------------------------------------------------------------
+    // AUXILIARES
+    // -------------------------------------------------------------------------
+
+    /**
+     * Lanza la petición y devuelve las sentencias SQL que ha registrado MetricasSqlFilter.
+     * Las peticiones asíncronas se completan (streaming) o se cierran (SSE) para que se midan.
+     */
+    private int sentencias(MockHttpServletRequestBuilder peticion, String uri) throws Exception {
+        String metodo = peticion.buildRequest(null).getMethod();
+        double antes = total(metodo, uri);
+        MvcResult resultado = mvc.perform(peticion).andReturn();
+        assertThat(resultado.getResponse().getStatus()).as(metodo + " " + uri).isLessThan(400);
+
+        if (resultado.getRequest().isAsyncStarted()) {
+            boolean esSse = MediaType.TEXT_EVENT_STREAM_VALUE.equals(resultado.getResponse().getContentType());
+            if (esSse) {
+                resultado.getRequest().getAsyncContext().complete();
+            } else {
+                // El asyncDispatch ya completa la petición: completarla otra vez la mediría dos veces
+                resultado.getAsyncResult(5_000);
+                mvc.perform(asyncDispatch(resultado));
+            }
+        }
+        int sentencias = (int) (total(metodo, uri) - antes);
+        return sentencias;
+    }
+
+    private double total(String metodo, String uri) {
+        DistributionSummary resumen = meterRegistry.find("cudeca.sql.sentencias").tag("method", metodo).tag("uri", uri).summary();
+        return resumen == null ? 0 : resumen.totalAmount();
+    }
+
+    private static void rellenar(Usuario usuario, String nif, String nombre) {
+        usuario.setNif(nif);
+        usuario.setNombre(nombre);
+        usuario.setApellidos("Prueba");
+        usuario.setEmail(nombre + "@cudeca.test");
+        usuario.setNumeroTelefono("600000000");
+        usuario.setRecibirNewsletter(false);
+    }
+
+    private Evento evento(String nombre) {
+        Evento evento = new Evento();
+        evento.setNombre(nombre);
+        evento.setTipoEvento("gala");
+        evento.setDescripcion("Evento de prueba");
+        evento.setFecha(LocalDate.now().atTime(LocalTime.MAX).minusHours(1));
+        evento.setUbicacion("Málaga");
+        evento.setStock(100);
+        evento.setAdministrador(administrador);
+        return evento;
+    }
+}
@@ -0,0 +1,43 @@
+package com.byron.cudeca.model;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImporteTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Verifica que las sumas son exactas, sin el error de redondeo de double
+    @Test
+    void sumar_exactoEnCentimos() {
+        Importe total = Importe.CERO;
+        for (int i = 0; i < 1_000; i++) {
+            total = total.sumar(Importe.deEuros("0.10"));
+        }
+
+        assertThat(total).isEqualTo(Importe.deEuros("100.00"));
+        assertThat(total.centimos()).isEqualTo(10_000L);
+        assertThat(Importe.deEuros("0.10").sumar(Importe.deEuros("0.20"))).isEqualTo(Importe.deEuros("0.30"));
+        assertThat(Importe.deEuros("5.00").restar(Importe.deEuros("7.50")).esPositivo()).isFalse();
+        assertThat(Importe.deEuros("12.5").multiplicar(3)).isEqualTo(Importe.deCentimos(3_750));
+    }
+
+    // Comprueba que en JSON sigue siendo un número con dos decimales y que no se redondea al leerlo
+    @Test
+    void json_mismoFormatoYSinRedondeos() throws Exception {
+        assertThat(objectMapper.writeValueAsString(Importe.deCentimos(1_234_50))).isEqualTo("1234.50");
+        assertThat(objectMapper.readValue("25", Importe.class)).isEqualTo(Importe.deCentimos(2_500));
+        assertThat(objectMapper.readValue("0.05", Importe.class).enEuros()).isEqualTo(new BigDecimal("0.05"));
+
+        assertThatThrownBy(() -> objectMapper.readValue("9.999", Importe.class))
+                .isInstanceOf(JsonMappingException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Importe.deEuros("1.001")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,162 @@
+package com.byron.cudeca.repository;
+
+import com.byron.cudeca.AplicacionPrueba;
+import com.byron.cudeca.config.ContadorSentenciasSql;
+import com.byron.cudeca.model.Administrador;
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Entrada;
+import com.byron.cudeca.model.EstadoPago;
+import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Pedido;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inserción de entradas a través del repositorio, contra la aplicación completa sobre H2.
+ * Cuenta las sentencias que se preparan en el hilo de la prueba (ContadorSentenciasSql, así no
+ * se mezclan las de las tareas programadas) y los INSERT con las estadísticas de Hibernate: con la
+ * secuencia pooled (50 IDs por llamada) y hibernate.jdbc.batch_size=50, guardar n entradas
+ * cuesta del orden de n/50 sentencias, no una por entrada. La comparación con IDENTITY está en
+ * InsercionEntradasBenchmark (perfil 'benchmarks').
+ */
+@ActiveProfiles("test")
+@SpringBootTest(classes = AplicacionPrueba.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:insercion_entradas;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EntradaRepositoryTest {
+
+    private static final int TAMANO_BLOQUE = 50;
+
+    @Autowired
+    private EntradaRepository entradaRepository;
+    @Autowired
+    private EventoRepository eventoRepository;
+    @Autowired
+    private PedidoRepository pedidoRepository;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ContadorSentenciasSql contadorSentenciasSql;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Evento evento;
+    private Pedido pedido;
+    private long ultimoId;
+
+    @BeforeAll
+    void sembrar() {
+        Administrador administrador = new Administrador();
+        administrador.setNif("00000000T");
+        administrador.setNombre("admin");
+        administrador.setApellidos("Prueba");
+        administrador.setEmail("admin@cudeca.test");
+        administrador.setNumeroTelefono("600000000");
+        administrador.setRecibirNewsletter(false);
+        administrador.setId(1L);
+        administrador.setContrasena("no-se-usa");
+        usuarioRepository.save(administrador);
+
+        evento = new Evento();
+        evento.setNombre("Gala solidaria");
+        evento.setTipoEvento("gala");
+        evento.setDescripcion("Evento de prueba");
+        evento.setFecha(LocalDate.now().atTime(LocalTime.NOON));
+        evento.setUbicacion("Málaga");
+        evento.setStock(1_000);
+        evento.setAdministrador(administrador);
+        evento = eventoRepository.save(evento);
+
+        pedido = new Pedido();
+        pedido.setFecha(LocalDate.now());
+        pedido.setHora(LocalTime.NOON);
+        pedido.setImporteTotal(Importe.CERO);
+        pedido.setConsentimiento(true);
+        pedido.setEstadoPago(EstadoPago.PAGADO);
+        pedido.setCanalPago(CanalPago.TARJETA);
+        pedido.setUsuario(administrador);
+        pedido = pedidoRepository.save(pedido);
+
+        // El primer bloque del generador pooled va del valor inicial (1) al 51; se agota aquí
+        // para que los siguientes sean todos de 50 IDs: (1, 51], (51, 101]...
+        guardar(TAMANO_BLOQUE + 1);
+    }
+
+    /**
+     * Agota el bloque de IDs que dejó abierto la prueba anterior, para que cada caso empiece con
+     * una llamada a la secuencia y el número de sentencias no dependa del orden de ejecución.
+     */
+    @BeforeEach
+    void completarBloque() {
+        int pendientes = (int) Math.floorMod(1 - ultimoId, TAMANO_BLOQUE);
+        if (pendientes > 0) {
+            guardar(pendientes);
+        }
+    }
+
+    // Verifica que guardar las entradas de un pedido prepara un solo INSERT y llama a la secuencia una vez por cada 50 IDs
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 120, 500})
+    void saveAll_insertaEnLotesConSecuenciaPooled(int cantidad) {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+        ContadorSentenciasSql.Medicion medicion = contadorSentenciasSql.iniciar();
+        try {
+            guardar(cantidad);
+        } finally {
+            contadorSentenciasSql.desligar();
+        }
+
+        int bloques = (cantidad + TAMANO_BLOQUE - 1) / TAMANO_BLOQUE;
+        assertThat(estadisticas.getEntityStatistics(Entrada.class.getName()).getInsertCount()).isEqualTo(cantidad);
+        // Una llamada a la secuencia por bloque de 50 y un único INSERT preparado, que se ejecuta
+        // en batches de 50 (sin batch se prepararía un INSERT por entrada)
+        assertThat(medicion.getTotal()).isEqualTo(bloques + 1);
+    }
+
+    private void guardar(int cantidad) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            List<Entrada> guardadas = entradaRepository.saveAll(entradas(cantidad));
+            entradaRepository.flush();
+            ultimoId = guardadas.get(guardadas.size() - 1).getId();
+        });
+    }
+
+    private List<Entrada> entradas(int cantidad) {
+        List<Entrada> entradas = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            Entrada entrada = new Entrada();
+            entrada.setQr(UUID.randomUUID().toString());
+            entrada.setUsada(false);
+            entrada.setTipoEntrada("General");
+            entrada.setPedido(pedido);
+            entrada.setEvento(evento);
+            entradas.add(entrada);
+        }
+        return entradas;
+    }
+}
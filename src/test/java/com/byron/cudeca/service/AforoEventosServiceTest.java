@@ -0,0 +1,136 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.AforoEventoDTO;
+import com.byron.cudeca.dto.ConciliacionAforoDTO;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AforoEventosServiceTest {
+
+    private static final Clock FIXED_CLOCK = Clock.fixed(Instant.parse("2024-05-01T18:00:00Z"), ZoneId.of("UTC"));
+
+    @Mock
+    private EntradaRepository entradaRepository;
+
+    @Mock
+    private EventoRepository eventoRepository;
+
+    @Mock
+    private ReservaStockService reservaStockService;
+
+    private AforoEventosService aforoService;
+
+    @BeforeEach
+    void setUp() {
+        aforoService = new AforoEventosService(entradaRepository, eventoRepository, reservaStockService,
+                new ObjectMapper(), 3, 60_000, 10, FIXED_CLOCK);
+    }
+
+    private void precargar(AforoEventoDTO... aforos) {
+        when(eventoRepository.findIdsByFechaEntre(any(), any()))
+                .thenReturn(Arrays.stream(aforos).map(AforoEventoDTO::getEventoId).toList());
+        when(entradaRepository.contarAforo(anyCollection())).thenReturn(List.of(aforos));
+        aforoService.precargarEventosDeHoy();
+    }
+
+    // Verifica que tras la carga las ventas y validaciones se cuentan en memoria, sin más consultas
+    @Test
+    void registrar_actualizaEnMemoria() {
+        precargar(new AforoEventoDTO(10L, "Gala", 100L, 20L, 50));
+        when(reservaStockService.consultarDisponible(10L)).thenReturn(46);
+
+        aforoService.registrarVenta(10L, 4);
+        aforoService.registrarValidacion(10L, 1);
+        aforoService.registrarValidacion(10L, 1);
+
+        assertThat(aforoService.obtenerAforo(10L)).isEqualTo(new AforoEventoDTO(10L, "Gala", 104L, 22L, 46));
+        verify(entradaRepository, times(1)).contarAforo(anyCollection());
+        verify(entradaRepository, never()).countByEvento(any());
+    }
+
+    // Verifica que la primera venta de un evento que no se sigue no se cuenta dos veces: la carga desde la BD ya la incluye
+    @Test
+    void registrarVenta_eventoNoSeguidoNoSeCuentaDosVeces() {
+        when(reservaStockService.consultarDisponible(11L)).thenReturn(47);
+
+        aforoService.registrarVenta(11L, 3);
+        aforoService.registrarValidacion(11L, 1);
+        verifyNoInteractions(entradaRepository);
+
+        // La BD ya tiene la venta confirmada
+        when(entradaRepository.contarAforo(List.of(11L))).thenReturn(List.of(new AforoEventoDTO(11L, "Concierto", 3L, 0L, 47)));
+        assertThat(aforoService.obtenerAforo(11L)).isEqualTo(new AforoEventoDTO(11L, "Concierto", 3L, 0L, 47));
+
+        // Desde aquí se sigue y las siguientes ventas se suman en memoria
+        aforoService.registrarVenta(11L, 2);
+        assertThat(aforoService.obtenerAforo(11L).getVendidas()).isEqualTo(5L);
+    }
+
+    // Comprueba que una desviación puntual solo se detecta y que si se repite se corrige
+    @Test
+    void conciliar_corrigeSoloDesviacionesEstables() {
+        precargar(new AforoEventoDTO(10L, "Gala", 100L, 20L, 50));
+        when(reservaStockService.consultarDisponible(10L)).thenReturn(50);
+        // La BD tiene 3 ventas de otra instancia
+        when(entradaRepository.contarAforo(anyCollection())).thenReturn(List.of(new AforoEventoDTO(10L, "Gala", 103L, 20L, 50)));
+
+        ConciliacionAforoDTO primera = aforoService.conciliar();
+        assertThat(primera.getDetectadas()).isEqualTo(1);
+        assertThat(primera.getCorregidas()).isZero();
+        assertThat(aforoService.obtenerAforo(10L).getVendidas()).isEqualTo(100L);
+
+        ConciliacionAforoDTO segunda = aforoService.conciliar();
+        assertThat(segunda.getCorregidas()).isEqualTo(1);
+        assertThat(aforoService.obtenerAforo(10L).getVendidas()).isEqualTo(103L);
+        verify(reservaStockService, never()).descartarContador(anyLong());
+
+        assertThat(aforoService.conciliar().getDetectadas()).isZero();
+    }
+
+    // Verifica que si el stock en memoria no cuadra de forma estable se descarta el contador de reservas
+    @Test
+    void conciliar_descartaContadorDeStock() {
+        precargar(new AforoEventoDTO(10L, "Gala", 100L, 20L, 50));
+        when(reservaStockService.consultarDisponible(10L)).thenReturn(45);
+        when(entradaRepository.contarAforo(anyCollection())).thenReturn(List.of(new AforoEventoDTO(10L, "Gala", 100L, 20L, 50)));
+
+        aforoService.conciliar();
+        aforoService.conciliar();
+
+        verify(reservaStockService, times(1)).descartarContador(10L);
+    }
+
+    // Comprueba que el panel solo recibe un envío cuando el aforo cambia (más el latido)
+    @Test
+    void emitir_soloSiCambia() {
+        precargar(new AforoEventoDTO(10L, "Gala", 100L, 20L, 50));
+        when(reservaStockService.consultarDisponible(10L)).thenReturn(50);
+        aforoService.suscribir();
+
+        aforoService.emitir();
+        aforoService.emitir();
+        assertThat(aforoService.envios()).isEqualTo(1);
+
+        aforoService.registrarValidacion(10L, 1);
+        aforoService.emitir();
+        assertThat(aforoService.envios()).isEqualTo(2);
+        assertThat(aforoService.panelesConectados()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,130 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.CertificadoPdfDTO;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.repository.CertificadoDonacionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CertificadoPdfServiceTest {
+
+    private static final Charset WIN_ANSI = Charset.forName("windows-1252");
+
+    @Mock
+    private CertificadoDonacionRepository certificadoDonacionRepository;
+
+    private CertificadoPdfService certificadoPdfService;
+
+    @BeforeEach
+    void setUp() {
+        certificadoPdfService = new CertificadoPdfService(certificadoDonacionRepository, "Fundación Cudeca", "G29000000", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        certificadoPdfService.detener();
+    }
+
+    // Verifica que el PDF es válido: xref apuntando a cada objeto y contenido con los datos del certificado
+    @Test
+    void escribirPdf_estructuraValidaConLosDatos() throws Exception {
+        when(certificadoDonacionRepository.findParaPdfById(7L))
+                .thenReturn(Optional.of(certificado(7L, "José Muñoz (hijo)", Importe.deEuros("1234.50"))));
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        certificadoPdfService.escribirPdf(7L, salida);
+        byte[] pdf = salida.toByteArray();
+        String texto = new String(pdf, StandardCharsets.ISO_8859_1);
+
+        assertThat(texto).startsWith("%PDF-1.4\n").endsWith("%%EOF\n");
+        int inicioXref = Integer.parseInt(texto.substring(texto.lastIndexOf("startxref\n") + 10, texto.lastIndexOf("\n%%EOF")));
+        assertThat(texto.substring(inicioXref)).startsWith("xref\n0 7\n");
+        String[] entradas = texto.substring(inicioXref).split("\n");
+        for (int objeto = 1; objeto <= 6; objeto++) {
+            int desplazamiento = Integer.parseInt(entradas[2 + objeto].substring(0, 10));
+            assertThat(texto.substring(desplazamiento)).startsWith(objeto + " 0 obj\n");
+        }
+
+        String contenido = contenido(pdf, texto);
+        assertThat(contenido).contains("Fundación Cudeca, con NIF G29000000");
+        assertThat(contenido).contains("Que D./Dña. José Muñoz \\(hijo\\), con NIF 12345678Z,");
+        assertThat(contenido).contains("de 1.234,50 euros, en fecha 15/03/2024");
+        assertThat(contenido).contains("Nº de certificado: 7");
+    }
+
+    // Comprueba que un certificado inexistente da EntityNotFoundException
+    @Test
+    void escribirPdf_certificadoInexistente() {
+        when(certificadoDonacionRepository.findParaPdfById(99L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> certificadoPdfService.escribirPdf(99L, new ByteArrayOutputStream()))
+                .isInstanceOf(jakarta.persistence.EntityNotFoundException.class);
+    }
+
+    // Verifica que el ZIP anual lleva un PDF por certificado, en orden, renderizados en paralelo
+    @Test
+    void exportarZip_unPdfPorCertificadoEnOrden() throws Exception {
+        when(certificadoDonacionRepository.streamParaPdf(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 1, 0, 0)))
+                .thenReturn(LongStream.rangeClosed(1, 2_000).mapToObj(id -> certificado(id, "Donante " + id, Importe.deCentimos(1_000 + id * 100))));
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        int escritos = certificadoPdfService.exportarZip(2024, salida);
+
+        assertThat(escritos).isEqualTo(2_000);
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(salida.toByteArray()))) {
+            long esperado = 1;
+            for (ZipEntry entrada = zip.getNextEntry(); entrada != null; entrada = zip.getNextEntry()) {
+                assertThat(entrada.getName()).isEqualTo("certificado_" + esperado + "_12345678Z.pdf");
+                byte[] pdf = zip.readAllBytes();
+                String texto = new String(pdf, StandardCharsets.ISO_8859_1);
+                assertThat(contenido(pdf, texto)).contains("Donante " + esperado + ",");
+                esperado++;
+            }
+            assertThat(esperado - 1).isEqualTo(2_000);
+        }
+    }
+
+    // Comprueba el formato español de los importes
+    @Test
+    void importe_formatoEspanol() {
+        assertThat(PlantillaCertificadoPdf.importe(Importe.deCentimos(50))).isEqualTo("0,50");
+        assertThat(PlantillaCertificadoPdf.importe(Importe.deCentimos(100_000))).isEqualTo("1.000,00");
+        assertThat(PlantillaCertificadoPdf.importe(Importe.deEuros("1234567.89"))).isEqualTo("1.234.567,89");
+    }
+
+    private static String contenido(byte[] pdf, String texto) throws Exception {
+        int inicio = texto.indexOf("stream\n") + 7;
+        int fin = texto.indexOf("\nendstream");
+        Inflater inflater = new Inflater();
+        inflater.setInput(pdf, inicio, fin - inicio);
+        byte[] buffer = new byte[16_384];
+        int longitud = inflater.inflate(buffer);
+        assertThat(inflater.finished()).isTrue();
+        return new String(buffer, 0, longitud, WIN_ANSI);
+    }
+
+    private static CertificadoPdfDTO certificado(Long id, String nombre, Importe importe) {
+        return new CertificadoPdfDTO(id, LocalDateTime.of(2024, 3, 15, 10, 30), importe, "12345678Z", nombre,
+                "Calle Larios 1", "29005", "Málaga", "Málaga", "España");
+    }
+}
@@ -0,0 +1,85 @@
+package com.byron.cudeca.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CodigoQrServiceTest {
+
+    private final CodigoQrService codigoQrService = new CodigoQrService("clave-de-pruebas-para-los-qr".getBytes());
+
+    // Verifica que un QR generado se verifica y devuelve los mismos datos, con menos de 36 caracteres
+    @Test
+    void generar_idaYVueltaConDatosOriginales() {
+        String qr = codigoQrService.generar(42L, 123_456L, 7);
+
+        assertThat(qr).hasSizeLessThan(36).matches("[0-9A-Z]+");
+        assertThat(codigoQrService.verificar(qr))
+                .contains(new CodigoQrService.DatosQr(42L, 123_456L, 7));
+    }
+
+    // Verifica que cualquier carácter alterado invalida la firma
+    @Test
+    void verificar_qrManipuladoSeRechaza() {
+        String qr = codigoQrService.generar(1L, 2L, 0);
+
+        for (int i = 0; i < qr.length(); i++) {
+            char original = qr.charAt(i);
+            char cambiado = original == 'A' ? 'B' : 'A';
+            String manipulado = qr.substring(0, i) + cambiado + qr.substring(i + 1);
+            assertThat(codigoQrService.verificar(manipulado)).as("posición %d", i).isEmpty();
+        }
+    }
+
+    // Comprueba que un QR firmado con otra clave no es válido
+    @Test
+    void verificar_otraClaveNoEsValida() {
+        CodigoQrService otra = new CodigoQrService("otra-clave-distinta-de-pruebas".getBytes());
+
+        assertThat(codigoQrService.verificar(otra.generar(1L, 2L, 3))).isEmpty();
+    }
+
+    // Comprueba que los QR antiguos (UUID) se reconocen como tales y no pasan como firmados
+    @Test
+    void esFormatoAntiguo_reconoceUuid() {
+        String antiguo = UUID.randomUUID().toString();
+
+        assertThat(codigoQrService.esFormatoAntiguo(antiguo)).isTrue();
+        assertThat(codigoQrService.esFormatoAntiguo(codigoQrService.generar(1L, 1L, 0))).isFalse();
+        assertThat(codigoQrService.verificar(antiguo)).isEmpty();
+    }
+
+    // Comprueba que las entradas de un mismo pedido tienen códigos distintos
+    @Test
+    void generar_codigosUnicosPorEntrada() {
+        Set<String> codigos = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            codigos.add(codigoQrService.generar(1L, 99L, i));
+        }
+        assertThat(codigos).hasSize(500);
+    }
+
+    // Comprueba que se rechazan claves demasiado cortas
+    @Test
+    void constructor_claveCortaLanzaExcepcion() {
+        assertThatThrownBy(() -> new CodigoQrService("corta".getBytes()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Verifica que sin clave configurada el servicio no arranca, y que una clave corta de configuración tampoco vale
+    @Test
+    void constructor_sinClaveConfiguradaNoArranca() {
+        assertThatThrownBy(() -> new CodigoQrService(""))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("CUDECA_CLAVE_QR");
+        assertThatThrownBy(() -> new CodigoQrService("   "))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new CodigoQrService("corta"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
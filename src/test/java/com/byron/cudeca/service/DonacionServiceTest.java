@@ -0,0 +1,268 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.DonacionRegistradaDTO;
+import com.byron.cudeca.dto.DonacionRequestDTO;
+import com.byron.cudeca.model.AportacionSocio;
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Usuario;
+import com.byron.cudeca.repository.AportacionSocioRepository;
+import com.byron.cudeca.repository.DonacionRepository;
+import com.byron.cudeca.repository.SocioRepository;
+import com.byron.cudeca.repository.UsuarioRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DonacionServiceTest {
+
+    @Mock
+    private DonacionRepository donacionRepository;
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private SocioRepository socioRepository;
+
+    @Mock
+    private AportacionSocioRepository aportacionSocioRepository;
+
+    @Mock
+    private EmisionCertificadosService emisionCertificadosService;
+
+    @Mock
+    private MarcadorDonacionesService marcadorDonacionesService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-03-01T10:00:00Z"), ZoneId.of("UTC"));
+
+    private DonacionService service;
+
+    @AfterEach
+    void parar() throws InterruptedException {
+        if (service != null) {
+            service.detener();
+        }
+    }
+
+    private DonacionService crear(int capacidadCola) {
+        service = new DonacionService(donacionRepository, usuarioRepository, socioRepository, aportacionSocioRepository,
+                emisionCertificadosService, marcadorDonacionesService, transactionManager, 200, capacidadCola, 1000, clock);
+        return service;
+    }
+
+    private void saveAllAsignaIds() {
+        AtomicLong ids = new AtomicLong();
+        when(donacionRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Donacion> donaciones = inv.getArgument(0);
+            donaciones.forEach(d -> d.setId(ids.incrementAndGet()));
+            return donaciones;
+        });
+        when(usuarioRepository.getReferenceById(anyString())).thenAnswer(inv -> {
+            Usuario usuario = new Usuario();
+            usuario.setNif(inv.getArgument(0));
+            return usuario;
+        });
+    }
+
+    private static DonacionRequestDTO datos(String nif, String importe) {
+        DonacionRequestDTO datos = new DonacionRequestDTO();
+        datos.setUsuarioNif(nif);
+        datos.setImporte(Importe.deEuros(importe));
+        datos.setCanalPago(CanalPago.TARJETA);
+        return datos;
+    }
+
+    private static DonacionService.DonacionPendiente pendiente(String nif, String importe) {
+        return new DonacionService.DonacionPendiente(datos(nif, importe), null);
+    }
+
+    // Verifica que un lote se guarda con un único saveAll y una sola consulta de socios
+    @Test
+    void escribirLote_unaTransaccionPorLote() {
+        DonacionService donaciones = crear(10);
+        saveAllAsignaIds();
+        when(socioRepository.findNifsDeSocios(anyCollection())).thenReturn(List.of());
+        List<DonacionService.DonacionPendiente> lote = List.of(
+                pendiente("11111111A", "10.00"), pendiente("22222222B", "20.00"), pendiente("33333333C", "30.00"));
+
+        donaciones.escribirLote(lote);
+
+        verify(donacionRepository, times(1)).saveAll(anyList());
+        verify(socioRepository, times(1)).findNifsDeSocios(anyCollection());
+        verify(transactionManager, times(1)).commit(any());
+        assertThat(lote).allSatisfy(p -> assertThat(p.resultado()).isCompleted());
+        assertThat(lote.get(2).resultado().join().getImporte()).isEqualTo(Importe.deEuros("30.00"));
+        verify(marcadorDonacionesService).registrar(argThat(donacionesGuardadas -> donacionesGuardadas.size() == 3));
+    }
+
+    // Comprueba que solo las donaciones de socios generan una aportación pendiente de consolidar
+    @SuppressWarnings("unchecked")
+    @Test
+    void escribirLote_aportacionSoloParaSocios() {
+        DonacionService donaciones = crear(10);
+        saveAllAsignaIds();
+        when(socioRepository.findNifsDeSocios(anyCollection())).thenReturn(List.of("11111111A"));
+
+        donaciones.escribirLote(List.of(pendiente("11111111A", "10.00"), pendiente("22222222B", "20.00")));
+
+        ArgumentCaptor<List<AportacionSocio>> aportaciones = ArgumentCaptor.forClass(List.class);
+        verify(aportacionSocioRepository).saveAll(aportaciones.capture());
+        assertThat(aportaciones.getValue()).singleElement()
+                .satisfies(a -> {
+                    assertThat(a.getSocioNif()).isEqualTo("11111111A");
+                    assertThat(a.getImporte()).isEqualTo(Importe.deEuros("10.00"));
+                });
+        verify(socioRepository, never()).sumarDonacion(anyString(), anyLong());
+    }
+
+    // Verifica que si una restricción rechaza el lote se reintenta una a una y solo falla la donación errónea
+    @Test
+    void escribirLote_aislaLaDonacionErronea() {
+        DonacionService donaciones = crear(10);
+        saveAllAsignaIds();
+        when(socioRepository.findNifsDeSocios(anyCollection())).thenReturn(List.of());
+        when(usuarioRepository.getReferenceById("NOEXISTE")).thenThrow(new DataIntegrityViolationException("FK"));
+        List<DonacionService.DonacionPendiente> lote = List.of(
+                pendiente("11111111A", "10.00"), pendiente("NOEXISTE", "5.00"), pendiente("33333333C", "30.00"));
+
+        donaciones.escribirLote(lote);
+
+        assertThat(lote.get(0).resultado()).isCompleted();
+        assertThat(lote.get(1).resultado()).isCompletedExceptionally();
+        assertThat(lote.get(2).resultado()).isCompleted();
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    // Comprueba que un fallo que no es de integridad (BD caída) falla el lote entero sin repetirlo una a una
+    @Test
+    void escribirLote_falloDeBdNoSeRepiteUnaAUna() {
+        DonacionService donaciones = crear(10);
+        when(transactionManager.getTransaction(any())).thenThrow(new CannotCreateTransactionException("BD caída"));
+        List<DonacionService.DonacionPendiente> lote = List.of(
+                pendiente("11111111A", "10.00"), pendiente("22222222B", "20.00"), pendiente("33333333C", "30.00"));
+
+        donaciones.escribirLote(lote);
+
+        assertThat(lote).allSatisfy(p -> assertThat(p.resultado()).isCompletedExceptionally());
+        verify(transactionManager, times(1)).getTransaction(any());
+        verifyNoInteractions(donacionRepository, marcadorDonacionesService);
+    }
+
+    // Comprueba que la consolidación suma por socio, hace un UPDATE por socio, incrementa sus versiones y borra las aportaciones
+    @Test
+    void consolidarTotales_sumaPorSocioYBorra() {
+        DonacionService donaciones = crear(10);
+        List<AportacionSocio> lote = new ArrayList<>();
+        lote.add(aportacion(1L, "11111111A", "10.00"));
+        lote.add(aportacion(2L, "22222222B", "5.00"));
+        lote.add(aportacion(3L, "11111111A", "2.50"));
+        when(aportacionSocioRepository.findLoteParaConsolidar(any(Pageable.class))).thenReturn(lote);
+
+        assertThat(donaciones.consolidarTotales()).isEqualTo(3);
+
+        verify(socioRepository).sumarDonacion("11111111A", 1250L);
+        verify(socioRepository).sumarDonacion("22222222B", 500L);
+        verify(socioRepository).incrementarVersiones(Set.of("11111111A", "22222222B"));
+        verify(aportacionSocioRepository).borrar(List.of(1L, 2L, 3L));
+    }
+
+    // Verifica que el total de un socio incluye lo pendiente de consolidar
+    @Test
+    void obtenerDonacionTotal_incluyePendiente() {
+        DonacionService donaciones = crear(10);
+        when(socioRepository.findDonacionTotal("11111111A")).thenReturn(Optional.of(Importe.deEuros("100.00")));
+        when(aportacionSocioRepository.sumarPendientes("11111111A")).thenReturn(1_500L);
+
+        assertThat(donaciones.obtenerDonacionTotal("11111111A")).isEqualTo(Importe.deEuros("115.00"));
+    }
+
+    // Comprueba que el hilo escritor agrupa y que con la cola llena se rechaza la donación
+    @Test
+    void registrar_colaLlenaRechaza() throws Exception {
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> {
+            bloqueo.await();
+            return null;
+        });
+        saveAllAsignaIds();
+        DonacionService donaciones = crear(2);
+        donaciones.arrancar();
+        DonacionRequestDTO datos = datos("11111111A", "10.00");
+
+        List<CompletableFuture<DonacionRegistradaDTO>> aceptadas = new ArrayList<>();
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 5; i++) {
+                aceptadas.add(donaciones.registrar(datos));
+            }
+        }).isInstanceOf(IllegalStateException.class);
+
+        bloqueo.countDown();
+        CompletableFuture.allOf(aceptadas.toArray(new CompletableFuture[0])).get();
+        assertThat(aceptadas).hasSizeBetween(2, 3);
+    }
+
+    // Verifica que el hilo escritor no escribe nada hasta que la aplicación arranca y entonces vacía la cola
+    @Test
+    void arrancar_escribeLoQueEsperabaEnCola() throws Exception {
+        saveAllAsignaIds();
+        DonacionService donaciones = crear(10);
+        CompletableFuture<DonacionRegistradaDTO> registrada = donaciones.registrar(datos("11111111A", "10.00"));
+
+        assertThat(registrada).isNotDone();
+        verifyNoInteractions(donacionRepository);
+
+        donaciones.arrancar();
+        assertThat(registrada.get(10, TimeUnit.SECONDS).getImporte()).isEqualTo(Importe.deEuros("10.00"));
+    }
+
+    // Verifica que una donación sin importe no llega a la cola
+    @Test
+    void registrar_importeNoValido() {
+        DonacionService donaciones = crear(10);
+        DonacionRequestDTO datos = datos("11111111A", "0.00");
+
+        assertThatThrownBy(() -> donaciones.registrar(datos)).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(donacionRepository);
+    }
+
+    private static AportacionSocio aportacion(Long id, String nif, String importe) {
+        AportacionSocio aportacion = new AportacionSocio();
+        aportacion.setId(id);
+        aportacion.setSocioNif(nif);
+        aportacion.setImporte(Importe.deEuros(importe));
+        return aportacion;
+    }
+}
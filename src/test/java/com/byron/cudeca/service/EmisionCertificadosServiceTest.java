@@ -0,0 +1,224 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.CertificadoDonacion;
+import com.byron.cudeca.model.EstadoSolicitud;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Pedido;
+import com.byron.cudeca.model.SolicitudCertificado;
+import com.byron.cudeca.model.Usuario;
+import com.byron.cudeca.repository.CertificadoDonacionRepository;
+import com.byron.cudeca.repository.SolicitudCertificadoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmisionCertificadosServiceTest {
+
+    private static final Clock FIXED_CLOCK = Clock.fixed(Instant.parse("2024-05-01T18:00:00Z"), ZoneId.of("UTC"));
+    private static final LocalDateTime AHORA = LocalDateTime.of(2024, 5, 1, 18, 0);
+
+    @Mock
+    private SolicitudCertificadoRepository solicitudRepository;
+
+    @Mock
+    private CertificadoDonacionRepository certificadoDonacionRepository;
+
+    @Mock
+    private CertificadoDonacionService certificadoDonacionService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private EmisionCertificadosService emisionService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        emisionService.detener();
+    }
+
+    // Verifica que pedir dos veces el certificado de un pedido solo guarda una solicitud
+    @Test
+    void solicitarParaPedido_idempotentePorPedido() {
+        emisionService = servicio(2, 10, 3);
+        Pedido pedido = pedido(7L);
+        when(solicitudRepository.existsByPedido(pedido)).thenReturn(true);
+
+        emisionService.solicitarParaPedido(pedido, null, null, "Calle 1", "29010", "Málaga", "Málaga", "España");
+
+        verify(solicitudRepository, never()).save(any());
+    }
+
+    // Verifica que el worker emite el certificado con los datos de la solicitud y la marca como EMITIDA
+    @Test
+    void procesar_emiteYMarcaEmitida() {
+        emisionService = servicio(2, 10, 3);
+        SolicitudCertificado solicitud = solicitud(1L, pedido(7L));
+        reclamable(solicitud);
+        when(certificadoDonacionRepository.findByPedido(solicitud.getPedido())).thenReturn(Optional.empty());
+
+        emisionService.procesar(1L);
+
+        verify(certificadoDonacionService).generarCertificado(solicitud.getPedido().getUsuario(), Importe.deEuros("25.00"),
+                solicitud.getPedido(), null, null, "12345678Z", "Calle 1", "29010", "Málaga", "Málaga", "España");
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.EMITIDA);
+        verify(solicitudRepository).reclamar(1L, EstadoSolicitud.PENDIENTE, AHORA, AHORA.plus(EmisionCertificadosService.PLAZO_TRABAJO));
+    }
+
+    // Comprueba que si el certificado ya existe (reintento tras un fallo al marcar) no se duplica
+    @Test
+    void procesar_certificadoYaEmitidoNoSeDuplica() {
+        emisionService = servicio(2, 10, 3);
+        SolicitudCertificado solicitud = solicitud(1L, pedido(7L));
+        reclamable(solicitud);
+        when(certificadoDonacionRepository.findByPedido(solicitud.getPedido())).thenReturn(Optional.of(new CertificadoDonacion()));
+
+        emisionService.procesar(1L);
+
+        verifyNoInteractions(certificadoDonacionService);
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.EMITIDA);
+    }
+
+    // Verifica que si otra emisión crea a la vez la fila del total se repite la transacción al momento, sin gastar un intento
+    @Test
+    void procesar_carreraEnRestriccionUnicaRepiteAlMomento() {
+        emisionService = servicio(2, 10, 3);
+        SolicitudCertificado solicitud = solicitud(1L, pedido(7L));
+        reclamable(solicitud);
+        when(certificadoDonacionRepository.findByPedido(solicitud.getPedido())).thenReturn(Optional.empty());
+        when(certificadoDonacionService.generarCertificado(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("uk_total_donante_nif_ejercicio"))
+                .thenReturn(new CertificadoDonacion());
+
+        emisionService.procesar(1L);
+
+        verify(certificadoDonacionService, times(2)).generarCertificado(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(transactionManager).rollback(any());
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.EMITIDA);
+        assertThat(solicitud.getIntentos()).isZero();
+    }
+
+    // Comprueba que si otro worker emite el mismo certificado a la vez, la repetición lo da por emitido sin duplicarlo
+    @Test
+    void procesar_certificadoEmitidoALaVezSeDaPorEmitido() {
+        emisionService = servicio(2, 10, 3);
+        SolicitudCertificado solicitud = solicitud(1L, pedido(7L));
+        reclamable(solicitud);
+        when(certificadoDonacionRepository.findByPedido(solicitud.getPedido()))
+                .thenReturn(Optional.empty(), Optional.of(new CertificadoDonacion()));
+        when(certificadoDonacionService.generarCertificado(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("uk_certificado_pedido"));
+
+        emisionService.procesar(1L);
+
+        verify(certificadoDonacionService, times(1)).generarCertificado(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.EMITIDA);
+        assertThat(solicitud.getIntentos()).isZero();
+    }
+
+    // Comprueba que un fallo reprograma con espera exponencial y que al agotar intentos queda FALLIDA
+    @Test
+    void procesar_falloReintentaConEsperaYAcabaFallida() {
+        emisionService = servicio(2, 10, 3);
+        SolicitudCertificado solicitud = solicitud(1L, pedido(7L));
+        reclamable(solicitud);
+        when(certificadoDonacionRepository.findByPedido(any())).thenReturn(Optional.empty());
+        when(certificadoDonacionService.generarCertificado(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("BD caída"));
+
+        emisionService.procesar(1L);
+        assertThat(solicitud.getIntentos()).isEqualTo(1);
+        assertThat(solicitud.getProximoIntento()).isEqualTo(AHORA.plusSeconds(30));
+        assertThat(solicitud.getUltimoError()).contains("BD caída");
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.PENDIENTE);
+
+        emisionService.procesar(1L);
+        assertThat(solicitud.getProximoIntento()).isEqualTo(AHORA.plusSeconds(60));
+        emisionService.procesar(1L);
+        assertThat(solicitud.getIntentos()).isEqualTo(3);
+        assertThat(solicitud.getEstado()).isEqualTo(EstadoSolicitud.FALLIDA);
+        assertThat(emisionService.espera(30)).isEqualTo(Duration.ofHours(6));
+    }
+
+    // Verifica la contrapresión: el barrido solo coge lo que cabe en la cola y con la cola llena no consulta la BD
+    @Test
+    void procesarPendientes_noSuperaLaCapacidadDeLaCola() throws Exception {
+        emisionService = servicio(1, 1, 3);
+        CountDownLatch trabajando = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        when(solicitudRepository.reclamar(eq(1L), any(), any(), any())).thenAnswer(invocacion -> {
+            trabajando.countDown();
+            soltar.await(10, TimeUnit.SECONDS);
+            return 0;
+        });
+        when(solicitudRepository.findIdsListas(EstadoSolicitud.PENDIENTE, AHORA, PageRequest.ofSize(1)))
+                .thenReturn(List.of(1L), List.of(2L));
+
+        assertThat(emisionService.procesarPendientes()).isEqualTo(1);
+        assertThat(trabajando.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(emisionService.procesarPendientes()).isEqualTo(1);   // la 2 espera en la cola
+        assertThat(emisionService.procesarPendientes()).isZero();       // cola llena: ni se consulta
+        assertThat(emisionService.enCola()).isEqualTo(1);
+        soltar.countDown();
+
+        verify(solicitudRepository, times(2)).findIdsListas(any(), any(), any());
+    }
+
+    private EmisionCertificadosService servicio(int hilos, int capacidad, int maxIntentos) {
+        return new EmisionCertificadosService(solicitudRepository, certificadoDonacionRepository,
+                certificadoDonacionService, transactionManager, hilos, capacidad, maxIntentos,
+                Duration.ofSeconds(30), FIXED_CLOCK, new SimpleMeterRegistry());
+    }
+
+    private void reclamable(SolicitudCertificado solicitud) {
+        when(solicitudRepository.reclamar(eq(solicitud.getId()), eq(EstadoSolicitud.PENDIENTE), any(), any())).thenReturn(1);
+        when(solicitudRepository.findById(solicitud.getId())).thenReturn(Optional.of(solicitud));
+    }
+
+    private Pedido pedido(Long id) {
+        Usuario usuario = new Usuario();
+        usuario.setNif("87654321X");
+        Pedido pedido = new Pedido();
+        pedido.setId(id);
+        pedido.setUsuario(usuario);
+        return pedido;
+    }
+
+    private SolicitudCertificado solicitud(Long id, Pedido pedido) {
+        SolicitudCertificado solicitud = new SolicitudCertificado();
+        solicitud.setId(id);
+        solicitud.setPedido(pedido);
+        solicitud.setImporte(Importe.deEuros("25.00"));
+        solicitud.setNifFiscal("12345678Z");
+        solicitud.setDireccion("Calle 1");
+        solicitud.setCodigoPostal("29010");
+        solicitud.setPoblacion("Málaga");
+        solicitud.setProvincia("Málaga");
+        solicitud.setPais("España");
+        solicitud.setEstado(EstadoSolicitud.PENDIENTE);
+        solicitud.setIntentos(0);
+        solicitud.setProximoIntento(AHORA);
+        return solicitud;
+    }
+}
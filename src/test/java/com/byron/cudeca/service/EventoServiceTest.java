@@ -1,23 +1,38 @@
 package com.byron.cudeca.service;
 
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import com.byron.cudeca.dto.EventoResumenDTO;
 import com.byron.cudeca.model.Administrador;
 import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.repository.AdministradorRepository;
 import com.byron.cudeca.repository.EventoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -32,11 +47,17 @@ class EventoServiceTest {
     @Mock
     private EventoRepository eventoRepository;
 
+    @Mock
+    private AdministradorRepository administradorRepository;
+
+    private final ReintentosOptimistas reintentos = new ReintentosOptimistas(TransactionOperations.withoutTransaction(), new SimpleMeterRegistry(), 3, 0, 0);
+
     private EventoService eventoService;
 
     @BeforeEach
     void setUp() {
-        eventoService = new EventoService(eventoRepository, FIXED_CLOCK);
+        eventoService = new EventoService(eventoRepository, administradorRepository, reintentos,
+                TransactionOperations.withoutTransaction(), FIXED_CLOCK);
     }
 
     // Verifica que sin palabra clave se recuperan eventos futuros y se ordenan por fecha ascendente
@@ -45,28 +66,107 @@ class EventoServiceTest {
         Evento mayo = crearEvento(1L, "Charla", LocalDateTime.of(2024, 5, 10, 18, 0));
         Evento junio = crearEvento(2L, "Concierto", LocalDateTime.of(2024, 6, 5, 20, 0));
         Evento abril = crearEvento(3L, "Taller", LocalDateTime.of(2024, 4, 30, 9, 0));
-        when(eventoRepository.findByFechaAfterOrderByFechaAsc(LocalDate.of(2024, 5, 1)))
-                .thenReturn(Arrays.asList(mayo, junio, abril));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(mayo, junio, abril));
+
+        List<EventoResumenDTO> resultado = eventoService.obtenerEventosConFiltros(null, null, null);
+
+        assertThat(resultado).containsExactlyElementsOf(resumenes(abril, mayo, junio));
+        verify(eventoRepository).findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0));
+    }
+
+    // Verifica que con palabra clave se buscan los eventos en el índice, sin consultar la BD
+    @Test
+    void obtenerEventosConFiltros_conKeywordFiltraLaCartelera() {
+        Evento noche = crearEvento(1L, "Noche solidaria", LocalDateTime.of(2024, 5, 20, 19, 0));
+        Evento taller = crearEvento(2L, "Taller", LocalDateTime.of(2024, 5, 10, 19, 0));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(noche, taller));
 
-        List<Evento> resultado = eventoService.obtenerEventosConFiltros(null, null, null);
+        List<EventoResumenDTO> resultado = eventoService.obtenerEventosConFiltros("noche", null, null);
 
-        assertThat(resultado).containsExactly(abril, mayo, junio);
-        verify(eventoRepository).findByFechaAfterOrderByFechaAsc(LocalDate.of(2024, 5, 1));
-        verify(eventoRepository, never()).findByNombreContainingIgnoreCase(any());
+        assertThat(resultado).containsExactlyElementsOf(resumenes(noche));
+        verify(eventoRepository, times(1)).findDetallesDesde(any());
+        verifyNoMoreInteractions(eventoRepository);
     }
 
-    // Verifica que con palabra clave se filtran los eventos pasados y se mantiene el futuro
+    // Verifica que la búsqueda ignora tildes, busca por prefijo y cubre descripción, tipo y ubicación
     @Test
-    void obtenerEventosConFiltros_filtraEventosPasadosAlBuscar() {
-        Evento pasado = crearEvento(1L, "Noche solidaria", LocalDateTime.of(2024, 4, 1, 19, 0));
-        Evento futuro = crearEvento(2L, "Noche solidaria", LocalDateTime.of(2024, 5, 20, 19, 0));
-        when(eventoRepository.findByNombreContainingIgnoreCase("Noche"))
-                .thenReturn(Arrays.asList(pasado, futuro));
+    void obtenerEventosConFiltros_busquedaSinTildesPorPrefijoEnTodosLosCampos() {
+        Evento concierto = crearEvento(1L, "Concierto benéfico", LocalDateTime.of(2024, 5, 20, 19, 0));
+        concierto.setUbicacion("Teatro Cervantes, Málaga");
+        Evento cena = crearEvento(2L, "Cena de gala", LocalDateTime.of(2024, 5, 10, 21, 0));
+        cena.setDescripcion("Menú solidario con música en directo");
+        cena.setTipoEvento("Gastronómico");
+        cena.setUbicacion("Ronda");
+        Evento marcha = crearEvento(3L, "Marcha", LocalDateTime.of(2024, 5, 12, 9, 0));
+        marcha.setUbicacion("Marbella");
+        marcha.setDescripcion("Recorrido por el paseo");
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(concierto, cena, marcha));
+
+        assertThat(eventoService.obtenerEventosConFiltros("MALAGA", null, null)).containsExactlyElementsOf(resumenes(concierto));
+        assertThat(eventoService.obtenerEventosConFiltros("benef conci", null, null)).containsExactlyElementsOf(resumenes(concierto));
+        assertThat(eventoService.obtenerEventosConFiltros("musica", null, null)).containsExactlyElementsOf(resumenes(cena));
+        assertThat(eventoService.obtenerEventosConFiltros("gastronomico", null, null)).containsExactlyElementsOf(resumenes(cena));
+        assertThat(eventoService.obtenerEventosConFiltros("mar", "nombre", "desc")).containsExactlyElementsOf(resumenes(marcha));
+        assertThat(eventoService.obtenerEventosConFiltros("c", "fecha", "asc")).containsExactlyElementsOf(resumenes(cena, concierto));
+        assertThat(eventoService.obtenerEventosConFiltros("concierto marbella", null, null)).isEmpty();
+    }
+
+    // Verifica que las peticiones repetidas, con cualquier orden, se sirven de la caché con una sola consulta
+    @Test
+    void obtenerEventosConFiltros_peticionesRepetidasUsanLaCache() {
+        Evento eventoA = crearEvento(1L, "Alpha", LocalDateTime.of(2024, 5, 5, 18, 0));
+        Evento eventoB = crearEvento(2L, "Beta", LocalDateTime.of(2024, 5, 6, 18, 0));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(eventoA, eventoB));
+
+        for (int i = 0; i < 100; i++) {
+            eventoService.obtenerEventosConFiltros(null, "fecha", "asc");
+            eventoService.obtenerEventosConFiltros(null, "stock", "desc");
+        }
+        List<EventoResumenDTO> resultado = eventoService.obtenerEventosConFiltros(null, "fecha", "desc");
+
+        assertThat(resultado).containsExactlyElementsOf(resumenes(eventoB, eventoA));
+        verify(eventoRepository, times(1)).findDetallesDesde(any());
+    }
+
+    // Comprueba que crear o borrar un evento invalida la cartelera y la siguiente petición la recarga
+    @Test
+    void crearYEliminarEvento_invalidanLaCache() {
+        Evento existente = crearEvento(1L, "Alpha", LocalDateTime.of(2024, 5, 5, 18, 0));
+        Evento nuevo = crearEvento(2L, "Beta", LocalDateTime.of(2024, 5, 6, 18, 0));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(existente), detalles(existente, nuevo), detalles(nuevo));
+        when(administradorRepository.findById("00000000T")).thenReturn(Optional.of(administrador()));
+        when(eventoRepository.save(nuevo)).thenReturn(nuevo);
+        when(eventoRepository.existsById(1L)).thenReturn(true);
 
-        List<Evento> resultado = eventoService.obtenerEventosConFiltros("Noche", null, null);
+        assertThat(eventoService.obtenerEventosConFiltros(null, null, null)).containsExactlyElementsOf(resumenes(existente));
+        eventoService.crearEvento(nuevo);
+        assertThat(eventoService.obtenerEventosConFiltros(null, null, null)).containsExactlyElementsOf(resumenes(existente, nuevo));
+        assertThat(eventoService.obtenerEventosConFiltros("beta", null, null)).containsExactlyElementsOf(resumenes(nuevo));
+        eventoService.eliminarEvento(1L);
+        assertThat(eventoService.obtenerEventosConFiltros(null, null, null)).containsExactlyElementsOf(resumenes(nuevo));
+        assertThat(eventoService.obtenerEventosConFiltros("alpha", null, null)).isEmpty();
+    }
 
-        assertThat(resultado).containsExactly(futuro);
-        verify(eventoRepository, never()).findByFechaAfterOrderByFechaAsc(any());
+    // Comprueba que la cartelera caduca pasado su tiempo de vida
+    @Test
+    void obtenerEventosConFiltros_cacheCaducadaSeRecarga() {
+        MutableClock reloj = new MutableClock(Instant.parse("2024-05-01T10:00:00Z"));
+        eventoService = new EventoService(eventoRepository, administradorRepository, reintentos,
+                TransactionOperations.withoutTransaction(), reloj, Duration.ofSeconds(30));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0))).thenReturn(List.of());
+
+        eventoService.obtenerEventosConFiltros(null, null, null);
+        reloj.avanzar(Duration.ofSeconds(29));
+        eventoService.obtenerEventosConFiltros(null, null, null);
+        reloj.avanzar(Duration.ofSeconds(2));
+        eventoService.obtenerEventosConFiltros(null, null, null);
+
+        verify(eventoRepository, times(2)).findDetallesDesde(any());
     }
 
     // Verifica que el ordenamiento respeta sortBy y sortDir en modo descendente
@@ -74,12 +174,12 @@ class EventoServiceTest {
     void obtenerEventosConFiltros_ordenaPorNombreDesc() {
         Evento eventoA = crearEvento(1L, "Alpha", LocalDateTime.of(2024, 5, 5, 18, 0));
         Evento eventoB = crearEvento(2L, "Beta", LocalDateTime.of(2024, 5, 6, 18, 0));
-        when(eventoRepository.findByFechaAfterOrderByFechaAsc(LocalDate.of(2024, 5, 1)))
-                .thenReturn(Arrays.asList(eventoA, eventoB));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(eventoA, eventoB));
 
-        List<Evento> resultado = eventoService.obtenerEventosConFiltros(null, "nombre", "desc");
+        List<EventoResumenDTO> resultado = eventoService.obtenerEventosConFiltros(null, "nombre", "desc");
 
-        assertThat(resultado).containsExactly(eventoB, eventoA);
+        assertThat(resultado).containsExactlyElementsOf(resumenes(eventoB, eventoA));
     }
 
     // Comprueba que sortBy desconocido cae en ordenación por fecha ascendente
@@ -87,12 +187,62 @@ class EventoServiceTest {
     void obtenerEventosConFiltros_criterioDesconocidoVuelvePorFecha() {
         Evento eventoA = crearEvento(1L, "Alpha", LocalDateTime.of(2024, 5, 6, 18, 0));
         Evento eventoB = crearEvento(2L, "Beta", LocalDateTime.of(2024, 5, 5, 18, 0));
-        when(eventoRepository.findByFechaAfterOrderByFechaAsc(LocalDate.of(2024, 5, 1)))
-                .thenReturn(Arrays.asList(eventoA, eventoB));
+        when(eventoRepository.findDetallesDesde(LocalDateTime.of(2024, 5, 1, 0, 0)))
+                .thenReturn(detalles(eventoA, eventoB));
+
+        List<EventoResumenDTO> resultado = eventoService.obtenerEventosConFiltros(null, "desconocido", null);
+
+        assertThat(resultado).containsExactlyElementsOf(resumenes(eventoB, eventoA));
+    }
+
+    // Verifica que la página del histórico se pide a la BD con el orden traducido, desempate por id y tamaño acotado
+    @Test
+    void obtenerEventosPaginados_ordenYTamanoEnLaConsulta() {
+        when(eventoRepository.findResumenes(any(Pageable.class))).thenReturn(Page.empty());
 
-        List<Evento> resultado = eventoService.obtenerEventosConFiltros(null, "desconocido", null);
+        eventoService.obtenerEventosPaginados(3, 500, "tipoEvento", "desc");
 
-        assertThat(resultado).containsExactly(eventoB, eventoA);
+        ArgumentCaptor<Pageable> pedido = ArgumentCaptor.forClass(Pageable.class);
+        verify(eventoRepository).findResumenes(pedido.capture());
+        assertThat(pedido.getValue().getPageNumber()).isEqualTo(3);
+        assertThat(pedido.getValue().getPageSize()).isEqualTo(100);
+        assertThat(pedido.getValue().getSort())
+                .isEqualTo(Sort.by(Sort.Direction.DESC, "tipoEvento").and(Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    // Comprueba que un criterio desconocido no llega a la consulta y cae en fecha
+    @Test
+    void obtenerEventosPaginados_criterioDesconocidoOrdenaPorFecha() {
+        EventoResumenDTO evento = new EventoResumenDTO(1L, "Alpha", "Formativo", LocalDateTime.of(2023, 1, 1, 10, 0), "Malaga", 10);
+        when(eventoRepository.findResumenes(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(evento)));
+
+        Page<EventoResumenDTO> pagina = eventoService.obtenerEventosPaginados(0, 20, "administrador.password", null);
+
+        assertThat(pagina.getContent()).containsExactly(evento);
+        verify(eventoRepository).findResumenes(PageRequest.of(0, 20,
+                Sort.by(Sort.Direction.ASC, "fecha").and(Sort.by(Sort.Direction.ASC, "id"))));
+    }
+
+    // Verifica que el keyset usa la primera consulta sin cursor y la de continuación con cursor
+    @Test
+    void obtenerEventosDesde_primeraYSiguientesPaginas() {
+        LocalDateTime fecha = LocalDateTime.of(2023, 3, 1, 10, 0);
+
+        eventoService.obtenerEventosDesde(null, null, 50);
+        eventoService.obtenerEventosDesde(fecha, 7L, 50);
+
+        verify(eventoRepository).findPrimerosPorFecha(PageRequest.ofSize(50));
+        verify(eventoRepository).findSiguientesPorFecha(fecha, 7L, PageRequest.ofSize(50));
+    }
+
+    // Comprueba que un cursor incompleto o un tamaño no válido se rechazan
+    @Test
+    void obtenerEventosDesde_cursorIncompletoLanzaExcepcion() {
+        assertThatThrownBy(() -> eventoService.obtenerEventosDesde(LocalDateTime.of(2023, 3, 1, 10, 0), null, 50))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> eventoService.obtenerEventosDesde(null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(eventoRepository);
     }
 
     // Valida que la creación de eventos rechaza fechas en el pasado
@@ -117,18 +267,33 @@ class EventoServiceTest {
         verify(eventoRepository, never()).save(any());
     }
 
-    // Confirma que la creación válida guarda el evento
+    // Confirma que la creación válida guarda el evento ligado al administrador de la BD
     @Test
     void crearEvento_validoSeGuarda() {
         Evento evento = crearEvento(null, "Alpha", LocalDateTime.of(2024, 5, 10, 10, 0));
+        Administrador enBd = administrador();
+        when(administradorRepository.findById("00000000T")).thenReturn(Optional.of(enBd));
         when(eventoRepository.save(evento)).thenReturn(evento);
 
         Evento guardado = eventoService.crearEvento(evento);
 
         assertThat(guardado).isSameAs(evento);
+        assertThat(guardado.getAdministrador()).isSameAs(enBd);
         verify(eventoRepository).save(evento);
     }
 
+    // Comprueba que no se crea un evento de un administrador que no existe
+    @Test
+    void crearEvento_administradorInexistenteLanzaExcepcion() {
+        Evento evento = crearEvento(null, "Alpha", LocalDateTime.of(2024, 5, 10, 10, 0));
+        when(administradorRepository.findById("00000000T")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> eventoService.crearEvento(evento))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("administrador");
+        verify(eventoRepository, never()).save(any());
+    }
+
     // Comprueba que eliminarEvento valida existencia antes de borrar
     @Test
     void eliminarEvento_inexistenteLanzaExcepcion() {
@@ -149,6 +314,24 @@ class EventoServiceTest {
         verify(eventoRepository).deleteById(1L);
     }
 
+    // Verifica que cada intento de borrado va en su propia transacción: el que choca por versión se deshace y el repetido se confirma
+    @Test
+    void eliminarEvento_conflictoDeVersionRepiteEnTransaccionNueva() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        eventoService = new EventoService(eventoRepository, administradorRepository, reintentos,
+                new TransactionTemplate(transactionManager), FIXED_CLOCK);
+        when(eventoRepository.existsById(1L)).thenReturn(true);
+        doThrow(new ObjectOptimisticLockingFailureException(Evento.class, 1L)).doNothing()
+                .when(eventoRepository).deleteById(1L);
+
+        eventoService.eliminarEvento(1L);
+
+        verify(eventoRepository, times(2)).deleteById(1L);
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
     // Comprueba que obtenerEventoPorId propaga la EntityNotFoundException descriptiva
     @Test
     void obtenerEventoPorId_inexistenteLanzaExcepcion() {
@@ -159,6 +342,61 @@ class EventoServiceTest {
                 .hasMessageContaining("99");
     }
 
+    // Comprueba que el detalle se sirve desde la proyección y no carga la entidad
+    @Test
+    void obtenerDetalleEvento_usaProyeccion() {
+        EventoDetalleDTO detalle = EventoDetalleDTO.desde(crearEvento(7L, "Gala", LocalDateTime.of(2024, 6, 1, 21, 0)));
+        when(eventoRepository.findDetalleById(7L)).thenReturn(Optional.of(detalle));
+        when(eventoRepository.findDetalleById(8L)).thenReturn(Optional.empty());
+
+        assertThat(eventoService.obtenerDetalleEvento(7L)).isSameAs(detalle);
+        assertThatThrownBy(() -> eventoService.obtenerDetalleEvento(8L))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("8");
+        verify(eventoRepository, never()).findById(any());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant ahora;
+
+        MutableClock(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+
+    private static List<EventoDetalleDTO> detalles(Evento... eventos) {
+        return Arrays.stream(eventos).map(EventoDetalleDTO::desde).collect(Collectors.toList());
+    }
+
+    private static List<EventoResumenDTO> resumenes(Evento... eventos) {
+        return Arrays.stream(eventos).map(evento -> EventoDetalleDTO.desde(evento).resumen()).collect(Collectors.toList());
+    }
+
+    private static Administrador administrador() {
+        Administrador administrador = new Administrador();
+        administrador.setNif("00000000T");
+        return administrador;
+    }
+
     private Evento crearEvento(Long id, String nombre, LocalDateTime fecha) {
         Evento evento = new Evento();
         evento.setId(id);
@@ -168,7 +406,7 @@ class EventoServiceTest {
         evento.setFecha(fecha);
         evento.setUbicacion("Malaga");
         evento.setStock(10);
-        evento.setAdministrador(new Administrador());
+        evento.setAdministrador(administrador());
         return evento;
     }
 }
@@ -0,0 +1,73 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EventoDetalleDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndiceEventosTest {
+
+    // Verifica que reindexar un evento modificado quita sus términos antiguos
+    @Test
+    void indexar_eventoModificadoReemplazaTerminos() {
+        IndiceEventos indice = new IndiceEventos();
+        EventoDetalleDTO evento = evento(1L, "Concierto de primavera", "Málaga");
+        indice.indexar(evento);
+
+        evento.setNombre("Concierto de otoño");
+        indice.indexar(evento);
+
+        assertThat(indice.buscar("primavera")).isEmpty();
+        assertThat(indice.buscar("otono")).containsExactly(1L);
+    }
+
+    // Verifica que sincronizar da de baja los eventos que ya no están y limpia sus términos
+    @Test
+    void sincronizar_eliminaEventosQueYaNoEstan() {
+        IndiceEventos indice = new IndiceEventos();
+        EventoDetalleDTO uno = evento(1L, "Mercadillo", "Ronda");
+        EventoDetalleDTO dos = evento(2L, "Gala", "Ronda");
+        indice.sincronizar(List.of(uno, dos));
+
+        indice.sincronizar(List.of(dos));
+
+        assertThat(indice.buscar("ronda")).containsExactly(2L);
+        assertThat(indice.buscar("mercadillo")).isEmpty();
+        assertThat(indice.totalTerminos()).isEqualTo(IndiceEventos.tokenizar("Gala Ronda Descripcion Solidario").size());
+    }
+
+    // Comprueba que una consulta sin palabras (solo signos) no encuentra nada
+    @Test
+    void buscar_consultaSinPalabrasNoDevuelveNada() {
+        IndiceEventos indice = new IndiceEventos();
+        indice.indexar(evento(1L, "Gala", "Ronda"));
+
+        assertThat(indice.buscar(" ¡! -- ")).isEmpty();
+    }
+
+    // Verifica que la búsqueda selectiva sigue siendo rápida con una cartelera grande
+    @Test
+    void buscar_latenciaPlanaConCarteleraGrande() {
+        IndiceEventos indice = new IndiceEventos();
+        List<EventoDetalleDTO> eventos = new ArrayList<>();
+        for (long id = 1; id <= 50_000; id++) {
+            eventos.add(evento(id, "Evento número " + id, id == 42_000 ? "Frigiliana" : "Málaga"));
+        }
+        indice.sincronizar(eventos);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(indice.buscar("frigi")).containsExactly(42_000L);
+        }
+        long microsPorBusqueda = (System.nanoTime() - inicio) / 1_000 / 1_000;
+
+        assertThat(microsPorBusqueda).isLessThan(1_000);
+    }
+
+    private EventoDetalleDTO evento(Long id, String nombre, String ubicacion) {
+        return new EventoDetalleDTO(id, nombre, "Solidario", "Descripción", null, ubicacion, 10);
+    }
+}
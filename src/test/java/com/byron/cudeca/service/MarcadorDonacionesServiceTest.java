@@ -0,0 +1,165 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.MarcadorDonacionesDTO;
+import com.byron.cudeca.dto.TotalPorCanalDTO;
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Donacion;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.repository.DonacionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarcadorDonacionesServiceTest {
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2026, 3, 1, 20, 30, 30);
+
+    @Mock
+    private DonacionRepository donacionRepository;
+
+    private final AtomicReference<LocalDateTime> hora = new AtomicReference<>(AHORA);
+
+    // Reloj que avanza a mano
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return hora.get().toInstant(ZoneOffset.UTC);
+        }
+    };
+
+    private MarcadorDonacionesService crear(int maxPantallas) {
+        return new MarcadorDonacionesService(donacionRepository, new ObjectMapper().findAndRegisterModules(),
+                LocalDateTime.of(2026, 3, 1, 18, 0), Duration.ofMinutes(1), 5, 3, 60_000, maxPantallas, clock);
+    }
+
+    private static Donacion donacion(long id, String importe, CanalPago canal, LocalDateTime fecha) {
+        Donacion donacion = new Donacion();
+        donacion.setId(id);
+        donacion.setImporte(Importe.deEuros(importe));
+        donacion.setCanalPago(canal);
+        donacion.setFecha(fecha);
+        return donacion;
+    }
+
+    // Verifica que el marcador parte de la suma de la BD y acumula los lotes por método de pago y tramo
+    @Test
+    void registrar_acumulaSobreLaCargaInicial() {
+        MarcadorDonacionesService marcador = crear(10);
+        when(donacionRepository.sumarPorCanal(any()))
+                .thenReturn(List.of(new TotalPorCanalDTO(CanalPago.TARJETA, Importe.deEuros("100.00"), 4L, 4L)));
+        hora.set(AHORA.minusMinutes(3));
+        marcador.cargar();
+
+        marcador.registrar(List.of(donacion(5, "2.00", CanalPago.BIZUM, AHORA.minusMinutes(2))));
+        hora.set(AHORA);
+        marcador.registrar(List.of(
+                donacion(6, "10.10", CanalPago.BIZUM, AHORA),
+                donacion(7, "5.00", CanalPago.TARJETA, AHORA)));
+
+        MarcadorDonacionesDTO estado = marcador.obtenerMarcador();
+        assertThat(estado.getTotal()).isEqualTo(Importe.deEuros("117.10"));
+        assertThat(estado.getNumeroDonaciones()).isEqualTo(7L);
+        assertThat(estado.getPorCanal().get(CanalPago.BIZUM)).isEqualTo(Importe.deEuros("12.10"));
+        assertThat(estado.getPorCanal().get(CanalPago.TRANSFERENCIA)).isEqualTo(Importe.CERO);
+        assertThat(estado.getTramos()).hasSize(5);
+        assertThat(estado.getTramos().get(4).getImporte()).isEqualTo(Importe.deEuros("15.10"));
+        assertThat(estado.getTramos().get(2).getImporte()).isEqualTo(Importe.deEuros("2.00"));
+        assertThat(estado.getTramos().get(4).getInicio()).isEqualTo(LocalDateTime.of(2026, 3, 1, 20, 30));
+        verify(donacionRepository, times(1)).sumarPorCanal(any());
+    }
+
+    // Comprueba que lo que ya sumó la carga inicial no se cuenta dos veces, llegue antes o después de cargar
+    @Test
+    void registrar_ignoraLoYaCargado() {
+        MarcadorDonacionesService marcador = crear(10);
+        when(donacionRepository.sumarPorCanal(any()))
+                .thenReturn(List.of(new TotalPorCanalDTO(CanalPago.TARJETA, Importe.deEuros("50.00"), 1L, 9L)));
+        marcador.registrar(List.of(donacion(9, "50.00", CanalPago.TARJETA, AHORA)));
+        marcador.cargar();
+
+        marcador.registrar(List.of(donacion(8, "7.00", CanalPago.TARJETA, AHORA.minusSeconds(1))));
+
+        MarcadorDonacionesDTO estado = marcador.obtenerMarcador();
+        assertThat(estado.getTotal()).isEqualTo(Importe.deEuros("50.00"));
+        assertThat(estado.getNumeroDonaciones()).isEqualTo(1L);
+    }
+
+    // Verifica que una donación encolada antes de la carga pero confirmada después de la consulta no se pierde
+    @Test
+    void cargar_loteConfirmadoDuranteLaCargaNoSePierde() {
+        MarcadorDonacionesService marcador = crear(10);
+        Donacion encoladaAntes = donacion(12, "20.00", CanalPago.BIZUM, AHORA.minusSeconds(5));
+        when(donacionRepository.sumarPorCanal(any())).thenAnswer(inv -> {
+            // El escritor confirma su lote mientras la consulta ya se ha hecho
+            marcador.registrar(List.of(encoladaAntes));
+            return List.of(new TotalPorCanalDTO(CanalPago.TARJETA, Importe.deEuros("100.00"), 3L, 11L));
+        });
+
+        marcador.cargar();
+        marcador.registrar(List.of(donacion(13, "1.00", CanalPago.BIZUM, AHORA.minusSeconds(10))));
+
+        MarcadorDonacionesDTO estado = marcador.obtenerMarcador();
+        assertThat(estado.getTotal()).isEqualTo(Importe.deEuros("121.00"));
+        assertThat(estado.getNumeroDonaciones()).isEqualTo(5L);
+        assertThat(estado.getPorCanal().get(CanalPago.BIZUM)).isEqualTo(Importe.deEuros("21.00"));
+    }
+
+    // Verifica que sin cambios no se vuelve a difundir el marcador (solo el latido)
+    @Test
+    void emitir_unEnvioPorCambio() {
+        MarcadorDonacionesService marcador = crear(10);
+        when(donacionRepository.sumarPorCanal(any())).thenReturn(List.of());
+        marcador.cargar();
+        marcador.suscribir();
+        marcador.suscribir();
+
+        marcador.emitir();
+        marcador.registrar(List.of(donacion(1, "1.00", CanalPago.BIZUM, AHORA)));
+        marcador.registrar(List.of(donacion(2, "2.00", CanalPago.BIZUM, AHORA)));
+        marcador.emitir();
+        assertThat(marcador.envios()).isEqualTo(2);
+
+        marcador.emitir();
+        marcador.emitir();
+        assertThat(marcador.envios()).isEqualTo(2);
+        marcador.emitir();
+        assertThat(marcador.envios()).isEqualTo(3);
+        assertThat(marcador.pantallasConectadas()).isEqualTo(2);
+    }
+
+    // Comprueba que se rechazan pantallas por encima del máximo
+    @Test
+    void suscribir_maximoDePantallas() {
+        MarcadorDonacionesService marcador = crear(1);
+        marcador.suscribir();
+
+        assertThatThrownBy(marcador::suscribir).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,55 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.repository.CertificadoDonacionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MigracionPropietarioCertificadosTest {
+
+    @Mock
+    private CertificadoDonacionRepository certificadoDonacionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Verifica que la migración recorre los IDs pendientes por tramos, cada uno en su transacción
+    @Test
+    void migrar_porTramosDeIds() {
+        MigracionPropietarioCertificados migracion =
+                new MigracionPropietarioCertificados(certificadoDonacionRepository, transactionManager, 100);
+        when(certificadoDonacionRepository.findMinIdSinPropietario()).thenReturn(51L);
+        when(certificadoDonacionRepository.findMaxIdSinPropietario()).thenReturn(260L);
+        when(certificadoDonacionRepository.rellenarPropietarioDesdePedido(anyLong(), anyLong())).thenReturn(60);
+        when(certificadoDonacionRepository.rellenarPropietarioDesdeDonacion(anyLong(), anyLong())).thenReturn(5);
+
+        assertThat(migracion.migrar()).isEqualTo(3 * 65);
+
+        InOrder orden = inOrder(certificadoDonacionRepository);
+        orden.verify(certificadoDonacionRepository).rellenarPropietarioDesdePedido(51L, 150L);
+        orden.verify(certificadoDonacionRepository).rellenarPropietarioDesdePedido(151L, 250L);
+        orden.verify(certificadoDonacionRepository).rellenarPropietarioDesdePedido(251L, 260L);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    // Comprueba que sin certificados pendientes solo se hace una consulta
+    @Test
+    void migrar_nadaPendiente() {
+        MigracionPropietarioCertificados migracion =
+                new MigracionPropietarioCertificados(certificadoDonacionRepository, transactionManager, 100);
+        when(certificadoDonacionRepository.findMinIdSinPropietario()).thenReturn(null);
+
+        assertThat(migracion.migrar()).isZero();
+        verify(certificadoDonacionRepository, never()).rellenarPropietarioDesdePedido(anyLong(), anyLong());
+        verifyNoInteractions(transactionManager);
+    }
+}
@@ -0,0 +1,184 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.DeclaradoModelo182DTO;
+import com.byron.cudeca.model.DeclaracionModelo182;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.repository.DeclaracionModelo182Repository;
+import com.byron.cudeca.repository.TotalDonanteAnualRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class Modelo182ServiceTest {
+
+    private static final Clock FIXED_CLOCK = Clock.fixed(Instant.parse("2025-02-10T09:00:00Z"), ZoneId.of("UTC"));
+
+    @Mock
+    private TotalDonanteAnualRepository totalDonanteAnualRepository;
+
+    @Mock
+    private DeclaracionModelo182Repository declaracionRepository;
+
+    private Modelo182Service modelo182Service;
+
+    @BeforeEach
+    void setUp() {
+        modelo182Service = new Modelo182Service(totalDonanteAnualRepository, declaracionRepository, FIXED_CLOCK,
+                "G29000000", "Fundación Cudeca", "952000000", "Administración");
+    }
+
+    // Verifica el formato: cabecera con totales y un registro por NIF y porcentaje, todos de 250 posiciones
+    @Test
+    void exportar_registrosDeLongitudFijaConTramosDeDeduccion() throws Exception {
+        AtomicBoolean cerrado = new AtomicBoolean();
+        when(totalDonanteAnualRepository.streamDeclarados(2024))
+                .thenReturn(Stream.of(
+                        new DeclaradoModelo182DTO("12345678Z", "José Muñoz Peña", "29010", euros("100.00"), null, null),
+                        new DeclaradoModelo182DTO("X1234567L", "Ana López", "28001", euros("300.46"), euros("300.00"), null),
+                        new DeclaradoModelo182DTO("B12345678", "Empresa Solidaria SL", null, euros("1000.00"), euros("500.00"), euros("600.00")))
+                        .onClose(() -> cerrado.set(true)));
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        modelo182Service.exportar(2024, 1, salida);
+
+        List<String> lineas = List.of(salida.toString(StandardCharsets.ISO_8859_1).split("\r\n"));
+        assertThat(lineas).hasSize(5).allSatisfy(linea -> assertThat(linea).hasSize(250));
+        String cabecera = lineas.get(0);
+        assertThat(cabecera).startsWith("11822024G29000000FUNDACION CUDECA");
+        assertThat(cabecera.substring(107, 120)).isEqualTo("1822024000001"); // justificante
+        assertThat(cabecera.substring(135, 144)).isEqualTo("000000004");        // registros tipo 2
+        assertThat(cabecera.substring(144, 159)).isEqualTo("000000000140046");  // 1.400,46 €
+
+        String jose = lineas.get(1);
+        assertThat(jose.substring(17, 26)).isEqualTo("12345678Z");
+        assertThat(jose.substring(35, 75).trim()).isEqualTo("JOSE MUÑOZ PEÑA");
+        assertThat(jose.substring(75, 83)).isEqualTo("29A08000");
+        assertThat(jose.substring(83, 96)).isEqualTo("0000000010000");
+        assertThat(jose.charAt(104)).isEqualTo('F');
+        assertThat(jose.charAt(131)).isEqualTo('2');
+
+        // 300,46 € de una persona física: 250 € al 80 % y 50,46 € al 40 %
+        assertThat(lineas.get(2).substring(75, 96)).isEqualTo("28A080000000000025000");
+        assertThat(lineas.get(3).substring(75, 96)).isEqualTo("28A040000000000005046");
+
+        String empresa = lineas.get(4);
+        assertThat(empresa.substring(75, 96)).isEqualTo("99A040000000000100000");
+        assertThat(empresa.charAt(104)).isEqualTo('J');
+        assertThat(cerrado).isTrue();
+    }
+
+    // Verifica la recurrencia: dos ejercicios previos sin bajar el importe suben el porcentaje y marcan '1'
+    @Test
+    void exportar_donantesRecurrentesConPorcentajeIncrementado() throws Exception {
+        when(totalDonanteAnualRepository.streamDeclarados(2024)).thenReturn(Stream.of(
+                new DeclaradoModelo182DTO("12345678Z", "José Muñoz", "29010", euros("400.00"), euros("300.00"), euros("300.00")),
+                new DeclaradoModelo182DTO("B12345678", "Empresa Solidaria SL", "29010", euros("1000.00"), euros("800.00"), euros("500.00")),
+                new DeclaradoModelo182DTO("X1234567L", "Ana López", "28001", euros("400.00"), euros("500.00"), euros("300.00"))));
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        modelo182Service.exportar(2024, 1, salida);
+
+        List<String> lineas = List.of(salida.toString(StandardCharsets.ISO_8859_1).split("\r\n"));
+        assertThat(lineas).hasSize(6);
+        // Física recurrente: el tramo de 250 € sigue al 80 % y el resto pasa al 45 %
+        assertThat(lineas.get(1).substring(75, 96)).isEqualTo("29A080000000000025000");
+        assertThat(lineas.get(2).substring(75, 96)).isEqualTo("29A045000000000015000");
+        assertThat(lineas.get(1).charAt(131)).isEqualTo('1');
+        // Jurídica recurrente: 50 %
+        assertThat(lineas.get(3).substring(75, 96)).isEqualTo("29A050000000000100000");
+        assertThat(lineas.get(3).charAt(131)).isEqualTo('1');
+        // Donó menos que el año anterior: no es recurrente
+        assertThat(lineas.get(5).substring(75, 96)).isEqualTo("28A040000000000015000");
+        assertThat(lineas.get(5).charAt(131)).isEqualTo('2');
+    }
+
+    // Comprueba que los donantes se van escribiendo en el destino sin acumularlos en memoria
+    @Test
+    void exportar_cienMilDonantesEnStreaming() throws Exception {
+        when(totalDonanteAnualRepository.streamDeclarados(anyInt()))
+                .thenReturn(LongStream.range(0, 100_000)
+                        .mapToObj(i -> new DeclaradoModelo182DTO(String.format("%08dZ", i), "Donante " + i, "29001", euros("50.00"), null, null)));
+        ContadorBytes salida = new ContadorBytes();
+
+        modelo182Service.exportar(2024, 1, salida);
+
+        assertThat(salida.bytes).isEqualTo(100_001L * 252);
+    }
+
+    // Comprueba que sin NIF o denominación del declarante, o con un ejercicio absurdo, se rechaza antes de registrar ni escribir nada
+    @Test
+    void prepararDeclaracion_configuracionOEjercicioNoValidos() {
+        Modelo182Service sinNif = new Modelo182Service(totalDonanteAnualRepository, declaracionRepository, FIXED_CLOCK,
+                "", "Fundación Cudeca", "", "");
+        Modelo182Service sinNombre = new Modelo182Service(totalDonanteAnualRepository, declaracionRepository, FIXED_CLOCK,
+                "G29000000", " ", "", "");
+
+        assertThatThrownBy(() -> sinNif.prepararDeclaracion(2024)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> sinNombre.prepararDeclaracion(2024)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> modelo182Service.prepararDeclaracion(24)).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(totalDonanteAnualRepository, declaracionRepository);
+    }
+
+    // Verifica que cada declaración registrada reserva su propia secuencia y el justificante sale del ejercicio y de ella
+    @Test
+    void prepararDeclaracion_justificantePorEjercicioYSecuencia() throws Exception {
+        when(declaracionRepository.save(any(DeclaracionModelo182.class))).thenAnswer(inv -> {
+            DeclaracionModelo182 declaracion = inv.getArgument(0);
+            declaracion.setId(42L);
+            return declaracion;
+        });
+        when(totalDonanteAnualRepository.streamDeclarados(2024)).thenReturn(Stream.empty());
+
+        long secuencia = modelo182Service.prepararDeclaracion(2024);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        modelo182Service.exportar(2024, secuencia, salida);
+
+        ArgumentCaptor<DeclaracionModelo182> guardada = ArgumentCaptor.forClass(DeclaracionModelo182.class);
+        verify(declaracionRepository).save(guardada.capture());
+        assertThat(guardada.getValue().getEjercicio()).isEqualTo(2024);
+        assertThat(guardada.getValue().getFechaGeneracion()).isEqualTo(LocalDateTime.of(2025, 2, 10, 9, 0));
+        assertThat(secuencia).isEqualTo(42);
+        assertThat(salida.toString(StandardCharsets.ISO_8859_1).substring(107, 120)).isEqualTo("1822024000042");
+        assertThat(FicheroModelo182.numeroJustificante(2025, 7)).isEqualTo("1822025000007");
+    }
+
+    private static Importe euros(String importe) {
+        return Importe.deEuros(importe);
+    }
+
+    private static final class ContadorBytes extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.byron.cudeca.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReintentosOptimistasTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // Verifica que cada intento va en su propia transacción y que los conflictos se repiten y se cuentan por entidad
+    @Test
+    void ejecutar_conflictoSeRepiteEnTransaccionNueva() {
+        ReintentosOptimistas reintentos = new ReintentosOptimistas(transactionManager, registry, 5, 0, 0);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        String resultado = reintentos.ejecutar("Entrada", "conciliarEscaneos", () -> {
+            if (llamadas.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Entrada", 7L);
+            }
+            return "ok";
+        });
+
+        assertThat(resultado).isEqualTo("ok");
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager).commit(any());
+        assertThat(contador("cudeca.optimista.intentos", "Entrada")).isEqualTo(3);
+        assertThat(contador("cudeca.optimista.conflictos", "Entrada")).isEqualTo(2);
+        assertThat(registry.find("cudeca.optimista.agotados").counter()).isNull();
+    }
+
+    // Comprueba que tras el último intento el conflicto sube al llamante y se cuenta como agotado
+    @Test
+    void ejecutar_agotaLosIntentos() {
+        ReintentosOptimistas reintentos = sinTransaccion(3);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        assertThatThrownBy(() -> reintentos.ejecutar("Evento", "eliminarEvento", () -> {
+            llamadas.incrementAndGet();
+            throw new OptimisticLockingFailureException("Evento modificado");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(llamadas).hasValue(3);
+        assertThat(contador("cudeca.optimista.conflictos", "Evento")).isEqualTo(3);
+        assertThat(contador("cudeca.optimista.agotados", "Evento")).isEqualTo(1);
+    }
+
+    // Verifica que otros errores no se reintentan
+    @Test
+    void ejecutar_otrasExcepcionesNoSeReintentan() {
+        ReintentosOptimistas reintentos = sinTransaccion(3);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        assertThatThrownBy(() -> reintentos.ejecutar("Evento", "eliminarEvento", () -> {
+            llamadas.incrementAndGet();
+            throw new IllegalStateException("otro error");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(llamadas).hasValue(1);
+    }
+
+    // Comprueba que dentro de una transacción ya abierta no se reintenta: solo la de fuera puede repetirse
+    @Test
+    void ejecutar_dentroDeTransaccionNoReintenta() {
+        ReintentosOptimistas reintentos = sinTransaccion(3);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThatThrownBy(() -> reintentos.ejecutar("Entrada", "volcarValidaciones", () -> {
+                llamadas.incrementAndGet();
+                throw new OptimisticLockingFailureException("Entrada modificada");
+            })).isInstanceOf(OptimisticLockingFailureException.class);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertThat(llamadas).hasValue(1);
+        assertThat(registry.find("cudeca.optimista.intentos").counter()).isNull();
+    }
+
+    // Verifica que la espera exponencial con jitter no pasa del máximo configurado
+    @Test
+    void ejecutar_esperaAcotadaPorElMaximo() {
+        ReintentosOptimistas reintentos = new ReintentosOptimistas(TransactionOperations.withoutTransaction(),
+                registry, 4, 5, 10);
+        AtomicInteger llamadas = new AtomicInteger();
+
+        long inicio = System.nanoTime();
+        reintentos.ejecutar("Entrada", "volcarValidaciones", () -> {
+            if (llamadas.incrementAndGet() < 4) {
+                throw new OptimisticLockingFailureException("Entrada modificada");
+            }
+        });
+        long milis = (System.nanoTime() - inicio) / 1_000_000;
+
+        // Tres esperas de como mucho 5, 10 y 10 ms
+        assertThat(llamadas).hasValue(4);
+        assertThat(milis).isLessThan(1_000);
+    }
+
+    // Comprueba que se rechaza una configuración sin intentos o con la espera máxima menor que la base
+    @Test
+    void constructor_configuracionInvalida() {
+        assertThatThrownBy(() -> new ReintentosOptimistas(TransactionOperations.withoutTransaction(), registry, 0, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ReintentosOptimistas(TransactionOperations.withoutTransaction(), registry, 3, 50, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ReintentosOptimistas sinTransaccion(int maxIntentos) {
+        return new ReintentosOptimistas(TransactionOperations.withoutTransaction(), registry, maxIntentos, 0, 0);
+    }
+
+    private double contador(String nombre, String entidad) {
+        return registry.get(nombre).tag("entidad", entidad).counter().count();
+    }
+}
@@ -0,0 +1,203 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.repository.EventoRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class ReservaStockServiceTest {
+
+    private static final long EVENTO_ID = 1L;
+
+    // Simula la fila 'evento' de la BD: el UPDATE condicional es atómico igual que en SQL
+    private AtomicInteger stockEnBD;
+    private AtomicInteger llamadasUpdate;
+    private AtomicInteger lecturasStock;
+    private MutableClock reloj;
+    private ReservaStockService reservaStockService;
+
+    @BeforeEach
+    void setUp() {
+        stockEnBD = new AtomicInteger();
+        llamadasUpdate = new AtomicInteger();
+        lecturasStock = new AtomicInteger();
+        reloj = new MutableClock(Instant.parse("2024-05-01T18:00:00Z"));
+
+        EventoRepository eventoRepository = mock(EventoRepository.class, withSettings().stubOnly());
+        when(eventoRepository.findStockById(EVENTO_ID)).thenAnswer(inv -> {
+            lecturasStock.incrementAndGet();
+            return Optional.of(stockEnBD.get());
+        });
+        when(eventoRepository.findStockById(99L)).thenReturn(Optional.empty());
+        when(eventoRepository.descontarStock(anyLong(), anyInt())).thenAnswer(inv -> {
+            llamadasUpdate.incrementAndGet();
+            int cantidad = inv.getArgument(1);
+            while (true) {
+                int actual = stockEnBD.get();
+                if (actual < cantidad) {
+                    return 0;
+                }
+                if (stockEnBD.compareAndSet(actual, actual - cantidad)) {
+                    return 1;
+                }
+            }
+        });
+
+        reservaStockService = new ReservaStockService(eventoRepository, reloj, Duration.ofSeconds(1));
+    }
+
+    // Prueba de carga: miles de checkouts concurrentes sobre una gala nunca venden más del stock
+    @Test
+    void reservar_cargaConcurrenteNoSobrevende() throws Exception {
+        int stockInicial = 1_000;
+        int hilos = 64;
+        int checkoutsPorHilo = 200;
+        stockEnBD.set(stockInicial);
+
+        AtomicInteger entradasVendidas = new AtomicInteger();
+        AtomicInteger comprasOk = new AtomicInteger();
+        AtomicInteger comprasRechazadas = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(pool.submit(() -> {
+                salida.await();
+                for (int i = 0; i < checkoutsPorHilo; i++) {
+                    int cantidad = ThreadLocalRandom.current().nextInt(1, 5);
+                    try {
+                        reservaStockService.reservar(EVENTO_ID, cantidad);
+                        entradasVendidas.addAndGet(cantidad);
+                        comprasOk.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        comprasRechazadas.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        salida.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(stockEnBD.get()).isGreaterThanOrEqualTo(0);
+        assertThat(entradasVendidas.get()).isEqualTo(stockInicial - stockEnBD.get());
+        assertThat(comprasOk.get() + comprasRechazadas.get()).isEqualTo(hilos * checkoutsPorHilo);
+        // Con la demanda muy por encima del stock, el evento debe quedar prácticamente agotado
+        assertThat(stockEnBD.get()).isLessThan(4);
+        // El contador en memoria filtra los rechazos: la BD solo recibe las compras que salen bien
+        assertThat(llamadasUpdate.get()).isEqualTo(comprasOk.get());
+    }
+
+    // Verifica que si la BD rechaza el descuento (otra instancia vendió antes) se lanza excepción
+    @Test
+    void reservar_bdSinStockLanzaExcepcionYRecarga() {
+        stockEnBD.set(5);
+        reservaStockService.reservar(EVENTO_ID, 1);
+
+        // Otra instancia vende el resto directamente en BD
+        stockEnBD.set(0);
+
+        assertThatThrownBy(() -> reservaStockService.reservar(EVENTO_ID, 2))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Stock insuficiente");
+        // Tras recargar, el contador ya sabe que no quedan plazas y no vuelve a la BD
+        int llamadasAntes = llamadasUpdate.get();
+        assertThatThrownBy(() -> reservaStockService.reservar(EVENTO_ID, 1))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(llamadasUpdate.get()).isEqualTo(llamadasAntes);
+    }
+
+    // Verifica que las plazas que devuelve otra instancia se venden aquí en cuanto caduca el contador, con una sola relectura
+    @Test
+    void reservar_plazasDevueltasPorOtraInstanciaSeVendenTrasRecargar() {
+        stockEnBD.set(2);
+        reservaStockService.reservar(EVENTO_ID, 2);
+        assertThatThrownBy(() -> reservaStockService.reservar(EVENTO_ID, 1))
+                .isInstanceOf(IllegalStateException.class);
+
+        // Otra instancia devuelve 3 plazas de una retención caducada; esta no se entera
+        stockEnBD.addAndGet(3);
+        assertThatThrownBy(() -> reservaStockService.reservar(EVENTO_ID, 1))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(lecturasStock).hasValue(1);
+
+        reloj.avanzar(Duration.ofSeconds(1));
+        reservaStockService.reservar(EVENTO_ID, 3);
+
+        assertThat(stockEnBD).hasValue(0);
+        assertThat(lecturasStock).hasValue(2);
+        // El contador recargado vuelve a filtrar sin ir a la BD
+        assertThatThrownBy(() -> reservaStockService.reservar(EVENTO_ID, 1))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(lecturasStock).hasValue(2);
+    }
+
+    // Comprueba que reservar para un evento inexistente lanza EntityNotFoundException
+    @Test
+    void reservar_eventoInexistenteLanzaExcepcion() {
+        assertThatThrownBy(() -> reservaStockService.reservar(99L, 1))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("99");
+    }
+
+    // Comprueba que no se aceptan cantidades menores que 1
+    @Test
+    void reservar_cantidadInvalidaLanzaExcepcion() {
+        assertThatThrownBy(() -> reservaStockService.reservar(EVENTO_ID, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant ahora;
+
+        MutableClock(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.CanalPago;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.Usuario;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetencionEntradasServiceTest {
+
+    @Mock
+    private ReservaStockService reservaStockService;
+
+    // Verifica que retener descuenta stock y que confirmar consume la retención una sola vez
+    @Test
+    void consumir_retencionVigenteSoloUnaVez() {
+        RetencionEntradasService service = new RetencionEntradasService(reservaStockService, Duration.ofMinutes(10));
+
+        RetencionEntradas retencion = service.retener(new Usuario(), 1L, entradas(3), CanalPago.TARJETA, false);
+
+        verify(reservaStockService).reservar(1L, 3);
+        assertThat(service.consumir(retencion.getCodigo())).isSameAs(retencion);
+        assertThatThrownBy(() -> service.consumir(retencion.getCodigo()))
+                .isInstanceOf(IllegalStateException.class);
+
+        // Una retención ya confirmada no se devuelve al stock al caducar
+        service.liberarTodas();
+        verify(reservaStockService, never()).devolver(anyLong(), anyInt());
+    }
+
+    // Verifica que las retenciones caducadas se devuelven en bloque, una llamada por evento
+    @Test
+    void liberarCaducadas_devuelveStockAgrupadoPorEvento() {
+        RetencionEntradasService service = new RetencionEntradasService(reservaStockService, Duration.ZERO);
+
+        service.retener(new Usuario(), 1L, entradas(2), CanalPago.BIZUM, false);
+        service.retener(new Usuario(), 1L, entradas(3), CanalPago.BIZUM, false);
+        service.retener(new Usuario(), 2L, entradas(1), CanalPago.TARJETA, false);
+
+        service.liberarCaducadas();
+
+        verify(reservaStockService).devolver(1L, 5);
+        verify(reservaStockService).devolver(2L, 1);
+        verify(reservaStockService, times(2)).devolver(anyLong(), anyInt());
+    }
+
+    // Comprueba que confirmar una retención caducada falla sin tocar el stock y que el barrido la devuelve una vez
+    @Test
+    void consumir_retencionCaducadaLaDevuelveElBarrido() {
+        RetencionEntradasService service = new RetencionEntradasService(reservaStockService, Duration.ZERO);
+        RetencionEntradas retencion = service.retener(new Usuario(), 7L, entradas(4), CanalPago.TRANSFERENCIA, true);
+
+        assertThatThrownBy(() -> service.consumir(retencion.getCodigo()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("caducado");
+        // En la transacción de la confirmación, que va a hacer rollback, no se devuelve nada
+        verify(reservaStockService, never()).devolver(anyLong(), anyInt());
+
+        service.liberarCaducadas();
+        service.liberarCaducadas();
+        verify(reservaStockService, times(1)).devolver(7L, 4);
+    }
+
+    private static PresupuestoEntradas entradas(int cantidad) {
+        return new PresupuestoEntradas(List.of(new PresupuestoEntradas.Linea("General", Importe.deEuros("10.00"), cantidad)));
+    }
+}
@@ -0,0 +1,265 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EntradaEstadoDTO;
+import com.byron.cudeca.dto.EscaneoDTO;
+import com.byron.cudeca.dto.LoteEscaneosDTO;
+import com.byron.cudeca.dto.ResultadoSincronizacionDTO;
+import com.byron.cudeca.dto.ResultadoValidacionDTO;
+import com.byron.cudeca.model.Entrada;
+import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SincronizacionEscanerServiceTest {
+
+    private static final LocalDateTime LAS_OCHO = LocalDateTime.of(2024, 5, 1, 20, 0);
+
+    @Mock
+    private EntradaRepository entradaRepository;
+
+    @Mock
+    private EventoRepository eventoRepository;
+
+    @Mock
+    private ValidacionEntradaService validacionEntradaService;
+
+    @Mock
+    private AforoEventosService aforoEventosService;
+
+    private final ReintentosOptimistas reintentos = new ReintentosOptimistas(TransactionOperations.withoutTransaction(), new SimpleMeterRegistry(), 3, 0, 0);
+
+    private SincronizacionEscanerService sincronizacionService;
+
+    @BeforeEach
+    void setUp() {
+        sincronizacionService = new SincronizacionEscanerService(entradaRepository, eventoRepository, validacionEntradaService,
+                aforoEventosService, reintentos);
+    }
+
+    // Verifica que el manifiesto de 10.000 entradas es compacto y se lee sin pérdidas
+    @Test
+    void exportarManifiesto_diezMilEntradasCompactoYReversible() throws Exception {
+        List<EntradaEstadoDTO> entradas = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            entradas.add(new EntradaEstadoDTO(1_000_000 + id * 3, UUID.randomUUID().toString(), id % 7 == 0, 5L));
+        }
+        when(eventoRepository.existsById(5L)).thenReturn(true);
+        when(entradaRepository.findEstadoValidacionByEventoId(5L)).thenReturn(entradas);
+
+        long inicio = System.nanoTime();
+        byte[] manifiesto = sincronizacionService.exportarManifiesto(5L);
+        long milis = (System.nanoTime() - inicio) / 1_000_000;
+
+        // ~18 bytes por entrada: unos 180 KB frente a casi 1 MB en JSON
+        assertThat(manifiesto.length).isLessThan(10_000 * 20);
+        assertThat(milis).isLessThan(1_000);
+        assertThat(ManifiestoEntradas.leer(new ByteArrayInputStream(manifiesto))).containsExactlyElementsOf(entradas);
+    }
+
+    // Verifica que los QR firmados se guardan en binario en el manifiesto y se recuperan igual
+    @Test
+    void exportarManifiesto_qrFirmadosCompactos() throws Exception {
+        CodigoQrService codigoQr = new CodigoQrService("clave-de-pruebas-del-manifiesto".getBytes());
+        List<EntradaEstadoDTO> entradas = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            entradas.add(new EntradaEstadoDTO(10L + i, codigoQr.generar(5L, 500L + i / 4, i % 4), false, 5L));
+        }
+        entradas.add(new EntradaEstadoDTO(5_000L, UUID.randomUUID().toString(), true, 5L));
+        when(eventoRepository.existsById(5L)).thenReturn(true);
+        when(entradaRepository.findEstadoValidacionByEventoId(5L)).thenReturn(entradas);
+
+        byte[] manifiesto = sincronizacionService.exportarManifiesto(5L);
+
+        assertThat(manifiesto.length).isLessThan(1_001 * 20);
+        assertThat(ManifiestoEntradas.leer(new ByteArrayInputStream(manifiesto))).containsExactlyElementsOf(entradas);
+    }
+
+    // Verifica la conciliación: acepta nuevas, ignora reenvíos y marca conflictos y QR ajenos
+    @Test
+    void conciliarEscaneos_clasificaCadaEscaneo() {
+        Entrada libre = entrada("QR-LIBRE", 5L, false, null);
+        Entrada yaUsada = entrada("QR-USADA", 5L, true, LAS_OCHO);
+        Entrada otroEvento = entrada("QR-OTRO", 6L, false, null);
+        when(entradaRepository.findByQrIn(anyCollection())).thenReturn(List.of(libre, yaUsada, otroEvento));
+        when(validacionEntradaService.reclamarValidacionExterna("QR-LIBRE")).thenReturn(ValidacionEntradaService.Reclamacion.RECLAMADA);
+
+        LoteEscaneosDTO lote = new LoteEscaneosDTO();
+        lote.setDispositivoId("puerta-2");
+        lote.setEscaneos(List.of(
+                new EscaneoDTO("QR-LIBRE", LAS_OCHO.plusMinutes(5)),
+                new EscaneoDTO("QR-LIBRE", LAS_OCHO.plusMinutes(9)),   // la misma entrada otra vez: conflicto
+                new EscaneoDTO("QR-USADA", LAS_OCHO),                  // reenvío exacto: duplicado
+                new EscaneoDTO("QR-USADA", LAS_OCHO.plusMinutes(1)),   // ya validada antes: conflicto
+                new EscaneoDTO("QR-OTRO", LAS_OCHO),                   // de otro evento
+                new EscaneoDTO("QR-FALSO", LAS_OCHO)));
+
+        ResultadoSincronizacionDTO resultado = sincronizacionService.conciliarEscaneos(5L, lote);
+
+        assertThat(resultado.getAceptados()).isEqualTo(1);
+        assertThat(resultado.getDuplicados()).isEqualTo(1);
+        assertThat(resultado.getDesconocidos()).isEqualTo(2);
+        assertThat(resultado.getConflictos()).extracting(ResultadoSincronizacionDTO.Conflicto::getQr)
+                .containsExactlyInAnyOrder("QR-LIBRE", "QR-USADA");
+        assertThat(libre.getUsada()).isTrue();
+        assertThat(libre.getFechaValidacion()).isEqualTo(LAS_OCHO.plusMinutes(5));
+        assertThat(otroEvento.getUsada()).isFalse();
+        // Solo la aceptada se reclama en el índice de las puertas online y suma al aforo
+        verify(validacionEntradaService, times(1)).reclamarValidacionExterna("QR-LIBRE");
+        verify(validacionEntradaService, never()).reclamarValidacionExterna("QR-USADA");
+        verify(validacionEntradaService, never()).liberarValidacionExterna(anyString());
+        verify(aforoEventosService).registrarValidacion(5L, 1);
+    }
+
+    // Comprueba que una entrada aceptada por una puerta online (aún sin volcar) se reporta como conflicto
+    @Test
+    void conciliarEscaneos_validadaOnlineSinVolcarEsConflicto() {
+        Entrada entrada = entrada("QR-1", 5L, false, null);
+        when(entradaRepository.findByQrIn(anyCollection())).thenReturn(List.of(entrada));
+        when(validacionEntradaService.reclamarValidacionExterna("QR-1")).thenReturn(ValidacionEntradaService.Reclamacion.YA_VALIDADA);
+
+        LoteEscaneosDTO lote = new LoteEscaneosDTO();
+        lote.setDispositivoId("puerta-1");
+        lote.setEscaneos(List.of(new EscaneoDTO("QR-1", LAS_OCHO)));
+
+        ResultadoSincronizacionDTO resultado = sincronizacionService.conciliarEscaneos(5L, lote);
+
+        assertThat(resultado.getAceptados()).isZero();
+        assertThat(resultado.getConflictos()).hasSize(1);
+        assertThat(entrada.getUsada()).isFalse();
+        verify(validacionEntradaService, never()).liberarValidacionExterna(anyString());
+    }
+
+    // Verifica que si el commit del lote choca con el volcado online se repite, deshaciendo la reclamación del intento fallido
+    @Test
+    void conciliarEscaneos_conflictoDeVersionRepiteElLote() {
+        // El primer commit falla por versión, como si el volcado online hubiera escrito la fila
+        TransaccionesDePrueba transacciones = new TransaccionesDePrueba(1, () -> { });
+        sincronizacionService = new SincronizacionEscanerService(entradaRepository, eventoRepository, validacionEntradaService,
+                aforoEventosService, new ReintentosOptimistas(new TransactionTemplate(transacciones), new SimpleMeterRegistry(), 3, 0, 0));
+        when(entradaRepository.findByQrIn(anyCollection()))
+                .thenReturn(List.of(entrada("QR-1", 5L, false, null)))
+                .thenReturn(List.of(entrada("QR-1", 5L, false, null)));
+        when(validacionEntradaService.reclamarValidacionExterna("QR-1")).thenReturn(ValidacionEntradaService.Reclamacion.RECLAMADA);
+
+        ResultadoSincronizacionDTO resultado = sincronizacionService.conciliarEscaneos(5L, lote("QR-1"));
+
+        assertThat(resultado.getAceptados()).isEqualTo(1);
+        assertThat(resultado.getConflictos()).isEmpty();
+        verify(entradaRepository, times(2)).findByQrIn(anyCollection());
+        verify(validacionEntradaService, times(2)).reclamarValidacionExterna("QR-1");
+        verify(validacionEntradaService, times(1)).liberarValidacionExterna("QR-1");
+        verify(aforoEventosService, times(1)).registrarValidacion(5L, 1);
+    }
+
+    // Comprueba que una puerta online que lee el QR entre el intento y su commit ya lo ve usado: no hay doble entrada
+    @Test
+    void conciliarEscaneos_validacionOnlineAntesDelCommitSeRechaza() {
+        Clock reloj = Clock.fixed(Instant.parse("2024-05-01T18:00:00Z"), ZoneId.of("UTC"));
+        CodigoQrService codigoQr = new CodigoQrService("clave-de-pruebas-de-sincronizacion".getBytes());
+        String qr = codigoQr.generar(5L, 100L, 0);
+        ValidacionEntradaService validacion = new ValidacionEntradaService(entradaRepository, eventoRepository, codigoQr,
+                aforoEventosService, reloj);
+        when(eventoRepository.findIdsByFechaEntre(any(), any())).thenReturn(List.of(5L));
+        when(entradaRepository.findEstadoValidacionByEventoIds(List.of(5L)))
+                .thenReturn(List.of(new EntradaEstadoDTO(1L, qr, false, 5L)));
+        validacion.precargarEventosDeHoy();
+
+        List<ResultadoValidacionDTO> enLaPuerta = new ArrayList<>();
+        TransaccionesDePrueba transacciones = new TransaccionesDePrueba(0, () -> enLaPuerta.add(validacion.validar(5L, qr)));
+        sincronizacionService = new SincronizacionEscanerService(entradaRepository, eventoRepository, validacion,
+                aforoEventosService, new ReintentosOptimistas(new TransactionTemplate(transacciones), new SimpleMeterRegistry(), 3, 0, 0));
+        when(entradaRepository.findByQrIn(anyCollection())).thenReturn(List.of(entrada(qr, 5L, false, null)));
+
+        ResultadoSincronizacionDTO resultado = sincronizacionService.conciliarEscaneos(5L, lote(qr));
+
+        assertThat(resultado.getAceptados()).isEqualTo(1);
+        assertThat(enLaPuerta).singleElement()
+                .extracting(ResultadoValidacionDTO::getResultado)
+                .isEqualTo(ResultadoValidacionDTO.Resultado.YA_USADA);
+        // Tras el commit sigue reclamada
+        assertThat(validacion.validar(5L, qr).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.YA_USADA);
+    }
+
+    private static LoteEscaneosDTO lote(String qr) {
+        LoteEscaneosDTO lote = new LoteEscaneosDTO();
+        lote.setDispositivoId("puerta-1");
+        lote.setEscaneos(List.of(new EscaneoDTO(qr, LAS_OCHO)));
+        return lote;
+    }
+
+    private Entrada entrada(String qr, Long eventoId, boolean usada, LocalDateTime fechaValidacion) {
+        Evento evento = new Evento();
+        evento.setId(eventoId);
+        Entrada entrada = new Entrada();
+        entrada.setQr(qr);
+        entrada.setUsada(usada);
+        entrada.setFechaValidacion(fechaValidacion);
+        entrada.setEvento(evento);
+        return entrada;
+    }
+
+    /**
+     * Gestor de transacciones sin BD que sí dispara las sincronizaciones (afterCompletion) como uno
+     * real. Ejecuta antesDelCommit justo antes de cada commit y hace fallar por versión los primeros.
+     */
+    private static final class TransaccionesDePrueba extends AbstractPlatformTransactionManager {
+        private final AtomicInteger commits = new AtomicInteger();
+        private final int commitsFallidos;
+        private final Runnable antesDelCommit;
+
+        private TransaccionesDePrueba(int commitsFallidos, Runnable antesDelCommit) {
+            this.commitsFallidos = commitsFallidos;
+            this.antesDelCommit = antesDelCommit;
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaccion, TransactionDefinition definicion) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus estado) {
+            antesDelCommit.run();
+            if (commits.incrementAndGet() <= commitsFallidos) {
+                throw new OptimisticLockingFailureException("Entrada modificada");
+            }
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus estado) {
+        }
+    }
+}
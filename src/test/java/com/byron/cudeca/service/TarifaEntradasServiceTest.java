@@ -0,0 +1,141 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.TramoPrecioDTO;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.model.TipoEntrada;
+import com.byron.cudeca.repository.EventoRepository;
+import com.byron.cudeca.repository.TipoEntradaRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TarifaEntradasServiceTest {
+
+    private static final Clock FIXED_CLOCK = Clock.fixed(Instant.parse("2024-05-01T10:00:00Z"), ZoneId.of("UTC"));
+    private static final LocalDateTime FIN_ANTICIPADA = LocalDateTime.of(2024, 5, 15, 0, 0);
+
+    @Mock
+    private TipoEntradaRepository tipoEntradaRepository;
+
+    @Mock
+    private EventoRepository eventoRepository;
+
+    private TarifaEntradasService tarifaEntradasService;
+
+    @BeforeEach
+    void setUp() {
+        tarifaEntradasService = new TarifaEntradasService(tipoEntradaRepository, eventoRepository, FIXED_CLOCK);
+    }
+
+    // Verifica que el pedido se cobra con el tramo vigente de cada tipo y que las tarifas se leen una sola vez
+    @Test
+    void presupuestar_tramoVigentePorTipoSinConsultasRepetidas() {
+        when(tipoEntradaRepository.findTramos(1L)).thenReturn(tarifas());
+
+        Map<String, Integer> pedido = new LinkedHashMap<>();
+        pedido.put("General", 2);
+        pedido.put("Reducida", 1);
+        pedido.put("Solidaria+", 1);
+        PresupuestoEntradas presupuesto = tarifaEntradasService.presupuestar(1L, pedido);
+        tarifaEntradasService.presupuestar(1L, Map.of("General", 1));
+
+        // 2 x 15 (anticipada) + 10 + 40
+        assertThat(presupuesto.getTotal()).isEqualTo(Importe.deEuros("80.00"));
+        assertThat(presupuesto.getCantidad()).isEqualTo(4);
+        assertThat(presupuesto.getLineas().get(0).precioUnitario()).isEqualTo(Importe.deEuros("15.00"));
+        assertThat(tarifaEntradasService.obtenerPreciosVigentes(1L))
+                .extracting(TramoPrecioDTO::getTipoEntrada).containsExactly("General", "Reducida", "Solidaria+");
+        verify(tipoEntradaRepository, times(1)).findTramos(1L);
+        verifyNoInteractions(eventoRepository);
+    }
+
+    // Comprueba que tras la anticipada se cobra el precio normal y que un tipo sin tramo abierto cierra su venta
+    @Test
+    void presupuestar_tramosVencidos() {
+        Clock despues = Clock.fixed(Instant.parse("2024-05-20T10:00:00Z"), ZoneId.of("UTC"));
+        TarifaEntradasService service = new TarifaEntradasService(tipoEntradaRepository, eventoRepository, despues);
+        List<TramoPrecioDTO> tramos = new ArrayList<>(tarifas());
+        tramos.add(new TramoPrecioDTO("Grupo", Importe.deEuros("12.00"), FIN_ANTICIPADA));
+        when(tipoEntradaRepository.findTramos(1L)).thenReturn(tramos);
+
+        assertThat(service.presupuestar(1L, Map.of("General", 2)).getTotal()).isEqualTo(Importe.deEuros("40.00"));
+        assertThatThrownBy(() -> service.presupuestar(1L, Map.of("Grupo", 10)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(service.obtenerPreciosVigentes(1L)).extracting(TramoPrecioDTO::getTipoEntrada)
+                .doesNotContain("Grupo");
+    }
+
+    // Verifica que un evento sin tarifas vende entrada general gratuita y que los datos no válidos fallan
+    @Test
+    void presupuestar_sinTarifasYPedidosNoValidos() {
+        when(tipoEntradaRepository.findTramos(anyLong())).thenReturn(List.of());
+        when(eventoRepository.existsById(2L)).thenReturn(true);
+        when(eventoRepository.existsById(99L)).thenReturn(false);
+
+        assertThat(tarifaEntradasService.presupuestar(2L, Map.of("General", 3)).getTotal()).isEqualTo(Importe.CERO);
+        assertThatThrownBy(() -> tarifaEntradasService.presupuestar(2L, Map.of("VIP", 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tarifaEntradasService.presupuestar(2L, Map.of("General", 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tarifaEntradasService.presupuestar(2L, Map.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tarifaEntradasService.presupuestar(99L, Map.of("General", 1)))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    // Comprueba que cambiar las tarifas sustituye las filas y descarta la foto en memoria del evento
+    @Test
+    void definirTarifas_sustituyeYRecargaLaFoto() {
+        when(tipoEntradaRepository.findTramos(1L)).thenReturn(tarifas(),
+                List.of(new TramoPrecioDTO("General", Importe.deEuros("25.00"), null)));
+        when(eventoRepository.existsById(1L)).thenReturn(true);
+        assertThat(tarifaEntradasService.presupuestar(1L, Map.of("General", 1)).getTotal())
+                .isEqualTo(Importe.deEuros("15.00"));
+
+        tarifaEntradasService.definirTarifas(1L, List.of(new TramoPrecioDTO("General", Importe.deEuros("25.00"), null)));
+
+        ArgumentCaptor<Iterable<TipoEntrada>> guardados = ArgumentCaptor.forClass(Iterable.class);
+        verify(tipoEntradaRepository).borrarTramos(1L);
+        verify(tipoEntradaRepository).borrarTipos(1L);
+        verify(tipoEntradaRepository).saveAll(guardados.capture());
+        assertThat(guardados.getValue()).singleElement()
+                .satisfies(tipo -> assertThat(tipo.getTramos()).hasSize(1));
+        assertThat(tarifaEntradasService.presupuestar(1L, Map.of("General", 1)).getTotal())
+                .isEqualTo(Importe.deEuros("25.00"));
+
+        assertThatThrownBy(() -> tarifaEntradasService.definirTarifas(1L, List.of(
+                new TramoPrecioDTO("General", Importe.deEuros("5.00"), null),
+                new TramoPrecioDTO("General", Importe.deEuros("6.00"), null))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tarifaEntradasService.definirTarifas(1L, List.of(
+                new TramoPrecioDTO("General", Importe.deCentimos(-1), null))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<TramoPrecioDTO> tarifas() {
+        return List.of(
+                new TramoPrecioDTO("General", Importe.deEuros("20.00"), null),
+                new TramoPrecioDTO("General", Importe.deEuros("15.00"), FIN_ANTICIPADA),
+                new TramoPrecioDTO("Reducida", Importe.deEuros("10.00"), null),
+                new TramoPrecioDTO("Solidaria+", Importe.deEuros("40.00"), null));
+    }
+}
@@ -0,0 +1,98 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.model.CertificadoDonacion;
+import com.byron.cudeca.model.Importe;
+import com.byron.cudeca.repository.TotalDonanteAnualRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TotalDonanteAnualServiceTest {
+
+    @Mock
+    private TotalDonanteAnualRepository totalDonanteAnualRepository;
+
+    private TotalDonanteAnualService totalDonanteAnualService;
+
+    @BeforeEach
+    void setUp() {
+        totalDonanteAnualService = new TotalDonanteAnualService(totalDonanteAnualRepository);
+    }
+
+    // Verifica que un certificado de un donante con fila en el ejercicio solo hace un UPDATE
+    @Test
+    void acumular_filaExistenteSoloSuma() {
+        when(totalDonanteAnualRepository.sumar("12345678Z", 2024, 5000L, "José Muñoz", "29010")).thenReturn(1);
+
+        totalDonanteAnualService.acumular(certificado("12345678Z", "50.00", LocalDateTime.of(2024, 12, 31, 23, 59)));
+
+        verify(totalDonanteAnualRepository, never()).insertarSiNoExiste(any(), any(), anyLong(), any(), any());
+    }
+
+    // Verifica que el primer certificado del año crea la fila ya con su importe, sin volver a sumar
+    @Test
+    void acumular_primerCertificadoDelEjercicioCreaLaFila() {
+        when(totalDonanteAnualRepository.sumar("12345678Z", 2025, 5000L, "José Muñoz", "29010")).thenReturn(0);
+        when(totalDonanteAnualRepository.insertarSiNoExiste("12345678Z", 2025, 5000L, "José Muñoz", "29010")).thenReturn(1);
+
+        totalDonanteAnualService.acumular(certificado("12345678Z", "50.00", LocalDateTime.of(2025, 1, 1, 0, 0)));
+
+        verify(totalDonanteAnualRepository, times(1)).sumar("12345678Z", 2025, 5000L, "José Muñoz", "29010");
+    }
+
+    // Comprueba que si otra emisión confirma la fila entre el UPDATE y el INSERT se suma sobre la suya
+    @Test
+    void acumular_filaCreadaPorOtraEmisionSeSuma() {
+        when(totalDonanteAnualRepository.sumar("12345678Z", 2024, 5000L, "José Muñoz", "29010")).thenReturn(0, 1);
+        when(totalDonanteAnualRepository.insertarSiNoExiste("12345678Z", 2024, 5000L, "José Muñoz", "29010")).thenReturn(0);
+
+        totalDonanteAnualService.acumular(certificado("12345678Z", "50.00", LocalDateTime.of(2024, 6, 1, 10, 0)));
+
+        verify(totalDonanteAnualRepository, times(2)).sumar("12345678Z", 2024, 5000L, "José Muñoz", "29010");
+    }
+
+    // Comprueba que la violación de la restricción única sube tal cual para que se repita la emisión entera
+    @Test
+    void acumular_carreraAlCrearLaFilaSubeParaRepetir() {
+        when(totalDonanteAnualRepository.sumar("12345678Z", 2024, 5000L, "José Muñoz", "29010")).thenReturn(0);
+        when(totalDonanteAnualRepository.insertarSiNoExiste("12345678Z", 2024, 5000L, "José Muñoz", "29010"))
+                .thenThrow(new DataIntegrityViolationException("uk_total_donante_nif_ejercicio"));
+
+        assertThatThrownBy(() -> totalDonanteAnualService.acumular(
+                certificado("12345678Z", "50.00", LocalDateTime.of(2024, 6, 1, 10, 0))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    // Comprueba que el recálculo borra el ejercicio y lo rehace en la BD sobre el año natural
+    @Test
+    void recalcular_rehaceElEjercicioDesdeLosCertificados() {
+        when(totalDonanteAnualRepository.insertarDesdeCertificados(2023,
+                LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 1, 0, 0))).thenReturn(42);
+
+        assertThat(totalDonanteAnualService.recalcular(2023)).isEqualTo(42);
+        verify(totalDonanteAnualRepository).borrarEjercicio(2023);
+        assertThatThrownBy(() -> totalDonanteAnualService.recalcular(23)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CertificadoDonacion certificado(String nif, String importe, LocalDateTime fecha) {
+        CertificadoDonacion certificado = new CertificadoDonacion();
+        certificado.setNif(nif);
+        certificado.setImporteCertificado(Importe.deEuros(importe));
+        certificado.setFechaEmision(fecha);
+        certificado.setNombreCompleto("José Muñoz");
+        certificado.setCodigoPostal("29010");
+        return certificado;
+    }
+}
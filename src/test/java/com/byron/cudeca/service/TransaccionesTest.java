@@ -0,0 +1,62 @@
+package com.byron.cudeca.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransaccionesTest {
+
+    private final List<String> hechas = new ArrayList<>();
+
+    @AfterEach
+    void limpiar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Verifica que sin transacción alConfirmar actúa ya y alDeshacer no registra nada
+    @Test
+    void sinTransaccion_confirmaYaYNoDeshace() {
+        Transacciones.alConfirmar(() -> hechas.add("confirmada"));
+        boolean registrada = Transacciones.alDeshacer(() -> hechas.add("deshecha"));
+
+        assertThat(registrada).isFalse();
+        assertThat(hechas).containsExactly("confirmada");
+    }
+
+    // Comprueba que con commit solo se ejecuta alConfirmar, y con rollback solo alDeshacer
+    @Test
+    void enTransaccion_esperaAlFinal() {
+        TransactionSynchronizationManager.initSynchronization();
+        Transacciones.alConfirmar(() -> hechas.add("confirmada"));
+        assertThat(Transacciones.alDeshacer(() -> hechas.add("deshecha"))).isTrue();
+        assertThat(hechas).isEmpty();
+
+        terminar(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(hechas).containsExactly("confirmada");
+
+        hechas.clear();
+        TransactionSynchronizationManager.initSynchronization();
+        Transacciones.alConfirmar(() -> hechas.add("confirmada"));
+        Transacciones.alDeshacer(() -> hechas.add("deshecha"));
+
+        terminar(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(hechas).containsExactly("deshecha");
+    }
+
+    private static void terminar(int estado) {
+        List<TransactionSynchronization> registradas = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (estado == TransactionSynchronization.STATUS_COMMITTED) {
+            registradas.forEach(TransactionSynchronization::afterCommit);
+        }
+        registradas.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+}
@@ -0,0 +1,237 @@
+package com.byron.cudeca.service;
+
+import com.byron.cudeca.dto.EntradaEstadoDTO;
+import com.byron.cudeca.dto.ResultadoValidacionDTO;
+import com.byron.cudeca.model.Entrada;
+import com.byron.cudeca.model.Evento;
+import com.byron.cudeca.repository.EntradaRepository;
+import com.byron.cudeca.repository.EventoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ValidacionEntradaServiceTest {
+
+    private static final Clock FIXED_CLOCK = Clock.fixed(Instant.parse("2024-05-01T18:00:00Z"), ZoneId.of("UTC"));
+    private static final CodigoQrService CODIGO_QR = new CodigoQrService("clave-de-pruebas-de-validacion".getBytes());
+    private static final String QR_1 = CODIGO_QR.generar(10L, 100L, 0);
+    private static final String QR_2 = CODIGO_QR.generar(10L, 100L, 1);
+
+    @Mock
+    private EntradaRepository entradaRepository;
+
+    @Mock
+    private EventoRepository eventoRepository;
+
+    @Mock
+    private AforoEventosService aforoEventosService;
+
+    private ValidacionEntradaService validacionService;
+
+    @BeforeEach
+    void setUp() {
+        validacionService = new ValidacionEntradaService(entradaRepository, eventoRepository, CODIGO_QR, aforoEventosService,
+                FIXED_CLOCK);
+    }
+
+    // Verifica que la precarga pide solo los eventos de hoy y que el primer escaneo es válido y el segundo no
+    @Test
+    void validar_segundoEscaneoSeRechazaSinIrABd() {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L));
+
+        ResultadoValidacionDTO primero = validacionService.validar(10L, QR_1);
+        ResultadoValidacionDTO segundo = validacionService.validar(10L, QR_1);
+
+        assertThat(primero.getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.VALIDA);
+        assertThat(primero.getFechaValidacion()).isEqualTo(LocalDateTime.of(2024, 5, 1, 18, 0));
+        assertThat(segundo.getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.YA_USADA);
+        verify(eventoRepository).findIdsByFechaEntre(LocalDateTime.of(2024, 5, 1, 0, 0), LocalDateTime.of(2024, 5, 2, 0, 0));
+        verify(entradaRepository, never()).findByQrCodigo(any());
+        // Solo el escaneo aceptado suma al aforo
+        verify(aforoEventosService, times(1)).registrarValidacion(10L, 1);
+    }
+
+    // Verifica que con muchos escáneres leyendo el mismo QR a la vez solo uno lo acepta
+    @Test
+    void validar_escaneosConcurrentesSoloUnoValido() throws Exception {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L));
+        int escaneres = 32;
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(escaneres);
+        List<Future<ResultadoValidacionDTO>> resultados = new ArrayList<>();
+
+        for (int i = 0; i < escaneres; i++) {
+            resultados.add(pool.submit(() -> {
+                salida.await();
+                return validacionService.validar(10L, QR_1);
+            }));
+        }
+        salida.countDown();
+
+        int validas = 0;
+        for (Future<ResultadoValidacionDTO> resultado : resultados) {
+            if (resultado.get(10, TimeUnit.SECONDS).getResultado() == ResultadoValidacionDTO.Resultado.VALIDA) {
+                validas++;
+            }
+        }
+        pool.shutdown();
+        assertThat(validas).isEqualTo(1);
+    }
+
+    // Verifica que una reclamación offline bloquea la puerta online y que al liberarla la entrada vuelve a ser válida
+    @Test
+    void reclamarValidacionExterna_bloqueaLaPuertaHastaLiberar() {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L), new EntradaEstadoDTO(2L, QR_2, false, 10L));
+        validacionService.validar(10L, QR_2);
+
+        assertThat(validacionService.reclamarValidacionExterna(QR_1)).isEqualTo(ValidacionEntradaService.Reclamacion.RECLAMADA);
+        assertThat(validacionService.reclamarValidacionExterna(QR_2)).isEqualTo(ValidacionEntradaService.Reclamacion.YA_VALIDADA);
+        assertThat(validacionService.reclamarValidacionExterna(CODIGO_QR.generar(10L, 999L, 0)))
+                .isEqualTo(ValidacionEntradaService.Reclamacion.NO_INDEXADA);
+        assertThat(validacionService.validar(10L, QR_1).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.YA_USADA);
+
+        validacionService.liberarValidacionExterna(QR_1);
+        assertThat(validacionService.validar(10L, QR_1).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.VALIDA);
+    }
+
+    // Comprueba que una entrada ya usada en BD se rechaza y que un QR auténtico sin entrada devuelve NO_EXISTE
+    @Test
+    void validar_entradaYaUsadaOQrDesconocido() {
+        precargar(new EntradaEstadoDTO(2L, QR_2, true, 10L));
+        String sinEntrada = CODIGO_QR.generar(10L, 999L, 0);
+        when(entradaRepository.findByQrCodigo(sinEntrada)).thenReturn(Optional.empty());
+
+        assertThat(validacionService.validar(10L, QR_2).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.YA_USADA);
+        assertThat(validacionService.validar(10L, sinEntrada).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.NO_EXISTE);
+    }
+
+    // Comprueba que un QR con la firma manipulada se rechaza sin consultar el índice ni la BD
+    @Test
+    void validar_qrFalsificadoSeRechazaSinBd() {
+        String falso = CodigoQrService.codificarBase32(new byte[]{1, 10, 100, 0, 1, 2, 3, 4, 5, 6, 7, 8}, 12);
+
+        assertThat(validacionService.validar(10L, falso).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.NO_EXISTE);
+        assertThat(validacionService.validar(10L, "NO-ES-UN-QR").getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.NO_EXISTE);
+        verifyNoInteractions(entradaRepository);
+    }
+
+    // Verifica que una entrada de otro evento o de otro día no se acepta ni se marca como usada
+    @Test
+    void validar_entradaDeOtroEventoODiaSeRechaza() {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L));
+        String antiguo = "a3f0c2de-0000-4000-8000-000000000001";
+        Entrada deOtroEvento = entrada(5L);
+        deOtroEvento.getEvento().setId(99L);
+        when(entradaRepository.findByQrCodigo(antiguo)).thenReturn(Optional.of(deOtroEvento));
+
+        // QR firmado de otro evento: se ve en la propia firma
+        assertThat(validacionService.validar(10L, CODIGO_QR.generar(11L, 100L, 0)).getResultado())
+                .isEqualTo(ResultadoValidacionDTO.Resultado.OTRO_EVENTO);
+        // QR antiguo: el evento sale de la BD
+        ResultadoValidacionDTO otro = validacionService.validar(10L, antiguo);
+        assertThat(otro.getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.OTRO_EVENTO);
+        assertThat(otro.getEventoId()).isEqualTo(99L);
+        // Puerta de un evento que no es de hoy
+        assertThat(validacionService.validar(99L, antiguo).getResultado())
+                .isEqualTo(ResultadoValidacionDTO.Resultado.FUERA_DE_FECHA);
+        // Ninguna se ha marcado: la entrada de hoy sigue siendo válida en su puerta
+        assertThat(validacionService.validar(10L, QR_1).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.VALIDA);
+        verify(aforoEventosService, times(1)).registrarValidacion(anyLong(), anyInt());
+    }
+
+    // Comprueba que la precarga del día siguiente descarta del índice las entradas de eventos terminados, aunque estén usadas
+    @Test
+    void precargarEventosDeHoy_descartaEventosTerminados() {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L));
+        assertThat(validacionService.validar(10L, QR_1).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.VALIDA);
+        assertThat(validacionService.marcarValidadaExternamente(QR_1)).isFalse();
+
+        String deManana = CODIGO_QR.generar(11L, 200L, 0);
+        when(eventoRepository.findIdsByFechaEntre(any(), any())).thenReturn(List.of(11L));
+        when(entradaRepository.findEstadoValidacionByEventoIds(List.of(11L)))
+                .thenReturn(List.of(new EntradaEstadoDTO(3L, deManana, false, 11L)));
+        assertThat(validacionService.precargarEventosDeHoy()).isEqualTo(1);
+
+        // QR_1 ya no está en el índice (marcar una entrada no indexada devuelve true) y su evento ya no se valida
+        assertThat(validacionService.marcarValidadaExternamente(QR_1)).isTrue();
+        assertThat(validacionService.validar(10L, QR_1).getResultado())
+                .isEqualTo(ResultadoValidacionDTO.Resultado.FUERA_DE_FECHA);
+        assertThat(validacionService.validar(11L, deManana).getResultado()).isEqualTo(ResultadoValidacionDTO.Resultado.VALIDA);
+    }
+
+    // Comprueba que el volcado marca en BD las entradas validadas con un único UPDATE condicional, sin leerlas
+    @Test
+    @SuppressWarnings("unchecked")
+    void volcarValidaciones_marcaUsadasEnLote() {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L), new EntradaEstadoDTO(2L, QR_2, false, 10L));
+        validacionService.validar(10L, QR_1);
+        validacionService.validar(10L, QR_2);
+        when(entradaRepository.marcarUsadas(anyCollection(), any())).thenReturn(2);
+
+        int marcadas = validacionService.volcarValidaciones();
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(entradaRepository).marcarUsadas(ids.capture(), eq(LocalDateTime.of(2024, 5, 1, 18, 0)));
+        assertThat(marcadas).isEqualTo(2);
+        assertThat(ids.getValue()).containsExactlyInAnyOrder(1L, 2L);
+        verify(entradaRepository, never()).findAllById(any());
+        // La cola queda vacía: la siguiente pasada no vuelve a la BD
+        assertThat(validacionService.volcarValidaciones()).isZero();
+        verify(entradaRepository, times(1)).marcarUsadas(anyCollection(), any());
+    }
+
+    // Verifica que si el UPDATE falla el lote vuelve a la cola y se vuelca en la siguiente pasada
+    @Test
+    void volcarValidaciones_errorDeBdReencolaElLote() {
+        precargar(new EntradaEstadoDTO(1L, QR_1, false, 10L));
+        validacionService.validar(10L, QR_1);
+        when(entradaRepository.marcarUsadas(anyCollection(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        assertThatThrownBy(() -> validacionService.volcarValidaciones())
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(validacionService.volcarValidaciones()).isEqualTo(1);
+    }
+
+    private void precargar(EntradaEstadoDTO... entradas) {
+        when(eventoRepository.findIdsByFechaEntre(any(), any())).thenReturn(List.of(10L));
+        when(entradaRepository.findEstadoValidacionByEventoIds(List.of(10L))).thenReturn(List.of(entradas));
+        assertThat(validacionService.precargarEventosDeHoy()).isEqualTo(entradas.length);
+    }
+
+    private Entrada entrada(Long id) {
+        Entrada entrada = new Entrada();
+        entrada.setId(id);
+        entrada.setUsada(false);
+        entrada.setEvento(new Evento());
+        return entrada;
+    }
+}